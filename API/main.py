@@ -1,6 +1,7 @@
 from fastapi import FastAPI
 from fastapi.middleware.cors import CORSMiddleware
 from routes import auth, inventaire, consultation, entree, sorties, emplacement
+from utils.idempotence import IdempotenceMiddleware
 import os
 from dotenv import load_dotenv
 
@@ -28,6 +29,9 @@ app.add_middleware(
     allow_headers=["*"],
 )
 
+# Relances sans double application des POST/PATCH portant un Idempotency-Key
+app.add_middleware(IdempotenceMiddleware)
+
 # Inclusion des routes principales
 app.include_router(auth.router, prefix="/auth", tags=["auth"])
 app.include_router(inventaire.router, prefix="/inventaire", tags=["inventaire"])
@@ -23,11 +23,14 @@ class EmplacementEntrepotResponse(BaseModel):
 
 class ValidationDestruction(BaseModel):
     num_palette: str
+    horodatage_liste: Optional[str] = None
 
 class ValidationRenvoie(BaseModel):
     num_palette: str
+    horodatage_liste: Optional[str] = None
 
 class ValidationSortieProduction(BaseModel):
     num_palette: str
     quantite: Optional[int] = None
-    statut: str
\ No newline at end of file
+    statut: str
+    horodatage_liste: Optional[str] = None
\ No newline at end of file
@@ -1,4 +1,4 @@
-from fastapi import APIRouter, HTTPException, Depends
+from fastapi import APIRouter, HTTPException, Depends, Response
 from typing import Optional
 from models.palette import EntreePalette, SortiePaletteComplete, ValidationInventaire
 from models.user import User
@@ -7,72 +7,115 @@ from datetime import datetime
 from auth import get_current_user
 import logging
 import html
+from utils.helpers import lire_delta, horodatage_synchro
 
 logger = logging.getLogger(__name__)
 logging.basicConfig(level=logging.INFO)
 
 router = APIRouter()
 
+LIMITE_PAGE_MAX = 500
+
+def palette_vers_json(row):
+    return {
+        "num_palette": html.escape(row["NumPalette"]),
+        "nom_client": html.escape(row["NomClient"]),
+        "article": html.escape(row["Article"]),
+        "quantite": row["Quantite"],
+        "emplacement": html.escape(row["Emplacement"]) if row["Emplacement"] else None,
+        "date_dernier_mvt": str(row["Date_Dernier_MVT"]) if row["Date_Dernier_MVT"] else None,
+        "statut": html.escape(row["Statut"]),
+        "date_modif_statut": str(row["Date_Modif_Statut"]) if row["Date_Modif_Statut"] else None,
+        "utilisateur_modif_statut": html.escape(row["Utilisateur_Modif_Statut"])
+    }
+
 # ----------------------------------------------------------
 
 @router.get("")
 def consulter_palettes(
+    response: Response,
     num_palette: Optional[str] = None,
     client: Optional[str] = None,
     article: Optional[str] = None,
     statut: Optional[str] = None,
     emplacement: Optional[str] = None,
+    apres: Optional[str] = None,
+    avant: Optional[str] = None,
+    limite: Optional[int] = None,
+    depuis: Optional[str] = None,
     user: dict = Depends(get_current_user)
 ):
+    """
+    Consultation filtrée des palettes.
+    Avec "limite", le résultat est paginé par curseur sur NumPalette (ordre croissant) :
+    "apres" donne la page qui suit ce numéro, "avant" celle qui le précède.
+    Sans "limite", toutes les palettes correspondantes sont renvoyées comme auparavant.
+    Avec "depuis", réponse incrémentale (voir lire_delta) : seulement les palettes modifiées
+    depuis cet horodatage, celles qui ne correspondent plus aux filtres étant listées à part.
+    Les autres réponses portent l'en-tête X-Horodatage, point de départ de la première synchronisation.
+    """
     conn = get_connection()
     try:
         conn.begin()
         cursor = conn.cursor()
-        query = """
-            SELECT NumPalette, NomClient, Article, Quantite, Emplacement, Date_Dernier_MVT, Statut, Date_Modif_Statut, Utilisateur_Modif_Statut
-            FROM InfoPalette 
-            WHERE 1=1
-        """
+        colonnes = "NumPalette, NomClient, Article, Quantite, Emplacement, Date_Dernier_MVT, Statut, Date_Modif_Statut, Utilisateur_Modif_Statut"
+        conditions = ["1=1"]
         params = []
 
         if num_palette:
-            query += " AND NumPalette LIKE %s"
+            conditions.append("NumPalette LIKE %s")
             params.append(f"%{num_palette}%")
         if client:
-            query += " AND NomClient LIKE %s"
+            conditions.append("NomClient LIKE %s")
             params.append(f"%{client}%")
         if article:
-            query += " AND Article LIKE %s"
+            conditions.append("Article LIKE %s")
             params.append(f"%{article}%")
         if statut:
-            query += " AND Statut = %s"
+            conditions.append("Statut = %s")
             params.append(statut)
         if emplacement:
-            query += " AND Emplacement LIKE %s"
+            conditions.append("Emplacement LIKE %s")
             params.append(f"%{emplacement}%")
+        condition = " AND ".join(conditions)
+
+        if depuis is not None:
+            try:
+                delta = lire_delta(cursor, colonnes, condition, params, depuis, palette_vers_json)
+                conn.commit()
+                return delta
+            except Exception as e:
+                conn.rollback()
+                logging.error(f"Erreur lors de la synchronisation incrémentale: {e}")
+                raise HTTPException(status_code=500, detail="Erreur interne du serveur")
+
+        response.headers["X-Horodatage"] = horodatage_synchro()
+        query = f"SELECT {colonnes} FROM InfoPalette WHERE {condition}"
+
+        if limite:
+            limite = max(1, min(limite, LIMITE_PAGE_MAX))
+            if avant:
+                query += " AND NumPalette < %s ORDER BY NumPalette DESC LIMIT %s"
+                params.extend([avant, limite])
+            else:
+                if apres:
+                    query += " AND NumPalette > %s"
+                    params.append(apres)
+                query += " ORDER BY NumPalette ASC LIMIT %s"
+                params.append(limite)
 
         try:
             cursor.execute(query, params)
             results = cursor.fetchall()
             conn.commit()
+            if limite and avant:
+                # Page précédente lue à rebours : on la remet dans l'ordre croissant
+                results = list(reversed(results))
         except Exception as e:
             conn.rollback()
             logging.error(f"Erreur lors de l'exécution de la requête SQL: {e}")
             raise HTTPException(status_code=500, detail="Erreur interne du serveur")
 
-        return [
-            {
-                "num_palette": html.escape(row["NumPalette"]),
-                "nom_client": html.escape(row["NomClient"]),
-                "article": html.escape(row["Article"]),
-                "quantite": row["Quantite"],
-                "emplacement": html.escape(row["Emplacement"]) if row["Emplacement"] else None,
-                "date_dernier_mvt": str(row["Date_Dernier_MVT"]) if row["Date_Dernier_MVT"] else None,
-                "statut": html.escape(row["Statut"]),
-                "date_modif_statut": str(row["Date_Modif_Statut"]) if row["Date_Modif_Statut"] else None,
-                "utilisateur_modif_statut": html.escape(row["Utilisateur_Modif_Statut"])
-            }
-            for row in results
-        ]
+        return [palette_vers_json(row) for row in results]
     finally:
         conn.close()
\ No newline at end of file
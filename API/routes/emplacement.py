@@ -1,5 +1,5 @@
 from typing import Optional
-from fastapi import APIRouter, HTTPException
+from fastapi import APIRouter, HTTPException, Request
 from models.palette import EntreePalette, SortiePaletteComplete, ValidationInventaire
 from models.user import User
 from db import get_connection
@@ -7,7 +7,7 @@ from datetime import datetime
 from fastapi import Depends
 from auth import get_current_user
 from pydantic import BaseModel
-from utils.helpers import sql_row_to_snake
+from utils.helpers import sql_row_to_snake, reponse_conditionnelle
 
 router = APIRouter()
 
@@ -64,11 +64,11 @@ class EmplacementEntrepotResponse(BaseModel):
     etat: str
 
 @router.get("", response_model=list[EmplacementEntrepotResponse])
-def get_emplacements(user: dict = Depends(get_current_user)):
+def get_emplacements(request: Request, user: dict = Depends(get_current_user)):
     conn = get_connection()
     cursor = conn.cursor()
     cursor.execute("SELECT Emplacement, Etat FROM EmplacementEntrepot")
     emplacements = cursor.fetchall()
     conn.close()
     # Tu peux return direct : la conversion SQL → dict est gérée par FastAPI avec pymysql/cursor.DictCursor.
-    return [{"emplacement": row["Emplacement"], "etat": row["Etat"]} for row in emplacements]
\ No newline at end of file
+    return reponse_conditionnelle(request, [{"emplacement": row["Emplacement"], "etat": row["Etat"]} for row in emplacements])
\ No newline at end of file
@@ -1,25 +1,31 @@
-from fastapi import APIRouter, HTTPException
+from fastapi import APIRouter, HTTPException, Request
 from models.palette import EntreePalette, SortiePaletteComplete, ValidationInventaire
 from models.user import User
 from db import get_connection
 from datetime import datetime
 from fastapi import Depends
 from auth import get_current_user
-from typing import List
+from typing import List, Optional
 import pymysql.cursors
-from utils.helpers import sql_row_to_snake, get_logger
+from utils.helpers import (sql_row_to_snake, lire_delta, get_logger, reponse_conditionnelle, statut_conforme,
+                           resultat_validation, raison_non_conforme, palette_actuelle, reponse_validation,
+                           APPLIQUEE, IGNOREE)
+from utils.compression import GzipRoute
 
 logger = get_logger("inventaire")
 
-router = APIRouter()
+router = APIRouter(route_class=GzipRoute)
 
 # ----------------------------------------------------------
 
 @router.get("")
-def get_palettes_a_inventorier(user: User = Depends(get_current_user)):
+def get_palettes_a_inventorier(request: Request, depuis: Optional[str] = None, user: User = Depends(get_current_user)):
     conn = get_connection()
     try:
         cursor = conn.cursor(pymysql.cursors.DictCursor)
+        if depuis is not None:
+            return lire_delta(cursor, "NumPalette, Article, NomClient, Quantite, Emplacement",
+                              "Statut = %s", ["A Inventorier"], depuis, sql_row_to_snake)
         cursor.execute("""
             SELECT NumPalette, Article, NomClient, Quantite, Emplacement
             FROM InfoPalette
@@ -28,7 +34,7 @@ def get_palettes_a_inventorier(user: User = Depends(get_current_user)):
         results = cursor.fetchall()
         logger.info(f"Inventaire demandé par {getattr(user, 'username', user)}")
         # Conversion du format des clefs pour chaque résultat
-        return [sql_row_to_snake(row) for row in results]
+        return reponse_conditionnelle(request, [sql_row_to_snake(row) for row in results])
     except Exception as e:
         logger.error(f"Erreur dans get_palettes_a_inventorier : {e}")
         raise HTTPException(status_code=500, detail=str(e))
@@ -45,22 +51,29 @@ def valider_inventaire_liste(palettes: List[ValidationInventaire], user: User =
     now = datetime.now().strftime("%Y-%m-%d %H:%M:%S")
     utilisateur = user.username if hasattr(user, "username") else user["username"]
 
+    resultats = []
     try:
         conn.begin()
 
         for data in palettes:
-            cursor.execute("SELECT Statut FROM InfoPalette WHERE NumPalette = %s", (data.num_palette,))
+            cursor.execute("SELECT Statut, Date_Modif_Statut FROM InfoPalette WHERE NumPalette = %s", (data.num_palette,))
             result = cursor.fetchone()
             if not result:
                 logger.warning(f"Palette {data.num_palette} non trouvée en base par {utilisateur}")
+                resultats.append(resultat_validation(data.num_palette, IGNOREE, "Palette introuvable"))
                 continue
 
             if data.quantite is not None and (not isinstance(data.quantite, int) or data.quantite < 0):
                 logger.warning(f"Tentative de validation avec une quantité invalide : {data.quantite} par {utilisateur}")
+                resultats.append(resultat_validation(data.num_palette, IGNOREE, f"Quantité invalide : {data.quantite}",
+                                                     palette_actuelle(cursor, data.num_palette)))
                 continue
 
-            if result["Statut"] != "A Inventorier":
+            if not statut_conforme(result["Statut"], "A Inventorier"):
                 logger.warning(f"Palette {data.num_palette} statut incorrect {result['Statut']} (attendu 'A Inventorier') par {utilisateur}")
+                resultats.append(resultat_validation(data.num_palette, IGNOREE,
+                                                     raison_non_conforme(result, "A Inventorier", None),
+                                                     palette_actuelle(cursor, data.num_palette)))
                 continue
 
 
@@ -105,6 +118,7 @@ def valider_inventaire_liste(palettes: List[ValidationInventaire], user: User =
                 INSERT INTO STT_Palette (NumPalette, Statut, Date_Modif_Statut, Utilisateur_Modif_Statut)
                 VALUES (%s, %s, %s, %s)
             """, (data.num_palette, data.statut, now, utilisateur))
+            resultats.append(resultat_validation(data.num_palette, APPLIQUEE))
 
         conn.commit()
     except Exception as e:
@@ -114,4 +128,5 @@ def valider_inventaire_liste(palettes: List[ValidationInventaire], user: User =
     finally:
         conn.close()
 
-    return {"message": f"{len(palettes)} palettes validées"}
\ No newline at end of file
+    appliquees = sum(1 for r in resultats if r["statut"] == APPLIQUEE)
+    return reponse_validation(f"{appliquees} palettes validées", resultats)
\ No newline at end of file
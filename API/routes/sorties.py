@@ -1,23 +1,29 @@
-from fastapi import APIRouter, HTTPException
+from fastapi import APIRouter, HTTPException, Request
 from models.palette import EntreePalette, SortiePaletteComplete, ValidationDestruction, ValidationRenvoie, ValidationSortieProduction
 from models.user import User
 from db import get_connection
 from datetime import datetime
 from fastapi import Depends
 from auth import get_current_user
-from typing import List
+from typing import List, Optional
 import logging
 import os
 import pymysql.cursors
-from utils.helpers import sql_row_to_snake
+from utils.helpers import (sql_row_to_snake, lire_delta, reponse_conditionnelle, statut_conforme,
+                           resultat_validation, raison_non_conforme, palette_actuelle, reponse_validation,
+                           APPLIQUEE, IGNOREE)
+from utils.compression import GzipRoute
 
-router = APIRouter()
+router = APIRouter(route_class=GzipRoute)
 
 @router.get("/destruction")
-def get_palettes_a_detruire(user: User = Depends(get_current_user)):
+def get_palettes_a_detruire(request: Request, depuis: Optional[str] = None, user: User = Depends(get_current_user)):
     conn = get_connection()
     try:
         cursor = conn.cursor(pymysql.cursors.DictCursor)
+        if depuis is not None:
+            return lire_delta(cursor, "NumPalette, Article, NomClient, Quantite, Emplacement",
+                              "Statut = %s", ["A Détruire"], depuis, sql_row_to_snake)
         cursor.execute("""
             SELECT NumPalette, Article, NomClient, Quantite, Emplacement
             FROM InfoPalette
@@ -25,7 +31,7 @@ def get_palettes_a_detruire(user: User = Depends(get_current_user)):
         """)
         results = cursor.fetchall()
         logging.info(f"Destruction demandé par {getattr(user, 'username', user)}")
-        return [sql_row_to_snake(row) for row in results]
+        return reponse_conditionnelle(request, [sql_row_to_snake(row) for row in results])
     except Exception as e:
         logging.error(f"Erreur dans get_palettes_a_detruire : {e}")
         raise HTTPException(status_code=500, detail=str(e))
@@ -45,18 +51,23 @@ def valider_destruction_liste(palettes: List[ValidationDestruction], user: User
     try:
         conn.begin()
         valid_count = 0
+        resultats = []
 
         for data in palettes:
             # Vérifie l'existence et statut de la palette
-            cursor.execute("SELECT Statut, Emplacement FROM InfoPalette WHERE NumPalette = %s", (data.num_palette,))
+            cursor.execute("SELECT Statut, Emplacement, Date_Modif_Statut FROM InfoPalette WHERE NumPalette = %s", (data.num_palette,))
             result = cursor.fetchone()
-            emplacement = result.get("Emplacement")
             if not result:
                 logging.warning(f"Palette {data.num_palette} non trouvée, ignorée")
+                resultats.append(resultat_validation(data.num_palette, IGNOREE, "Palette introuvable"))
                 continue
-            if result["Statut"] != "A Détruire":
+            if not statut_conforme(result["Statut"], "A Détruire"):
                 logging.warning(f"Palette {data.num_palette} avec statut {result['Statut']} non conforme, ignorée")
+                resultats.append(resultat_validation(data.num_palette, IGNOREE,
+                                                     raison_non_conforme(result, "A Détruire", data.horodatage_liste),
+                                                     palette_actuelle(cursor, data.num_palette)))
                 continue
+            emplacement = result.get("Emplacement")
 
             # Mise à jour statut
             cursor.execute("""
@@ -83,11 +94,12 @@ def valider_destruction_liste(palettes: List[ValidationDestruction], user: User
                 SET Etat = 'Libre'
                 WHERE Emplacement = %s
             """, (emplacement,))
+            resultats.append(resultat_validation(data.num_palette, APPLIQUEE))
             valid_count += 1
 
         conn.commit()
         logging.info(f"{valid_count} palettes validées pour destruction par {utilisateur}")
-        return {"message": f"{valid_count} palettes validées pour destruction"}
+        return reponse_validation(f"{valid_count} palettes validées pour destruction", resultats)
 
     except Exception as e:
         conn.rollback()
@@ -99,10 +111,13 @@ def valider_destruction_liste(palettes: List[ValidationDestruction], user: User
 # ----------------------------------------------------------
 
 @router.get("/renvoie")
-def get_palettes_a_renvoyer(user: User = Depends(get_current_user)):
+def get_palettes_a_renvoyer(request: Request, depuis: Optional[str] = None, user: User = Depends(get_current_user)):
     conn = get_connection()
     try:
         cursor = conn.cursor(pymysql.cursors.DictCursor)
+        if depuis is not None:
+            return lire_delta(cursor, "NumPalette, Article, NomClient, Quantite, Emplacement",
+                              "Statut = %s", ["A Renvoyer"], depuis, sql_row_to_snake)
         cursor.execute("""
             SELECT NumPalette, Article, NomClient, Quantite, Emplacement
             FROM InfoPalette
@@ -110,7 +125,7 @@ def get_palettes_a_renvoyer(user: User = Depends(get_current_user)):
         """)
         results = cursor.fetchall()
         logging.info(f"Renvoie demandé par {getattr(user, 'username', user)}")
-        return [sql_row_to_snake(row) for row in results]
+        return reponse_conditionnelle(request, [sql_row_to_snake(row) for row in results])
     except Exception as e:
         logging.error(f"Erreur dans get_palettes_a_renvoyer : {e}")
         raise HTTPException(status_code=500, detail=str(e))
@@ -130,17 +145,22 @@ def valider_renvoie_liste(palettes: List[ValidationRenvoie], user: User = Depend
     try:
         conn.begin()
         valid_count = 0
+        resultats = []
 
         for data in palettes:
-            cursor.execute("SELECT Statut, Emplacement FROM InfoPalette WHERE NumPalette = %s", (data.num_palette,))
+            cursor.execute("SELECT Statut, Emplacement, Date_Modif_Statut FROM InfoPalette WHERE NumPalette = %s", (data.num_palette,))
             result = cursor.fetchone()
-            emplacement = result.get("Emplacement")
             if not result:
                 logging.warning(f"Palette {data.num_palette} non trouvée, ignorée")
+                resultats.append(resultat_validation(data.num_palette, IGNOREE, "Palette introuvable"))
                 continue
-            if result["Statut"] != "A Renvoyer":
+            if not statut_conforme(result["Statut"], "A Renvoyer"):
                 logging.warning(f"Palette {data.num_palette} avec statut {result['Statut']} non conforme, ignorée")
+                resultats.append(resultat_validation(data.num_palette, IGNOREE,
+                                                     raison_non_conforme(result, "A Renvoyer", data.horodatage_liste),
+                                                     palette_actuelle(cursor, data.num_palette)))
                 continue
+            emplacement = result.get("Emplacement")
 
             cursor.execute("""
                 UPDATE InfoPalette
@@ -166,11 +186,12 @@ def valider_renvoie_liste(palettes: List[ValidationRenvoie], user: User = Depend
                 WHERE Emplacement = %s
             """, (emplacement,))
 
+            resultats.append(resultat_validation(data.num_palette, APPLIQUEE))
             valid_count += 1
 
         conn.commit()
         logging.info(f"{valid_count} palettes validées pour renvoie par {utilisateur}")
-        return {"message": f"{valid_count} palettes validées pour renvoie"}
+        return reponse_validation(f"{valid_count} palettes validées pour renvoie", resultats)
 
     except Exception as e:
         conn.rollback()
@@ -182,10 +203,13 @@ def valider_renvoie_liste(palettes: List[ValidationRenvoie], user: User = Depend
 # ----------------------------------------------------------
 
 @router.get("/production")
-def get_palettes_en_stock(user: User = Depends(get_current_user)):
+def get_palettes_en_stock(request: Request, depuis: Optional[str] = None, user: User = Depends(get_current_user)):
     conn = get_connection()
     try:
         cursor = conn.cursor(pymysql.cursors.DictCursor)
+        if depuis is not None:
+            return lire_delta(cursor, "NumPalette, Article, NomClient, Quantite, Emplacement",
+                              "Statut = %s", ["En Stock"], depuis, sql_row_to_snake)
         cursor.execute("""
             SELECT NumPalette, Article, NomClient, Quantite, Emplacement
             FROM InfoPalette
@@ -193,7 +217,7 @@ def get_palettes_en_stock(user: User = Depends(get_current_user)):
         """)
         results = cursor.fetchall()
         logging.info(f"Sortie production demandée par {getattr(user, 'username', user)}")
-        return [sql_row_to_snake(row) for row in results]
+        return reponse_conditionnelle(request, [sql_row_to_snake(row) for row in results])
     except Exception as e:
         logging.error(f"Erreur dans get_palettes_en_stock : {e}")
         raise HTTPException(status_code=500, detail=str(e))
@@ -212,18 +236,23 @@ def valider_sortie_production(palettes: List[ValidationSortieProduction], user:
     try:
         conn.begin()
         valid_count = 0
+        resultats = []
 
         for data in palettes:
             # Vérifie l'existence et statut de la palette
-            cursor.execute("SELECT Statut, Emplacement FROM InfoPalette WHERE NumPalette = %s", (data.num_palette,))
+            cursor.execute("SELECT Statut, Emplacement, Date_Modif_Statut FROM InfoPalette WHERE NumPalette = %s", (data.num_palette,))
             result = cursor.fetchone()
-            emplacement = result.get("Emplacement")
             if not result:
                 logging.warning(f"Palette {data.num_palette} non trouvée, ignorée")
+                resultats.append(resultat_validation(data.num_palette, IGNOREE, "Palette introuvable"))
                 continue
-            if result["Statut"] != "En stock":
+            if not statut_conforme(result["Statut"], "En Stock"):
                 logging.warning(f"Palette {data.num_palette} avec statut {result['Statut']} non conforme, ignorée")
+                resultats.append(resultat_validation(data.num_palette, IGNOREE,
+                                                     raison_non_conforme(result, "En Stock", data.horodatage_liste),
+                                                     palette_actuelle(cursor, data.num_palette)))
                 continue
+            emplacement = result.get("Emplacement")
 
             # Mise à jour statut
             cursor.execute("""
@@ -251,11 +280,12 @@ def valider_sortie_production(palettes: List[ValidationSortieProduction], user:
                 WHERE Emplacement = %s
             """, (emplacement,))
 
+            resultats.append(resultat_validation(data.num_palette, APPLIQUEE))
             valid_count += 1
 
         conn.commit()
         logging.info(f"{valid_count} palettes validées pour sortie production par {utilisateur}")
-        return {"message": f"{valid_count} palettes validées pour sortie production"}
+        return reponse_validation(f"{valid_count} palettes validées pour sortie production", resultats)
 
     except Exception as e:
         conn.rollback()
@@ -0,0 +1,37 @@
+import gzip
+import zlib
+from typing import Callable
+from fastapi import Request, Response
+from fastapi.routing import APIRoute
+
+class GzipRequest(Request):
+    """
+    Requête dont le corps est décompressé à la lecture si le client l'a envoyé en gzip
+    (Content-Encoding: gzip). Les autres requêtes sont lues telles quelles.
+    """
+    async def body(self) -> bytes:
+        if not hasattr(self, "_body"):
+            corps = await super().body()
+            if "gzip" in self.headers.getlist("content-encoding"):
+                corps = gzip.decompress(corps)
+            self._body = corps
+        return self._body
+
+class GzipRoute(APIRoute):
+    """
+    Route acceptant un corps de requête compressé en gzip, pour les validations en lot.
+    Un encodage inconnu est refusé en 415 : le client renvoie alors le corps en JSON simple.
+    """
+    def get_route_handler(self) -> Callable:
+        handler_original = super().get_route_handler()
+
+        async def handler(request: Request) -> Response:
+            encodage = request.headers.get("content-encoding")
+            if encodage and encodage.lower() not in ("gzip", "identity"):
+                return Response(status_code=415, content=f"Content-Encoding non supporté : {encodage}")
+            try:
+                return await handler_original(GzipRequest(request.scope, request.receive))
+            except (OSError, EOFError, zlib.error):
+                return Response(status_code=400, content="Corps gzip invalide")
+
+        return handler
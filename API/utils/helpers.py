@@ -1,5 +1,26 @@
+import hashlib
+import json
 import logging
 import os
+from datetime import datetime, timedelta
+from fastapi import Request, Response
+
+# Recouvrement entre deux synchronisations : une transaction datée juste avant l'horodatage
+# renvoyé mais validée juste après n'est pas perdue (elle est simplement renvoyée deux fois)
+MARGE_DELTA = timedelta(seconds=60)
+
+# Journal des palettes retirées d'InfoPalette par la purge du poste de consultation, lu par lire_delta.
+# La purge efface les entrées plus anciennes que CONSERVATION_SUPPRESSIONS (même valeur dans consultation/Main.py) :
+# un client dont la dernière synchronisation est plus ancienne reçoit une liste complète.
+CONSERVATION_SUPPRESSIONS = timedelta(days=30)
+TABLE_SUPPRESSIONS = """
+    CREATE TABLE IF NOT EXISTS Suppression_Palette (
+        NumPalette VARCHAR(50) NOT NULL,
+        Date_Suppression DATETIME NOT NULL,
+        INDEX idx_suppression_date (Date_Suppression)
+    )
+"""
+_table_suppressions_creee = False
 
 def sql_row_to_snake(row):
     return {
@@ -10,6 +31,146 @@ def sql_row_to_snake(row):
         "emplacement": row.get("Emplacement"),
     }
 
+def reponse_conditionnelle(request: Request, data):
+    """
+    Sérialise data en JSON avec un ETag calculé sur le contenu.
+    Si le client présente déjà ce même ETag (If-None-Match), répond 304 sans corps.
+    Cache-Control "no-cache" oblige le client à revalider à chaque fois, tout en gardant sa copie locale.
+    """
+    corps = json.dumps(data, ensure_ascii=False, default=str).encode("utf-8")
+    etag = '"' + hashlib.sha1(corps).hexdigest() + '"'
+    headers = {"ETag": etag, "Cache-Control": "private, no-cache"}
+
+    if etag in request.headers.get("if-none-match", ""):
+        return Response(status_code=304, headers=headers)
+    return Response(content=corps, media_type="application/json", headers=headers)
+
+def horodatage_synchro():
+    """
+    Horodatage à transmettre comme "depuis" à la synchronisation suivante, MARGE_DELTA comprise.
+    Pris avant la lecture : une modification concurrente de la lecture sera renvoyée la fois suivante.
+    """
+    return (datetime.now() - MARGE_DELTA).strftime("%Y-%m-%d %H:%M:%S")
+
+def lire_delta(cursor, colonnes, condition, params, depuis, convertir):
+    """
+    Synchronisation incrémentale d'une liste de palettes.
+    - depuis vide : toute la liste ("complet" vaut True), le client remplace sa copie locale ;
+    - sinon : seulement les palettes modifiées depuis cet horodatage (Date_Modif_Statut ou
+      Date_Dernier_MVT), réparties entre "palettes" (elles correspondent encore à la condition)
+      et "supprimees" (elles en sont sorties, par exemple après un changement de statut,
+      ou ont été purgées d'InfoPalette, voir palettes_purgees) ;
+    - "depuis" illisible ou antérieur au journal des suppressions : liste complète, comme sans "depuis".
+    "horodatage" est à renvoyer tel quel comme "depuis" à la synchronisation suivante.
+    """
+    horodatage = horodatage_synchro()
+
+    if depuis:
+        try:
+            if datetime.strptime(depuis, "%Y-%m-%d %H:%M:%S") < datetime.now() - CONSERVATION_SUPPRESSIONS:
+                depuis = None
+        except ValueError:
+            depuis = None
+
+    if not depuis:
+        cursor.execute(f"SELECT {colonnes} FROM InfoPalette WHERE {condition}", params)
+        return {
+            "horodatage": horodatage,
+            "complet": True,
+            "palettes": [convertir(row) for row in cursor.fetchall()],
+            "supprimees": [],
+        }
+
+    cursor.execute(f"""
+        SELECT {colonnes}, ({condition}) AS Correspond
+        FROM InfoPalette
+        WHERE Date_Modif_Statut >= %s OR Date_Dernier_MVT >= %s
+    """, list(params) + [depuis, depuis])
+    palettes = []
+    supprimees = []
+    for row in cursor.fetchall():
+        if row["Correspond"]:
+            palettes.append(convertir(row))
+        else:
+            supprimees.append(row["NumPalette"])
+    supprimees.extend(palettes_purgees(cursor, depuis))
+    return {"horodatage": horodatage, "complet": False, "palettes": palettes, "supprimees": supprimees}
+
+def palettes_purgees(cursor, depuis):
+    """
+    Palettes retirées d'InfoPalette depuis l'horodatage donné (journal Suppression_Palette).
+    Une palette purgée puis restaurée depuis les archives est de nouveau dans InfoPalette : elle est exclue.
+    """
+    global _table_suppressions_creee
+    if not _table_suppressions_creee:
+        cursor.execute(TABLE_SUPPRESSIONS)
+        _table_suppressions_creee = True
+    cursor.execute("""
+        SELECT DISTINCT s.NumPalette
+        FROM Suppression_Palette s
+        LEFT JOIN InfoPalette i ON i.NumPalette = s.NumPalette
+        WHERE s.Date_Suppression >= %s AND i.NumPalette IS NULL
+    """, (depuis,))
+    return [row["NumPalette"] for row in cursor.fetchall()]
+
+# Issue d'une palette dans la réponse d'une validation en lot
+APPLIQUEE = "appliquee"
+IGNOREE = "ignoree"
+
+def statut_conforme(statut_actuel, statut_attendu):
+    """
+    Compare deux statuts sans tenir compte de la casse, comme les filtres SQL des listes
+    ('En Stock' et 'En stock' désignent le même statut).
+    """
+    return (statut_actuel or "").casefold() == statut_attendu.casefold()
+
+def resultat_validation(num_palette, statut, raison=None, palette=None):
+    """
+    Issue d'une palette d'un lot : APPLIQUEE, ou IGNOREE avec la raison à afficher à l'opérateur
+    et l'état actuel de la palette (voir palette_actuelle), ou None si elle n'existe pas.
+    """
+    return {"num_palette": num_palette, "statut": statut, "raison": raison, "palette": palette}
+
+def palette_actuelle(cursor, num_palette):
+    """
+    État actuel d'une palette ignorée, renvoyé au client pour qu'il corrige sa copie locale
+    de cette seule palette, au lieu de recharger toutes ses listes.
+    """
+    cursor.execute("""
+        SELECT NumPalette, NomClient, Article, Quantite, Emplacement, Statut
+        FROM InfoPalette
+        WHERE NumPalette = %s
+    """, (num_palette,))
+    row = cursor.fetchone()
+    if not row:
+        return None
+    palette = sql_row_to_snake(row)
+    palette["statut"] = row["Statut"]
+    return palette
+
+def raison_non_conforme(row, statut_attendu, horodatage_liste):
+    """
+    Raison du refus d'une palette dont le statut n'est plus celui attendu.
+    Si le client a transmis l'horodatage de la liste contre laquelle la palette a été scannée
+    et que le statut a changé depuis, la raison le précise.
+    """
+    raison = f"Statut « {row['Statut']} » au lieu de « {statut_attendu} »"
+    date_modif = row.get("Date_Modif_Statut")
+    if horodatage_liste and isinstance(date_modif, datetime):
+        try:
+            if date_modif > datetime.strptime(horodatage_liste, "%Y-%m-%d %H:%M:%S"):
+                raison += ", modifié depuis le scan"
+        except ValueError:
+            pass
+    return raison
+
+def reponse_validation(message, resultats):
+    """
+    Réponse d'une validation en lot : un message récapitulatif et l'issue de chaque palette,
+    pour que le client mette à jour ses listes palette par palette.
+    """
+    return {"message": message, "resultats": resultats}
+
 def get_logger(log_name: str):
     """
     Crée et retourne un logger configuré pour le fichier de log donné.
@@ -0,0 +1,129 @@
+import gzip
+import hashlib
+import zlib
+import threading
+import time
+
+from utils.helpers import get_logger
+
+logger = get_logger("idempotence")
+
+# Durée de conservation d'une réponse : couvre largement les relances automatiques
+# et les nouvelles tentatives manuelles d'une même session de travail.
+DUREE_CONSERVATION_S = 24 * 3600
+NOMBRE_MAX_CLES = 10000
+
+class IdempotenceMiddleware:
+    """
+    Middleware ASGI rendant les POST/PATCH portant un en-tête Idempotency-Key rejouables sans effet de bord.
+    La première requête pour une clé est exécutée et sa réponse conservée en mémoire ; une requête suivante
+    avec la même clé reçoit la même réponse sans être réexécutée (en-tête Idempotent-Replayed: true).
+    - clé en cours de traitement : 409, le client relance plus tard ;
+    - même clé mais corps différent : 422 ;
+    - réponses 5xx, 401 et 415 non conservées : la requête pourra être réellement rejouée ;
+    - corps compressé (Content-Encoding: gzip) : l'empreinte porte sur le corps décompressé, et un 400/422
+      n'est pas conservé, le client renvoyant alors le même corps en JSON simple (serveur sans décompression).
+    Le stockage est local au processus (uvicorn est lancé avec un seul worker).
+    """
+    def __init__(self, app):
+        self.app = app
+        self.reponses = {}
+        self.verrou = threading.Lock()
+
+    async def __call__(self, scope, receive, send):
+        if scope["type"] != "http" or scope["method"] not in ("POST", "PATCH"):
+            await self.app(scope, receive, send)
+            return
+
+        cle = None
+        compresse = False
+        for nom, valeur in scope["headers"]:
+            if nom == b"idempotency-key":
+                cle = valeur.decode("latin-1").strip()
+            elif nom == b"content-encoding":
+                compresse = b"gzip" in valeur.lower()
+        if not cle:
+            await self.app(scope, receive, send)
+            return
+
+        # Lecture complète du corps pour calculer son empreinte, puis relecture par l'application
+        corps = b""
+        while True:
+            message = await receive()
+            corps += message.get("body", b"")
+            if not message.get("more_body", False):
+                break
+        empreinte = self._empreinte(corps, compresse)
+        cle = scope["method"] + " " + scope["path"] + " " + cle
+
+        with self.verrou:
+            self._purger()
+            entree = self.reponses.get(cle)
+            if entree is None:
+                self.reponses[cle] = {"empreinte": empreinte, "en_cours": True, "date": time.time()}
+
+        if entree is not None:
+            if entree["empreinte"] != empreinte:
+                await self._repondre(send, 422, '{"detail":"Idempotency-Key déjà utilisée pour un autre corps"}'.encode("utf-8"))
+            elif entree["en_cours"]:
+                await self._repondre(send, 409, '{"detail":"Requête déjà en cours de traitement"}'.encode("utf-8"))
+            else:
+                logger.info(f"Réponse rejouée pour {cle}")
+                headers = entree["headers"] + [(b"idempotent-replayed", b"true")]
+                await send({"type": "http.response.start", "status": entree["statut"], "headers": headers})
+                await send({"type": "http.response.body", "body": entree["corps"]})
+            return
+
+        reponse = {"statut": 500, "headers": [], "corps": b""}
+        corps_envoye = False
+
+        async def relire():
+            nonlocal corps_envoye
+            if corps_envoye:
+                return {"type": "http.disconnect"}
+            corps_envoye = True
+            return {"type": "http.request", "body": corps, "more_body": False}
+
+        async def capturer(message):
+            if message["type"] == "http.response.start":
+                reponse["statut"] = message["status"]
+                reponse["headers"] = list(message.get("headers", []))
+            elif message["type"] == "http.response.body":
+                reponse["corps"] += message.get("body", b"")
+            await send(message)
+
+        try:
+            await self.app(scope, relire, capturer)
+        finally:
+            with self.verrou:
+                if reponse["statut"] >= 500 or reponse["statut"] in (401, 409, 415) \
+                        or (compresse and reponse["statut"] in (400, 422)):
+                    self.reponses.pop(cle, None)
+                else:
+                    self.reponses[cle] = {"empreinte": empreinte, "en_cours": False, "date": time.time(), **reponse}
+
+    @staticmethod
+    def _empreinte(corps, compresse):
+        """Empreinte du contenu : identique que le corps ait été envoyé compressé ou en JSON simple."""
+        if compresse:
+            try:
+                corps = gzip.decompress(corps)
+            except (OSError, EOFError, zlib.error):
+                pass
+        return hashlib.sha256(corps).hexdigest()
+
+    def _purger(self):
+        """Retire les réponses expirées, et les plus anciennes au-delà de NOMBRE_MAX_CLES."""
+        limite = time.time() - DUREE_CONSERVATION_S
+        for cle in [c for c, e in self.reponses.items() if e["date"] < limite and not e["en_cours"]]:
+            del self.reponses[cle]
+        if len(self.reponses) > NOMBRE_MAX_CLES:
+            anciennes = sorted(self.reponses, key=lambda c: self.reponses[c]["date"])
+            for cle in anciennes[:len(self.reponses) - NOMBRE_MAX_CLES]:
+                if not self.reponses[cle]["en_cours"]:
+                    del self.reponses[cle]
+
+    async def _repondre(self, send, statut, corps):
+        await send({"type": "http.response.start", "status": statut,
+                    "headers": [(b"content-type", b"application/json")]})
+        await send({"type": "http.response.body", "body": corps})
@@ -1,27 +1,55 @@
 package com.mdo.gestionpalettes.activities;
 
 import android.content.Intent;
-import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
 import android.os.Bundle;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.Lifecycle;
 
 import com.mdo.gestionpalettes.api.ApiClient;
 import com.mdo.gestionpalettes.api.ApiService;
+import com.mdo.gestionpalettes.api.ExpediteurEnvois;
+import com.mdo.gestionpalettes.api.PorteeAppels;
+import com.mdo.gestionpalettes.api.Prechauffage;
+import com.mdo.gestionpalettes.api.SynchroEmplacements;
+import com.mdo.gestionpalettes.api.SynchroPalettes;
+import com.mdo.gestionpalettes.stockage.FileEnvois;
+import com.mdo.gestionpalettes.utils.AuthInterceptor;
 import com.mdo.gestionpalettes.utils.NetworkMonitor;
+import com.mdo.gestionpalettes.utils.TokenStore;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import retrofit2.Response;
 
 public abstract class BaseActivity extends AppCompatActivity {
 
+    private static final int MENU_ENVOIS = Menu.FIRST + 100;
+    private static final int ENVOIS_AFFICHES_MAX = 50;
+
     protected ApiService apiService;
     protected String token;
+    // Appels et rappels de l'écran : annulés ou détachés à sa destruction
+    protected final PorteeAppels appels = new PorteeAppels();
+    private ConnectivityManager.NetworkCallback suiviReseau;
     private boolean isOnline = true;
+    // Actions refusées hors ligne, rejouées en dernière étape du préchauffage
+    private final ArrayDeque<Runnable> actionsEnAttente = new ArrayDeque<>();
+    private boolean prechauffageEnAttente = false;
 
     /**
      * Méthode appelée lors de la création de l'activité.
      * Initialise l'API avec le token stocké, et enregistre un moniteur réseau pour détecter
-     * les changements de connectivité (connexion/déconnexion).
+     * les changements de connectivité (connexion/déconnexion), annulé dans {@link #onDestroy()}.
      *
      * @param savedInstanceState L'état de l'activité s'il existe (restauration).
      */
@@ -29,23 +57,34 @@ public abstract class BaseActivity extends AppCompatActivity {
     protected void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
-        SharedPreferences prefs = getSharedPreferences("auth", MODE_PRIVATE);
-        token = prefs.getString("token", "");
+        TokenStore.init(this);
+        token = TokenStore.get();
 
         apiService = ApiClient.getClient(this).create(ApiService.class);
 
-        NetworkMonitor.register(this, new NetworkMonitor.NetworkCallback() {
+        // Opérations restées dans la file d'envoi (réseau perdu, application arrêtée)
+        if (token != null) {
+            ExpediteurEnvois.get(this).vider(null);
+        }
+
+        suiviReseau = NetworkMonitor.register(this, new NetworkMonitor.NetworkCallback() {
             @Override
             public void onConnected(String type) {
                 runOnUiThread(() -> {
+                    if (appels.estFermee()) return;
+                    boolean etaitHorsLigne = !isOnline;
                     isOnline = true;
                     onNetworkConnected(type);
+                    if (etaitHorsLigne) {
+                        prechauffer();
+                    }
                 });
             }
 
             @Override
             public void onDisconnected() {
                 runOnUiThread(() -> {
+                    if (appels.estFermee()) return;
                     isOnline = false;
                     onNetworkDisconnected();
                 });
@@ -63,6 +102,186 @@ public abstract class BaseActivity extends AppCompatActivity {
         Toast.makeText(this, "Connecté via " + type, Toast.LENGTH_SHORT).show();
     }
 
+    /**
+     * Relance un préchauffage resté en attente pendant que l'écran n'était pas au premier plan.
+     */
+    @Override
+    protected void onResume() {
+        super.onResume();
+        if (prechauffageEnAttente && isOnline) {
+            prechauffer();
+        }
+    }
+
+    /**
+     * Synchronisation de la liste de palettes du flux en cours (inventaire, destruction, ...),
+     * à lancer au retour du réseau. À surcharger dans les écrans de flux ; null par défaut.
+     *
+     * @return L'étape de préchauffage, ou null si l'écran n'a pas de liste à synchroniser.
+     */
+    @Nullable
+    protected Prechauffage.Etape etapeListeDuFlux() {
+        return null;
+    }
+
+    /**
+     * Synchronise une liste de travail avec le serveur (voir {@link SynchroPalettes}),
+     * puis relit la liste locale si elle a changé.
+     * Les erreurs sont signalées à l'opérateur ; un 401 renvoie vers l'écran de connexion.
+     *
+     * @param statut Le statut de la liste.
+     * @param appel La fabrique d'appel vers l'endpoint de la liste.
+     * @param relireListe Relit et affiche la liste locale.
+     * @param terminee Appelé une fois la synchronisation terminée, succès ou échec, même si l'écran
+     *                 a été fermé entre-temps (étape de préchauffage), ou null.
+     */
+    protected void synchroniserListe(String statut, SynchroPalettes.AppelDelta appel, Runnable relireListe,
+                                     @Nullable Runnable terminee) {
+        SynchroPalettes.synchroniser(this, appels, statut, appel, new SynchroPalettes.Rappel() {
+            @Override
+            public void surSynchronisee(boolean modifiee) {
+                if (modifiee && !isFinishing()) {
+                    relireListe.run();
+                }
+            }
+
+            @Override
+            public void surEchec(int codeHttp, @Nullable String tokenRefuse, @Nullable Throwable t) {
+                if (codeHttp == 401) {
+                    handleTokenExpired(tokenRefuse);
+                } else if (t != null) {
+                    Toast.makeText(BaseActivity.this, "Erreur réseau : " + t.getMessage(), Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(BaseActivity.this, "Erreur chargement : " + codeHttp, Toast.LENGTH_SHORT).show();
+                }
+            }
+        }, terminee);
+    }
+
+    /**
+     * Met une action de côté pour la rejouer automatiquement au retour du réseau.
+     *
+     * @param action L'action refusée faute de connexion (en général un performClick).
+     */
+    protected void mettreEnAttente(Runnable action) {
+        actionsEnAttente.remove(action);
+        actionsEnAttente.addLast(action);
+    }
+
+    /**
+     * Rejoue immédiatement les actions mises en attente, dans leur ordre d'arrivée.
+     * Une action encore refusée (réseau de nouveau perdu) se remet elle-même en attente.
+     */
+    protected void rejouerActionsEnAttente() {
+        List<Runnable> actions = new ArrayList<>(actionsEnAttente);
+        actionsEnAttente.clear();
+        for (Runnable action : actions) {
+            action.run();
+        }
+    }
+
+    /**
+     * Lance le préchauffage au retour du réseau, par ordre de priorité :
+     * 1. la table des emplacements (utilisée par tous les flux) ;
+     * 2. la liste de palettes de l'écran en cours (synchronisation incrémentale) ;
+     * 3. la file d'envoi (entrées, validations enregistrées hors ligne) ;
+     * 4. les actions mises en attente hors ligne.
+     * Seul l'écran au premier plan pilote le préchauffage ; les écrans en arrière-plan
+     * le lanceront à leur retour au premier plan.
+     */
+    private void prechauffer() {
+        if (!getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.RESUMED)) {
+            prechauffageEnAttente = true;
+            return;
+        }
+        prechauffageEnAttente = false;
+
+        List<Prechauffage.Etape> etapes = new ArrayList<>();
+        etapes.add(SynchroEmplacements.etape(this, apiService));
+        Prechauffage.Etape listeDuFlux = etapeListeDuFlux();
+        if (listeDuFlux != null) {
+            etapes.add(listeDuFlux);
+        }
+        etapes.add(terminee -> ExpediteurEnvois.get(this).vider(terminee));
+        if (!actionsEnAttente.isEmpty()) {
+            etapes.add(terminee -> {
+                if (isOnline && !isFinishing()) {
+                    rejouerActionsEnAttente();
+                }
+                terminee.run();
+            });
+        }
+
+        if (!Prechauffage.lancer(etapes)) {
+            // Préchauffage récent ou en cours : les envois et actions en attente n'ont pas à patienter
+            ExpediteurEnvois.get(this).vider(null);
+            rejouerActionsEnAttente();
+        }
+    }
+
+    /**
+     * Ajoute l'entrée "Envois" au menu de chaque écran.
+     */
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        super.onCreateOptionsMenu(menu);
+        menu.add(Menu.NONE, MENU_ENVOIS, Menu.NONE, "Envois");
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        if (item.getItemId() == MENU_ENVOIS) {
+            afficherEnvois();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Affiche l'état des dernières opérations de la file d'envoi (en attente, envoyée, refusée),
+     * avec la possibilité de relancer l'envoi immédiatement.
+     */
+    protected void afficherEnvois() {
+        ExpediteurEnvois expediteur = ExpediteurEnvois.get(this);
+        expediteur.lireDernieres(ENVOIS_AFFICHES_MAX, appels.rappel(envois -> {
+            if (isFinishing()) return;
+            String[] lignes = new String[envois.size()];
+            for (int i = 0; i < envois.size(); i++) {
+                FileEnvois.Envoi envoi = envois.get(i);
+                lignes[i] = envoi.getLibelle() + "\n" + envoi.getStatut()
+                        + (envoi.getErreur() != null ? " — " + envoi.getErreur() : "");
+            }
+            AlertDialog.Builder builder = new AlertDialog.Builder(this)
+                    .setTitle("Envois")
+                    .setPositiveButton("Envoyer maintenant", (dialog, which) -> {
+                        expediteur.vider(null);
+                        Toast.makeText(this, "Envoi relancé", Toast.LENGTH_SHORT).show();
+                    })
+                    .setNegativeButton("Fermer", null);
+            if (lignes.length == 0) {
+                builder.setMessage("Aucun envoi récent.");
+            } else {
+                builder.setItems(lignes, null);
+            }
+            builder.show();
+        }));
+    }
+
+    /**
+     * Ferme la portée des appels de l'écran (appels en cours annulés, résultats tardifs ignorés)
+     * et annule le suivi du réseau : plus rien ne retient l'écran détruit.
+     */
+    @Override
+    protected void onDestroy() {
+        appels.fermer();
+        if (suiviReseau != null) {
+            NetworkMonitor.unregister(this, suiviReseau);
+            suiviReseau = null;
+        }
+        super.onDestroy();
+    }
+
     /**
      * Méthode à surcharger dans les classes filles.
      * Elle est appelée automatiquement lorsqu'une perte de réseau est détectée.
@@ -80,18 +299,33 @@ public abstract class BaseActivity extends AppCompatActivity {
         return isOnline;
     }
 
+    /**
+     * Méthode appelée lorsqu'un appel Retrofit reçoit une 401 : expire le token avec lequel
+     * cet appel a été envoyé (voir {@link #handleTokenExpired(String)}).
+     *
+     * @param response La réponse 401.
+     */
+    protected void handleTokenExpired(Response<?> response) {
+        handleTokenExpired(AuthInterceptor.tokenEnvoye(response.raw()));
+    }
+
     /**
      * Méthode appelée globalement lorsque le token est expiré.
-     * Supprime le token stocké et redirige l'utilisateur vers l'écran de connexion.
+     * Supprime le token refusé s'il est encore le token stocké (un token obtenu depuis par une
+     * reconnexion est conservé), et redirige l'utilisateur vers l'écran de connexion,
+     * sauf si la redirection a déjà été lancée (par l'intercepteur ou un autre appel en échec).
+     *
+     * @param tokenRefuse Le token avec lequel la requête refusée a été envoyée, ou null.
      */
-    protected void handleTokenExpired() {
-        SharedPreferences prefs = getSharedPreferences("auth", MODE_PRIVATE);
-        prefs.edit().remove("token").apply();
-
-        Intent intent = new Intent(this, LoginActivity.class);
-        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-        intent.putExtra("reason", "expired");
-        startActivity(intent);
+    protected void handleTokenExpired(@Nullable String tokenRefuse) {
+        TokenStore.expirer(tokenRefuse);
+
+        if (TokenStore.demarrerReconnexion()) {
+            Intent intent = new Intent(this, LoginActivity.class);
+            intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+            intent.putExtra("reason", "expired");
+            startActivity(intent);
+        }
         finish();
     }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.mdo.gestionpalettes.activities;
 
 import android.os.Bundle;
+import android.util.Log;
 import android.view.View;
 import android.widget.*;
 import androidx.annotation.NonNull;
@@ -8,22 +9,45 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.mdo.gestionpalettes.R;
+import com.mdo.gestionpalettes.adapters.LignePalette;
 import com.mdo.gestionpalettes.adapters.PaletteConsultationAdapter;
+import com.mdo.gestionpalettes.api.FluxConsultation;
+import com.mdo.gestionpalettes.models.DeltaPalettes;
 import com.mdo.gestionpalettes.models.PaletteConsultation;
+import com.mdo.gestionpalettes.stockage.Travaux;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
 
 public class ConsultationActivity extends BaseActivity {
 
+    private static final String TAG = "ConsultationActivity";
+
     private EditText etNumPalette, etClient, etArticle, etEmplacement;
     private Spinner spinnerStatut;
     private TextView tvEmpty;
     private PaletteConsultationAdapter adapter;
+    private FluxConsultation.Lecture lectureEnCours;
+    private int rechercheCourante = 0;
+
+    // Pagination par curseur : fenêtre bornée de pages gardées en mémoire
+    private static final int TAILLE_PAGE = 100;
+    private static final int PAGES_MAX_EN_MEMOIRE = 5;
+    private static final int SEUIL_PRECHARGEMENT = 30;
+
+    private final ArrayDeque<Integer> taillesPages = new ArrayDeque<>();
+    private String filtreNumPalette, filtreClient, filtreArticle, filtreStatut, filtreEmplacement;
+    private boolean debutAtteint = true;
+    private boolean finAtteinte = true;
+    private boolean chargementEnCours = false;
+    // Point de départ de l'actualisation incrémentale de la recherche affichée (en-tête X-Horodatage)
+    private String horodatageRecherche;
 
     /**
      * Méthode appelée lors de la création de l'activité.
@@ -58,14 +82,33 @@ public class ConsultationActivity extends BaseActivity {
 
         adapter = new PaletteConsultationAdapter(new ArrayList<>());
         rvPalettes.setAdapter(adapter);
-        rvPalettes.setLayoutManager(new LinearLayoutManager(this));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        rvPalettes.setLayoutManager(layoutManager);
+
+        // Préchargement de la page suivante/précédente avant d'atteindre le bord de la fenêtre
+        rvPalettes.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                int nombre = adapter.getItemCount();
+                if (nombre == 0) return;
+                if (dy > 0 && !finAtteinte
+                        && layoutManager.findLastVisibleItemPosition() >= nombre - SEUIL_PRECHARGEMENT) {
+                    chargerPage(true);
+                } else if (dy < 0 && !debutAtteint
+                        && layoutManager.findFirstVisibleItemPosition() <= SEUIL_PRECHARGEMENT) {
+                    chargerPage(false);
+                }
+            }
+        });
 
         btnRechercher.setOnClickListener(v -> chargerPalettes(null));
     }
 
     /**
      * Méthode principale qui interroge l'API avec les filtres saisis par l'utilisateur.
-     * Gère les erreurs réseau, les codes d'erreur HTTP, et l'affichage du message "vide".
+     * Mémorise les filtres, vide la liste et charge la première page ; les pages suivantes
+     * (ou précédentes) sont chargées au défilement. Une recherche précédente encore en cours
+     * de lecture est interrompue.
      */
     private void chargerPalettes(String statutDefault) {
         if (!isOnline()) { // Méthode héritée de BaseActivity
@@ -82,39 +125,282 @@ public class ConsultationActivity extends BaseActivity {
         }
         String emplacement = etEmplacement.getText().toString().trim();
 
-        Call<List<PaletteConsultation>> call = apiService.consulterPalettes(
-                numPalette.isEmpty() ? null : numPalette,
-                client.isEmpty() ? null : client,
-                article.isEmpty() ? null : article,
-                statut,
-                emplacement.isEmpty() ? null : emplacement
+        filtreNumPalette = numPalette.isEmpty() ? null : numPalette;
+        filtreClient = client.isEmpty() ? null : client;
+        filtreArticle = article.isEmpty() ? null : article;
+        filtreStatut = statut;
+        filtreEmplacement = emplacement.isEmpty() ? null : emplacement;
+
+        if (lectureEnCours != null) {
+            lectureEnCours.annuler();
+            lectureEnCours = null;
+        }
+        rechercheCourante++;
+        chargementEnCours = false;
+        horodatageRecherche = null;
+        taillesPages.clear();
+        debutAtteint = true;
+        finAtteinte = false;
+        adapter.setPalettes(new ArrayList<>());
+        tvEmpty.setVisibility(View.GONE);
+
+        chargerPage(true);
+    }
+
+    /**
+     * Charge la page qui suit la dernière palette affichée (ou qui précède la première),
+     * par curseur sur le numéro de palette. Une seule page est chargée à la fois.
+     *
+     * @param versLaFin true pour la page suivante, false pour la page précédente.
+     */
+    private void chargerPage(boolean versLaFin) {
+        if (chargementEnCours || !isOnline()) {
+            return;
+        }
+
+        String apres = null;
+        String avant = null;
+        int nombre = adapter.getItemCount();
+        if (nombre > 0) {
+            if (versLaFin) {
+                apres = adapter.getPalette(nombre - 1).getNum_palette();
+            } else {
+                avant = adapter.getPalette(0).getNum_palette();
+            }
+        }
+
+        chargementEnCours = true;
+        int recherche = rechercheCourante;
+
+        Call<ResponseBody> call = apiService.consulterPalettesFlux(
+                filtreNumPalette,
+                filtreClient,
+                filtreArticle,
+                filtreStatut,
+                filtreEmplacement,
+                apres,
+                avant,
+                TAILLE_PAGE
         );
 
-        call.enqueue(new Callback<>() {
+        appels.enqueue(call, new Callback<ResponseBody>() {
             @Override
-            public void onResponse(@NonNull Call<List<PaletteConsultation>> call, @NonNull Response<List<PaletteConsultation>> response) {
+            public void onResponse(@NonNull Call<ResponseBody> call, @NonNull Response<ResponseBody> response) {
+                if (recherche != rechercheCourante) {
+                    // Une recherche plus récente a été lancée entre-temps
+                    if (response.body() != null) FluxConsultation.fermer(response.body());
+                    return;
+                }
                 if (response.isSuccessful() && response.body() != null) {
-                    List<PaletteConsultation> palettes = response.body();
-                    adapter.setPalettes(palettes);
-                    tvEmpty.setVisibility(palettes.isEmpty() ? View.VISIBLE : View.GONE);
+                    if (horodatageRecherche == null) {
+                        horodatageRecherche = response.headers().get("X-Horodatage");
+                    }
+                    List<LignePalette<PaletteConsultation>> page = new ArrayList<>(TAILLE_PAGE);
+                    lectureEnCours = FluxConsultation.lire(response.body(), new FluxConsultation.Ecouteur<LignePalette<PaletteConsultation>>() {
+                        @Override
+                        public LignePalette<PaletteConsultation> preparer(PaletteConsultation palette) {
+                            return PaletteConsultationAdapter.ligne(palette);
+                        }
+
+                        @Override
+                        public void onLot(List<LignePalette<PaletteConsultation>> lot) {
+                            page.addAll(lot);
+                        }
+
+                        @Override
+                        public void onTermine(int total) {
+                            lectureEnCours = null;
+                            chargementEnCours = false;
+                            appliquerPage(page, versLaFin);
+                        }
+
+                        @Override
+                        public void onErreur(Throwable t) {
+                            lectureEnCours = null;
+                            chargementEnCours = false;
+                            tvEmpty.setVisibility(adapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
+                            Toast.makeText(ConsultationActivity.this, "Erreur réseau : " + t.getMessage(), Toast.LENGTH_SHORT).show();
+                        }
+                    });
                 } else if (response.code() == 401) {
-                    handleTokenExpired();
+                    chargementEnCours = false;
+                    handleTokenExpired(response);
                 } else {
-                    tvEmpty.setVisibility(View.VISIBLE);
-                    adapter.setPalettes(new ArrayList<>());
+                    chargementEnCours = false;
+                    tvEmpty.setVisibility(adapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
                     Toast.makeText(ConsultationActivity.this, "Erreur lors de la récupération.", Toast.LENGTH_SHORT).show();
                 }
             }
 
             @Override
-            public void onFailure(@NonNull Call<List<PaletteConsultation>> call, @NonNull Throwable t) {
-                tvEmpty.setVisibility(View.VISIBLE);
-                adapter.setPalettes(new ArrayList<>());
+            public void onFailure(@NonNull Call<ResponseBody> call, @NonNull Throwable t) {
+                if (recherche != rechercheCourante) return;
+                chargementEnCours = false;
+                tvEmpty.setVisibility(adapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
                 Toast.makeText(ConsultationActivity.this, "Erreur réseau : " + t.getMessage(), Toast.LENGTH_SHORT).show();
             }
         });
     }
 
+    /**
+     * Ajoute une page reçue à la fenêtre affichée. Au-delà de PAGES_MAX_EN_MEMOIRE pages,
+     * la page la plus éloignée du sens de défilement est libérée ; elle sera rechargée
+     * par curseur si l'utilisateur revient en arrière.
+     *
+     * @param page Les lignes de la page, en ordre croissant de numéro.
+     * @param versLaFin true si la page suit la fenêtre, false si elle la précède.
+     */
+    private void appliquerPage(List<LignePalette<PaletteConsultation>> page, boolean versLaFin) {
+        if (versLaFin) {
+            finAtteinte = page.size() < TAILLE_PAGE;
+            if (!page.isEmpty()) {
+                adapter.ajouterPalettes(page);
+                taillesPages.addLast(page.size());
+            }
+            if (taillesPages.size() > PAGES_MAX_EN_MEMOIRE) {
+                adapter.retirerDebut(taillesPages.pollFirst());
+                debutAtteint = false;
+            }
+        } else {
+            debutAtteint = page.size() < TAILLE_PAGE;
+            if (!page.isEmpty()) {
+                adapter.ajouterPalettesDebut(page);
+                taillesPages.addFirst(page.size());
+            }
+            if (taillesPages.size() > PAGES_MAX_EN_MEMOIRE) {
+                adapter.retirerFin(taillesPages.pollLast());
+                finAtteinte = false;
+            }
+        }
+        tvEmpty.setVisibility(adapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
+    }
+
+    /**
+     * Au retour sur l'écran, actualise la recherche affichée sans la recharger.
+     */
+    @Override
+    protected void onResume() {
+        super.onResume();
+        actualiserRecherche();
+    }
+
+    /**
+     * Demande au serveur les seules palettes modifiées depuis le chargement de la recherche
+     * (ou sa dernière actualisation) et les reporte dans la fenêtre affichée.
+     */
+    private void actualiserRecherche() {
+        if (horodatageRecherche == null || chargementEnCours || !isOnline()) {
+            return;
+        }
+        chargementEnCours = true;
+        int recherche = rechercheCourante;
+
+        Call<DeltaPalettes> appel = apiService.consulterPalettesDepuis(
+                filtreNumPalette,
+                filtreClient,
+                filtreArticle,
+                filtreStatut,
+                filtreEmplacement,
+                horodatageRecherche
+        );
+        appels.enqueue(appel, new Callback<DeltaPalettes>() {
+            @Override
+            public void onResponse(@NonNull Call<DeltaPalettes> call, @NonNull Response<DeltaPalettes> response) {
+                if (recherche != rechercheCourante) return;
+                DeltaPalettes delta = response.body();
+                if (response.isSuccessful() && delta != null && delta.getHorodatage() != null) {
+                    // Lignes mises en forme sur le pool de calcul ; seul le report dans la fenêtre reste ici
+                    Travaux.executer(() -> LignePalette.lignes(delta.getPalettes(), PaletteConsultationAdapter::ligne), appels.rappel(lignes -> {
+                        if (recherche != rechercheCourante) return;
+                        chargementEnCours = false;
+                        appliquerDelta(delta, lignes);
+                    }));
+                    return;
+                }
+                chargementEnCours = false;
+                if (response.code() == 401) {
+                    handleTokenExpired(response);
+                }
+            }
+
+            @Override
+            public void onFailure(@NonNull Call<DeltaPalettes> call, @NonNull Throwable t) {
+                if (recherche != rechercheCourante) return;
+                chargementEnCours = false;
+                Log.w(TAG, "Actualisation de la consultation impossible : " + t.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Reporte les palettes modifiées dans la fenêtre affichée : mise à jour sur place,
+     * retrait de celles qui ne correspondent plus aux filtres, insertion des nouvelles à leur rang.
+     * Une nouvelle palette qui tombe hors de la fenêtre n'est pas insérée : elle viendra avec sa page.
+     *
+     * @param delta La réponse incrémentale du serveur.
+     * @param lignes Les lignes des palettes modifiées, dans l'ordre de la réponse.
+     */
+    private void appliquerDelta(DeltaPalettes delta, List<LignePalette<PaletteConsultation>> lignes) {
+        horodatageRecherche = delta.getHorodatage();
+        for (String num : delta.getSupprimees()) {
+            int position = adapter.position(num);
+            if (position >= 0) {
+                adapter.retirer(position);
+                ajusterPage(position, -1);
+            }
+        }
+        for (LignePalette<PaletteConsultation> ligne : lignes) {
+            int position = adapter.position(ligne.getNumero());
+            if (position >= 0) {
+                adapter.remplacer(position, ligne);
+                continue;
+            }
+            int insertion = -position - 1;
+            if ((insertion == 0 && !debutAtteint) || (insertion == adapter.getItemCount() && !finAtteinte)) {
+                continue;
+            }
+            adapter.inserer(insertion, ligne);
+            ajusterPage(insertion, 1);
+        }
+        tvEmpty.setVisibility(adapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
+    }
+
+    /**
+     * Répercute l'ajout ou le retrait d'une palette sur la taille de la page qui la contient,
+     * pour que la libération des pages hors fenêtre retire toujours le bon nombre de lignes.
+     *
+     * @param position La position de la palette ajoutée ou retirée.
+     * @param difference +1 pour un ajout, -1 pour un retrait.
+     */
+    private void ajusterPage(int position, int difference) {
+        Integer[] tailles = taillesPages.toArray(new Integer[0]);
+        if (tailles.length == 0) {
+            if (difference > 0) taillesPages.add(difference);
+            return;
+        }
+        int i = 0;
+        int fin = tailles[0];
+        while (i < tailles.length - 1 && position >= fin) {
+            fin += tailles[++i];
+        }
+        tailles[i] += difference;
+        taillesPages.clear();
+        for (Integer taille : tailles) {
+            if (taille > 0) taillesPages.add(taille);
+        }
+    }
+
+    /**
+     * Interrompt la lecture d'une consultation encore en cours lorsque l'écran est fermé.
+     */
+    @Override
+    protected void onDestroy() {
+        if (lectureEnCours != null) {
+            lectureEnCours.annuler();
+        }
+        super.onDestroy();
+    }
+
     /**
      * Méthode déclenchée lors du clic sur le bouton retour dans la barre d'action.
      * Termine simplement l'activité courante.
@@ -6,48 +6,46 @@ import android.os.Bundle;
 import android.view.inputmethod.InputMethodManager;
 import android.widget.Button;
 import android.widget.EditText;
-import android.widget.ListView;
 import android.widget.Toast;
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
-import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.mdo.gestionpalettes.R;
+import com.mdo.gestionpalettes.adapters.LignePalette;
 import com.mdo.gestionpalettes.adapters.PaletteADetruireAdapter;
-import com.mdo.gestionpalettes.api.ApiClient;
-import com.mdo.gestionpalettes.api.ApiService;
+import com.mdo.gestionpalettes.api.Prechauffage;
 import com.mdo.gestionpalettes.models.PaletteInfosResponse;
 import com.mdo.gestionpalettes.models.ValidationDestruction;
+import com.mdo.gestionpalettes.stockage.DepotListes;
+import com.mdo.gestionpalettes.stockage.JournalSession;
+import com.mdo.gestionpalettes.stockage.MoteurScan;
+import com.mdo.gestionpalettes.stockage.PaletteStore;
 
 import java.util.ArrayList;
 import java.util.List;
 
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
-
 public class DestructionActivity extends BaseActivity {
 
-    private ListView listViewADetruire;
+    private RecyclerView listViewADetruire;
     private EditText editTextNumPaletteDestruction;
     private PaletteADetruireAdapter adapter;
 
-    private final ArrayList<PaletteInfosResponse> palettesADetruire = new ArrayList<>();
-    private ArrayList<ValidationDestruction> palettesValidees = new ArrayList<>();
-
-    private ApiService apiService;
+    private final ArrayList<LignePalette<PaletteInfosResponse>> palettesADetruire = new ArrayList<>();
+    // Session de scan partagée avec l'écran de résultat, journalisée sur disque
+    private JournalSession<ValidationDestruction> session;
+    private List<ValidationDestruction> palettesValidees;
+    // Vérification locale des scans contre la dernière liste synchronisée
+    private MoteurScan<LignePalette<PaletteInfosResponse>> moteurScan;
 
     private final ActivityResultLauncher<Intent> destructionResultLauncher = registerForActivityResult(
             new ActivityResultContracts.StartActivityForResult(),
             result -> {
-                if(result.getResultCode() == RESULT_OK && result.getData() != null) {
-                    ArrayList<ValidationDestruction> nouvellesValidees =
-                            result.getData().getParcelableArrayListExtra("palettesValideesRetour");
-                    if(nouvellesValidees != null) {
-                        palettesValidees = nouvellesValidees;
-                        chargerPalettesADetruire();
-                    }
+                // Les retraits faits sur l'écran de résultat sont déjà dans la session partagée
+                if (result.getResultCode() == RESULT_OK) {
+                    chargerPalettesADetruire();
                 }
             }
     );
@@ -69,23 +67,27 @@ public class DestructionActivity extends BaseActivity {
         }
 
         listViewADetruire = findViewById(R.id.listViewADetruire);
+        listViewADetruire.setLayoutManager(new LinearLayoutManager(this));
+        adapter = new PaletteADetruireAdapter(this);
+        listViewADetruire.setAdapter(adapter);
         editTextNumPaletteDestruction = findViewById(R.id.editTextNumPaletteDestruction);
         Button btnScannerPaletteDestruction = findViewById(R.id.btnScannerPaletteDestruction);
         Button btnFinirDestruction = findViewById(R.id.btnFinirDestruction);
 
-        apiService = ApiClient.getClient(this).create(ApiService.class);
-
-        chargerPalettesADetruire();
+        // Journal relu sur le thread disque : la liste n'est chargée qu'une fois la session ouverte
+        JournalSession.ouvrir(this, JournalSession.Type.DESTRUCTION, appels.rappel(ouverte -> {
+            session = ouverte;
+            palettesValidees = session.palettes();
+            if (savedInstanceState == null && !palettesValidees.isEmpty()) {
+                Toast.makeText(this, "Session reprise : " + palettesValidees.size() + " palette(s) déjà scannée(s)", Toast.LENGTH_LONG).show();
+            }
+            chargerPalettesADetruire();
+        }));
 
         getWindow().setSoftInputMode(android.view.WindowManager.LayoutParams.SOFT_INPUT_STATE_ALWAYS_HIDDEN);
         editTextNumPaletteDestruction.requestFocus();
 
         btnScannerPaletteDestruction.setOnClickListener(v -> {
-            if(!isOnline()) {
-                Toast.makeText(this, "Hors ligne, impossible de valider.", Toast.LENGTH_SHORT).show();
-                return;
-            }
-
             String numPalette = editTextNumPaletteDestruction.getText().toString().trim();
             if(numPalette.isEmpty()) {
                 Toast.makeText(this, "Veuillez scanner une palette", Toast.LENGTH_SHORT).show();
@@ -96,44 +98,78 @@ public class DestructionActivity extends BaseActivity {
         });
 
         btnFinirDestruction.setOnClickListener(v -> {
+            if (session == null) {
+                Toast.makeText(this, "Session en cours de chargement", Toast.LENGTH_SHORT).show();
+                return;
+            }
             Intent intent = new Intent(this, DestructionResultActivity.class);
-            intent.putParcelableArrayListExtra("palettesValidees", palettesValidees);
+            intent.putExtra(JournalSession.EXTRA_ID, session.getId());
             destructionResultLauncher.launch(intent);
         });
     }
 
     /**
-     * Effectue un appel à l'API pour récupérer la liste des palettes à détruire.
-     * Affiche les résultats dans un ListView via un adapter.
+     * Liste synchronisée en priorité au retour du réseau (voir BaseActivity).
+     */
+    @Override
+    protected Prechauffage.Etape etapeListeDuFlux() {
+        return terminee -> synchroniserListe(PaletteStore.STATUT_A_DETRUIRE, apiService::synchroniserADetruire,
+                this::relirePalettesADetruire, terminee);
+    }
+
+    /**
+     * Affiche la liste des palettes à détruire du stockage local, puis la synchronise avec l'API.
+     * Seules les palettes modifiées depuis la dernière synchronisation sont téléchargées (voir SynchroPalettes).
      * Gère les erreurs réseau et le statut HTTP 401 (token expiré).
      */
     private void chargerPalettesADetruire() {
+        relirePalettesADetruire();
+
         if(!isOnline()) {
-            Toast.makeText(this, "Hors ligne, impossible de charger les palettes.", Toast.LENGTH_SHORT).show();
+            Toast.makeText(this, "Hors ligne : liste locale affichée.", Toast.LENGTH_SHORT).show();
+            mettreEnAttente(this::chargerPalettesADetruire);
             return;
         }
 
-        Call<List<PaletteInfosResponse>> call = apiService.getPalettesADetruire();
-        call.enqueue(new Callback<>() {
-            @Override
-            public void onResponse(@NonNull Call<List<PaletteInfosResponse>> call, @NonNull Response<List<PaletteInfosResponse>> response) {
-                if(response.isSuccessful() && response.body() != null) {
-                    palettesADetruire.clear();
-                    palettesADetruire.addAll(response.body());
-                    adapter = new PaletteADetruireAdapter(DestructionActivity.this, palettesADetruire);
-                    listViewADetruire.setAdapter(adapter);
-                } else if(response.code() == 401) {
-                    handleTokenExpired();
-                } else {
-                    Toast.makeText(DestructionActivity.this, "Erreur chargement : " + response.code(), Toast.LENGTH_SHORT).show();
-                }
-            }
+        synchroniserListe(PaletteStore.STATUT_A_DETRUIRE, apiService::synchroniserADetruire,
+                this::relirePalettesADetruire, null);
+    }
 
-            @Override
-            public void onFailure(@NonNull Call<List<PaletteInfosResponse>> call, @NonNull Throwable t) {
-                Toast.makeText(DestructionActivity.this, "Erreur réseau : " + t.getMessage(), Toast.LENGTH_SHORT).show();
-            }
-        });
+    /**
+     * Affiche la liste enregistrée dans le stockage local, moins les palettes déjà scannées,
+     * et prépare la vérification locale des scans (voir MoteurScan).
+     * Lignes et index de scan sont construits hors du thread principal (voir DepotListes).
+     */
+    private void relirePalettesADetruire() {
+        if (session == null) {
+            // Relue à l'ouverture de la session
+            return;
+        }
+        DepotListes.listeAScanner(this, PaletteStore.STATUT_A_DETRUIRE, PaletteStore::palettesParStatut,
+                PaletteADetruireAdapter::ligne, LignePalette::getNumero, numerosScannes(), null, appels.rappel(this::afficherPalettesADetruire));
+    }
+
+    /**
+     * Remplace la liste affichée des palettes à détruire.
+     *
+     * @param liste La liste locale prête à afficher.
+     */
+    private void afficherPalettesADetruire(DepotListes.Liste<LignePalette<PaletteInfosResponse>> liste) {
+        moteurScan = liste.getMoteur();
+        palettesADetruire.clear();
+        palettesADetruire.addAll(liste.getAScanner());
+        adapter.submitList(new ArrayList<>(palettesADetruire));
+    }
+
+    /**
+     * @return Les numéros des palettes déjà présentes dans la session.
+     */
+    private List<String> numerosScannes() {
+        List<String> numeros = new ArrayList<>(palettesValidees.size());
+        for (ValidationDestruction v : palettesValidees) {
+            numeros.add(v.getNumPalette());
+        }
+        return numeros;
     }
 
     /**
@@ -143,18 +179,21 @@ public class DestructionActivity extends BaseActivity {
      * @param numPalette Numéro de la palette scannée à vérifier.
      */
     private void verifierEtValiderPalette(String numPalette) {
-        PaletteInfosResponse paletteTrouvee = null;
-        for(PaletteInfosResponse palette : palettesADetruire) {
-            if(palette.getNum_palette().equalsIgnoreCase(numPalette)) {
-                paletteTrouvee = palette;
-                break;
-            }
+        if (moteurScan == null) {
+            Toast.makeText(this, "Liste en cours de chargement", Toast.LENGTH_SHORT).show();
+            return;
         }
-
-        if(paletteTrouvee == null) {
+        MoteurScan.Issue issue = moteurScan.scanner(numPalette);
+        if (issue == MoteurScan.Issue.DEJA_SCANNEE) {
+            Toast.makeText(this, "Palette déjà scannée", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (issue == MoteurScan.Issue.ABSENTE) {
             Toast.makeText(this, "Cette palette n'est pas à détruire", Toast.LENGTH_SHORT).show();
             return;
         }
+        LignePalette<PaletteInfosResponse> ligneTrouvee = moteurScan.palette(numPalette);
+        PaletteInfosResponse paletteTrouvee = ligneTrouvee.getPalette();
 
         ValidationDestruction validation = new ValidationDestruction(
                 paletteTrouvee.getNum_palette(),
@@ -162,9 +201,11 @@ public class DestructionActivity extends BaseActivity {
                 paletteTrouvee.getEmplacement()
         );
 
+        validation.setHorodatageListe(moteurScan.getHorodatageListe());
+
         palettesValidees.add(validation);
-        palettesADetruire.remove(paletteTrouvee);
-        adapter.notifyDataSetChanged();
+        palettesADetruire.remove(ligneTrouvee);
+        adapter.submitList(new ArrayList<>(palettesADetruire));
 
         Toast.makeText(this, "Palette ajoutée à la liste des destructions", Toast.LENGTH_SHORT).show();
         editTextNumPaletteDestruction.setText("");
@@ -187,4 +228,16 @@ public class DestructionActivity extends BaseActivity {
                 .show();
         return true;
     }
+
+    /**
+     * Ferme la session de scan quand l'opérateur quitte le flux (mais pas lors d'une rotation d'écran).
+     * Après un arrêt de l'application, la session est au contraire reprise depuis son journal.
+     */
+    @Override
+    protected void onDestroy() {
+        if (isFinishing() && session != null) {
+            session.abandonner();
+        }
+        super.onDestroy();
+    }
 }
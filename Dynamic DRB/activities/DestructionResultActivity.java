@@ -1,26 +1,33 @@
 package com.mdo.gestionpalettes.activities;
 
-import android.content.Intent;
 import android.os.Bundle;
 import android.widget.*;
-import androidx.annotation.NonNull;
+
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.mdo.gestionpalettes.R;
+import com.mdo.gestionpalettes.adapters.LignePalette;
+import com.mdo.gestionpalettes.adapters.PaletteListAdapter;
 import com.mdo.gestionpalettes.adapters.PaletteDestructionAdapter;
-import com.mdo.gestionpalettes.api.ApiClient;
-import com.mdo.gestionpalettes.api.ApiService;
+import com.mdo.gestionpalettes.api.ExpediteurEnvois;
 import com.mdo.gestionpalettes.models.ValidationDestruction;
+import com.mdo.gestionpalettes.stockage.JournalSession;
+import com.mdo.gestionpalettes.stockage.PaletteStore;
+import com.mdo.gestionpalettes.utils.Idempotence;
 
 import java.util.ArrayList;
+import java.util.List;
 
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
-
-public class DestructionResultActivity extends BaseActivity {
+public class DestructionResultActivity extends BaseActivity implements PaletteListAdapter.OnPaletteSupprimeeListener<ValidationDestruction> {
 
-    private ArrayList<ValidationDestruction> palettesValidees;
-    private ApiService apiService;
+    private JournalSession<ValidationDestruction> session;
+    private List<ValidationDestruction> palettesValidees;
+    private PaletteDestructionAdapter adapter;
+    // Lignes affichées, mises en forme hors du thread principal
+    private List<LignePalette<ValidationDestruction>> lignes = new ArrayList<>();
+    // Clé de l'opération dans la file d'envoi : un double appui n'est appliqué qu'une fois
+    private String cleValidation = Idempotence.nouvelleCle();
 
     /**
      * Méthode appelée lors de la création de l'activité DestructionResultActivity.
@@ -34,54 +41,75 @@ public class DestructionResultActivity extends BaseActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_destruction_result);
 
-        ListView listViewPalettes = findViewById(R.id.listViewPalettesDestruction);
+        RecyclerView listViewPalettes = findViewById(R.id.listViewPalettesDestruction);
         Button btnRetour = findViewById(R.id.btnAnnulerDestruction);
         Button btnValider = findViewById(R.id.btnValiderDestruction);
 
-        palettesValidees = getIntent().getParcelableArrayListExtra("palettesValidees");
-        if (palettesValidees == null) palettesValidees = new ArrayList<>();
-
-        apiService = ApiClient.getClient(this).create(ApiService.class);
-
-        PaletteDestructionAdapter adapter = new PaletteDestructionAdapter(this, palettesValidees);
+        listViewPalettes.setLayoutManager(new LinearLayoutManager(this));
+        adapter = new PaletteDestructionAdapter(this, this);
         listViewPalettes.setAdapter(adapter);
+        // Session partagée avec l'écran de scan : livrée immédiatement si elle est ouverte dans ce processus,
+        // sinon relue depuis son journal sur le thread disque (reprise après un arrêt de l'application)
+        JournalSession.get(this, JournalSession.Type.DESTRUCTION, getIntent().getStringExtra(JournalSession.EXTRA_ID),
+                appels.rappel(ouverte -> {
+                    session = ouverte;
+                    palettesValidees = session.palettes();
+                    LignePalette.preparer(palettesValidees, PaletteDestructionAdapter::ligne, appels.rappel(this::afficherLignes));
+                }));
 
         btnRetour.setOnClickListener(v -> {
-            Intent intent = new Intent();
-            intent.putParcelableArrayListExtra("palettesValideesRetour", palettesValidees);
-            setResult(RESULT_OK, intent);
+            setResult(RESULT_OK);
             finish();
         });
 
         btnValider.setOnClickListener(v -> {
-            if (!isOnline()) {
-                Toast.makeText(this, "Hors ligne, impossible de valider.", Toast.LENGTH_SHORT).show();
-                return;
-            }
-            if (palettesValidees.isEmpty()) {
+            if (palettesValidees == null || palettesValidees.isEmpty()) {
                 Toast.makeText(this, "Aucune palette à valider", Toast.LENGTH_SHORT).show();
                 return;
             }
 
-            Call<Void> call = apiService.validerDestruction(palettesValidees);
-            call.enqueue(new Callback<>() {
-                @Override
-                public void onResponse(@NonNull Call<Void> call, @NonNull Response<Void> response) {
-                    if (response.isSuccessful()) {
-                        Toast.makeText(DestructionResultActivity.this, "Destruction validée avec succès", Toast.LENGTH_LONG).show();
-                        finish();
-                    } else if (response.code() == 401) {
-                        handleTokenExpired();
-                    } else {
-                        Toast.makeText(DestructionResultActivity.this, "Erreur lors de la validation : " + response.code(), Toast.LENGTH_LONG).show();
-                    }
-                }
-
-                @Override
-                public void onFailure(@NonNull Call<Void> call, @NonNull Throwable t) {
-                    Toast.makeText(DestructionResultActivity.this, "Erreur réseau : " + t.getMessage(), Toast.LENGTH_SHORT).show();
-                }
-            });
+            // Enregistrée dans la file d'envoi : envoyée dès que le réseau le permet, sans attente sur cet écran
+            v.setEnabled(false);
+            ExpediteurEnvois.get(this).ajouterDestruction(palettesValidees, cleValidation);
+
+            // Les palettes ont changé de statut : elles quittent la liste locale
+            List<String> numeros = new ArrayList<>();
+            for (ValidationDestruction p : palettesValidees) numeros.add(p.getNumPalette());
+            PaletteStore store = PaletteStore.get(this);
+            store.ecrire(() -> store.retirer(numeros));
+            session.vider();
+
+            Toast.makeText(this, "Destruction enregistrée, envoi en cours", Toast.LENGTH_LONG).show();
+            finish();
         });
     }
-}
\ No newline at end of file
+
+    /**
+     * Affiche les lignes de la session, mises en forme hors du thread principal.
+     *
+     * @param preparees Les lignes, dans l'ordre de la session.
+     */
+    private void afficherLignes(List<LignePalette<ValidationDestruction>> preparees) {
+        lignes = preparees;
+        adapter.submitList(new ArrayList<>(lignes));
+    }
+
+    /**
+     * Callback appelé lorsqu'une palette est supprimée via l'adaptateur : elle quitte la session,
+     * et seule sa ligne disparaît de la liste affichée.
+     *
+     * @param ligne La ligne de la palette supprimée.
+     */
+    @Override
+    public void onPaletteSupprimee(LignePalette<ValidationDestruction> ligne) {
+        ValidationDestruction palette = ligne.getPalette();
+        int index = palettesValidees.indexOf(palette);
+        if (index < 0) return;
+        palettesValidees.remove(index);
+        lignes.remove(ligne);
+        adapter.submitList(new ArrayList<>(lignes));
+        Toast.makeText(this, "Palette supprimée : " + palette.getNumPalette(), Toast.LENGTH_SHORT).show();
+        // Le lot a changé : ce n'est plus la même action
+        cleValidation = Idempotence.nouvelleCle();
+    }
+}
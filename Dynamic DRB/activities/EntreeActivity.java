@@ -2,12 +2,13 @@ package com.mdo.gestionpalettes.activities;
 
 import com.mdo.gestionpalettes.models.PaletteInfosResponse;
 import com.mdo.gestionpalettes.R;
-import com.mdo.gestionpalettes.api.ApiClient;
-import com.mdo.gestionpalettes.api.ApiService;
+import com.mdo.gestionpalettes.api.ExpediteurEnvois;
+import com.mdo.gestionpalettes.api.SynchroEmplacements;
 import com.mdo.gestionpalettes.models.EmplacementEntrepot;
 import com.mdo.gestionpalettes.models.EntreePalette;
 import com.mdo.gestionpalettes.adapters.EmplacementAdapter;
-import com.mdo.gestionpalettes.utils.NetworkMonitor;
+import com.mdo.gestionpalettes.stockage.InstantaneEmplacements;
+import com.mdo.gestionpalettes.utils.Idempotence;
 
 import android.content.Context;
 import android.os.Bundle;
@@ -17,12 +18,10 @@ import android.widget.*;
 import android.view.inputmethod.InputMethodManager;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 import retrofit2.Call;
 import retrofit2.Callback;
@@ -37,10 +36,9 @@ public class EntreeActivity extends BaseActivity {
     private TextView tvInfosPalette, bannerOffline;
     private Spinner spinnerRack, spinnerEmplacements;
     private PaletteInfosResponse infosPalette;
-    private List<EmplacementEntrepot> emplacementsList = new ArrayList<>();
-    private final List<EmplacementEntrepot> emplacementsFiltres = new ArrayList<>();
-    private final List<String> rackList = new ArrayList<>();
-    private Runnable pendingAction = null;
+    private InstantaneEmplacements.Table tableEmplacements;
+    // Actions rejouées au retour du réseau (instances fixes : une action n'est mise en attente qu'une fois)
+    private final Runnable rejouerChargement = () -> btnChargerInfos.performClick();
     private EmplacementAdapter emplacementAdapter;
 
     /**
@@ -81,36 +79,9 @@ public class EntreeActivity extends BaseActivity {
             }
         });
 
-        NetworkMonitor.register(this, new NetworkMonitor.NetworkCallback() {
-            @Override
-            public void onConnected(String type) {
-                runOnUiThread(() -> {
-                    bannerOffline.setVisibility(View.GONE);
-                    btnRetry.setVisibility(View.GONE);
-                    Toast.makeText(EntreeActivity.this, getString(R.string.connected, type), Toast.LENGTH_SHORT).show();
-                    if (pendingAction != null) {
-                        pendingAction.run();
-                        pendingAction = null;
-                    }
-                });
-            }
-
-            @Override
-            public void onDisconnected() {
-                runOnUiThread(() -> {
-                    bannerOffline.setVisibility(View.VISIBLE);
-                    btnRetry.setVisibility(View.VISIBLE);
-                    Toast.makeText(EntreeActivity.this, getString(R.string.disconnected), Toast.LENGTH_LONG).show();
-                });
-            }
-        });
-
         btnRetry.setOnClickListener(v -> {
             btnRetry.setVisibility(View.GONE);
-            if (pendingAction != null) {
-                pendingAction.run();
-                pendingAction = null;
-            }
+            rejouerActionsEnAttente();
         });
 
         chargerEmplacements();
@@ -118,21 +89,20 @@ public class EntreeActivity extends BaseActivity {
         btnChargerInfos.setOnClickListener(v -> {
             if (!isOnline()) {
                 Toast.makeText(this, getString(R.string.need_connection), Toast.LENGTH_SHORT).show();
-                pendingAction = btnChargerInfos::performClick;
+                mettreEnAttente(rejouerChargement);
                 btnRetry.setVisibility(View.VISIBLE);
                 return;
             }
             String numPalette = etNumPalette.getText().toString().trim();
             Log.d(TAG, "Recherche palette : '" + numPalette + "'");
-            ApiService apiService = ApiClient.getClient(this).create(ApiService.class);
             Call<PaletteInfosResponse> call = apiService.getPaletteInfos(numPalette);
 
-            call.enqueue(new Callback<>() {
+            appels.enqueuePartage(call, new Callback<PaletteInfosResponse>() {
                 @Override
                 public void onResponse(@NonNull Call<PaletteInfosResponse> call, @NonNull Response<PaletteInfosResponse> response) {
                     Log.d(TAG, "API response code: " + response.code());
                     if (response.code() == 401) {
-                        handleTokenExpired();
+                        handleTokenExpired(response);
                         return;
                     }
                     if (response.isSuccessful() && response.body() != null) {
@@ -165,12 +135,6 @@ public class EntreeActivity extends BaseActivity {
         });
 
         btnValiderEntree.setOnClickListener(v -> {
-            if (!isOnline()) {
-                Toast.makeText(this, getString(R.string.no_network), Toast.LENGTH_SHORT).show();
-                pendingAction = btnValiderEntree::performClick;
-                btnRetry.setVisibility(View.VISIBLE);
-                return;
-            }
             if (infosPalette == null) {
                 Toast.makeText(this, getString(R.string.load_palette_first), Toast.LENGTH_SHORT).show();
                 return;
@@ -182,123 +146,118 @@ public class EntreeActivity extends BaseActivity {
             }
             String emplacement = selected.getEmplacement();
 
-            ApiService apiService = ApiClient.getClient(this).create(ApiService.class);
-
             EntreePalette entreePalette = new EntreePalette(
                     infosPalette.getNum_palette(),
                     emplacement
             );
 
-            Call<Void> call = apiService.entreePalette(entreePalette);
-
-            call.enqueue(new Callback<>() {
-                @Override
-                public void onResponse(@NonNull Call<Void> call, @NonNull Response<Void> response) {
-                    if (response.code() == 401) {
-                        handleTokenExpired();
-                        return;
-                    }
-                    if (response.isSuccessful()) {
-                        Toast.makeText(EntreeActivity.this, getString(R.string.entree_enregistree), Toast.LENGTH_SHORT).show();
-                        etNumPalette.setText("");
-                        tvInfosPalette.setText("");
-                        spinnerRack.setSelection(0);
-                        spinnerEmplacements.setSelection(0);
-                        infosPalette = null;
-                        chargerEmplacements();
-                    } else {
-                        String errorMsg = "Erreur API, code: " + response.code();
-                        try {
-                            if (response.errorBody() != null) {
-                                errorMsg += ", body: " + response.errorBody().string();
-                            }
-                        } catch (Exception e) {
-                            errorMsg += ", erreur lecture corps réponse";
-                        }
-                        Log.e(TAG, errorMsg);
-                        Toast.makeText(EntreeActivity.this, "Erreur lors de l'entrée : " + errorMsg, Toast.LENGTH_LONG).show();
-                    }
-                }
-                @Override
-                public void onFailure(@NonNull Call<Void> call, @NonNull Throwable t) {
-                    Log.e(TAG, "Erreur réseau lors de l'entrée", t);
-                    Toast.makeText(EntreeActivity.this, getString(R.string.network_error, t.getMessage()), Toast.LENGTH_SHORT).show();
-                }
+            // Enregistrée dans la file d'envoi : l'opérateur enchaîne sans attendre le réseau.
+            // Les emplacements sont rechargés une fois la file envoyée.
+            ExpediteurEnvois.get(this).ajouterEntree(entreePalette, Idempotence.nouvelleCle(), () -> {
+                if (!isFinishing()) chargerEmplacements();
             });
+
+            Toast.makeText(EntreeActivity.this, getString(R.string.entree_enregistree), Toast.LENGTH_SHORT).show();
+            etNumPalette.setText("");
+            tvInfosPalette.setText("");
+            spinnerRack.setSelection(0);
+            spinnerEmplacements.setSelection(0);
+            infosPalette = null;
         });
     }
 
     /**
-     * Récupère les emplacements disponibles depuis l'API et trie la liste
-     * en plaçant les emplacements libres en priorité.
-     * Appelle ensuite remplirSpinnerRack() pour afficher les options.
+     * Bandeau hors ligne masqué au retour du réseau (le suivi est celui de {@link BaseActivity}).
+     * Les actions en attente sont rejouées par le préchauffage de BaseActivity.
+     */
+    @Override
+    protected void onNetworkConnected(String type) {
+        bannerOffline.setVisibility(View.GONE);
+        btnRetry.setVisibility(View.GONE);
+        Toast.makeText(this, getString(R.string.connected, type), Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * Bandeau hors ligne et bouton de relance affichés à la perte du réseau.
+     */
+    @Override
+    protected void onNetworkDisconnected() {
+        bannerOffline.setVisibility(View.VISIBLE);
+        btnRetry.setVisibility(View.VISIBLE);
+        Toast.makeText(this, getString(R.string.disconnected), Toast.LENGTH_LONG).show();
+    }
+
+    /**
+     * Affiche la table des emplacements enregistrée localement, puis la table revalidée
+     * auprès du serveur si elle a changé (voir {@link SynchroEmplacements}).
      */
     private void chargerEmplacements() {
-        ApiService apiService = ApiClient.getClient(this).create(ApiService.class);
-        Call<List<EmplacementEntrepot>> call = apiService.getEmplacements();
+        SynchroEmplacements.charger(this, appels, apiService, new SynchroEmplacements.Rappel() {
+            @Override
+            public void surTable(@NonNull InstantaneEmplacements.Table table) {
+                if (!isFinishing()) remplirSpinnerRack(table);
+            }
 
-        call.enqueue(new Callback<>() {
             @Override
-            public void onResponse(@NonNull Call<List<EmplacementEntrepot>> call, @NonNull Response<List<EmplacementEntrepot>> response) {
-                if (response.code() == 401) {
-                    handleTokenExpired();
+            public void surEchec(int codeHttp, @Nullable String tokenRefuse, @Nullable Throwable t, boolean tableAffichee) {
+                if (codeHttp == 401) {
+                    handleTokenExpired(tokenRefuse);
                     return;
                 }
-                if (response.isSuccessful() && response.body() != null) {
-                    emplacementsList = response.body();
-                    emplacementsList.sort((o1, o2) ->
-                            o1.getEtat().equalsIgnoreCase("Libre") && !o2.getEtat().equalsIgnoreCase("Libre") ? -1 :
-                                    !o1.getEtat().equalsIgnoreCase("Libre") && o2.getEtat().equalsIgnoreCase("Libre") ? 1 : 0
-                    );
-                    remplirSpinnerRack();
+                if (t != null) {
+                    Log.e(TAG, "Erreur réseau chargement emplacements: " + t.getMessage(), t);
                 } else {
-                    Log.e(TAG, "Erreur chargement emplacements: code " + response.code());
-                    Toast.makeText(EntreeActivity.this, "Erreur chargement emplacements: " + response.code(), Toast.LENGTH_SHORT).show();
+                    Log.e(TAG, "Erreur chargement emplacements: code " + codeHttp);
+                }
+                if (tableAffichee) return;
+                if (t != null) {
+                    Toast.makeText(EntreeActivity.this, getString(R.string.chargement_emplacements_failed, t.getMessage()), Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(EntreeActivity.this, "Erreur chargement emplacements: " + codeHttp, Toast.LENGTH_SHORT).show();
                 }
-            }
-            @Override
-            public void onFailure(@NonNull Call<List<EmplacementEntrepot>> call, @NonNull Throwable t) {
-                Log.e(TAG, "Erreur réseau chargement emplacements: " + t.getMessage(), t);
-                Toast.makeText(EntreeActivity.this, getString(R.string.chargement_emplacements_failed, t.getMessage()), Toast.LENGTH_SHORT).show();
             }
         });
     }
 
     /**
-     * Remplit le spinner de sélection de rack à partir des emplacements disponibles.
-     * Filtre dynamiquement les emplacements du rack sélectionné dans un second spinner.
+     * Remplit le spinner de sélection de rack à partir de la table des emplacements.
+     * Les emplacements du rack sélectionné (déjà triés, libres en premier) sont affichés dans un second spinner.
+     * Le rack et l'emplacement sélectionnés sont conservés quand une table à jour remplace la précédente.
      */
-    private void remplirSpinnerRack() {
-        Set<String> racks = new HashSet<>();
-        for (EmplacementEntrepot e : emplacementsList) {
-            String rack = e.getEmplacement().split(" ")[0];
-            racks.add(rack);
-        }
-        rackList.clear();
-        rackList.addAll(racks);
-        rackList.sort(String::compareTo);
-        ArrayAdapter<String> rackAdapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, rackList);
+    private void remplirSpinnerRack(InstantaneEmplacements.Table table) {
+        String rackPrecedent = (String) spinnerRack.getSelectedItem();
+        tableEmplacements = table;
+
+        ArrayAdapter<String> rackAdapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, table.racks());
         rackAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
         spinnerRack.setAdapter(rackAdapter);
 
         spinnerRack.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
             @Override
             public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
-                String rackChoisi = rackList.get(position);
-                emplacementsFiltres.clear();
-                for (EmplacementEntrepot e : emplacementsList) {
-                    if (e.getEmplacement().startsWith(rackChoisi + " ")) {
-                        emplacementsFiltres.add(e);
-                    }
+                // Après un rafraîchissement, l'emplacement choisi dans le même rack reste sélectionné
+                String emplacementChoisi = null;
+                EmplacementEntrepot selection = (EmplacementEntrepot) spinnerEmplacements.getSelectedItem();
+                if (selection != null) {
+                    emplacementChoisi = selection.getEmplacement();
                 }
-                emplacementAdapter = new EmplacementAdapter(EntreeActivity.this, emplacementsFiltres);
+                List<EmplacementEntrepot> emplacementsFiltres = tableEmplacements.emplacementsDuRack(position);
+                emplacementAdapter = new EmplacementAdapter(EntreeActivity.this, emplacementsFiltres,
+                        tableEmplacements.nombreLibres(position));
                 spinnerEmplacements.setAdapter(emplacementAdapter);
+                int emplacementASelectionner = emplacementChoisi != null ? tableEmplacements.indexDansRack(position, emplacementChoisi) : -1;
+                if (emplacementASelectionner >= 0) {
+                    spinnerEmplacements.setSelection(emplacementASelectionner);
+                }
             }
             @Override
             public void onNothingSelected(AdapterView<?> parent) {}
         });
 
-        if (!rackList.isEmpty()) {
+        int rackASelectionner = rackPrecedent != null ? table.indexRack(rackPrecedent) : -1;
+        if (rackASelectionner >= 0) {
+            spinnerRack.setSelection(rackASelectionner);
+        } else if (!table.racks().isEmpty()) {
             spinnerRack.setSelection(0);
         }
     }
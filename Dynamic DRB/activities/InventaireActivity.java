@@ -7,88 +7,76 @@ import android.widget.*;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.mdo.gestionpalettes.R;
+import com.mdo.gestionpalettes.adapters.LignePalette;
 import com.mdo.gestionpalettes.adapters.PaletteAInventorierAdapter;
-import com.mdo.gestionpalettes.api.ApiClient;
-import com.mdo.gestionpalettes.api.ApiService;
+import com.mdo.gestionpalettes.api.Prechauffage;
+import com.mdo.gestionpalettes.api.SynchroEmplacements;
 import com.mdo.gestionpalettes.models.EmplacementEntrepot;
 import com.mdo.gestionpalettes.models.PaletteInfosResponse;
 import com.mdo.gestionpalettes.models.ValidationInventaire;
+import com.mdo.gestionpalettes.stockage.DepotListes;
+import com.mdo.gestionpalettes.stockage.InstantaneEmplacements;
+import com.mdo.gestionpalettes.stockage.JournalSession;
+import com.mdo.gestionpalettes.stockage.MoteurScan;
+import com.mdo.gestionpalettes.stockage.PaletteStore;
+import com.mdo.gestionpalettes.stockage.PartitionsClients;
 import android.view.View;
 import android.widget.AdapterView;
 
 import java.util.ArrayList;
-import java.util.List;
-import java.util.HashSet;
 import java.util.Collections;
-
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
+import java.util.List;
 
 public class InventaireActivity extends BaseActivity {
 
-    private ListView listViewAInventorier;
+    private RecyclerView listViewAInventorier;
     private EditText editTextNumPalette;
     private PaletteAInventorierAdapter adapter;
 
     private Spinner spinnerClient;
-    private ArrayList<String> clientsList = new ArrayList<>();
-
-    private final ArrayList<PaletteInfosResponse> palettesAInventorier = new ArrayList<>();
-    private ArrayList<ValidationInventaire> palettesValidees = new ArrayList<>();
-
-    private ApiService apiService;
+    // Palettes à inventorier découpées par client ; la partition affichée est celle du spinner
+    private PartitionsClients<LignePalette<PaletteInfosResponse>> partitions;
+    private int indexClientAffiche = 0;
+    // Session de scan partagée avec l'écran de résultat, journalisée sur disque
+    private JournalSession<ValidationInventaire> session;
+    private List<ValidationInventaire> palettesValidees;
+    private MoteurScan<LignePalette<PaletteInfosResponse>> moteurScan;
 
-    private List<EmplacementEntrepot> emplacementsList = new ArrayList<>();
-    private final List<EmplacementEntrepot> emplacementsFiltres = new ArrayList<>();
-    private final List<String> rackList = new ArrayList<>();
+    private InstantaneEmplacements.Table tableEmplacements;
 
     private final ActivityResultLauncher<Intent> inventaireResultLauncher = registerForActivityResult(
             new ActivityResultContracts.StartActivityForResult(),
             result -> {
-                if (result.getResultCode() == RESULT_OK && result.getData() != null) {
-                    ArrayList<ValidationInventaire> nouvellesValidees = result.getData().getParcelableArrayListExtra("palettesValideesRetour");
-                    if (nouvellesValidees != null) {
-                        palettesValidees = nouvellesValidees;
-                        chargerPalettesAInventorier();
-                    }
+                // Les retraits faits sur l'écran de résultat sont déjà dans la session partagée
+                if (result.getResultCode() == RESULT_OK) {
+                    chargerPalettesAInventorier();
                 }
             }
     );
 
     /**
-     * Récupère les emplacements disponibles depuis l'API et trie la liste
-     * en plaçant les emplacements libres en priorité.
-     * Appelle ensuite remplirSpinnerRack() pour afficher les options.
+     * Charge la table des emplacements une fois pour l'écran : l'instantané local, puis la table
+     * revalidée auprès du serveur si elle a changé. Chaque livraison sert aux boîtes de dialogue
+     * ouvertes ensuite ; sans instantané ni réseau, le chargement est rejoué au retour du réseau.
      */
-    private void chargerEmplacements(Runnable onLoaded) {
-        ApiService apiService = ApiClient.getClient(this).create(ApiService.class);
-        Call<List<EmplacementEntrepot>> call = apiService.getEmplacements();
-
-        call.enqueue(new Callback<>() {
+    private void chargerEmplacements() {
+        SynchroEmplacements.charger(this, appels, apiService, new SynchroEmplacements.Rappel() {
             @Override
-            public void onResponse(@NonNull Call<List<EmplacementEntrepot>> call, @NonNull Response<List<EmplacementEntrepot>> response) {
-                if (response.isSuccessful() && response.body() != null) {
-                    emplacementsList.clear();
-                    emplacementsList.addAll(response.body());
-                    emplacementsList.sort((o1, o2) ->
-                            o1.getEtat().equalsIgnoreCase("Libre") && !o2.getEtat().equalsIgnoreCase("Libre") ? -1 :
-                                    !o1.getEtat().equalsIgnoreCase("Libre") && o2.getEtat().equalsIgnoreCase("Libre") ? 1 : 0
-                    );
-                    rackList.clear();
-                    for (EmplacementEntrepot e : emplacementsList) {
-                        String rack = e.getEmplacement().split(" ")[0];
-                        if (!rackList.contains(rack)) rackList.add(rack);
-                    }
-                    rackList.sort(String::compareTo);
-                    if (onLoaded != null) onLoaded.run();
-                }
+            public void surTable(@NonNull InstantaneEmplacements.Table table) {
+                tableEmplacements = table;
             }
+
             @Override
-            public void onFailure(@NonNull Call<List<EmplacementEntrepot>> call, @NonNull Throwable t) {
-                Toast.makeText(InventaireActivity.this, "Erreur chargement emplacements : " + t.getMessage(), Toast.LENGTH_SHORT).show();
+            public void surEchec(int codeHttp, @Nullable String tokenRefuse, @Nullable Throwable t, boolean tableAffichee) {
+                if (t != null && !tableAffichee) {
+                    Toast.makeText(InventaireActivity.this, "Erreur chargement emplacements : " + t.getMessage(), Toast.LENGTH_SHORT).show();
+                    mettreEnAttente(InventaireActivity.this::chargerEmplacements);
+                }
             }
         });
     }
@@ -112,6 +100,9 @@ public class InventaireActivity extends BaseActivity {
 
         spinnerClient = findViewById(R.id.spinnerClient);
         listViewAInventorier = findViewById(R.id.listViewAInventorier);
+        listViewAInventorier.setLayoutManager(new LinearLayoutManager(this));
+        adapter = new PaletteAInventorierAdapter(this);
+        listViewAInventorier.setAdapter(adapter);
         editTextNumPalette = findViewById(R.id.editTextNumPalette);
 
         editTextNumPalette.requestFocus();
@@ -120,16 +111,19 @@ public class InventaireActivity extends BaseActivity {
         Button btnScannerPalette = findViewById(R.id.btnScannerPalette);
         Button btnFinirInventaire = findViewById(R.id.btnFinirInventaire);
 
-        apiService = ApiClient.getClient(this).create(ApiService.class);
-
-        chargerPalettesAInventorier();
+        chargerEmplacements();
 
-        btnScannerPalette.setOnClickListener(v -> {
-            if (!isOnline()) {
-                Toast.makeText(this, "Connexion réseau requise", Toast.LENGTH_SHORT).show();
-                return;
+        // Journal relu sur le thread disque : la liste n'est chargée qu'une fois la session ouverte
+        JournalSession.ouvrir(this, JournalSession.Type.INVENTAIRE, appels.rappel(ouverte -> {
+            session = ouverte;
+            palettesValidees = session.palettes();
+            if (savedInstanceState == null && !palettesValidees.isEmpty()) {
+                Toast.makeText(this, "Session reprise : " + palettesValidees.size() + " palette(s) déjà scannée(s)", Toast.LENGTH_LONG).show();
             }
+            chargerPalettesAInventorier();
+        }));
 
+        btnScannerPalette.setOnClickListener(v -> {
             String numPalette = editTextNumPalette.getText().toString().trim();
             if (numPalette.isEmpty()) {
                 Toast.makeText(this, "Veuillez scanner une palette", Toast.LENGTH_SHORT).show();
@@ -139,84 +133,100 @@ public class InventaireActivity extends BaseActivity {
         });
 
         btnFinirInventaire.setOnClickListener(v -> {
+            if (session == null) {
+                Toast.makeText(this, "Session en cours de chargement", Toast.LENGTH_SHORT).show();
+                return;
+            }
             Intent intent = new Intent(this, InventaireResultActivity.class);
-            intent.putParcelableArrayListExtra("palettesValidees", palettesValidees);
+            intent.putExtra(JournalSession.EXTRA_ID, session.getId());
             inventaireResultLauncher.launch(intent);
         });
     }
 
     /**
-     * Charge les palettes dont le statut est "A Inventorier" en appelant l'API.
-     * Met à jour la liste locale et l'adaptateur de la ListView.
-     * Affiche des messages d'erreur si la connexion réseau échoue
-     * ou si l'appel API est invalide (par exemple erreur 401).
+     * Liste synchronisée en priorité au retour du réseau (voir BaseActivity).
+     */
+    @Override
+    protected Prechauffage.Etape etapeListeDuFlux() {
+        return terminee -> synchroniserListe(PaletteStore.STATUT_A_INVENTORIER, apiService::synchroniserAInventorier,
+                this::relirePalettesAInventorier, terminee);
+    }
+
+    /**
+     * Affiche les palettes dont le statut est "A Inventorier" depuis le stockage local, puis synchronise la liste avec l'API.
+     * Seules les palettes modifiées depuis la dernière synchronisation sont téléchargées (voir SynchroPalettes).
+     * Gère les erreurs réseau et le statut HTTP 401 (token expiré).
      */
     private void chargerPalettesAInventorier() {
+        relirePalettesAInventorier();
+
         if (!isOnline()) {
-            Toast.makeText(this, "Connexion réseau requise pour charger les palettes", Toast.LENGTH_SHORT).show();
+            Toast.makeText(this, "Hors ligne : liste locale affichée.", Toast.LENGTH_SHORT).show();
+            mettreEnAttente(this::chargerPalettesAInventorier);
             return;
         }
 
-        Call<List<PaletteInfosResponse>> call = apiService.getPalettesAInventorier();
-        call.enqueue(new Callback<>() {
+        synchroniserListe(PaletteStore.STATUT_A_INVENTORIER, apiService::synchroniserAInventorier,
+                this::relirePalettesAInventorier, null);
+    }
+
+    /**
+     * Affiche la liste enregistrée dans le stockage local, moins les palettes déjà scannées,
+     * et prépare la vérification locale des scans (voir MoteurScan).
+     * Lignes, index de scan et partitions par client sont construits hors du thread principal (voir DepotListes).
+     */
+    private void relirePalettesAInventorier() {
+        if (session == null) {
+            // Relue à l'ouverture de la session
+            return;
+        }
+        DepotListes.listeAScanner(this, PaletteStore.STATUT_A_INVENTORIER, PaletteStore::palettesParStatut,
+                PaletteAInventorierAdapter::ligne, LignePalette::getNumero, numerosScannes(),
+                ligne -> ligne.getPalette().getNom_client(), appels.rappel(this::afficherPalettesAInventorier));
+    }
+
+    /**
+     * @return Les numéros des palettes déjà présentes dans la session.
+     */
+    private List<String> numerosScannes() {
+        List<String> numeros = new ArrayList<>(palettesValidees.size());
+        for (ValidationInventaire v : palettesValidees) {
+            numeros.add(v.getNumPalette());
+        }
+        return numeros;
+    }
+
+    /**
+     * Remplace la liste affichée des palettes à inventorier et reconstruit le filtre par client.
+     * Le client sélectionné est conservé ; la nouvelle liste est comparée à l'ancienne hors du thread principal.
+     *
+     * @param liste La liste locale prête à afficher.
+     */
+    private void afficherPalettesAInventorier(DepotListes.Liste<LignePalette<PaletteInfosResponse>> liste) {
+        moteurScan = liste.getMoteur();
+        String clientPrecedent = partitions != null ? partitions.clients().get(indexClientAffiche) : PartitionsClients.TOUS;
+        partitions = liste.getPartitions();
+        indexClientAffiche = Math.max(0, partitions.indexClient(clientPrecedent));
+        adapter.submitList(partitions.palettes(indexClientAffiche));
+
+        ArrayAdapter<String> clientAdapter = new ArrayAdapter<>(InventaireActivity.this, android.R.layout.simple_spinner_item, partitions.clients());
+        clientAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spinnerClient.setAdapter(clientAdapter);
+        spinnerClient.setSelection(indexClientAffiche);
+
+        spinnerClient.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
             @Override
-            public void onResponse(@NonNull Call<List<PaletteInfosResponse>> call, @NonNull Response<List<PaletteInfosResponse>> response) {
-                if (response.code() == 401) {
-                    handleTokenExpired();
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                if (position == indexClientAffiche) {
                     return;
                 }
-                if (response.isSuccessful() && response.body() != null) {
-                    palettesAInventorier.clear();
-                    palettesAInventorier.addAll(response.body());
-
-                    HashSet<String> setClients = new HashSet<>();
-                    for (PaletteInfosResponse p : palettesAInventorier) {
-                        if (p.getNom_client() != null && !p.getNom_client().isEmpty()) {
-                            setClients.add(p.getNom_client());
-                        }
-                    }
-                    clientsList.clear();
-                    clientsList.addAll(setClients);
-                    Collections.sort(clientsList);
-                    clientsList.add(0, "Tous");
-
-                    ArrayAdapter<String> clientAdapter = new ArrayAdapter<>(InventaireActivity.this, android.R.layout.simple_spinner_item, clientsList);
-                    clientAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
-                    spinnerClient.setAdapter(clientAdapter);
-
-                    spinnerClient.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
-                        @Override
-                        public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
-                            String selectedClient = clientsList.get(position);
-                            List<PaletteInfosResponse> filtered;
-                            if (selectedClient.equals("Tous")) {
-                                filtered = new ArrayList<>(palettesAInventorier);
-                            } else {
-                                filtered = new ArrayList<>();
-                                for (PaletteInfosResponse p : palettesAInventorier) {
-                                    if (selectedClient.equalsIgnoreCase(p.getNom_client())) {
-                                        filtered.add(p);
-                                    }
-                                }
-                            }
-                            adapter = new PaletteAInventorierAdapter(InventaireActivity.this, filtered);
-                            listViewAInventorier.setAdapter(adapter);
-                        }
-                        @Override
-                        public void onNothingSelected(AdapterView<?> parent) {}
-                    });
-
-                    spinnerClient.setSelection(0);
-
-                } else {
-                    Toast.makeText(InventaireActivity.this, "Erreur chargement : " + response.code(), Toast.LENGTH_SHORT).show();
-                }
+                indexClientAffiche = position;
+                // Listes sans rapport entre elles : pas de différentiel, la nouvelle partition remplace l'ancienne
+                adapter.submitList(null);
+                adapter.submitList(partitions.palettes(position));
             }
-
             @Override
-            public void onFailure(@NonNull Call<List<PaletteInfosResponse>> call, @NonNull Throwable t) {
-                Toast.makeText(InventaireActivity.this, "Erreur réseau : " + t.getMessage(), Toast.LENGTH_SHORT).show();
-            }
+            public void onNothingSelected(AdapterView<?> parent) {}
         });
     }
 
@@ -228,113 +238,121 @@ public class InventaireActivity extends BaseActivity {
      * @param numPalette Le numéro de palette saisi/scanné par l'utilisateur.
      */
     private void verifierEtValiderPalette(String numPalette) {
-        PaletteInfosResponse paletteTrouvee = null;
-        for (PaletteInfosResponse palette : palettesAInventorier) {
-            if (palette.getNum_palette().equalsIgnoreCase(numPalette)) {
-                paletteTrouvee = palette;
-                break;
-            }
+        if (moteurScan == null) {
+            Toast.makeText(this, "Liste en cours de chargement", Toast.LENGTH_SHORT).show();
+            return;
         }
-
-        if (paletteTrouvee == null) {
+        // Vérification seule : la palette n'est marquée scannée qu'à la validation de la boîte de dialogue
+        MoteurScan.Issue issue = moteurScan.verifier(numPalette);
+        if (issue == MoteurScan.Issue.DEJA_SCANNEE) {
+            Toast.makeText(this, "Palette déjà scannée", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (issue == MoteurScan.Issue.ABSENTE) {
             Toast.makeText(this, "Cette palette n'est pas à inventorier", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        PaletteInfosResponse paletteFinal = paletteTrouvee;
-
-        chargerEmplacements(() -> runOnUiThread(() -> {
-            View dialogView = getLayoutInflater().inflate(R.layout.dialog_inventaire_palette, null);
-            EditText inputQuantite = dialogView.findViewById(R.id.inputQuantite);
-            Spinner spinnerRack = dialogView.findViewById(R.id.spinnerRack);
-            Spinner spinnerEmplacement = dialogView.findViewById(R.id.spinnerEmplacement);
-
-            inputQuantite.setText(String.valueOf(paletteFinal.getQuantite()));
-            
-            ArrayAdapter<String> rackAdapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, rackList);
-            rackAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
-            spinnerRack.setAdapter(rackAdapter);
-
-            String emplacementActuel = paletteFinal.getEmplacement();
-            int rackToSelect = 0;
-            if (emplacementActuel != null) {
-                String rackEmplacement = emplacementActuel.split(" ")[0];
-                for (int i = 0; i < rackList.size(); i++) {
-                    if (rackList.get(i).equalsIgnoreCase(rackEmplacement)) {
-                        rackToSelect = i;
-                        break;
-                    }
+        MoteurScan<LignePalette<PaletteInfosResponse>> moteur = moteurScan;
+        LignePalette<PaletteInfosResponse> ligneFinale = moteur.palette(numPalette);
+        PaletteInfosResponse paletteFinal = ligneFinale.getPalette();
+
+        // Table figée pour toute la boîte de dialogue : une livraison ultérieure ne concerne que les suivantes
+        InstantaneEmplacements.Table table = tableEmplacements;
+        String emplacementActuel = paletteFinal.getEmplacement();
+        if (table == null && emplacementActuel == null) {
+            Toast.makeText(this, "Emplacements non disponibles hors ligne", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        View dialogView = getLayoutInflater().inflate(R.layout.dialog_inventaire_palette, null);
+        EditText inputQuantite = dialogView.findViewById(R.id.inputQuantite);
+        Spinner spinnerRack = dialogView.findViewById(R.id.spinnerRack);
+        Spinner spinnerEmplacement = dialogView.findViewById(R.id.spinnerEmplacement);
+
+        inputQuantite.setText(String.valueOf(paletteFinal.getQuantite()));
+        
+        // Sans table (hors ligne, premier lancement) : seul l'emplacement actuel est proposé
+        List<String> racks = table != null ? table.racks()
+                : Collections.singletonList(InstantaneEmplacements.rackDe(emplacementActuel));
+        ArrayAdapter<String> rackAdapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, racks);
+        rackAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spinnerRack.setAdapter(rackAdapter);
+
+        int rackToSelect = 0;
+        if (table != null && emplacementActuel != null) {
+            rackToSelect = Math.max(0, table.indexRack(InstantaneEmplacements.rackDe(emplacementActuel)));
+        }
+        spinnerRack.setSelection(rackToSelect);
+
+        spinnerRack.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                List<EmplacementEntrepot> emplacementsFiltres = table != null ? table.emplacementsDuRack(position)
+                        : Collections.singletonList(emplacementSeul(emplacementActuel));
+                ArrayAdapter<EmplacementEntrepot> empAdapter = new ArrayAdapter<>(InventaireActivity.this,
+                        android.R.layout.simple_spinner_item, emplacementsFiltres);
+                empAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+                spinnerEmplacement.setAdapter(empAdapter);
+
+                int index = table != null && emplacementActuel != null ? table.indexDansRack(position, emplacementActuel) : -1;
+                if (index >= 0) {
+                    spinnerEmplacement.setSelection(index);
                 }
             }
-            spinnerRack.setSelection(rackToSelect);
-
-            spinnerRack.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
-                @Override
-                public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
-                    String rackChoisi = rackList.get(position);
-                    emplacementsFiltres.clear();
-                    for (EmplacementEntrepot e : emplacementsList) {
-                        if (e.getEmplacement().startsWith(rackChoisi + " ")) {
-                            emplacementsFiltres.add(e);
-                        }
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) { }
+        });
+
+        new androidx.appcompat.app.AlertDialog.Builder(this)
+                .setTitle("Palette " + paletteFinal.getNum_palette())
+                .setView(dialogView)
+                .setPositiveButton("Valider", (dialog, which) -> {
+                    String val = inputQuantite.getText().toString().trim();
+                    int nouvelleQuantite;
+                    try {
+                        nouvelleQuantite = Integer.parseInt(val);
+                    } catch (Exception e) {
+                        Toast.makeText(this, "Quantité invalide", Toast.LENGTH_SHORT).show();
+                        return;
                     }
-                    ArrayAdapter<EmplacementEntrepot> empAdapter = new ArrayAdapter<>(InventaireActivity.this,
-                            android.R.layout.simple_spinner_item, emplacementsFiltres);
-                    empAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
-                    spinnerEmplacement.setAdapter(empAdapter);
-
-                    String emplacementActuel = paletteFinal.getEmplacement();
-                    if (emplacementActuel != null) {
-                        int index = -1;
-                        for (int i = 0; i < emplacementsFiltres.size(); i++) {
-                            if (emplacementsFiltres.get(i).getEmplacement().equalsIgnoreCase(emplacementActuel)) {
-                                index = i;
-                                break;
-                            }
-                        }
-                        if (index >= 0) {
-                            spinnerEmplacement.setSelection(index);
-                        }
+                    EmplacementEntrepot selected = (EmplacementEntrepot) spinnerEmplacement.getSelectedItem();
+                    if (selected == null) {
+                        Toast.makeText(this, "Sélectionnez un emplacement", Toast.LENGTH_SHORT).show();
+                        return;
                     }
-                }
-                @Override
-                public void onNothingSelected(AdapterView<?> parent) { }
-            });
-
-            new androidx.appcompat.app.AlertDialog.Builder(this)
-                    .setTitle("Palette " + paletteFinal.getNum_palette())
-                    .setView(dialogView)
-                    .setPositiveButton("Valider", (dialog, which) -> {
-                        String val = inputQuantite.getText().toString().trim();
-                        int nouvelleQuantite;
-                        try {
-                            nouvelleQuantite = Integer.parseInt(val);
-                        } catch (Exception e) {
-                            Toast.makeText(this, "Quantité invalide", Toast.LENGTH_SHORT).show();
-                            return;
-                        }
-                        EmplacementEntrepot selected = (EmplacementEntrepot) spinnerEmplacement.getSelectedItem();
-                        if (selected == null) {
-                            Toast.makeText(this, "Sélectionnez un emplacement", Toast.LENGTH_SHORT).show();
-                            return;
-                        }
-                        String nouvelEmplacement = selected.getEmplacement();
-
-                        ValidationInventaire validation = new ValidationInventaire(
-                                paletteFinal.getNum_palette(),
-                                nouvelleQuantite,
-                                nouvelEmplacement
-                        );
-                        palettesValidees.add(validation);
-                        palettesAInventorier.remove(paletteFinal);
-                        adapter.notifyDataSetChanged();
-                        Toast.makeText(this, "Palette validée", Toast.LENGTH_SHORT).show();
-                        editTextNumPalette.setText("");
-                        editTextNumPalette.requestFocus();
-                    })
-                    .setNegativeButton("Annuler", null)
-                    .show();
-        }));
+                    String nouvelEmplacement = selected.getEmplacement();
+
+                    ValidationInventaire validation = new ValidationInventaire(
+                            paletteFinal.getNum_palette(),
+                            nouvelleQuantite,
+                            nouvelEmplacement
+                    );
+                    if (moteur.verifier(paletteFinal.getNum_palette()) != MoteurScan.Issue.TROUVEE) {
+                        Toast.makeText(this, "Palette déjà scannée", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    moteur.marquerScannee(paletteFinal.getNum_palette());
+                    palettesValidees.add(validation);
+                    partitions.retirer(ligneFinale);
+                    adapter.submitList(partitions.palettes(indexClientAffiche));
+                    Toast.makeText(this, "Palette validée", Toast.LENGTH_SHORT).show();
+                    editTextNumPalette.setText("");
+                    editTextNumPalette.requestFocus();
+                })
+                .setNegativeButton("Annuler", null)
+                .show();
+    }
+
+    /**
+     * @param nom Le nom d'un emplacement.
+     * @return Un emplacement de ce nom, d'état inconnu, proposé quand la table n'est pas disponible.
+     */
+    private static EmplacementEntrepot emplacementSeul(String nom) {
+        EmplacementEntrepot emplacement = new EmplacementEntrepot();
+        emplacement.setEmplacement(nom);
+        emplacement.setEtat("");
+        return emplacement;
     }
 
     /**
@@ -353,4 +371,16 @@ public class InventaireActivity extends BaseActivity {
                 .show();
         return true;
     }
+
+    /**
+     * Ferme la session de scan quand l'opérateur quitte le flux (mais pas lors d'une rotation d'écran).
+     * Après un arrêt de l'application, la session est au contraire reprise depuis son journal.
+     */
+    @Override
+    protected void onDestroy() {
+        if (isFinishing() && session != null) {
+            session.abandonner();
+        }
+        super.onDestroy();
+    }
 }
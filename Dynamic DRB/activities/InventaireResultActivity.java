@@ -1,36 +1,39 @@
 package com.mdo.gestionpalettes.activities;
 
-import android.content.Intent;
 import android.os.Bundle;
-import android.util.Log;
 import android.widget.Button;
-import android.widget.ListView;
 import android.widget.Toast;
 
-import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.mdo.gestionpalettes.R;
+import com.mdo.gestionpalettes.adapters.LignePalette;
+import com.mdo.gestionpalettes.adapters.PaletteListAdapter;
 import com.mdo.gestionpalettes.adapters.PaletteValideeAdapter;
-import com.mdo.gestionpalettes.api.ApiClient;
-import com.mdo.gestionpalettes.api.ApiService;
+import com.mdo.gestionpalettes.api.ExpediteurEnvois;
 import com.mdo.gestionpalettes.models.ValidationInventaire;
+import com.mdo.gestionpalettes.stockage.JournalSession;
+import com.mdo.gestionpalettes.stockage.PaletteStore;
+import com.mdo.gestionpalettes.utils.Idempotence;
 
 import java.util.ArrayList;
+import java.util.List;
 
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
+public class InventaireResultActivity extends BaseActivity implements PaletteListAdapter.OnPaletteSupprimeeListener<ValidationInventaire> {
 
-public class InventaireResultActivity extends BaseActivity implements PaletteValideeAdapter.OnPaletteSupprimeeListener {
-
-    private ArrayList<ValidationInventaire> palettesValidees;
+    private JournalSession<ValidationInventaire> session;
+    private List<ValidationInventaire> palettesValidees;
+    private PaletteValideeAdapter adapter;
+    // Lignes affichées, mises en forme hors du thread principal
+    private List<LignePalette<ValidationInventaire>> lignes = new ArrayList<>();
+    // Clé de l'opération dans la file d'envoi : un double appui n'est appliqué qu'une fois
+    private String cleValidation = Idempotence.nouvelleCle();
 
     /**
      * Méthode appelée à la création de l'activité InventaireResultActivity.
      * Récupère les palettes validées, initialise l'adaptateur pour l'affichage dans la liste,
-     * et gère les boutons de retour et de validation avec appel à l'API.
+     * et gère les boutons de retour et de validation avec enregistrement dans la file d'envoi.
      *
      * @param savedInstanceState État de l'activité sauvegardé, si existant.
      */
@@ -39,80 +42,75 @@ public class InventaireResultActivity extends BaseActivity implements PaletteVal
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_inventaire_result);
 
-        ListView listViewPalettes = findViewById(R.id.listViewPalettes);
+        RecyclerView listViewPalettes = findViewById(R.id.listViewPalettes);
         Button btnValider = findViewById(R.id.btnValiderInventaire);
         Button btnRetour = findViewById(R.id.btnRetourInventaire);
 
-        palettesValidees = getIntent().getParcelableArrayListExtra("palettesValidees");
-        if (palettesValidees == null) palettesValidees = new ArrayList<>();
-
-        PaletteValideeAdapter adapter = new PaletteValideeAdapter(this, palettesValidees, this);
+        listViewPalettes.setLayoutManager(new LinearLayoutManager(this));
+        adapter = new PaletteValideeAdapter(this, this);
         listViewPalettes.setAdapter(adapter);
+        // Session partagée avec l'écran de scan : livrée immédiatement si elle est ouverte dans ce processus,
+        // sinon relue depuis son journal sur le thread disque (reprise après un arrêt de l'application)
+        JournalSession.get(this, JournalSession.Type.INVENTAIRE, getIntent().getStringExtra(JournalSession.EXTRA_ID),
+                appels.rappel(ouverte -> {
+                    session = ouverte;
+                    palettesValidees = session.palettes();
+                    LignePalette.preparer(palettesValidees, PaletteValideeAdapter::ligne, appels.rappel(this::afficherLignes));
+                }));
 
         btnRetour.setOnClickListener(v -> {
-            Intent intent = new Intent();
-            intent.putParcelableArrayListExtra("palettesValideesRetour", palettesValidees);
-            setResult(RESULT_OK, intent);
+            setResult(RESULT_OK);
             finish();
         });
 
         btnValider.setOnClickListener(v -> {
-            if (!isOnline()) {
-                Toast.makeText(this, "Connexion réseau requise", Toast.LENGTH_SHORT).show();
-                return;
-            }
-            if (palettesValidees.isEmpty()) {
+            if (palettesValidees == null || palettesValidees.isEmpty()) {
                 Toast.makeText(this, "Aucune palette à valider", Toast.LENGTH_SHORT).show();
                 return;
             }
 
-            Gson gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
-            Log.d("DEBUG_JSON", gson.toJson(palettesValidees));
-
-            ApiService apiService = ApiClient.getInventaireClient(this).create(ApiService.class);
-
-            Call<Void> call = apiService.validerInventaire(palettesValidees);
-            call.enqueue(new Callback<>() {
-                @Override
-                public void onResponse(@NonNull Call<Void> call, @NonNull Response<Void> response) {
-                    if (response.code() == 401) {
-                        handleTokenExpired();
-                        return;
-                    }
-                    if (response.isSuccessful()) {
-                        Toast.makeText(InventaireResultActivity.this, "Inventaire validé avec succès", Toast.LENGTH_LONG).show();
-                        finish();
-                    } else {
-                        String errorMsg = "Erreur : " + response.code();
-                        try {
-                            if (response.errorBody() != null) {
-                                errorMsg += " | " + response.errorBody().string();
-                            }
-                        } catch (Exception e) {
-                            errorMsg += " | Impossible de lire l'erreur";
-                        }
-                        Log.e("DEBUG_ERROR", errorMsg);
-                        Toast.makeText(InventaireResultActivity.this, errorMsg, Toast.LENGTH_LONG).show();
-                    }
-                }
-
-                @Override
-                public void onFailure(@NonNull Call<Void> call, @NonNull Throwable t) {
-                    Log.e("DEBUG_ERROR", "Erreur réseau : " + t.getMessage(), t);
-                    Toast.makeText(InventaireResultActivity.this, "Erreur réseau : " + t.getMessage(), Toast.LENGTH_SHORT).show();
-                }
-            });
+            // Enregistrée dans la file d'envoi : envoyée dès que le réseau le permet, sans attente sur cet écran
+            v.setEnabled(false);
+            ExpediteurEnvois.get(this).ajouterInventaire(palettesValidees, cleValidation);
+
+            // Les palettes ont changé de statut : elles quittent la liste locale
+            List<String> numeros = new ArrayList<>();
+            for (ValidationInventaire p : palettesValidees) numeros.add(p.getNumPalette());
+            PaletteStore store = PaletteStore.get(this);
+            store.ecrire(() -> store.retirer(numeros));
+            session.vider();
+
+            Toast.makeText(this, "Inventaire enregistré, envoi en cours", Toast.LENGTH_LONG).show();
+            finish();
         });
     }
 
     /**
-     * Callback appelé lorsqu'une palette est supprimée via l'adaptateur.
-     * Affiche un message de confirmation avec le numéro de la palette.
+     * Affiche les lignes de la session, mises en forme hors du thread principal.
+     *
+     * @param preparees Les lignes, dans l'ordre de la session.
+     */
+    private void afficherLignes(List<LignePalette<ValidationInventaire>> preparees) {
+        lignes = preparees;
+        adapter.submitList(new ArrayList<>(lignes));
+    }
+
+    /**
+     * Callback appelé lorsqu'une palette est supprimée via l'adaptateur : elle quitte la session,
+     * et seule sa ligne disparaît de la liste affichée.
      *
-     * @param palette La palette supprimée.
+     * @param ligne La ligne de la palette supprimée.
      */
     @Override
-    public void onPaletteSupprimee(ValidationInventaire palette) {
+    public void onPaletteSupprimee(LignePalette<ValidationInventaire> ligne) {
+        ValidationInventaire palette = ligne.getPalette();
+        int index = palettesValidees.indexOf(palette);
+        if (index < 0) return;
+        palettesValidees.remove(index);
+        lignes.remove(ligne);
+        adapter.submitList(new ArrayList<>(lignes));
         Toast.makeText(this, "Palette supprimée : " + palette.getNumPalette(), Toast.LENGTH_SHORT).show();
+        // Le lot a changé : ce n'est plus la même action
+        cleValidation = Idempotence.nouvelleCle();
     }
 }
@@ -1,7 +1,6 @@
 package com.mdo.gestionpalettes.activities;
 
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.widget.Button;
 import android.widget.EditText;
@@ -11,8 +10,8 @@ import androidx.annotation.NonNull;
 
 import com.mdo.gestionpalettes.R;
 import com.mdo.gestionpalettes.api.ApiClient;
-import com.mdo.gestionpalettes.api.ApiService;
 import com.mdo.gestionpalettes.models.LoginResponse;
+import com.mdo.gestionpalettes.utils.TokenStore;
 
 import retrofit2.Call;
 import retrofit2.Callback;
@@ -24,7 +23,7 @@ public class LoginActivity extends BaseActivity {
 
     /**
      * Méthode appelée lors de la création de l'activité LoginActivity.
-     * Initialise les champs de saisie et le bouton de connexion.
+     * Initialise les champs de saisie et le bouton de connexion, et préchauffe la connexion à l'API.
      * Envoie une requête d'authentification à l'API et stocke le token reçu.
      * Redirige l'utilisateur vers MenuActivity en cas de succès.
      *
@@ -35,6 +34,9 @@ public class LoginActivity extends BaseActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_login);
 
+        // Ouvre la connexion vers l'API pendant la saisie des identifiants
+        ApiClient.prechaufferConnexion(this);
+
         String reason = getIntent().getStringExtra("reason");
         if ("expired".equals(reason)) {
             Toast.makeText(this, "Session expirée. Veuillez vous reconnecter.", Toast.LENGTH_LONG).show();
@@ -53,17 +55,14 @@ public class LoginActivity extends BaseActivity {
                 return;
             }
 
-            ApiService apiService = ApiClient.getClient(this).create(ApiService.class);
-
-            apiService.login("password", username, password, "", "", "")
-                    .enqueue(new Callback<>() {
+            appels.enqueue(apiService.login("password", username, password, "", "", ""),
+                    new Callback<LoginResponse>() {
                         @Override
                         public void onResponse(@NonNull Call<LoginResponse> call, @NonNull Response<LoginResponse> response) {
                             if (response.isSuccessful() && response.body() != null) {
                                 String token = response.body().getAccessToken();
 
-                                SharedPreferences prefs = getSharedPreferences("auth", MODE_PRIVATE);
-                                prefs.edit().putString("token", token).apply();
+                                TokenStore.enregistrer(token);
 
                                 Intent intent = new Intent(LoginActivity.this, MenuActivity.class);
                                 startActivity(intent);
@@ -7,44 +7,42 @@ import android.view.inputmethod.InputMethodManager;
 import android.widget.*;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
-import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.mdo.gestionpalettes.R;
+import com.mdo.gestionpalettes.adapters.LignePalette;
 import com.mdo.gestionpalettes.adapters.PaletteARenvoyerAdapter;
-import com.mdo.gestionpalettes.api.ApiClient;
-import com.mdo.gestionpalettes.api.ApiService;
+import com.mdo.gestionpalettes.api.Prechauffage;
 import com.mdo.gestionpalettes.models.PaletteInfosResponse;
 import com.mdo.gestionpalettes.models.ValidationRenvoie;
+import com.mdo.gestionpalettes.stockage.DepotListes;
+import com.mdo.gestionpalettes.stockage.JournalSession;
+import com.mdo.gestionpalettes.stockage.MoteurScan;
+import com.mdo.gestionpalettes.stockage.PaletteStore;
 
 import java.util.ArrayList;
 import java.util.List;
 
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
-
 public class RenvoieActivity extends BaseActivity {
 
     private RecyclerView recyclerViewPalettes;
     private EditText editTextNumPaletteRenvoie;
     private PaletteARenvoyerAdapter adapter;
 
-    private final ArrayList<PaletteInfosResponse> palettesARenvoyer = new ArrayList<>();
-    private ArrayList<ValidationRenvoie> palettesValidees = new ArrayList<>();
-
-    private ApiService apiService;
+    private final ArrayList<LignePalette<PaletteInfosResponse>> palettesARenvoyer = new ArrayList<>();
+    // Session de scan partagée avec l'écran de résultat, journalisée sur disque
+    private JournalSession<ValidationRenvoie> session;
+    private List<ValidationRenvoie> palettesValidees;
+    // Vérification locale des scans contre la dernière liste synchronisée
+    private MoteurScan<LignePalette<PaletteInfosResponse>> moteurScan;
 
     private final ActivityResultLauncher<Intent> renvoieResultLauncher = registerForActivityResult(
             new ActivityResultContracts.StartActivityForResult(),
             result -> {
-                if (result.getResultCode() == RESULT_OK && result.getData() != null) {
-                    ArrayList<ValidationRenvoie> nouvellesValidees = result.getData().getParcelableArrayListExtra("palettesValideesRetour");
-                    if (nouvellesValidees != null) {
-                        palettesValidees = nouvellesValidees;
-                        chargerPalettesARenvoyer();
-                    }
+                // Les retraits faits sur l'écran de résultat sont déjà dans la session partagée
+                if (result.getResultCode() == RESULT_OK) {
+                    chargerPalettesARenvoyer();
                 }
             }
     );
@@ -67,7 +65,7 @@ public class RenvoieActivity extends BaseActivity {
 
         recyclerViewPalettes = findViewById(R.id.recyclerViewPalettes);
         recyclerViewPalettes.setLayoutManager(new LinearLayoutManager(this));
-        adapter = new PaletteARenvoyerAdapter(this, palettesARenvoyer);
+        adapter = new PaletteARenvoyerAdapter(this);
         recyclerViewPalettes.setAdapter(adapter);
 
         editTextNumPaletteRenvoie = findViewById(R.id.editTextNumPaletteRenvoie);
@@ -77,16 +75,17 @@ public class RenvoieActivity extends BaseActivity {
         Button btnScannerPaletteRenvoie = findViewById(R.id.btnScannerPaletteRenvoie);
         Button btnFinirRenvoie = findViewById(R.id.btnFinirRenvoie);
 
-        apiService = ApiClient.getClient(this).create(ApiService.class);
-
-        chargerPalettesARenvoyer();
-
-        btnScannerPaletteRenvoie.setOnClickListener(v -> {
-            if (!isOnline()) {
-                Toast.makeText(this, "Hors ligne, impossible de scanner.", Toast.LENGTH_SHORT).show();
-                return;
+        // Journal relu sur le thread disque : la liste n'est chargée qu'une fois la session ouverte
+        JournalSession.ouvrir(this, JournalSession.Type.RENVOI, appels.rappel(ouverte -> {
+            session = ouverte;
+            palettesValidees = session.palettes();
+            if (savedInstanceState == null && !palettesValidees.isEmpty()) {
+                Toast.makeText(this, "Session reprise : " + palettesValidees.size() + " palette(s) déjà scannée(s)", Toast.LENGTH_LONG).show();
             }
+            chargerPalettesARenvoyer();
+        }));
 
+        btnScannerPaletteRenvoie.setOnClickListener(v -> {
             String numPalette = editTextNumPaletteRenvoie.getText().toString().trim();
             if (numPalette.isEmpty()) {
                 Toast.makeText(this, "Veuillez scanner une palette", Toast.LENGTH_SHORT).show();
@@ -96,43 +95,78 @@ public class RenvoieActivity extends BaseActivity {
         });
 
         btnFinirRenvoie.setOnClickListener(v -> {
+            if (session == null) {
+                Toast.makeText(this, "Session en cours de chargement", Toast.LENGTH_SHORT).show();
+                return;
+            }
             Intent intent = new Intent(this, RenvoieResultActivity.class);
-            intent.putParcelableArrayListExtra("palettesValidees", palettesValidees);
+            intent.putExtra(JournalSession.EXTRA_ID, session.getId());
             renvoieResultLauncher.launch(intent);
         });
     }
 
     /**
-     * Charge la liste des palettes à renvoyer depuis l'API distante.
-     * Met à jour l'adaptateur de la RecyclerView avec les palettes reçues.
-     * Affiche un message d'erreur en cas d'échec réseau ou erreur serveur.
+     * Liste synchronisée en priorité au retour du réseau (voir BaseActivity).
+     */
+    @Override
+    protected Prechauffage.Etape etapeListeDuFlux() {
+        return terminee -> synchroniserListe(PaletteStore.STATUT_A_RENVOYER, apiService::synchroniserARenvoyer,
+                this::relirePalettesARenvoyer, terminee);
+    }
+
+    /**
+     * Affiche la liste des palettes à renvoyer du stockage local, puis la synchronise avec l'API.
+     * Seules les palettes modifiées depuis la dernière synchronisation sont téléchargées (voir SynchroPalettes).
+     * Gère les erreurs réseau et le statut HTTP 401 (token expiré).
      */
     private void chargerPalettesARenvoyer() {
+        relirePalettesARenvoyer();
+
         if (!isOnline()) {
-            Toast.makeText(this, "Hors ligne, impossible de charger les palettes.", Toast.LENGTH_SHORT).show();
+            Toast.makeText(this, "Hors ligne : liste locale affichée.", Toast.LENGTH_SHORT).show();
+            mettreEnAttente(this::chargerPalettesARenvoyer);
             return;
         }
 
-        Call<List<PaletteInfosResponse>> call = apiService.getPalettesARenvoyer();
-        call.enqueue(new Callback<>() {
-            @Override
-            public void onResponse(@NonNull Call<List<PaletteInfosResponse>> call, @NonNull Response<List<PaletteInfosResponse>> response) {
-                if (response.isSuccessful() && response.body() != null) {
-                    palettesARenvoyer.clear();
-                    palettesARenvoyer.addAll(response.body());
-                    adapter.notifyDataSetChanged();
-                } else if (response.code() == 401) {
-                    handleTokenExpired();
-                } else {
-                    Toast.makeText(RenvoieActivity.this, "Erreur chargement : " + response.code(), Toast.LENGTH_SHORT).show();
-                }
-            }
+        synchroniserListe(PaletteStore.STATUT_A_RENVOYER, apiService::synchroniserARenvoyer,
+                this::relirePalettesARenvoyer, null);
+    }
 
-            @Override
-            public void onFailure(@NonNull Call<List<PaletteInfosResponse>> call, @NonNull Throwable t) {
-                Toast.makeText(RenvoieActivity.this, "Erreur réseau : " + t.getMessage(), Toast.LENGTH_SHORT).show();
-            }
-        });
+    /**
+     * Affiche la liste enregistrée dans le stockage local, moins les palettes déjà scannées,
+     * et prépare la vérification locale des scans (voir MoteurScan).
+     * Lignes et index de scan sont construits hors du thread principal (voir DepotListes).
+     */
+    private void relirePalettesARenvoyer() {
+        if (session == null) {
+            // Relue à l'ouverture de la session
+            return;
+        }
+        DepotListes.listeAScanner(this, PaletteStore.STATUT_A_RENVOYER, PaletteStore::palettesParStatut,
+                PaletteARenvoyerAdapter::ligne, LignePalette::getNumero, numerosScannes(), null, appels.rappel(this::afficherPalettesARenvoyer));
+    }
+
+    /**
+     * Remplace la liste affichée des palettes à renvoyer.
+     *
+     * @param liste La liste locale prête à afficher.
+     */
+    private void afficherPalettesARenvoyer(DepotListes.Liste<LignePalette<PaletteInfosResponse>> liste) {
+        moteurScan = liste.getMoteur();
+        palettesARenvoyer.clear();
+        palettesARenvoyer.addAll(liste.getAScanner());
+        adapter.submitList(new ArrayList<>(palettesARenvoyer));
+    }
+
+    /**
+     * @return Les numéros des palettes déjà présentes dans la session.
+     */
+    private List<String> numerosScannes() {
+        List<String> numeros = new ArrayList<>(palettesValidees.size());
+        for (ValidationRenvoie v : palettesValidees) {
+            numeros.add(v.getNumPalette());
+        }
+        return numeros;
     }
 
     /**
@@ -142,18 +176,21 @@ public class RenvoieActivity extends BaseActivity {
      * @param numPalette Le numéro de la palette scannée ou saisie.
      */
     private void verifierEtValiderPalette(String numPalette) {
-        PaletteInfosResponse paletteTrouvee = null;
-        for (PaletteInfosResponse palette : palettesARenvoyer) {
-            if (palette.getNum_palette().equalsIgnoreCase(numPalette)) {
-                paletteTrouvee = palette;
-                break;
-            }
+        if (moteurScan == null) {
+            Toast.makeText(this, "Liste en cours de chargement", Toast.LENGTH_SHORT).show();
+            return;
         }
-
-        if (paletteTrouvee == null) {
+        MoteurScan.Issue issue = moteurScan.scanner(numPalette);
+        if (issue == MoteurScan.Issue.DEJA_SCANNEE) {
+            Toast.makeText(this, "Palette déjà scannée", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (issue == MoteurScan.Issue.ABSENTE) {
             Toast.makeText(this, "Cette palette n'est pas à renvoyer", Toast.LENGTH_SHORT).show();
             return;
         }
+        LignePalette<PaletteInfosResponse> ligneTrouvee = moteurScan.palette(numPalette);
+        PaletteInfosResponse paletteTrouvee = ligneTrouvee.getPalette();
 
         ValidationRenvoie validation = new ValidationRenvoie(
                 paletteTrouvee.getNum_palette(),
@@ -161,9 +198,11 @@ public class RenvoieActivity extends BaseActivity {
                 paletteTrouvee.getEmplacement()
         );
 
+        validation.setHorodatageListe(moteurScan.getHorodatageListe());
+
         palettesValidees.add(validation);
-        palettesARenvoyer.remove(paletteTrouvee);
-        adapter.notifyDataSetChanged();
+        palettesARenvoyer.remove(ligneTrouvee);
+        adapter.submitList(new ArrayList<>(palettesARenvoyer));
 
         Toast.makeText(this, "Palette ajoutée à la liste des renvois", Toast.LENGTH_SHORT).show();
         editTextNumPaletteRenvoie.setText("");
@@ -185,4 +224,16 @@ public class RenvoieActivity extends BaseActivity {
                 .show();
         return true;
     }
-}
\ No newline at end of file
+
+    /**
+     * Ferme la session de scan quand l'opérateur quitte le flux (mais pas lors d'une rotation d'écran).
+     * Après un arrêt de l'application, la session est au contraire reprise depuis son journal.
+     */
+    @Override
+    protected void onDestroy() {
+        if (isFinishing() && session != null) {
+            session.abandonner();
+        }
+        super.onDestroy();
+    }
+}
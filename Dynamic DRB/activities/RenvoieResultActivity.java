@@ -1,29 +1,34 @@
 package com.mdo.gestionpalettes.activities;
 
-import android.content.Intent;
 import android.os.Bundle;
 import android.widget.Button;
-import android.widget.ListView;
 import android.widget.Toast;
 
-import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.mdo.gestionpalettes.R;
+import com.mdo.gestionpalettes.adapters.LignePalette;
+import com.mdo.gestionpalettes.adapters.PaletteListAdapter;
 import com.mdo.gestionpalettes.adapters.PaletteRenvoieAdapter;
-import com.mdo.gestionpalettes.api.ApiClient;
-import com.mdo.gestionpalettes.api.ApiService;
+import com.mdo.gestionpalettes.api.ExpediteurEnvois;
 import com.mdo.gestionpalettes.models.ValidationRenvoie;
+import com.mdo.gestionpalettes.stockage.JournalSession;
+import com.mdo.gestionpalettes.stockage.PaletteStore;
+import com.mdo.gestionpalettes.utils.Idempotence;
 
 import java.util.ArrayList;
+import java.util.List;
 
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
+public class RenvoieResultActivity extends BaseActivity implements PaletteListAdapter.OnPaletteSupprimeeListener<ValidationRenvoie> {
 
-public class RenvoieResultActivity extends BaseActivity {
-
-    private ArrayList<ValidationRenvoie> palettesValidees;
-    private ApiService apiService;
+    private JournalSession<ValidationRenvoie> session;
+    private List<ValidationRenvoie> palettesValidees;
+    private PaletteRenvoieAdapter adapter;
+    // Lignes affichées, mises en forme hors du thread principal
+    private List<LignePalette<ValidationRenvoie>> lignes = new ArrayList<>();
+    // Clé de l'opération dans la file d'envoi : un double appui n'est appliqué qu'une fois
+    private String cleValidation = Idempotence.nouvelleCle();
 
     /**
      * Méthode appelée lors de la création de l'activité RenvoieResultActivity.
@@ -37,54 +42,75 @@ public class RenvoieResultActivity extends BaseActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_renvoie_result);
 
-        ListView listViewPalettes = findViewById(R.id.listViewPalettesRenvoie);
+        RecyclerView listViewPalettes = findViewById(R.id.listViewPalettesRenvoie);
         Button btnRetour = findViewById(R.id.btnAnnulerRenvoie);
         Button btnValider = findViewById(R.id.btnValiderRenvoie);
 
-        palettesValidees = getIntent().getParcelableArrayListExtra("palettesValidees");
-        if (palettesValidees == null) palettesValidees = new ArrayList<>();
-
-        apiService = ApiClient.getClient(this).create(ApiService.class);
-
-        PaletteRenvoieAdapter adapter = new PaletteRenvoieAdapter(this, palettesValidees);
+        listViewPalettes.setLayoutManager(new LinearLayoutManager(this));
+        adapter = new PaletteRenvoieAdapter(this, this);
         listViewPalettes.setAdapter(adapter);
+        // Session partagée avec l'écran de scan : livrée immédiatement si elle est ouverte dans ce processus,
+        // sinon relue depuis son journal sur le thread disque (reprise après un arrêt de l'application)
+        JournalSession.get(this, JournalSession.Type.RENVOI, getIntent().getStringExtra(JournalSession.EXTRA_ID),
+                appels.rappel(ouverte -> {
+                    session = ouverte;
+                    palettesValidees = session.palettes();
+                    LignePalette.preparer(palettesValidees, PaletteRenvoieAdapter::ligne, appels.rappel(this::afficherLignes));
+                }));
 
         btnRetour.setOnClickListener(v -> {
-            Intent intent = new Intent();
-            intent.putParcelableArrayListExtra("palettesValideesRetour", palettesValidees);
-            setResult(RESULT_OK, intent);
+            setResult(RESULT_OK);
             finish();
         });
 
         btnValider.setOnClickListener(v -> {
-            if (palettesValidees.isEmpty()) {
+            if (palettesValidees == null || palettesValidees.isEmpty()) {
                 Toast.makeText(this, "Aucune palette à valider", Toast.LENGTH_SHORT).show();
                 return;
             }
-            if (!isOnline()) {
-                Toast.makeText(this, "Hors ligne, impossible de valider.", Toast.LENGTH_SHORT).show();
-                return;
-            }
 
-            Call<Void> call = apiService.validerRenvoie(palettesValidees);
-            call.enqueue(new Callback<>() {
-                @Override
-                public void onResponse(@NonNull Call<Void> call, @NonNull Response<Void> response) {
-                    if (response.isSuccessful()) {
-                        Toast.makeText(RenvoieResultActivity.this, "Renvoie validé avec succès", Toast.LENGTH_LONG).show();
-                        finish();
-                    } else if (response.code() == 401) {
-                        handleTokenExpired();
-                    } else {
-                        Toast.makeText(RenvoieResultActivity.this, "Erreur lors de la validation : " + response.code(), Toast.LENGTH_LONG).show();
-                    }
-                }
-
-                @Override
-                public void onFailure(@NonNull Call<Void> call, @NonNull Throwable t) {
-                    Toast.makeText(RenvoieResultActivity.this, "Erreur réseau : " + t.getMessage(), Toast.LENGTH_SHORT).show();
-                }
-            });
+            // Enregistrée dans la file d'envoi : envoyée dès que le réseau le permet, sans attente sur cet écran
+            v.setEnabled(false);
+            ExpediteurEnvois.get(this).ajouterRenvoi(palettesValidees, cleValidation);
+
+            // Les palettes ont changé de statut : elles quittent la liste locale
+            List<String> numeros = new ArrayList<>();
+            for (ValidationRenvoie p : palettesValidees) numeros.add(p.getNumPalette());
+            PaletteStore store = PaletteStore.get(this);
+            store.ecrire(() -> store.retirer(numeros));
+            session.vider();
+
+            Toast.makeText(this, "Renvoi enregistré, envoi en cours", Toast.LENGTH_LONG).show();
+            finish();
         });
     }
-}
\ No newline at end of file
+
+    /**
+     * Affiche les lignes de la session, mises en forme hors du thread principal.
+     *
+     * @param preparees Les lignes, dans l'ordre de la session.
+     */
+    private void afficherLignes(List<LignePalette<ValidationRenvoie>> preparees) {
+        lignes = preparees;
+        adapter.submitList(new ArrayList<>(lignes));
+    }
+
+    /**
+     * Callback appelé lorsqu'une palette est supprimée via l'adaptateur : elle quitte la session,
+     * et seule sa ligne disparaît de la liste affichée.
+     *
+     * @param ligne La ligne de la palette supprimée.
+     */
+    @Override
+    public void onPaletteSupprimee(LignePalette<ValidationRenvoie> ligne) {
+        ValidationRenvoie palette = ligne.getPalette();
+        int index = palettesValidees.indexOf(palette);
+        if (index < 0) return;
+        palettesValidees.remove(index);
+        lignes.remove(ligne);
+        adapter.submitList(new ArrayList<>(lignes));
+        Toast.makeText(this, "Palette supprimée : " + palette.getNumPalette(), Toast.LENGTH_SHORT).show();
+        // Le lot a changé : ce n'est plus la même action
+        cleValidation = Idempotence.nouvelleCle();
+    }
+}
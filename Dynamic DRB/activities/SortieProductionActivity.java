@@ -4,48 +4,33 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.view.inputmethod.InputMethodManager;
 import android.widget.*;
-import androidx.activity.result.ActivityResultLauncher;
-import androidx.activity.result.contract.ActivityResultContracts;
-import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.mdo.gestionpalettes.R;
+import com.mdo.gestionpalettes.adapters.LignePalette;
 import com.mdo.gestionpalettes.adapters.PaletteConsultationAdapter;
-import com.mdo.gestionpalettes.api.ApiClient;
-import com.mdo.gestionpalettes.api.ApiService;
+import com.mdo.gestionpalettes.api.Prechauffage;
 import com.mdo.gestionpalettes.models.PaletteConsultation;
 import com.mdo.gestionpalettes.models.ValidationSortieProduction;
+import com.mdo.gestionpalettes.stockage.DepotListes;
+import com.mdo.gestionpalettes.stockage.JournalSession;
+import com.mdo.gestionpalettes.stockage.MoteurScan;
+import com.mdo.gestionpalettes.stockage.PaletteStore;
 
 import java.util.ArrayList;
 import java.util.List;
 
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
-
 public class SortieProductionActivity extends BaseActivity {
 
     private EditText editTextNumPalette;
     private PaletteConsultationAdapter adapter;
 
-    private final List<PaletteConsultation> palettesEnStock = new ArrayList<>();
-    private ArrayList<ValidationSortieProduction> palettesSelectionnees = new ArrayList<>();
-
-    private ApiService apiService;
-
-    private final ActivityResultLauncher<Intent> resultLauncher = registerForActivityResult(
-            new ActivityResultContracts.StartActivityForResult(),
-            result -> {
-                if(result.getResultCode() == RESULT_OK && result.getData() != null) {
-                    ArrayList<ValidationSortieProduction> nouvellesSelectionnees =
-                            result.getData().getParcelableArrayListExtra("palettesSelectionneesRetour");
-                    if(nouvellesSelectionnees != null) {
-                        palettesSelectionnees = nouvellesSelectionnees;
-                    }
-                }
-            }
-    );
+    // Session de scan partagée avec l'écran de résultat, journalisée sur disque
+    private JournalSession<ValidationSortieProduction> session;
+    private List<ValidationSortieProduction> palettesSelectionnees;
+    // Vérification locale des scans contre la dernière liste synchronisée
+    private MoteurScan<LignePalette<PaletteConsultation>> moteurScan;
 
     /**
      * Gère le comportement de retour en arrière dans la barre d'action.
@@ -82,13 +67,15 @@ public class SortieProductionActivity extends BaseActivity {
         adapter = new PaletteConsultationAdapter(new ArrayList<>());
         recyclerViewPalettes.setAdapter(adapter);
 
-        apiService = ApiClient.getClient(this).create(ApiService.class);
-
-        if (isOnline()) {
+        // Journal relu sur le thread disque : la liste n'est chargée qu'une fois la session ouverte
+        JournalSession.ouvrir(this, JournalSession.Type.SORTIE_PRODUCTION, appels.rappel(ouverte -> {
+            session = ouverte;
+            palettesSelectionnees = session.palettes();
+            if (savedInstanceState == null && !palettesSelectionnees.isEmpty()) {
+                Toast.makeText(this, "Session reprise : " + palettesSelectionnees.size() + " palette(s) déjà scannée(s)", Toast.LENGTH_LONG).show();
+            }
             chargerPalettesEnStock();
-        } else {
-            Toast.makeText(this, "Hors ligne, impossible de charger les palettes.", Toast.LENGTH_SHORT).show();
-        }
+        }));
 
         getWindow().setSoftInputMode(android.view.WindowManager.LayoutParams.SOFT_INPUT_STATE_ALWAYS_HIDDEN);
         editTextNumPalette.requestFocus();
@@ -103,36 +90,76 @@ public class SortieProductionActivity extends BaseActivity {
         });
 
         btnVoirSelection.setOnClickListener(v -> {
+            if (session == null) {
+                Toast.makeText(this, "Session en cours de chargement", Toast.LENGTH_SHORT).show();
+                return;
+            }
             Intent intent = new Intent(this, SortieProductionResultActivity.class);
-            intent.putParcelableArrayListExtra("palettesSelectionnees", palettesSelectionnees);
-            resultLauncher.launch(intent);
+            intent.putExtra(JournalSession.EXTRA_ID, session.getId());
+            startActivity(intent);
         });
     }
 
     /**
-     * Envoie une requête à l'API pour récupérer les palettes actuellement en stock.
-     * Met à jour le RecyclerView avec les palettes reçues ou affiche un message d'erreur en cas d'échec.
+     * Liste synchronisée en priorité au retour du réseau (voir BaseActivity).
+     */
+    @Override
+    protected Prechauffage.Etape etapeListeDuFlux() {
+        return terminee -> synchroniserListe(PaletteStore.STATUT_EN_STOCK, apiService::synchroniserEnStock,
+                this::relirePalettesEnStock, terminee);
+    }
+
+    /**
+     * Affiche la liste des palettes en stock du stockage local, puis la synchronise avec l'API.
+     * Seules les palettes modifiées depuis la dernière synchronisation sont téléchargées (voir SynchroPalettes).
+     * Gère les erreurs réseau et le statut HTTP 401 (token expiré).
      */
     private void chargerPalettesEnStock() {
-        Call<List<PaletteConsultation>> call = apiService.getPalettesEnStock();
-        call.enqueue(new Callback<>() {
-            @Override
-            public void onResponse(@NonNull Call<List<PaletteConsultation>> call, @NonNull Response<List<PaletteConsultation>> response) {
-                if (response.isSuccessful() && response.body() != null) {
-                    palettesEnStock.clear();
-                    palettesEnStock.addAll(response.body());
-                    adapter.setPalettes(palettesEnStock);
-                } else if (response.code() == 401) {
-                    handleTokenExpired();
-                } else {
-                    Toast.makeText(SortieProductionActivity.this, "Erreur chargement: " + response.code(), Toast.LENGTH_SHORT).show();
-                }
-            }
-            @Override
-            public void onFailure(@NonNull Call<List<PaletteConsultation>> call, @NonNull Throwable t) {
-                Toast.makeText(SortieProductionActivity.this, "Erreur réseau: " + t.getMessage(), Toast.LENGTH_SHORT).show();
-            }
-        });
+        relirePalettesEnStock();
+
+        if (!isOnline()) {
+            Toast.makeText(this, "Hors ligne : liste locale affichée.", Toast.LENGTH_SHORT).show();
+            mettreEnAttente(this::chargerPalettesEnStock);
+            return;
+        }
+
+        synchroniserListe(PaletteStore.STATUT_EN_STOCK, apiService::synchroniserEnStock,
+                this::relirePalettesEnStock, null);
+    }
+
+    /**
+     * Affiche la liste enregistrée dans le stockage local, moins les palettes déjà scannées,
+     * et prépare la vérification locale des scans (voir MoteurScan).
+     * Lignes et index de scan sont construits hors du thread principal (voir DepotListes).
+     */
+    private void relirePalettesEnStock() {
+        if (session == null) {
+            // Relue à l'ouverture de la session
+            return;
+        }
+        DepotListes.listeAScanner(this, PaletteStore.STATUT_EN_STOCK, PaletteStore::palettesConsultationParStatut,
+                PaletteConsultationAdapter::ligne, LignePalette::getNumero, numerosScannes(), null, appels.rappel(this::afficherPalettesEnStock));
+    }
+
+    /**
+     * Remplace la liste affichée des palettes en stock.
+     *
+     * @param liste La liste locale prête à afficher.
+     */
+    private void afficherPalettesEnStock(DepotListes.Liste<LignePalette<PaletteConsultation>> liste) {
+        moteurScan = liste.getMoteur();
+        adapter.setPalettes(new ArrayList<>(liste.getAScanner()));
+    }
+
+    /**
+     * @return Les numéros des palettes déjà présentes dans la session.
+     */
+    private List<String> numerosScannes() {
+        List<String> numeros = new ArrayList<>(palettesSelectionnees.size());
+        for (ValidationSortieProduction v : palettesSelectionnees) {
+            numeros.add(v.getNumPalette());
+        }
+        return numeros;
     }
 
     /**
@@ -142,17 +169,20 @@ public class SortieProductionActivity extends BaseActivity {
      * @param numPalette Le numéro de la palette à vérifier et ajouter.
      */
     private void verifierEtAjouterPalette(String numPalette) {
-        PaletteConsultation paletteTrouvee = null;
-        for(PaletteConsultation p : palettesEnStock) {
-            if(p.getNum_palette().equalsIgnoreCase(numPalette)) {
-                paletteTrouvee = p;
-                break;
-            }
+        if (moteurScan == null) {
+            Toast.makeText(this, "Liste en cours de chargement", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        MoteurScan.Issue issue = moteurScan.scanner(numPalette);
+        if (issue == MoteurScan.Issue.DEJA_SCANNEE) {
+            Toast.makeText(this, "Palette déjà scannée", Toast.LENGTH_SHORT).show();
+            return;
         }
-        if(paletteTrouvee == null) {
+        if (issue == MoteurScan.Issue.ABSENTE) {
             Toast.makeText(this, "Cette palette n'est pas en stock", Toast.LENGTH_SHORT).show();
             return;
         }
+        PaletteConsultation paletteTrouvee = moteurScan.palette(numPalette).getPalette();
 
         ValidationSortieProduction validation = new ValidationSortieProduction(
                 paletteTrouvee.getNum_palette(),
@@ -161,11 +191,28 @@ public class SortieProductionActivity extends BaseActivity {
                 paletteTrouvee.getEmplacement()
         );
 
+        validation.setHorodatageListe(moteurScan.getHorodatageListe());
+
         palettesSelectionnees.add(validation);
-        palettesEnStock.remove(paletteTrouvee);
-        adapter.notifyDataSetChanged();
+        // Seule la ligne de la palette est retirée (liste triée par numéro)
+        int position = adapter.position(paletteTrouvee.getNum_palette());
+        if (position >= 0) {
+            adapter.retirer(position);
+        }
 
         Toast.makeText(this, "Palette ajoutée à la sélection", Toast.LENGTH_SHORT).show();
         editTextNumPalette.setText("");
     }
+
+    /**
+     * Ferme la session de scan quand l'opérateur quitte le flux (mais pas lors d'une rotation d'écran).
+     * Après un arrêt de l'application, la session est au contraire reprise depuis son journal.
+     */
+    @Override
+    protected void onDestroy() {
+        if (isFinishing() && session != null) {
+            session.abandonner();
+        }
+        super.onDestroy();
+    }
 }
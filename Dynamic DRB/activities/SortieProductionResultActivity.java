@@ -2,29 +2,38 @@ package com.mdo.gestionpalettes.activities;
 
 import android.os.Bundle;
 import android.widget.Button;
-import android.widget.ListView;
 import android.widget.Toast;
 
-import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.mdo.gestionpalettes.R;
+import com.mdo.gestionpalettes.adapters.LignePalette;
+import com.mdo.gestionpalettes.adapters.PaletteListAdapter;
 import com.mdo.gestionpalettes.adapters.PaletteSortieProductionAdapter;
-import com.mdo.gestionpalettes.api.ApiClient;
-import com.mdo.gestionpalettes.api.ApiService;
+import com.mdo.gestionpalettes.api.ExpediteurEnvois;
 import com.mdo.gestionpalettes.models.ValidationSortieProduction;
+import com.mdo.gestionpalettes.stockage.JournalSession;
+import com.mdo.gestionpalettes.stockage.PaletteStore;
+import com.mdo.gestionpalettes.utils.Idempotence;
 
 import java.util.ArrayList;
+import java.util.List;
 
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
+public class SortieProductionResultActivity extends BaseActivity implements PaletteListAdapter.OnPaletteSupprimeeListener<ValidationSortieProduction> {
 
-public class SortieProductionResultActivity extends BaseActivity {
+    // Clé de l'opération dans la file d'envoi : un double appui n'est appliqué qu'une fois
+    private String cleValidation = Idempotence.nouvelleCle();
+    private JournalSession<ValidationSortieProduction> session;
+    private List<ValidationSortieProduction> palettesSelectionnees;
+    private PaletteSortieProductionAdapter adapter;
+    // Lignes affichées, mises en forme hors du thread principal
+    private List<LignePalette<ValidationSortieProduction>> lignes = new ArrayList<>();
 
     /**
      * Méthode appelée lors de la création de l'activité SortieProductionResultActivity.
      * Affiche les palettes sélectionnées pour la sortie production et permet de valider
-     * définitivement leur sortie via un appel API ou de revenir à l'écran précédent.
+     * définitivement leur sortie via la file d'envoi ou de revenir à l'écran précédent.
      *
      * @param savedInstanceState L'état précédemment sauvegardé de l'activité, s'il existe.
      */
@@ -33,15 +42,21 @@ public class SortieProductionResultActivity extends BaseActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_sortie_production_result);
 
-        ListView listViewSelectionSortieProd = findViewById(R.id.listViewSelectionSortieProd);
+        RecyclerView listViewSelectionSortieProd = findViewById(R.id.listViewSelectionSortieProd);
         Button btnValider = findViewById(R.id.btnValiderSortieProd);
         Button btnRetour = findViewById(R.id.btnRetourSortieProd);
 
-        ArrayList<ValidationSortieProduction> palettesSelectionnees =
-                getIntent().getParcelableArrayListExtra("palettesSelectionnees");
-
-        PaletteSortieProductionAdapter adapter = new PaletteSortieProductionAdapter(this, palettesSelectionnees);
+        listViewSelectionSortieProd.setLayoutManager(new LinearLayoutManager(this));
+        adapter = new PaletteSortieProductionAdapter(this, this);
         listViewSelectionSortieProd.setAdapter(adapter);
+        // Session partagée avec l'écran de scan : livrée immédiatement si elle est ouverte dans ce processus,
+        // sinon relue depuis son journal sur le thread disque (reprise après un arrêt de l'application)
+        JournalSession.get(this, JournalSession.Type.SORTIE_PRODUCTION, getIntent().getStringExtra(JournalSession.EXTRA_ID),
+                appels.rappel(ouverte -> {
+                    session = ouverte;
+                    palettesSelectionnees = session.palettes();
+                    LignePalette.preparer(palettesSelectionnees, PaletteSortieProductionAdapter::ligne, appels.rappel(this::afficherLignes));
+                }));
 
         btnRetour.setOnClickListener(v -> finish());
 
@@ -51,31 +66,48 @@ public class SortieProductionResultActivity extends BaseActivity {
                 return;
             }
 
-            if (!isOnline()) {
-                Toast.makeText(this, "Hors ligne, impossible de valider.", Toast.LENGTH_SHORT).show();
-                return;
-            }
+            // Enregistrée dans la file d'envoi : envoyée dès que le réseau le permet, sans attente sur cet écran
+            v.setEnabled(false);
+            ExpediteurEnvois.get(this).ajouterSortieProduction(palettesSelectionnees, cleValidation);
+
+            // Les palettes ont changé de statut : elles quittent la liste locale
+            List<String> numeros = new ArrayList<>();
+            for (ValidationSortieProduction p : palettesSelectionnees) numeros.add(p.getNumPalette());
+            PaletteStore store = PaletteStore.get(this);
+            store.ecrire(() -> store.retirer(numeros));
+            session.vider();
 
-            ApiService apiService = ApiClient.getClient(this).create(ApiService.class);
-
-            Call<Void> call = apiService.validerSortieProduction(palettesSelectionnees);
-            call.enqueue(new Callback<>() {
-                @Override
-                public void onResponse(@NonNull Call<Void> call, @NonNull Response<Void> response) {
-                    if (response.isSuccessful()) {
-                        Toast.makeText(SortieProductionResultActivity.this, "Sortie validée avec succès", Toast.LENGTH_LONG).show();
-                        finish();
-                    } else if (response.code() == 401) {
-                        handleTokenExpired();
-                    } else {
-                        Toast.makeText(SortieProductionResultActivity.this, "Erreur validation : " + response.code(), Toast.LENGTH_LONG).show();
-                    }
-                }
-                @Override
-                public void onFailure(@NonNull Call<Void> call, @NonNull Throwable t) {
-                    Toast.makeText(SortieProductionResultActivity.this, "Erreur réseau : " + t.getMessage(), Toast.LENGTH_SHORT).show();
-                }
-            });
+            Toast.makeText(this, "Sortie enregistrée, envoi en cours", Toast.LENGTH_LONG).show();
+            finish();
         });
     }
-}
\ No newline at end of file
+
+    /**
+     * Affiche les lignes de la session, mises en forme hors du thread principal.
+     *
+     * @param preparees Les lignes, dans l'ordre de la session.
+     */
+    private void afficherLignes(List<LignePalette<ValidationSortieProduction>> preparees) {
+        lignes = preparees;
+        adapter.submitList(new ArrayList<>(lignes));
+    }
+
+    /**
+     * Callback appelé lorsqu'une palette est supprimée via l'adaptateur : elle quitte la session,
+     * et seule sa ligne disparaît de la liste affichée.
+     *
+     * @param ligne La ligne de la palette supprimée.
+     */
+    @Override
+    public void onPaletteSupprimee(LignePalette<ValidationSortieProduction> ligne) {
+        ValidationSortieProduction palette = ligne.getPalette();
+        int index = palettesSelectionnees.indexOf(palette);
+        if (index < 0) return;
+        palettesSelectionnees.remove(index);
+        lignes.remove(ligne);
+        adapter.submitList(new ArrayList<>(lignes));
+        Toast.makeText(this, "Palette supprimée : " + palette.getNumPalette(), Toast.LENGTH_SHORT).show();
+        // Le lot a changé : ce n'est plus la même action
+        cleValidation = Idempotence.nouvelleCle();
+    }
+}
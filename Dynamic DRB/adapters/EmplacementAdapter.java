@@ -21,8 +21,16 @@ import java.util.List;
  * Vert pour les emplacements libres, rouge pour les autres.
  */
 public class EmplacementAdapter extends ArrayAdapter<EmplacementEntrepot> {
-    public EmplacementAdapter(Context context, List<EmplacementEntrepot> emplacements) {
+    private final int nombreLibres;
+
+    /**
+     * @param context Le contexte Android.
+     * @param emplacements Les emplacements d'un rack, les libres en premier.
+     * @param nombreLibres Le nombre d'emplacements libres en tête de liste.
+     */
+    public EmplacementAdapter(Context context, List<EmplacementEntrepot> emplacements, int nombreLibres) {
         super(context, android.R.layout.simple_spinner_item, emplacements);
+        this.nombreLibres = nombreLibres;
         setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
     }
 
@@ -55,7 +63,7 @@ public class EmplacementAdapter extends ArrayAdapter<EmplacementEntrepot> {
 
     /**
      * Crée une vue personnalisée pour afficher un emplacement avec son état.
-     * Applique une couleur verte si l'emplacement est libre, rouge sinon.
+     * Applique une couleur verte si l'emplacement est libre, rouge sinon (les libres sont en tête de liste).
      *
      * @param position Position de l'élément dans la liste.
      * @param convertView Vue potentiellement réutilisable.
@@ -72,7 +80,7 @@ public class EmplacementAdapter extends ArrayAdapter<EmplacementEntrepot> {
                     e.getEtat()
             );
             view.setText(label);
-            if ("Libre".equalsIgnoreCase(e.getEtat())) {
+            if (position < nombreLibres) {
                 view.setTextColor(Color.parseColor("#388E3C")); // Vert
             } else {
                 view.setTextColor(Color.parseColor("#D32F2F")); // Rouge
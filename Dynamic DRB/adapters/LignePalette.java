@@ -0,0 +1,113 @@
+package com.mdo.gestionpalettes.adapters;
+
+import androidx.annotation.NonNull;
+
+import com.mdo.gestionpalettes.stockage.IndexScan;
+import com.mdo.gestionpalettes.stockage.PaletteStore;
+import com.mdo.gestionpalettes.stockage.Travaux;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Modèle d'affichage d'une ligne de liste de palettes : la palette, et les textes de ses champs
+ * déjà mis en forme ("Palette : ...", "Quantité : ..."), dans l'ordre des vues de la ligne.
+ *
+ * Les lignes sont préparées hors du thread principal (pool de calcul de DepotListes, lecture du flux
+ * de consultation, ou {@link #preparer(List, Preparation, Rappel)}) ; la liaison d'une vue se réduit
+ * alors à confier des textes existants aux TextView, sans concaténation pendant le défilement.
+ * L'identifiant stable et la comparaison de contenu (textes affichés) sont aussi calculés une fois.
+ *
+ * @param <T> Le type de palette.
+ */
+public final class LignePalette<T> {
+
+    /**
+     * Met en forme une palette ; appelée hors du thread principal.
+     *
+     * @param <T> Le type de palette.
+     */
+    public interface Preparation<T> {
+        LignePalette<T> ligne(T palette);
+    }
+
+    private final T palette;
+    private final String numero;
+    private final long id;
+    private final String[] textes;
+
+    /**
+     * @param palette La palette affichée.
+     * @param numero Son numéro (identité de la ligne).
+     * @param textes Les textes affichés, dans l'ordre des vues de la ligne.
+     */
+    public LignePalette(T palette, String numero, String... textes) {
+        this.palette = palette;
+        this.numero = numero;
+        this.id = idStable(numero);
+        this.textes = textes;
+    }
+
+    public T getPalette() { return palette; }
+    public String getNumero() { return numero; }
+    public long getId() { return id; }
+
+    /**
+     * @param index La position du champ dans la ligne.
+     * @return Le texte mis en forme du champ.
+     */
+    public String texte(int index) {
+        return textes[index];
+    }
+
+    /**
+     * @return true si les deux lignes affichent exactement les mêmes textes.
+     */
+    boolean memeContenu(@NonNull LignePalette<T> autre) {
+        return Arrays.equals(textes, autre.textes);
+    }
+
+    /**
+     * Met en forme une liste de palettes, sur le thread appelant (déjà hors du thread principal).
+     *
+     * @param palettes Les palettes, dans l'ordre d'affichage.
+     * @param preparation La mise en forme d'une palette.
+     * @return Les lignes, dans le même ordre.
+     */
+    public static <T> List<LignePalette<T>> lignes(List<T> palettes, Preparation<T> preparation) {
+        List<LignePalette<T>> lignes = new ArrayList<>(palettes.size());
+        for (T palette : palettes) {
+            lignes.add(preparation.ligne(palette));
+        }
+        return lignes;
+    }
+
+    /**
+     * Met en forme une liste de palettes sur le pool de calcul (Travaux), puis livre les lignes sur le thread principal.
+     *
+     * @param palettes Les palettes ; la liste est copiée avant de quitter le thread principal.
+     * @param preparation La mise en forme d'une palette.
+     * @param rappel Le rappel de l'écran appelant, en général relayé par sa portée (voir PorteeAppels).
+     */
+    public static <T> void preparer(List<T> palettes, Preparation<T> preparation, PaletteStore.Rappel<List<LignePalette<T>>> rappel) {
+        List<T> copie = new ArrayList<>(palettes);
+        Travaux.executer(() -> lignes(copie, preparation), rappel);
+    }
+
+    /**
+     * @param numPalette Un numéro de palette.
+     * @return Un identifiant de ligne stable : la clé numérique du numéro (voir IndexScan),
+     * ou un identifiant négatif dérivé de son hachage pour un numéro non numérique.
+     */
+    static long idStable(String numPalette) {
+        if (numPalette == null) {
+            return Long.MIN_VALUE;
+        }
+        long cle = IndexScan.cle(numPalette);
+        if (cle != IndexScan.CLE_INVALIDE) {
+            return cle;
+        }
+        return -2L - (numPalette.hashCode() & 0xFFFFFFFFL);
+    }
+}
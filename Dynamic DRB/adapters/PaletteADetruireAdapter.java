@@ -1,99 +1,101 @@
 package com.mdo.gestionpalettes.adapters;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.BaseAdapter;
 import android.widget.TextView;
 
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
 import com.mdo.gestionpalettes.R;
 import com.mdo.gestionpalettes.models.PaletteInfosResponse;
 
-import java.util.List;
-
 
 /**
- * Adaptateur personnalisé pour afficher une liste de palettes à détruire.
- * Utilisé pour peupler une vue de liste avec les informations des palettes,
- * y compris numéro, client, article, quantité et emplacement.
+ * Adaptateur personnalisé pour afficher une liste de palettes à détruire dans un RecyclerView.
+ * Affiche les informations des palettes, y compris numéro, client, article, quantité et emplacement.
  */
-public class PaletteADetruireAdapter extends BaseAdapter {
+public class PaletteADetruireAdapter extends PaletteListAdapter<PaletteInfosResponse, PaletteADetruireAdapter.ViewHolder> {
+
+    // Ordre des textes d'une ligne
+    private static final int NUMERO = 0;
+    private static final int CLIENT = 1;
+    private static final int ARTICLE = 2;
+    private static final int QUANTITE = 3;
+    private static final int EMPLACEMENT = 4;
 
     private final Context context;
-    private final List<PaletteInfosResponse> paletteList;
 
-    public PaletteADetruireAdapter(Context context, List<PaletteInfosResponse> paletteList) {
+    public PaletteADetruireAdapter(Context context) {
         this.context = context;
-        this.paletteList = paletteList;
     }
 
     /**
-     * Retourne le nombre total d'éléments dans la liste des palettes.
+     * Met en forme une palette (hors du thread principal, voir LignePalette).
+     * La quantité n'est affichée que si elle est positive.
      *
-     * @return Le nombre de palettes à détruire.
+     * @param palette La palette à détruire.
+     * @return Sa ligne : numéro, client, article, quantité et emplacement.
      */
-    @Override
-    public int getCount() {
-        return paletteList.size();
+    public static LignePalette<PaletteInfosResponse> ligne(PaletteInfosResponse palette) {
+        int quantite = palette.getQuantite();
+        return new LignePalette<>(palette, palette.getNum_palette(),
+                "Palette : " + palette.getNum_palette(),
+                "Client : " + palette.getNom_client(),
+                "Article : " + palette.getArticle(),
+                quantite > 0 ? "Quantité : " + quantite : "",
+                "Emplacement : " + palette.getEmplacement());
     }
 
     /**
-     * Retourne l'objet PaletteInfosResponse à une position donnée.
-     *
-     * @param position Position de l'élément dans la liste.
-     * @return L'objet PaletteInfosResponse correspondant.
+     * Classe interne représentant une vue individuelle pour une palette à détruire.
      */
-    @Override
-    public Object getItem(int position) {
-        return paletteList.get(position);
+    public static class ViewHolder extends RecyclerView.ViewHolder {
+        public TextView tvNumPalette;
+        public TextView tvNomClient;
+        public TextView tvArticle;
+        public TextView tvQuantite;
+        public TextView tvEmplacement;
+
+        public ViewHolder(@NonNull View itemView) {
+            super(itemView);
+            tvNumPalette = itemView.findViewById(R.id.tvNumPaletteDestruction);
+            tvNomClient = itemView.findViewById(R.id.tvNomClientDestruction);
+            tvArticle = itemView.findViewById(R.id.tvArticleDestruction);
+            tvQuantite = itemView.findViewById(R.id.tvQuantiteDestruction);
+            tvEmplacement = itemView.findViewById(R.id.tvEmplacementDestruction);
+        }
     }
 
     /**
-     * Retourne l'ID de l'élément à une position donnée.
+     * Crée une nouvelle vue (ViewHolder) pour un élément de la liste.
      *
-     * @param position Position de l'élément.
-     * @return L'ID de l'élément (ici, la position elle-même).
+     * @param parent Le ViewGroup parent.
+     * @param viewType Le type de vue (un seul type ici).
+     * @return Un ViewHolder contenant la vue.
      */
+    @NonNull
     @Override
-    public long getItemId(int position) {
-        return position;
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(context).inflate(R.layout.item_palette_destruction, parent, false);
+        return new ViewHolder(view);
     }
 
     /**
-     * Génère la vue pour chaque élément de la liste.
-     * Remplit les champs de texte avec les données de la palette à détruire.
+     * Affiche les textes préparés de la ligne, sans mise en forme.
      *
-     * @param position Position de l'élément dans la liste.
-     * @param convertView Vue existante à réutiliser.
-     * @param parent Le parent auquel la vue sera attachée.
-     * @return La vue mise à jour contenant les informations de la palette.
+     * @param holder Le ViewHolder à remplir.
+     * @param position La position de l'élément dans la liste.
      */
-    @SuppressLint("SetTextI18n")
     @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        if (convertView == null) {
-            convertView = LayoutInflater.from(context).inflate(R.layout.item_palette_destruction, parent, false);
-        }
-
-        PaletteInfosResponse palette = paletteList.get(position);
-
-        TextView tvNumPalette = convertView.findViewById(R.id.tvNumPaletteDestruction);
-        TextView tvNomClient = convertView.findViewById(R.id.tvNomClientDestruction);
-        TextView tvArticle = convertView.findViewById(R.id.tvArticleDestruction);
-        TextView tvQuantite = convertView.findViewById(R.id.tvQuantiteDestruction);
-        TextView tvEmplacement = convertView.findViewById(R.id.tvEmplacementDestruction);
-
-        tvNumPalette.setText("Palette : " + palette.getNum_palette());
-        tvNomClient.setText("Client : " + palette.getNom_client());
-        tvArticle.setText("Article : " + palette.getArticle());
-
-        int quantite = palette.getQuantite();
-        tvQuantite.setText(quantite > 0 ? "Quantité : " + quantite : "");
-
-        tvEmplacement.setText("Emplacement : " + palette.getEmplacement());
-
-        return convertView;
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        LignePalette<PaletteInfosResponse> ligne = getItem(position);
+        holder.tvNumPalette.setText(ligne.texte(NUMERO));
+        holder.tvNomClient.setText(ligne.texte(CLIENT));
+        holder.tvArticle.setText(ligne.texte(ARTICLE));
+        holder.tvQuantite.setText(ligne.texte(QUANTITE));
+        holder.tvEmplacement.setText(ligne.texte(EMPLACEMENT));
     }
-}
\ No newline at end of file
+}
@@ -1,91 +1,89 @@
 package com.mdo.gestionpalettes.adapters;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
-import android.widget.BaseAdapter;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.mdo.gestionpalettes.R;
 import com.mdo.gestionpalettes.models.PaletteInfosResponse;
 
-import java.util.List;
-
 /**
- * Adaptateur personnalisé pour afficher une liste de palettes à inventorier.
- * Utilisé pour générer dynamiquement des vues dans une liste affichant les
- * informations de palettes en attente d'inventaire.
+ * Adaptateur personnalisé pour afficher une liste de palettes à inventorier dans un RecyclerView.
+ * Affiche le numéro de palette, le client et l'emplacement ; les listes sont soumises par
+ * {@link #submitList} (voir PaletteListAdapter et PartitionsClients).
  */
-public class PaletteAInventorierAdapter extends BaseAdapter {
+public class PaletteAInventorierAdapter extends PaletteListAdapter<PaletteInfosResponse, PaletteAInventorierAdapter.ViewHolder> {
+
+    // Ordre des textes d'une ligne
+    private static final int NUMERO = 0;
+    private static final int CLIENT = 1;
+    private static final int EMPLACEMENT = 2;
 
     private final Context context;
-    private final List<PaletteInfosResponse> paletteList;
 
-    public PaletteAInventorierAdapter(Context context, List<PaletteInfosResponse> paletteList) {
+    public PaletteAInventorierAdapter(Context context) {
         this.context = context;
-        this.paletteList = paletteList;
     }
 
     /**
-     * Retourne le nombre total de palettes à inventorier dans la liste.
+     * Met en forme une palette (hors du thread principal, voir LignePalette).
      *
-     * @return Le nombre d'éléments dans la liste.
+     * @param palette La palette à inventorier.
+     * @return Sa ligne : numéro, client et emplacement.
      */
-    @Override
-    public int getCount() {
-        return paletteList.size();
+    public static LignePalette<PaletteInfosResponse> ligne(PaletteInfosResponse palette) {
+        return new LignePalette<>(palette, palette.getNum_palette(),
+                "Palette : " + palette.getNum_palette(),
+                "Client : " + palette.getNom_client(),
+                "Emplacement : " + palette.getEmplacement());
     }
 
     /**
-     * Retourne l'objet PaletteInfosResponse à la position donnée.
-     *
-     * @param position Position de l'élément.
-     * @return L'objet palette correspondant.
+     * Classe interne représentant une vue individuelle pour une palette à inventorier.
      */
-    @Override
-    public Object getItem(int position) {
-        return paletteList.get(position);
+    public static class ViewHolder extends RecyclerView.ViewHolder {
+        public TextView tvNumPalette;
+        public TextView tvNomClient;
+        public TextView tvEmplacement;
+
+        public ViewHolder(@NonNull View itemView) {
+            super(itemView);
+            tvNumPalette = itemView.findViewById(R.id.tvNumPalette);
+            tvNomClient = itemView.findViewById(R.id.tvNomClient);
+            tvEmplacement = itemView.findViewById(R.id.tvEmplacement);
+        }
     }
 
     /**
-     * Retourne l'identifiant de l'élément à la position donnée.
+     * Crée une nouvelle vue (ViewHolder) pour un élément de la liste.
      *
-     * @param position Position de l'élément.
-     * @return L'identifiant de l'élément (ici, la position).
+     * @param parent Le ViewGroup parent.
+     * @param viewType Le type de vue (un seul type ici).
+     * @return Un ViewHolder contenant la vue.
      */
+    @NonNull
     @Override
-    public long getItemId(int position) {
-        return position;
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(context).inflate(R.layout.item_palette_a_inventorier, parent, false);
+        return new ViewHolder(view);
     }
 
     /**
-     * Crée ou met à jour la vue pour afficher les informations d'une palette.
-     * Affiche le numéro de palette, le client et l'emplacement.
+     * Affiche les textes préparés de la ligne, sans mise en forme.
      *
-     * @param position Position de l'élément dans la liste.
-     * @param convertView Vue existante à réutiliser si disponible.
-     * @param parent Vue parente à laquelle la vue créée sera attachée.
-     * @return La vue complète pour l'élément courant.
+     * @param holder Le ViewHolder à remplir.
+     * @param position La position de l'élément dans la liste.
      */
-    @SuppressLint("SetTextI18n")
     @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        if (convertView == null) {
-            convertView = LayoutInflater.from(context).inflate(R.layout.item_palette_a_inventorier, parent, false);
-        }
-
-        PaletteInfosResponse palette = paletteList.get(position);
-
-        TextView tvNumPalette = convertView.findViewById(R.id.tvNumPalette);
-        TextView tvNomClient = convertView.findViewById(R.id.tvNomClient);
-        TextView tvEmplacement = convertView.findViewById(R.id.tvEmplacement);
-
-        tvNumPalette.setText("Palette : " + palette.getNum_palette());
-        tvNomClient.setText("Client : " + palette.getNom_client());
-        tvEmplacement.setText("Emplacement : " + palette.getEmplacement());
-
-        return convertView;
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        LignePalette<PaletteInfosResponse> ligne = getItem(position);
+        holder.tvNumPalette.setText(ligne.texte(NUMERO));
+        holder.tvNomClient.setText(ligne.texte(CLIENT));
+        holder.tvEmplacement.setText(ligne.texte(EMPLACEMENT));
     }
-}
\ No newline at end of file
+}
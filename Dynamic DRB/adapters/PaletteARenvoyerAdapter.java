@@ -1,6 +1,5 @@
 package com.mdo.gestionpalettes.adapters;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -13,21 +12,42 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.mdo.gestionpalettes.R;
 import com.mdo.gestionpalettes.models.PaletteInfosResponse;
 
-import java.util.List;
-
 
 /**
  * Adaptateur personnalisé pour afficher une liste de palettes à renvoyer dans un RecyclerView.
  * Affiche les informations principales : numéro, client, article, quantité, emplacement.
  */
-public class PaletteARenvoyerAdapter extends RecyclerView.Adapter<PaletteARenvoyerAdapter.ViewHolder> {
+public class PaletteARenvoyerAdapter extends PaletteListAdapter<PaletteInfosResponse, PaletteARenvoyerAdapter.ViewHolder> {
+
+    // Ordre des textes d'une ligne
+    private static final int NUMERO = 0;
+    private static final int CLIENT = 1;
+    private static final int ARTICLE = 2;
+    private static final int QUANTITE = 3;
+    private static final int EMPLACEMENT = 4;
 
     private final Context context;
-    private final List<PaletteInfosResponse> paletteList;
 
-    public PaletteARenvoyerAdapter(Context context, List<PaletteInfosResponse> paletteList) {
+    public PaletteARenvoyerAdapter(Context context) {
         this.context = context;
-        this.paletteList = paletteList;
+    }
+
+    /**
+     * Met en forme une palette (hors du thread principal, voir LignePalette).
+     * Une quantité nulle ou un emplacement vide laissent leur champ vide.
+     *
+     * @param palette La palette à renvoyer.
+     * @return Sa ligne : numéro, client, article, quantité et emplacement.
+     */
+    public static LignePalette<PaletteInfosResponse> ligne(PaletteInfosResponse palette) {
+        int quantite = palette.getQuantite();
+        String emplacement = palette.getEmplacement();
+        return new LignePalette<>(palette, palette.getNum_palette(),
+                "Palette : " + palette.getNum_palette(),
+                "Client : " + palette.getNom_client(),
+                "Article : " + palette.getArticle(),
+                quantite != 0 ? "Quantité : " + quantite : "",
+                emplacement != null && !emplacement.isEmpty() ? "Emplacement : " + emplacement : "");
     }
 
     /**
@@ -66,41 +86,18 @@ public class PaletteARenvoyerAdapter extends RecyclerView.Adapter<PaletteARenvoy
     }
 
     /**
-     * Remplit la vue du ViewHolder avec les données d'une palette.
+     * Affiche les textes préparés de la ligne, sans mise en forme.
      *
      * @param holder Le ViewHolder à remplir.
      * @param position La position de l'élément dans la liste.
      */
-    @SuppressLint("SetTextI18n")
     @Override
     public void onBindViewHolder(@NonNull PaletteARenvoyerAdapter.ViewHolder holder, int position) {
-        PaletteInfosResponse palette = paletteList.get(position);
-        holder.tvNumPalette.setText("Palette : " + palette.getNum_palette());
-        holder.tvNomClient.setText("Client : " + palette.getNom_client());
-        holder.tvArticle.setText("Article : " + palette.getArticle());
-
-        int quantite = palette.getQuantite();
-        if (quantite != 0) {
-            holder.tvQuantite.setText("Quantité : " + quantite);
-        } else {
-            holder.tvQuantite.setText("");
-        }
-
-        String emplacement = palette.getEmplacement();
-        if (emplacement != null && !emplacement.isEmpty()) {
-            holder.tvEmplacement.setText("Emplacement : " + emplacement);
-        } else {
-            holder.tvEmplacement.setText("");
-        }
-    }
-
-    /**
-     * Retourne le nombre total d'éléments dans la liste.
-     *
-     * @return Taille de la liste des palettes.
-     */
-    @Override
-    public int getItemCount() {
-        return paletteList.size();
+        LignePalette<PaletteInfosResponse> ligne = getItem(position);
+        holder.tvNumPalette.setText(ligne.texte(NUMERO));
+        holder.tvNomClient.setText(ligne.texte(CLIENT));
+        holder.tvArticle.setText(ligne.texte(ARTICLE));
+        holder.tvQuantite.setText(ligne.texte(QUANTITE));
+        holder.tvEmplacement.setText(ligne.texte(EMPLACEMENT));
     }
-}
\ No newline at end of file
+}
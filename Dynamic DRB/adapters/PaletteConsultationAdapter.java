@@ -17,26 +17,159 @@ import java.util.List;
 /**
  * Adaptateur RecyclerView pour afficher les palettes en mode consultation.
  * Affiche les détails de chaque palette : numéro, client, article, quantité, et emplacement.
+ * Les modifications sont notifiées par plage (pages, lignes isolées) ; les identifiants sont stables,
+ * dérivés du numéro de palette.
+ *
+ * Les lignes arrivent déjà mises en forme ({@link LignePalette}, préparées par {@link #ligne} sur le thread
+ * de lecture du flux ou du stockage local) : la liaison d'une vue ne fait que confier leurs textes aux TextView.
  */
 public class PaletteConsultationAdapter extends RecyclerView.Adapter<PaletteConsultationAdapter.ViewHolder> {
 
-    private List<PaletteConsultation> palettes;
+    // Ordre des textes d'une ligne
+    private static final int NUMERO = 0;
+    private static final int CLIENT = 1;
+    private static final int ARTICLE = 2;
+    private static final int QUANTITE = 3;
+    private static final int EMPLACEMENT = 4;
+    private static final int STATUT = 5;
 
-    public PaletteConsultationAdapter(List<PaletteConsultation> palettes) {
+    private List<LignePalette<PaletteConsultation>> palettes;
+
+    public PaletteConsultationAdapter(List<LignePalette<PaletteConsultation>> palettes) {
         this.palettes = palettes;
+        setHasStableIds(true);
+    }
+
+    /**
+     * Met en forme une palette (hors du thread principal, voir LignePalette).
+     *
+     * @param palette La palette consultée.
+     * @return Sa ligne : numéro, client, article, quantité, emplacement et statut.
+     */
+    public static LignePalette<PaletteConsultation> ligne(PaletteConsultation palette) {
+        return new LignePalette<>(palette, palette.getNum_palette(),
+                "N° Pal: " + palette.getNum_palette(),
+                "Client: " + palette.getNom_client(),
+                "Article: " + palette.getArticle(),
+                "Qté: " + palette.getQuantite(),
+                "Empl: " + palette.getEmplacement(),
+                "Statut : " + palette.getStatut());
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return palettes.get(position).getId();
     }
 
     /**
      * Met à jour la liste des palettes affichées et notifie l'adaptateur du changement.
      *
-     * @param palettes Nouvelle liste de palettes à afficher.
+     * @param palettes Nouvelle liste de lignes à afficher.
      */
     @SuppressLint("NotifyDataSetChanged")
-    public void setPalettes(List<PaletteConsultation> palettes) {
+    public void setPalettes(List<LignePalette<PaletteConsultation>> palettes) {
         this.palettes = palettes;
         notifyDataSetChanged();
     }
 
+    /**
+     * Ajoute un lot de palettes en fin de liste (lecture incrémentale d'une consultation).
+     * Seules les nouvelles lignes sont notifiées, sans redessiner celles déjà affichées.
+     *
+     * @param lot Les lignes à ajouter.
+     */
+    public void ajouterPalettes(List<LignePalette<PaletteConsultation>> lot) {
+        int debut = palettes.size();
+        palettes.addAll(lot);
+        notifyItemRangeInserted(debut, lot.size());
+    }
+
+    /**
+     * Insère une page de palettes en tête de liste (défilement vers le haut).
+     *
+     * @param page Les lignes à insérer, dans l'ordre d'affichage.
+     */
+    public void ajouterPalettesDebut(List<LignePalette<PaletteConsultation>> page) {
+        palettes.addAll(0, page);
+        notifyItemRangeInserted(0, page.size());
+    }
+
+    /**
+     * Retire les premières palettes de la liste (page sortie de la fenêtre gardée en mémoire).
+     *
+     * @param nombre Le nombre de palettes à retirer.
+     */
+    public void retirerDebut(int nombre) {
+        palettes.subList(0, nombre).clear();
+        notifyItemRangeRemoved(0, nombre);
+    }
+
+    /**
+     * Retire les dernières palettes de la liste (page sortie de la fenêtre gardée en mémoire).
+     *
+     * @param nombre Le nombre de palettes à retirer.
+     */
+    public void retirerFin(int nombre) {
+        int debut = palettes.size() - nombre;
+        palettes.subList(debut, palettes.size()).clear();
+        notifyItemRangeRemoved(debut, nombre);
+    }
+
+    /**
+     * Recherche une palette par numéro (la liste est triée par numéro, sans tenir compte de la casse).
+     *
+     * @param numPalette Le numéro recherché.
+     * @return Sa position, ou (-(position d'insertion) - 1) si elle n'est pas affichée.
+     */
+    public int position(String numPalette) {
+        int bas = 0;
+        int haut = palettes.size() - 1;
+        while (bas <= haut) {
+            int milieu = (bas + haut) >>> 1;
+            int comparaison = String.CASE_INSENSITIVE_ORDER.compare(palettes.get(milieu).getNumero(), numPalette);
+            if (comparaison < 0) {
+                bas = milieu + 1;
+            } else if (comparaison > 0) {
+                haut = milieu - 1;
+            } else {
+                return milieu;
+            }
+        }
+        return -(bas + 1);
+    }
+
+    /**
+     * Remplace une palette affichée par sa version à jour.
+     */
+    public void remplacer(int position, LignePalette<PaletteConsultation> ligne) {
+        palettes.set(position, ligne);
+        notifyItemChanged(position);
+    }
+
+    /**
+     * Insère une palette à la position donnée.
+     */
+    public void inserer(int position, LignePalette<PaletteConsultation> ligne) {
+        palettes.add(position, ligne);
+        notifyItemInserted(position);
+    }
+
+    /**
+     * Retire la palette à la position donnée.
+     */
+    public void retirer(int position) {
+        palettes.remove(position);
+        notifyItemRemoved(position);
+    }
+
+    /**
+     * @param position La position dans la liste affichée.
+     * @return La palette à cette position.
+     */
+    public PaletteConsultation getPalette(int position) {
+        return palettes.get(position).getPalette();
+    }
+
     /**
      * Crée une nouvelle vue (ViewHolder) à partir du layout XML.
      *
@@ -53,21 +186,20 @@ public class PaletteConsultationAdapter extends RecyclerView.Adapter<PaletteCons
     }
 
     /**
-     * Lie les données d'une palette au ViewHolder pour l'affichage.
+     * Lie les textes préparés d'une ligne au ViewHolder, sans mise en forme.
      *
      * @param holder Le ViewHolder à mettre à jour.
      * @param position Position de l'élément dans la liste.
      */
-    @SuppressLint("SetTextI18n")
     @Override
     public void onBindViewHolder(@NonNull PaletteConsultationAdapter.ViewHolder holder, int position) {
-        PaletteConsultation palette = palettes.get(position);
-        holder.tvNumPalette.setText("N° Pal: " + palette.getNum_palette());
-        holder.tvClient.setText("Client: " + palette.getNom_client());
-        holder.tvArticle.setText("Article: " + palette.getArticle());
-        holder.tvQuantite.setText("Qté: " + palette.getQuantite());
-        holder.tvEmplacement.setText("Empl: " + palette.getEmplacement());
-        holder.tvStatut.setText("Statut : " + palette.getStatut());
+        LignePalette<PaletteConsultation> ligne = palettes.get(position);
+        holder.tvNumPalette.setText(ligne.texte(NUMERO));
+        holder.tvClient.setText(ligne.texte(CLIENT));
+        holder.tvArticle.setText(ligne.texte(ARTICLE));
+        holder.tvQuantite.setText(ligne.texte(QUANTITE));
+        holder.tvEmplacement.setText(ligne.texte(EMPLACEMENT));
+        holder.tvStatut.setText(ligne.texte(STATUT));
     }
 
     /**
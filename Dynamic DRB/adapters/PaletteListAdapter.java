@@ -0,0 +1,56 @@
+package com.mdo.gestionpalettes.adapters;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.Objects;
+
+/**
+ * Base des adaptateurs de listes de palettes (RecyclerView), affichant des lignes déjà mises en forme
+ * ({@link LignePalette}).
+ *
+ * Les listes sont soumises par {@link #submitList} : la différence avec la liste affichée est calculée
+ * hors du thread principal (AsyncListDiffer), si bien qu'une palette scannée ou supprimée disparaît
+ * seule, avec son animation, sans redessiner l'écran. Une liste soumise ne doit plus être modifiée :
+ * soumettre une copie de la liste de travail après chaque changement.
+ *
+ * Les identifiants sont stables et dérivés du numéro de palette, qui identifie aussi une ligne pour le différentiel ;
+ * deux versions d'une ligne ont le même contenu si elles affichent les mêmes textes.
+ *
+ * @param <T> Le type de palette affiché.
+ * @param <VH> Le ViewHolder de la ligne.
+ */
+public abstract class PaletteListAdapter<T, VH extends RecyclerView.ViewHolder> extends ListAdapter<LignePalette<T>, VH> {
+
+    /**
+     * Interface pour écouter les demandes de suppression d'une palette (bouton de la ligne).
+     * L'écran retire la palette de sa liste de travail puis soumet la nouvelle liste.
+     *
+     * @param <T> Le type de palette.
+     */
+    public interface OnPaletteSupprimeeListener<T> {
+        void onPaletteSupprimee(LignePalette<T> ligne);
+    }
+
+    protected PaletteListAdapter() {
+        super(new DiffUtil.ItemCallback<LignePalette<T>>() {
+            @Override
+            public boolean areItemsTheSame(@NonNull LignePalette<T> ancienne, @NonNull LignePalette<T> nouvelle) {
+                return Objects.equals(ancienne.getNumero(), nouvelle.getNumero());
+            }
+
+            @Override
+            public boolean areContentsTheSame(@NonNull LignePalette<T> ancienne, @NonNull LignePalette<T> nouvelle) {
+                return ancienne.memeContenu(nouvelle);
+            }
+        });
+        setHasStableIds(true);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getId();
+    }
+}
@@ -1,105 +1,107 @@
 package com.mdo.gestionpalettes.adapters;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.TextView;
 import android.widget.Button;
-import android.widget.BaseAdapter;
-import android.widget.Toast;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.mdo.gestionpalettes.R;
 import com.mdo.gestionpalettes.models.ValidationRenvoie;
 
-import java.util.List;
-
-
 /**
  * Adaptateur personnalisé pour afficher les palettes à renvoyer
- * dans une liste avec possibilité de suppression.
+ * dans une liste (RecyclerView) avec possibilité de suppression.
  */
-public class PaletteRenvoieAdapter extends BaseAdapter {
+public class PaletteRenvoieAdapter extends PaletteListAdapter<ValidationRenvoie, PaletteRenvoieAdapter.ViewHolder> {
+
+    // Ordre des textes d'une ligne
+    private static final int NUMERO = 0;
+    private static final int QUANTITE = 1;
+    private static final int EMPLACEMENT = 2;
 
     private final Context context;
-    private final List<ValidationRenvoie> paletteList;
+    private final OnPaletteSupprimeeListener<ValidationRenvoie> listener;
 
     /**
      * Constructeur de l'adaptateur.
      *
-     * @param context Le contexte de l'activité ou de la vue.
-     * @param paletteList La liste des palettes à afficher.
+     * @param context Le contexte de l'activité.
+     * @param listener Le listener appelé lorsqu'une palette doit être supprimée de la liste.
      */
-    public PaletteRenvoieAdapter(Context context, List<ValidationRenvoie> paletteList) {
+    public PaletteRenvoieAdapter(Context context, OnPaletteSupprimeeListener<ValidationRenvoie> listener) {
         this.context = context;
-        this.paletteList = paletteList;
+        this.listener = listener;
     }
 
     /**
-     * Retourne le nombre total de palettes dans la liste.
+     * Met en forme une palette (hors du thread principal, voir LignePalette).
      *
-     * @return Le nombre d'éléments.
+     * @param palette La palette validée.
+     * @return Sa ligne : numéro, quantité et emplacement.
      */
-    @Override
-    public int getCount() {
-        return paletteList.size();
+    public static LignePalette<ValidationRenvoie> ligne(ValidationRenvoie palette) {
+        return new LignePalette<>(palette, palette.getNumPalette(),
+                "Palette : " + palette.getNumPalette(),
+                "Quantité : " + palette.getQuantite(),
+                "Emplacement : " + palette.getEmplacement());
     }
 
     /**
-     * Retourne la palette à la position spécifiée.
-     *
-     * @param position La position de la palette.
-     * @return L'objet ValidationRenvoie correspondant.
+     * Classe interne représentant une vue individuelle pour une palette validée.
      */
-    @Override
-    public Object getItem(int position) {
-        return paletteList.get(position);
+    public static class ViewHolder extends RecyclerView.ViewHolder {
+        public TextView tvNumPalette;
+        public TextView tvQuantite;
+        public TextView tvEmplacement;
+        public Button btnSupprimer;
+
+        public ViewHolder(@NonNull View itemView) {
+            super(itemView);
+            tvNumPalette = itemView.findViewById(R.id.tvNumPalette);
+            tvQuantite = itemView.findViewById(R.id.tvQuantite);
+            tvEmplacement = itemView.findViewById(R.id.tvEmplacement);
+            btnSupprimer = itemView.findViewById(R.id.btnSupprimer);
+        }
     }
 
     /**
-     * Retourne l'identifiant de l'élément à la position donnée.
+     * Crée une nouvelle vue (ViewHolder) pour un élément de la liste.
+     * Le bouton de suppression lit la position au moment du clic : elle peut avoir changé depuis la liaison.
      *
-     * @param position La position de l'élément.
-     * @return L'identifiant de l'élément (ici, sa position).
+     * @param parent Le ViewGroup parent.
+     * @param viewType Le type de vue (un seul type ici).
+     * @return Un ViewHolder contenant la vue.
      */
+    @NonNull
     @Override
-    public long getItemId(int position) {
-        return position;
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(context).inflate(R.layout.item_palette_renvoie, parent, false);
+        ViewHolder holder = new ViewHolder(view);
+        holder.btnSupprimer.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (position != RecyclerView.NO_POSITION && listener != null) {
+                listener.onPaletteSupprimee(getItem(position));
+            }
+        });
+        return holder;
     }
 
     /**
-     * Génère et retourne la vue pour une palette à la position donnée.
+     * Affiche les textes préparés de la ligne, sans mise en forme.
      *
-     * @param position Position de l'élément dans la liste.
-     * @param convertView Vue réutilisable.
-     * @param parent Vue parente.
-     * @return La vue configurée pour l'élément.
+     * @param holder Le ViewHolder à remplir.
+     * @param position La position de l'élément dans la liste.
      */
-    @SuppressLint("SetTextI18n")
     @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        if (convertView == null) {
-            convertView = LayoutInflater.from(context).inflate(R.layout.item_palette_renvoie, parent, false);
-        }
-
-        ValidationRenvoie palette = paletteList.get(position);
-
-        TextView tvNumPalette = convertView.findViewById(R.id.tvNumPalette);
-        TextView tvQuantite = convertView.findViewById(R.id.tvQuantite);
-        TextView tvEmplacement = convertView.findViewById(R.id.tvEmplacement);
-        Button btnSupprimer = convertView.findViewById(R.id.btnSupprimer);
-
-        tvNumPalette.setText("Palette : " + palette.getNumPalette());
-        tvQuantite.setText("Quantité : " + palette.getQuantite());
-        tvEmplacement.setText("Emplacement : " + palette.getEmplacement());
-
-        btnSupprimer.setOnClickListener(v -> {
-            paletteList.remove(position);
-            notifyDataSetChanged();
-            Toast.makeText(context, "Palette supprimée", Toast.LENGTH_SHORT).show();
-        });
-
-        return convertView;
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        LignePalette<ValidationRenvoie> ligne = getItem(position);
+        holder.tvNumPalette.setText(ligne.texte(NUMERO));
+        holder.tvQuantite.setText(ligne.texte(QUANTITE));
+        holder.tvEmplacement.setText(ligne.texte(EMPLACEMENT));
     }
-}
\ No newline at end of file
+}
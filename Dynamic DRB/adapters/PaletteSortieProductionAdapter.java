@@ -1,107 +1,107 @@
 package com.mdo.gestionpalettes.adapters;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.BaseAdapter;
 import android.widget.Button;
 import android.widget.TextView;
-import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.mdo.gestionpalettes.R;
 import com.mdo.gestionpalettes.models.ValidationSortieProduction;
 
-import java.util.List;
-
-
 /**
- * Adaptateur personnalisé pour gérer l'affichage des palettes en attente de passage en production.
+ * Adaptateur personnalisé pour gérer l'affichage des palettes en attente de passage en production (RecyclerView).
  * Permet à l'utilisateur de voir le numéro de palette, la quantité, et de supprimer une palette de la liste.
  */
-public class PaletteSortieProductionAdapter extends BaseAdapter {
+public class PaletteSortieProductionAdapter extends PaletteListAdapter<ValidationSortieProduction, PaletteSortieProductionAdapter.ViewHolder> {
+
+    // Ordre des textes d'une ligne
+    private static final int NUMERO = 0;
+    private static final int QUANTITE = 1;
+    private static final int EMPLACEMENT = 2;
 
     private final Context context;
-    private final List<ValidationSortieProduction> paletteList;
+    private final OnPaletteSupprimeeListener<ValidationSortieProduction> listener;
 
     /**
      * Constructeur de l'adaptateur.
      *
-     * @param context Le contexte de l'application ou de l'activité appelante.
-     * @param paletteList La liste des palettes destinées à la sortie production.
+     * @param context Le contexte de l'activité.
+     * @param listener Le listener appelé lorsqu'une palette doit être supprimée de la liste.
      */
-    public PaletteSortieProductionAdapter(Context context, List<ValidationSortieProduction> paletteList) {
+    public PaletteSortieProductionAdapter(Context context, OnPaletteSupprimeeListener<ValidationSortieProduction> listener) {
         this.context = context;
-        this.paletteList = paletteList;
+        this.listener = listener;
     }
 
     /**
-     * Retourne le nombre total d'éléments dans la liste.
+     * Met en forme une palette (hors du thread principal, voir LignePalette).
      *
-     * @return Le nombre de palettes.
+     * @param palette La palette validée.
+     * @return Sa ligne : numéro, quantité et emplacement.
      */
-    @Override
-    public int getCount() {
-        return paletteList.size();
+    public static LignePalette<ValidationSortieProduction> ligne(ValidationSortieProduction palette) {
+        return new LignePalette<>(palette, palette.getNumPalette(),
+                "Palette : " + palette.getNumPalette(),
+                "Quantité : " + palette.getQuantite(),
+                "Emplacement : " + palette.getEmplacement());
     }
 
     /**
-     * Retourne l'objet ValidationSortieProduction à une position spécifique.
-     *
-     * @param position La position dans la liste.
-     * @return L'objet ValidationSortieProduction correspondant.
+     * Classe interne représentant une vue individuelle pour une palette validée.
      */
-    @Override
-    public Object getItem(int position) {
-        return paletteList.get(position);
+    public static class ViewHolder extends RecyclerView.ViewHolder {
+        public TextView tvNumPalette;
+        public TextView tvQuantite;
+        public TextView tvEmplacement;
+        public Button btnSupprimer;
+
+        public ViewHolder(@NonNull View itemView) {
+            super(itemView);
+            tvNumPalette = itemView.findViewById(R.id.tvNumPalette);
+            tvQuantite = itemView.findViewById(R.id.tvQuantite);
+            tvEmplacement = itemView.findViewById(R.id.tvEmplacement);
+            btnSupprimer = itemView.findViewById(R.id.btnSupprimer);
+        }
     }
 
     /**
-     * Retourne l'identifiant unique pour un élément donné.
+     * Crée une nouvelle vue (ViewHolder) pour un élément de la liste.
+     * Le bouton de suppression lit la position au moment du clic : elle peut avoir changé depuis la liaison.
      *
-     * @param position La position de l'élément.
-     * @return L'identifiant, ici la position elle-même.
+     * @param parent Le ViewGroup parent.
+     * @param viewType Le type de vue (un seul type ici).
+     * @return Un ViewHolder contenant la vue.
      */
+    @NonNull
     @Override
-    public long getItemId(int position) {
-        return position;
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(context).inflate(R.layout.item_palette_sortie_production, parent, false);
+        ViewHolder holder = new ViewHolder(view);
+        holder.btnSupprimer.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (position != RecyclerView.NO_POSITION && listener != null) {
+                listener.onPaletteSupprimee(getItem(position));
+            }
+        });
+        return holder;
     }
 
     /**
-     * Construit et retourne la vue associée à une palette pour l'afficher dans la liste.
-     * Affiche le numéro de palette et la quantité, et permet la suppression de la palette.
+     * Affiche les textes préparés de la ligne, sans mise en forme.
      *
-     * @param position La position de l'élément à afficher.
-     * @param convertView Vue réutilisable.
-     * @param parent Le groupe de vues parent.
-     * @return La vue configurée pour l'élément.
+     * @param holder Le ViewHolder à remplir.
+     * @param position La position de l'élément dans la liste.
      */
-    @SuppressLint("SetTextI18n")
     @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        if (convertView == null) {
-            convertView = LayoutInflater.from(context).inflate(R.layout.item_palette_sortie_production, parent, false);
-        }
-
-        ValidationSortieProduction palette = paletteList.get(position);
-
-        TextView tvNumPalette = convertView.findViewById(R.id.tvNumPalette);
-        TextView tvQuantite = convertView.findViewById(R.id.tvQuantite);
-        Button btnSupprimer = convertView.findViewById(R.id.btnSupprimer);
-        TextView tvEmplacement = convertView.findViewById(R.id.tvEmplacement);
-
-
-        tvEmplacement.setText("Emplacement : " + palette.getEmplacement());
-        tvNumPalette.setText("Palette : " + palette.getNumPalette());
-        tvQuantite.setText("Quantité : " + palette.getQuantite());
-
-        btnSupprimer.setOnClickListener(v -> {
-            paletteList.remove(position);
-            notifyDataSetChanged();
-            Toast.makeText(context, "Palette supprimée", Toast.LENGTH_SHORT).show();
-        });
-
-        return convertView;
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        LignePalette<ValidationSortieProduction> ligne = getItem(position);
+        holder.tvNumPalette.setText(ligne.texte(NUMERO));
+        holder.tvQuantite.setText(ligne.texte(QUANTITE));
+        holder.tvEmplacement.setText(ligne.texte(EMPLACEMENT));
     }
-}
\ No newline at end of file
+}
@@ -1,88 +1,108 @@
 package com.mdo.gestionpalettes.adapters;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.mdo.gestionpalettes.R;
 import com.mdo.gestionpalettes.models.ValidationInventaire;
 
-import java.util.List;
-
 /**
- * Adaptateur personnalisé pour afficher les palettes validées dans le mode inventaire.
+ * Adaptateur personnalisé pour afficher les palettes validées dans le mode inventaire (RecyclerView).
  * Permet l'affichage des informations de chaque palette (numéro, quantité, emplacement),
  * ainsi que la possibilité de les supprimer de la liste.
  */
-public class PaletteValideeAdapter extends ArrayAdapter<ValidationInventaire> {
+public class PaletteValideeAdapter extends PaletteListAdapter<ValidationInventaire, PaletteValideeAdapter.ViewHolder> {
 
-    /**
-     * Interface pour écouter les événements de suppression de palette dans l'adaptateur.
-     */
-    public interface OnPaletteSupprimeeListener {
-        void onPaletteSupprimee(ValidationInventaire palette);
-    }
+    // Ordre des textes d'une ligne
+    private static final int NUMERO = 0;
+    private static final int QUANTITE = 1;
+    private static final int EMPLACEMENT = 2;
 
-    private final List<ValidationInventaire> palettes;
-    private final OnPaletteSupprimeeListener listener;
+    private final Context context;
+    private final OnPaletteSupprimeeListener<ValidationInventaire> listener;
 
     /**
      * Constructeur de l'adaptateur.
      *
-     * @param context Le contexte de l'application.
-     * @param palettes La liste des palettes validées à afficher.
-     * @param listener Le listener à appeler lorsqu'une palette est supprimée.
+     * @param context Le contexte de l'activité.
+     * @param listener Le listener appelé lorsqu'une palette doit être supprimée de la liste.
      */
-    public PaletteValideeAdapter(Context context, List<ValidationInventaire> palettes, OnPaletteSupprimeeListener listener) {
-        super(context, 0, palettes);
-        this.palettes = palettes;
+    public PaletteValideeAdapter(Context context, OnPaletteSupprimeeListener<ValidationInventaire> listener) {
+        this.context = context;
         this.listener = listener;
     }
 
     /**
-     * Construit et retourne la vue pour un élément de la liste.
+     * Met en forme une palette (hors du thread principal, voir LignePalette).
      *
-     * @param position La position de l'élément dans la liste.
-     * @param convertView La vue réutilisable, si disponible.
-     * @param parent Le parent auquel la vue sera attachée.
-     * @return La vue correspondant à l'élément de la liste.
+     * @param palette La palette validée.
+     * @return Sa ligne : numéro, quantité et emplacement.
      */
-    @SuppressLint("SetTextI18n")
-    @NonNull
-    @Override
-    public View getView(int position, View convertView, @NonNull ViewGroup parent) {
-        ValidationInventaire palette = getItem(position);
-
-        if (convertView == null) {
-            convertView = LayoutInflater.from(getContext())
-                    .inflate(R.layout.item_palette_validee, parent, false);
-        }
+    public static LignePalette<ValidationInventaire> ligne(ValidationInventaire palette) {
+        return new LignePalette<>(palette, palette.getNumPalette(),
+                "Palette : " + palette.getNumPalette(),
+                "Quantité : " + palette.getQuantite(),
+                "Emplacement : " + palette.getEmplacement());
+    }
 
-        TextView tvNumPalette = convertView.findViewById(R.id.tvNumPalette);
-        TextView tvQuantite = convertView.findViewById(R.id.tvQuantite);
-        TextView tvEmplacement = convertView.findViewById(R.id.tvEmplacement);
-        Button btnSupprimer = convertView.findViewById(R.id.btnSupprimer);
+    /**
+     * Classe interne représentant une vue individuelle pour une palette validée.
+     */
+    public static class ViewHolder extends RecyclerView.ViewHolder {
+        public TextView tvNumPalette;
+        public TextView tvQuantite;
+        public TextView tvEmplacement;
+        public Button btnSupprimer;
 
-        assert palette != null;
-        tvNumPalette.setText("Palette : " + palette.getNumPalette());
-        tvQuantite.setText("Quantité : " + palette.getQuantite());
-        tvEmplacement.setText("Emplacement : " + palette.getEmplacement());
+        public ViewHolder(@NonNull View itemView) {
+            super(itemView);
+            tvNumPalette = itemView.findViewById(R.id.tvNumPalette);
+            tvQuantite = itemView.findViewById(R.id.tvQuantite);
+            tvEmplacement = itemView.findViewById(R.id.tvEmplacement);
+            btnSupprimer = itemView.findViewById(R.id.btnSupprimer);
+        }
+    }
 
-        btnSupprimer.setOnClickListener(v -> {
-            palettes.remove(position);
-            notifyDataSetChanged();
-            if (listener != null) {
-                listener.onPaletteSupprimee(palette);
+    /**
+     * Crée une nouvelle vue (ViewHolder) pour un élément de la liste.
+     * Le bouton de suppression lit la position au moment du clic : elle peut avoir changé depuis la liaison.
+     *
+     * @param parent Le ViewGroup parent.
+     * @param viewType Le type de vue (un seul type ici).
+     * @return Un ViewHolder contenant la vue.
+     */
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(context).inflate(R.layout.item_palette_validee, parent, false);
+        ViewHolder holder = new ViewHolder(view);
+        holder.btnSupprimer.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (position != RecyclerView.NO_POSITION && listener != null) {
+                listener.onPaletteSupprimee(getItem(position));
             }
         });
+        return holder;
+    }
 
-        return convertView;
+    /**
+     * Affiche les textes préparés de la ligne, sans mise en forme.
+     *
+     * @param holder Le ViewHolder à remplir.
+     * @param position La position de l'élément dans la liste.
+     */
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        LignePalette<ValidationInventaire> ligne = getItem(position);
+        holder.tvNumPalette.setText(ligne.texte(NUMERO));
+        holder.tvQuantite.setText(ligne.texte(QUANTITE));
+        holder.tvEmplacement.setText(ligne.texte(EMPLACEMENT));
     }
-}
\ No newline at end of file
+}
@@ -1,16 +1,29 @@
 package com.mdo.gestionpalettes.api;
 
-import com.mdo.gestionpalettes.activities.LoginActivity;
+import com.mdo.gestionpalettes.models.ModelesTypeAdapterFactory;
 import com.mdo.gestionpalettes.utils.AuthInterceptor;
+import com.mdo.gestionpalettes.utils.CompressionInterceptor;
+import com.mdo.gestionpalettes.utils.RetryInterceptor;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
 import android.content.Context;
-import android.content.Intent;
-import android.content.SharedPreferences;
 
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.Response;
 
@@ -21,8 +34,32 @@ import retrofit2.converter.gson.GsonConverterFactory;
 /**
  * Classe utilitaire pour fournir des instances de Retrofit configurées avec l'intercepteur d'authentification.
  * Gère deux clients Retrofit : un pour les appels standards et un autre pour les appels spécifiques à l'inventaire.
+ * Les deux partagent un seul client OkHttp (pool de connexions, sessions TLS et dispatcher communs).
  */
 public class ApiClient {
+    private static final String BASE_URL = "https://apimdo.fr/";
+
+    // Connexions gardées ouvertes : les terminaux enchaînent les écrans sur quelques minutes
+    private static final int CONNEXIONS_INACTIVES_MAX = 5;
+    private static final long DUREE_CONNEXION_INACTIVE_MIN = 5;
+
+    // Un seul hôte : les limites du dispatcher s'appliquent en pratique à apimdo.fr
+    private static final int REQUETES_MAX = 16;
+    private static final int REQUETES_MAX_PAR_HOTE = 8;
+
+    // Cache disque des listes (emplacements, palettes à traiter), revalidées par ETag
+    private static final long TAILLE_CACHE_HTTP = 20L * 1024 * 1024;
+
+    // Gson sans réflexion : les modèles passent par les adaptateurs de ModelesTypeAdapterFactory
+    private static final Gson gsonStandard = new GsonBuilder()
+            .registerTypeAdapterFactory(ModelesTypeAdapterFactory.standard())
+            .create();
+    private static final Gson gsonInventaire = new GsonBuilder()
+            .excludeFieldsWithoutExposeAnnotation()
+            .registerTypeAdapterFactory(ModelesTypeAdapterFactory.exposesSeulement())
+            .create();
+
+    private static OkHttpClient httpClient = null;
     private static Retrofit retrofitDefault = null;
     private static Retrofit retrofitInventaire = null;
 
@@ -32,19 +69,12 @@ public class ApiClient {
      * @param context Le contexte Android pour accéder aux préférences partagées.
      * @return L'instance Retrofit configurée.
      */
-    public static Retrofit getClient(Context context) {
+    public static synchronized Retrofit getClient(Context context) {
         if (retrofitDefault == null) {
-            OkHttpClient client = new OkHttpClient.Builder()
-                    .addInterceptor(new AuthInterceptor(context))
-                    .build();
-
-            // Gson par défaut sérialisé
-            Gson gson = new GsonBuilder().create();
-
             retrofitDefault = new Retrofit.Builder()
-                    .baseUrl("https://apimdo.fr/")
-                    .addConverterFactory(GsonConverterFactory.create(gson))
-                    .client(client)
+                    .baseUrl(BASE_URL)
+                    .addConverterFactory(GsonConverterFactory.create(gsonStandard))
+                    .client(getHttpClient(context))
                     .build();
         }
         return retrofitDefault;
@@ -56,62 +86,86 @@ public class ApiClient {
      * @param context Le contexte Android pour accéder aux préférences partagées.
      * @return L'instance Retrofit configurée pour l'inventaire.
      */
-    public static Retrofit getInventaireClient(Context context) {
+    public static synchronized Retrofit getInventaireClient(Context context) {
         if (retrofitInventaire == null) {
-            OkHttpClient client = getHttpClient(context);
-
-            Gson gson = new GsonBuilder()
-                    .excludeFieldsWithoutExposeAnnotation()
-                    .create();
-
             retrofitInventaire = new Retrofit.Builder()
-                    .baseUrl("https://apimdo.fr/")
-                    .addConverterFactory(GsonConverterFactory.create(gson))
-                    .client(client)
+                    .baseUrl(BASE_URL)
+                    .addConverterFactory(GsonConverterFactory.create(gsonInventaire))
+                    .client(getHttpClient(context))
                     .build();
         }
         return retrofitInventaire;
     }
 
     /**
-     * Construit un client OkHttp avec gestion automatique du token d'authentification.
-     * Si le token est invalide (erreur 401), l'utilisateur est redirigé vers l'écran de connexion.
+     * @return Le Gson utilisé par le client par défaut (tous les champs).
+     */
+    public static Gson getGson() {
+        return gsonStandard;
+    }
+
+    /**
+     * @return Le Gson utilisé par le client d'inventaire (champs @Expose seulement).
+     */
+    public static Gson getGsonInventaire() {
+        return gsonInventaire;
+    }
+
+    /**
+     * Ouvre à l'avance une connexion TCP+TLS vers l'API, pendant que l'utilisateur est sur l'écran de connexion.
+     * La connexion reste ensuite dans le pool partagé, de sorte que le premier scan ne paie pas la poignée de main.
+     * Aucune erreur n'est remontée : en cas d'échec, le premier vrai appel ouvrira simplement sa propre connexion.
      *
-     * @param context Le contexte Android pour récupérer le token et lancer l'activité de connexion si nécessaire.
-     * @return L'instance OkHttpClient avec intercepteur personnalisé.
+     * @param context Le contexte Android utilisé pour initialiser le client partagé.
      */
-    private static OkHttpClient getHttpClient(Context context) {
-        return new OkHttpClient.Builder()
-                .addInterceptor(chain -> {
-                    Request original = chain.request();
-
-                    SharedPreferences prefs = context.getSharedPreferences("auth", Context.MODE_PRIVATE);
-                    String token = prefs.getString("token", "");
-
-                    Request.Builder requestBuilder = original.newBuilder();
-                    if (!token.isEmpty()) {
-                        requestBuilder.header("Authorization", "Bearer " + token);
-                    }
-
-                    Request request = requestBuilder.build();
-                    Response response = chain.proceed(request);
-
-                    if (response.code() == 401) {
-                        if (context instanceof android.app.Activity) {
-                            ((android.app.Activity) context).runOnUiThread(() -> {
-                                SharedPreferences.Editor editor = prefs.edit();
-                                editor.remove("token");
-                                editor.apply();
-
-                                Intent intent = new Intent(context, LoginActivity.class);
-                                intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-                                intent.putExtra("reason", "expired");
-                                context.startActivity(intent);
-                            });
-                        }
-                    }
-                    return response;
-                })
+    public static void prechaufferConnexion(Context context) {
+        Request request = new Request.Builder()
+                .url(BASE_URL)
+                .head()
                 .build();
+
+        getHttpClient(context).newCall(request).enqueue(new Callback() {
+            @Override
+            public void onResponse(@NonNull Call call, @NonNull Response response) {
+                response.close();
+            }
+
+            @Override
+            public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                // Rien à faire : le préchauffage est opportuniste
+            }
+        });
+    }
+
+    /**
+     * Construit (une seule fois) le client OkHttp partagé par toutes les instances Retrofit.
+     * Le token d'authentification est ajouté par {@link AuthInterceptor}, qui redirige aussi
+     * vers l'écran de connexion en cas d'erreur 401. Les réponses de liste sont conservées
+     * dans un cache disque borné (voir {@link ListeCache}). Les validations en lot sont compressées
+     * par {@link CompressionInterceptor}, et les échecs transitoires relancés par {@link RetryInterceptor}.
+     *
+     * @param context Le contexte Android ; seul le contexte applicatif est conservé.
+     * @return L'instance OkHttpClient partagée.
+     */
+    private static synchronized OkHttpClient getHttpClient(Context context) {
+        if (httpClient == null) {
+            // Client statique : il ne doit retenir aucun écran
+            Context appli = context.getApplicationContext();
+            Dispatcher dispatcher = new Dispatcher();
+            dispatcher.setMaxRequests(REQUETES_MAX);
+            dispatcher.setMaxRequestsPerHost(REQUETES_MAX_PAR_HOTE);
+
+            httpClient = new OkHttpClient.Builder()
+                    .connectionPool(new ConnectionPool(CONNEXIONS_INACTIVES_MAX, DUREE_CONNEXION_INACTIVE_MIN, TimeUnit.MINUTES))
+                    .dispatcher(dispatcher)
+                    .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                    .retryOnConnectionFailure(true)
+                    .cache(new Cache(new File(appli.getCacheDir(), "http"), TAILLE_CACHE_HTTP))
+                    .addInterceptor(new AuthInterceptor(appli))
+                    .addInterceptor(new CompressionInterceptor())
+                    .addInterceptor(new RetryInterceptor())
+                    .build();
+        }
+        return httpClient;
     }
 }
@@ -1,5 +1,6 @@
 package com.mdo.gestionpalettes.api;
 
+import com.mdo.gestionpalettes.models.DeltaPalettes;
 import com.mdo.gestionpalettes.models.LoginResponse;
 import com.mdo.gestionpalettes.models.PaletteInfosResponse;
 import com.mdo.gestionpalettes.models.EntreePalette;
@@ -8,10 +9,14 @@ import com.mdo.gestionpalettes.models.MiseAJourEmplacement;
 import com.mdo.gestionpalettes.models.ValidationInventaire;
 import com.mdo.gestionpalettes.models.ValidationDestruction;
 import com.mdo.gestionpalettes.models.PaletteConsultation;
+import com.mdo.gestionpalettes.models.ResultatValidation;
 import com.mdo.gestionpalettes.models.ValidationRenvoie;
 import com.mdo.gestionpalettes.models.ValidationSortieProduction;
+import com.mdo.gestionpalettes.utils.CompressionInterceptor;
+import com.mdo.gestionpalettes.utils.Idempotence;
 
 import java.util.List;
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.http.Query;
 import retrofit2.http.GET;
@@ -21,12 +26,19 @@ import retrofit2.http.Body;
 import retrofit2.http.FormUrlEncoded;
 import retrofit2.http.Field;
 import retrofit2.http.Path;
+import retrofit2.http.Header;
+import retrofit2.http.Headers;
+import retrofit2.http.Streaming;
 
 
 /**
  * Interface définissant les endpoints REST utilisés dans l'application Android via Retrofit.
  * Regroupe les appels pour l'authentification, la gestion des emplacements, l'entrée, 
  * l'inventaire, la destruction, le renvoi, la production et la consultation des palettes.
+ * Les listes de palettes à traiter se synchronisent par différence (voir {@link SynchroPalettes}),
+ * la liste des emplacements prend un en-tête Cache-Control (voir {@link ListeCache}).
+ * Les validations en lot envoient leur corps compressé en gzip (voir {@link CompressionInterceptor}).
+ * Les appels qui modifient des données portent une clé d'idempotence (voir {@link Idempotence}).
  */
 public interface ApiService {
 
@@ -46,11 +58,11 @@ public interface ApiService {
     // -------------------------------
     // Emplacements dans l'entrepôt
     @GET("/emplacement")
-    Call<List<EmplacementEntrepot>> getEmplacements();
+    Call<List<EmplacementEntrepot>> getEmplacements(@Header("Cache-Control") String cacheControl);
 
     // PATCH emplacement palette (optionnel)
     @PATCH("/emplacement/palette")
-    Call<Void> majEmplacement(@Body MiseAJourEmplacement body);
+    Call<Void> majEmplacement(@Body MiseAJourEmplacement body, @Header(Idempotence.EN_TETE) String cleIdempotence);
 
     // -------------------------------
     // Gestion des entrées palettes
@@ -59,39 +71,43 @@ public interface ApiService {
 
     // Entrée palette (body JSON)
     @POST("/entree")
-    Call<Void> entreePalette(@Body EntreePalette entreePalette);
+    Call<Void> entreePalette(@Body EntreePalette entreePalette, @Header(Idempotence.EN_TETE) String cleIdempotence);
 
     // -------------------------------
     // Inventaire des palettes
+    @Headers(CompressionInterceptor.ACTIVER)
     @POST("/inventaire/valider_inventaire")
-    Call<Void> validerInventaire(@Body List<ValidationInventaire> palettes);
+    Call<ResultatValidation> validerInventaire(@Body List<ValidationInventaire> palettes, @Header(Idempotence.EN_TETE) String cleIdempotence);
 
     @GET("/inventaire")
-    Call<List<PaletteInfosResponse>> getPalettesAInventorier();
+    Call<DeltaPalettes> synchroniserAInventorier(@Query("depuis") String depuis);
 
     // -------------------------------
     // Destruction des palettes
+    @Headers(CompressionInterceptor.ACTIVER)
     @POST("/sorties/valider_destruction")
-    Call<Void> validerDestruction(@Body List<ValidationDestruction> palettes);
+    Call<ResultatValidation> validerDestruction(@Body List<ValidationDestruction> palettes, @Header(Idempotence.EN_TETE) String cleIdempotence);
 
     @GET("/sorties/destruction")
-    Call<List<PaletteInfosResponse>> getPalettesADetruire();
+    Call<DeltaPalettes> synchroniserADetruire(@Query("depuis") String depuis);
 
     // -------------------------------
     // Renvoi des palettes
     @GET("sorties/renvoie")
-    Call<List<PaletteInfosResponse>> getPalettesARenvoyer();
+    Call<DeltaPalettes> synchroniserARenvoyer(@Query("depuis") String depuis);
 
+    @Headers(CompressionInterceptor.ACTIVER)
     @POST("/sorties/valider_renvoie")
-    Call<Void> validerRenvoie(@Body List<ValidationRenvoie> palettes);
+    Call<ResultatValidation> validerRenvoie(@Body List<ValidationRenvoie> palettes, @Header(Idempotence.EN_TETE) String cleIdempotence);
 
     // -------------------------------
     // Sortie en production
     @GET("/sorties/production")
-    Call<List<PaletteConsultation>> getPalettesEnStock();
+    Call<DeltaPalettes> synchroniserEnStock(@Query("depuis") String depuis);
 
+    @Headers(CompressionInterceptor.ACTIVER)
     @POST("/sorties/valider_production")
-    Call<Void> validerSortieProduction(@Body List<ValidationSortieProduction> palettes);
+    Call<ResultatValidation> validerSortieProduction(@Body List<ValidationSortieProduction> palettes, @Header(Idempotence.EN_TETE) String cleIdempotence);
 
     // -------------------------------
     // Consultation des palettes
@@ -103,4 +119,30 @@ public interface ApiService {
             @Query("statut") String statut,
             @Query("emplacement") String emplacement
     );
+
+    // Même endpoint, corps non bufferisé : lu par lots avec FluxConsultation.
+    // Avec "limite", une page par curseur sur num_palette ("apres" / "avant" exclus).
+    @Streaming
+    @GET("/consultation")
+    Call<ResponseBody> consulterPalettesFlux(
+            @Query("num_palette") String numPalette,
+            @Query("client") String client,
+            @Query("article") String article,
+            @Query("statut") String statut,
+            @Query("emplacement") String emplacement,
+            @Query("apres") String apres,
+            @Query("avant") String avant,
+            @Query("limite") Integer limite
+    );
+
+    // Même endpoint, synchronisation incrémentale des palettes correspondant aux filtres
+    @GET("/consultation")
+    Call<DeltaPalettes> consulterPalettesDepuis(
+            @Query("num_palette") String numPalette,
+            @Query("client") String client,
+            @Query("article") String article,
+            @Query("statut") String statut,
+            @Query("emplacement") String emplacement,
+            @Query("depuis") String depuis
+    );
 }
\ No newline at end of file
@@ -0,0 +1,104 @@
+package com.mdo.gestionpalettes.api;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Regroupement des GET identiques en cours.
+ * Si un écran demande une ressource déjà en cours de chargement (même URL, même Cache-Control),
+ * aucun nouvel appel réseau n'est lancé : l'appelant est ajouté aux destinataires de l'appel en cours,
+ * et tous reçoivent la même réponse. Le corps de réponse est donc partagé et ne doit pas être modifié.
+ * Les autres méthodes HTTP (POST, PATCH) ne sont jamais regroupées.
+ */
+public final class AppelsPartages {
+
+    private static final String TAG = "AppelsPartages";
+
+    private static final Map<String, List<Callback<?>>> enCours = new HashMap<>();
+    private static final AtomicLong nombreDedupliques = new AtomicLong();
+
+    private AppelsPartages() {}
+
+    /**
+     * Lance l'appel, ou rattache le callback à un appel identique déjà en cours.
+     *
+     * @param call L'appel Retrofit (non encore exécuté).
+     * @param callback Le callback de l'appelant.
+     * @param <T> Le type de la réponse.
+     */
+    public static <T> void enqueue(Call<T> call, Callback<T> callback) {
+        Request request = call.request();
+        if (!"GET".equals(request.method())) {
+            call.enqueue(callback);
+            return;
+        }
+
+        String cle = request.url() + " " + request.header("Cache-Control");
+        synchronized (enCours) {
+            List<Callback<?>> destinataires = enCours.get(cle);
+            if (destinataires != null) {
+                destinataires.add(callback);
+                long total = nombreDedupliques.incrementAndGet();
+                Log.d(TAG, "Appel regroupé (" + total + " au total) : " + request.url());
+                return;
+            }
+            destinataires = new ArrayList<>();
+            destinataires.add(callback);
+            enCours.put(cle, destinataires);
+        }
+
+        call.enqueue(new Callback<T>() {
+            @Override
+            public void onResponse(@NonNull Call<T> call, @NonNull Response<T> response) {
+                for (Callback<T> destinataire : terminer(cle)) {
+                    destinataire.onResponse(call, response);
+                }
+            }
+
+            @Override
+            public void onFailure(@NonNull Call<T> call, @NonNull Throwable t) {
+                for (Callback<T> destinataire : terminer(cle)) {
+                    destinataire.onFailure(call, t);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return Le nombre d'appels réseau évités depuis le démarrage du processus.
+     */
+    public static long getNombreDedupliques() {
+        return nombreDedupliques.get();
+    }
+
+    /**
+     * Retire l'appel de la table des appels en cours et retourne ses destinataires.
+     * Un appel identique lancé après ce point repartira donc vers le réseau.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> List<Callback<T>> terminer(String cle) {
+        List<Callback<?>> destinataires;
+        synchronized (enCours) {
+            destinataires = enCours.remove(cle);
+        }
+        List<Callback<T>> resultat = new ArrayList<>();
+        if (destinataires != null) {
+            for (Callback<?> destinataire : destinataires) {
+                resultat.add((Callback<T>) destinataire);
+            }
+        }
+        return resultat;
+    }
+}
@@ -0,0 +1,422 @@
+package com.mdo.gestionpalettes.api;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.mdo.gestionpalettes.models.EntreePalette;
+import com.mdo.gestionpalettes.models.MiseAJourEmplacement;
+import com.mdo.gestionpalettes.models.ResultatValidation;
+import com.mdo.gestionpalettes.models.ValidationDestruction;
+import com.mdo.gestionpalettes.models.ValidationInventaire;
+import com.mdo.gestionpalettes.models.ValidationRenvoie;
+import com.mdo.gestionpalettes.models.ValidationSortieProduction;
+import com.mdo.gestionpalettes.stockage.FileEnvois;
+import com.mdo.gestionpalettes.stockage.PaletteStore;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * Envoi en arrière-plan de la {@link FileEnvois}.
+ * Les écrans enregistrent leurs opérations (entrée, emplacement, validations) et n'attendent pas le réseau :
+ * la file est vidée dans l'ordre d'arrivée au démarrage de l'application, après chaque ajout et au retour du réseau.
+ * Les validations consécutives d'un même type sont regroupées en un seul appel (dans la limite de
+ * PALETTES_MAX_PAR_LOT palettes), avec une clé d'idempotence dérivée des clés des opérations regroupées.
+ * Le regroupement et sa clé sont fixés au premier envoi : un lot interrompu est renvoyé à l'identique,
+ * sans y ajouter les opérations arrivées entre-temps, pour que le serveur reconnaisse un lot déjà appliqué.
+ *
+ * Erreur réseau, 5xx ou session expirée : l'envoi s'arrête et l'opération reste en attente, sans que
+ * les suivantes la doublent. Refus définitif du serveur (4xx) : l'opération est marquée refusée,
+ * avec le message du serveur, et l'envoi continue.
+ * Validation acceptée mais dont le serveur a ignoré des palettes : l'opération est marquée envoyée
+ * en partie, avec la liste des palettes à reprendre, et seules ces palettes sont corrigées localement.
+ */
+public final class ExpediteurEnvois {
+
+    private static final String TAG = "ExpediteurEnvois";
+
+    // Types d'opération enregistrés dans la file
+    public static final String ENTREE = "entree";
+    public static final String EMPLACEMENT = "emplacement";
+    public static final String INVENTAIRE = "inventaire";
+    public static final String DESTRUCTION = "destruction";
+    public static final String RENVOI = "renvoie";
+    public static final String PRODUCTION = "production";
+
+    private static final int PALETTES_MAX_PAR_LOT = 1000;
+    private static final long CONSERVATION_MS = 24L * 60 * 60 * 1000;
+    private static final int LONGUEUR_MAX_ERREUR = 200;
+    private static final int IGNOREES_MAX_DETAILLEES = 20;
+
+    private static final Type LISTE_INVENTAIRE = new TypeToken<List<ValidationInventaire>>() {}.getType();
+    private static final Type LISTE_DESTRUCTION = new TypeToken<List<ValidationDestruction>>() {}.getType();
+    private static final Type LISTE_RENVOI = new TypeToken<List<ValidationRenvoie>>() {}.getType();
+    private static final Type LISTE_PRODUCTION = new TypeToken<List<ValidationSortieProduction>>() {}.getType();
+
+    private static ExpediteurEnvois instance = null;
+
+    private final FileEnvois file;
+    private final PaletteStore store;
+    private final ApiService apiService;
+    private final ApiService apiInventaire;
+
+    // Écritures dans la file : jamais bloquées derrière un envoi réseau
+    private final ExecutorService disque = Executors.newSingleThreadExecutor();
+    // Envois : un seul à la fois, dans l'ordre de la file
+    private final ExecutorService reseau = Executors.newSingleThreadExecutor();
+    private final Handler principal = new Handler(Looper.getMainLooper());
+
+    private enum Issue { ACCEPTE, PARTIEL, REFUSE, A_REESSAYER }
+
+    private ExpediteurEnvois(Context context) {
+        file = FileEnvois.get(context);
+        store = PaletteStore.get(context);
+        apiService = ApiClient.getClient(context).create(ApiService.class);
+        apiInventaire = ApiClient.getInventaireClient(context).create(ApiService.class);
+        disque.execute(() -> {
+            file.reprendreEnvoisInterrompus();
+            file.purger(CONSERVATION_MS);
+        });
+    }
+
+    /**
+     * @param context Le contexte Android ; seul le contexte applicatif est conservé.
+     * @return L'instance partagée.
+     */
+    public static synchronized ExpediteurEnvois get(Context context) {
+        if (instance == null) {
+            instance = new ExpediteurEnvois(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * @param apresEnvoi Appelé sur le thread principal après la tentative d'envoi de la file, ou null.
+     */
+    public void ajouterEntree(EntreePalette entree, String cle, @Nullable Runnable apresEnvoi) {
+        ajouter(ENTREE, ApiClient.getGson().toJson(entree), cle,
+                "Entrée " + entree.getNum_palette() + " en " + entree.getEmplacement(), apresEnvoi);
+    }
+
+    public void ajouterMajEmplacement(MiseAJourEmplacement maj, String cle) {
+        ajouter(EMPLACEMENT, ApiClient.getGson().toJson(maj), cle,
+                "Emplacement " + maj.getNum_palette() + " : " + maj.getNouvel_emplacement(), null);
+    }
+
+    public void ajouterInventaire(List<ValidationInventaire> palettes, String cle) {
+        ajouter(INVENTAIRE, ApiClient.getGsonInventaire().toJson(palettes, LISTE_INVENTAIRE), cle,
+                "Inventaire : " + palettes.size() + " palette(s)", null);
+    }
+
+    public void ajouterDestruction(List<ValidationDestruction> palettes, String cle) {
+        ajouter(DESTRUCTION, ApiClient.getGson().toJson(palettes, LISTE_DESTRUCTION), cle,
+                "Destruction : " + palettes.size() + " palette(s)", null);
+    }
+
+    public void ajouterRenvoi(List<ValidationRenvoie> palettes, String cle) {
+        ajouter(RENVOI, ApiClient.getGson().toJson(palettes, LISTE_RENVOI), cle,
+                "Renvoi : " + palettes.size() + " palette(s)", null);
+    }
+
+    public void ajouterSortieProduction(List<ValidationSortieProduction> palettes, String cle) {
+        ajouter(PRODUCTION, ApiClient.getGson().toJson(palettes, LISTE_PRODUCTION), cle,
+                "Sortie production : " + palettes.size() + " palette(s)", null);
+    }
+
+    /**
+     * Lance un envoi de la file.
+     *
+     * @param termine Appelé sur le thread principal une fois l'envoi arrêté (file vide ou erreur), ou null.
+     */
+    public void vider(@Nullable Runnable termine) {
+        reseau.execute(() -> {
+            envoyerFile();
+            if (termine != null) principal.post(termine);
+        });
+    }
+
+    /**
+     * Lit les dernières opérations de la file, pour affichage à l'opérateur.
+     *
+     * @param nombreMax Le nombre maximal d'opérations.
+     * @param rappel Reçoit les opérations sur le thread principal, de la plus récente à la plus ancienne.
+     */
+    public void lireDernieres(int nombreMax, PaletteStore.Rappel<List<FileEnvois.Envoi>> rappel) {
+        disque.execute(() -> {
+            List<FileEnvois.Envoi> envois = file.dernieres(nombreMax);
+            principal.post(() -> rappel.surResultat(envois));
+        });
+    }
+
+    /**
+     * Enregistre l'opération puis lance un envoi.
+     */
+    private void ajouter(String type, String corps, String cle, String libelle, @Nullable Runnable apresEnvoi) {
+        disque.execute(() -> {
+            file.ajouter(type, corps, cle, libelle);
+            vider(apresEnvoi);
+        });
+    }
+
+    /**
+     * Envoie les opérations en attente, lot par lot, jusqu'à vider la file ou rencontrer une erreur transitoire.
+     * Exécutée uniquement sur le thread d'envoi.
+     */
+    private void envoyerFile() {
+        while (true) {
+            List<FileEnvois.Envoi> enAttente = file.enAttente();
+            if (enAttente.isEmpty()) {
+                return;
+            }
+
+            List<FileEnvois.Envoi> lot = new ArrayList<>();
+            List<Object> palettes = new ArrayList<>();
+            String[] erreur = {null};
+            boolean lisible = constituerLot(enAttente, lot, palettes, erreur);
+
+            List<Long> ids = new ArrayList<>();
+            for (FileEnvois.Envoi envoi : lot) ids.add(envoi.getId());
+            if (!lisible) {
+                // Corps corrompu ou d'un ancien format : ne doit pas bloquer la file
+                Log.w(TAG, "Envoi illisible (" + lot.get(0).getLibelle() + ") : " + erreur[0]);
+                file.marquer(ids, FileEnvois.ERREUR, erreur[0], false);
+                store.ecrire(store::oublierSynchros);
+                continue;
+            }
+            String cle = cleDuLot(lot);
+            file.marquerEnCours(ids, cle);
+
+            List<ResultatValidation.Resultat> ignorees = new ArrayList<>();
+            Issue issue = envoyer(lot, palettes, cle, erreur, ignorees);
+            switch (issue) {
+                case ACCEPTE:
+                    file.marquer(ids, FileEnvois.ENVOYE, null, true);
+                    break;
+                case PARTIEL:
+                    Log.w(TAG, "Envoi accepté en partie (" + lot.get(0).getLibelle() + ") : " + erreur[0]);
+                    file.marquer(ids, FileEnvois.PARTIEL, erreur[0], true);
+                    // Retirées localement à la validation, ces palettes reprennent leur état actuel
+                    store.ecrire(() -> store.corriger(ignorees));
+                    break;
+                case REFUSE:
+                    Log.w(TAG, "Envoi refusé (" + lot.get(0).getLibelle() + ") : " + erreur[0]);
+                    file.marquer(ids, FileEnvois.ERREUR, erreur[0], true);
+                    // Les palettes retirées localement à la validation n'ont pas changé côté serveur :
+                    // la prochaine synchronisation des listes doit être complète pour les retrouver
+                    store.ecrire(store::oublierSynchros);
+                    break;
+                default:
+                    Log.w(TAG, "Envoi interrompu, nouvelle tentative plus tard : " + erreur[0]);
+                    file.marquer(ids, FileEnvois.EN_ATTENTE, erreur[0], true);
+                    return;
+            }
+        }
+    }
+
+    /**
+     * Regroupe la première opération en attente avec les suivantes du même type, si ce sont des validations en lot.
+     * Une opération déjà envoyée est renvoyée avec exactement le même groupe qu'à son premier envoi.
+     *
+     * @param enAttente Les opérations en attente, dans l'ordre.
+     * @param lot Reçoit les opérations regroupées.
+     * @param palettes Reçoit les palettes de toutes les opérations regroupées (validations seulement).
+     * @param erreur Reçoit le message d'erreur si une opération du lot est illisible.
+     * @return false si le lot ne peut pas être envoyé (corps illisible) : ses opérations sont à refuser.
+     */
+    private boolean constituerLot(List<FileEnvois.Envoi> enAttente, List<FileEnvois.Envoi> lot, List<Object> palettes,
+                                  String[] erreur) {
+        FileEnvois.Envoi premier = enAttente.get(0);
+        lot.add(premier);
+        String cleLot = premier.getLot();
+        if (cleLot != null) {
+            // Lot déjà envoyé : mêmes opérations, même clé, quel que soit ce qui est arrivé depuis
+            for (int i = 1; i < enAttente.size() && cleLot.equals(enAttente.get(i).getLot()); i++) {
+                lot.add(enAttente.get(i));
+            }
+        }
+        Type typeListe = typeListe(premier.getType());
+        if (typeListe == null) {
+            return true;
+        }
+        Gson gson = INVENTAIRE.equals(premier.getType()) ? ApiClient.getGsonInventaire() : ApiClient.getGson();
+        try {
+            for (FileEnvois.Envoi envoi : lot) {
+                palettes.addAll(lirePalettes(gson, envoi, typeListe));
+            }
+        } catch (RuntimeException e) {
+            erreur[0] = "Opération illisible : " + e.getMessage();
+            return false;
+        }
+        if (cleLot != null) {
+            return true;
+        }
+
+        for (int i = 1; i < enAttente.size(); i++) {
+            FileEnvois.Envoi suivant = enAttente.get(i);
+            if (!suivant.getType().equals(premier.getType()) || suivant.getLot() != null) {
+                break;
+            }
+            List<Object> palettesSuivantes;
+            try {
+                palettesSuivantes = lirePalettes(gson, suivant, typeListe);
+            } catch (RuntimeException e) {
+                // Envoyée seule au tour suivant, et refusée à ce moment-là
+                break;
+            }
+            if (palettes.size() + palettesSuivantes.size() > PALETTES_MAX_PAR_LOT) {
+                break;
+            }
+            lot.add(suivant);
+            palettes.addAll(palettesSuivantes);
+        }
+        return true;
+    }
+
+    /**
+     * @throws RuntimeException Si le corps enregistré est illisible (JsonParseException, corps vide...).
+     */
+    private static List<Object> lirePalettes(Gson gson, FileEnvois.Envoi envoi, Type typeListe) {
+        List<Object> palettes = gson.fromJson(envoi.getCorps(), typeListe);
+        if (palettes == null) {
+            throw new JsonParseException("corps vide");
+        }
+        return palettes;
+    }
+
+    /**
+     * Envoie un lot et classe le résultat.
+     *
+     * @param cle La clé d'idempotence du lot.
+     * @param erreur Reçoit le message d'erreur à afficher, le cas échéant.
+     * @param ignorees Reçoit les palettes d'une validation que le serveur a ignorées.
+     */
+    @SuppressWarnings("unchecked")
+    private Issue envoyer(List<FileEnvois.Envoi> lot, List<Object> palettes, String cle, String[] erreur,
+                          List<ResultatValidation.Resultat> ignorees) {
+        FileEnvois.Envoi premier = lot.get(0);
+        Call<?> call;
+        try {
+            switch (premier.getType()) {
+                case ENTREE:
+                    call = apiService.entreePalette(ApiClient.getGson().fromJson(premier.getCorps(), EntreePalette.class), cle);
+                    break;
+                case EMPLACEMENT:
+                    call = apiService.majEmplacement(ApiClient.getGson().fromJson(premier.getCorps(), MiseAJourEmplacement.class), cle);
+                    break;
+                case INVENTAIRE:
+                    call = apiInventaire.validerInventaire((List<ValidationInventaire>) (List<?>) palettes, cle);
+                    break;
+                case DESTRUCTION:
+                    call = apiService.validerDestruction((List<ValidationDestruction>) (List<?>) palettes, cle);
+                    break;
+                case RENVOI:
+                    call = apiService.validerRenvoie((List<ValidationRenvoie>) (List<?>) palettes, cle);
+                    break;
+                case PRODUCTION:
+                    call = apiService.validerSortieProduction((List<ValidationSortieProduction>) (List<?>) palettes, cle);
+                    break;
+                default:
+                    erreur[0] = "Type d'opération inconnu : " + premier.getType();
+                    return Issue.REFUSE;
+            }
+        } catch (RuntimeException e) {
+            erreur[0] = "Opération illisible : " + e.getMessage();
+            return Issue.REFUSE;
+        }
+
+        try {
+            Response<?> response = call.execute();
+            if (response.isSuccessful()) {
+                if (response.body() instanceof ResultatValidation) {
+                    ignorees.addAll(((ResultatValidation) response.body()).ignorees());
+                }
+                if (ignorees.isEmpty()) {
+                    return Issue.ACCEPTE;
+                }
+                erreur[0] = detailIgnorees(ignorees);
+                return Issue.PARTIEL;
+            }
+            int code = response.code();
+            erreur[0] = "Erreur " + code + lireErreur(response);
+            if (code == 401) {
+                erreur[0] = "Session expirée, reconnexion nécessaire";
+                return Issue.A_REESSAYER;
+            }
+            if (code >= 500 || code == 408 || code == 409 || code == 429) {
+                return Issue.A_REESSAYER;
+            }
+            return Issue.REFUSE;
+        } catch (IOException e) {
+            erreur[0] = "Réseau indisponible : " + e.getMessage();
+            return Issue.A_REESSAYER;
+        }
+    }
+
+    /**
+     * Un lot déjà envoyé garde la clé retenue à son premier envoi. Sinon, une opération seule garde sa clé,
+     * et un regroupement reçoit une clé dérivée des clés regroupées.
+     */
+    private String cleDuLot(List<FileEnvois.Envoi> lot) {
+        if (lot.get(0).getLot() != null) {
+            return lot.get(0).getLot();
+        }
+        if (lot.size() == 1) {
+            return lot.get(0).getCle();
+        }
+        StringBuilder cles = new StringBuilder();
+        for (FileEnvois.Envoi envoi : lot) cles.append(envoi.getCle()).append(';');
+        return UUID.nameUUIDFromBytes(cles.toString().getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /**
+     * @return Le détail des palettes à reprendre, affiché dans la liste des envois.
+     */
+    private String detailIgnorees(List<ResultatValidation.Resultat> ignorees) {
+        StringBuilder detail = new StringBuilder();
+        detail.append(ignorees.size()).append(" palette(s) non validée(s)");
+        for (int i = 0; i < ignorees.size() && i < IGNOREES_MAX_DETAILLEES; i++) {
+            ResultatValidation.Resultat r = ignorees.get(i);
+            detail.append(i == 0 ? " : " : " ; ").append(r.getNumPalette());
+            if (r.getRaison() != null) detail.append(" (").append(r.getRaison()).append(')');
+        }
+        if (ignorees.size() > IGNOREES_MAX_DETAILLEES) detail.append(" ; …");
+        return detail.toString();
+    }
+
+    @Nullable
+    private Type typeListe(String type) {
+        switch (type) {
+            case INVENTAIRE: return LISTE_INVENTAIRE;
+            case DESTRUCTION: return LISTE_DESTRUCTION;
+            case RENVOI: return LISTE_RENVOI;
+            case PRODUCTION: return LISTE_PRODUCTION;
+            default: return null;
+        }
+    }
+
+    private String lireErreur(Response<?> response) {
+        try {
+            if (response.errorBody() == null) return "";
+            String corps = response.errorBody().string();
+            return " : " + (corps.length() > LONGUEUR_MAX_ERREUR ? corps.substring(0, LONGUEUR_MAX_ERREUR) : corps);
+        } catch (IOException e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.mdo.gestionpalettes.api;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.mdo.gestionpalettes.models.PaletteConsultation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import okhttp3.ResponseBody;
+
+/**
+ * Lecture incrémentale d'une réponse /consultation.
+ * Le corps JSON (un tableau de palettes) est lu élément par élément avec un JsonReader,
+ * et les palettes sont publiées par lots sur le thread principal au fur et à mesure de leur arrivée.
+ * Le premier lot est petit pour afficher rapidement les premières lignes, quelle que soit la taille du résultat ;
+ * seul le lot en cours est gardé en mémoire pendant la lecture.
+ * Chaque palette est préparée par l'écouteur sur le thread de lecture (sa ligne d'affichage, par exemple),
+ * si bien que le thread principal ne reçoit que des éléments prêts à afficher.
+ */
+public final class FluxConsultation {
+
+    private static final int TAILLE_PREMIER_LOT = 50;
+    private static final int TAILLE_LOT = 500;
+
+    private static final ExecutorService lecteurs = Executors.newCachedThreadPool();
+
+    /**
+     * Reçoit les lots de palettes sur le thread principal.
+     *
+     * @param <E> Le type des éléments publiés.
+     */
+    public interface Ecouteur<E> {
+        /**
+         * Appelée sur le thread de lecture pour chaque palette lue.
+         *
+         * @param palette La palette lue.
+         * @return L'élément publié dans les lots.
+         */
+        E preparer(PaletteConsultation palette);
+
+        void onLot(List<E> lot);
+        void onTermine(int total);
+        void onErreur(Throwable t);
+    }
+
+    /**
+     * Poignée sur une lecture en cours, permettant de l'interrompre (nouvelle recherche, écran fermé).
+     */
+    public static final class Lecture {
+        private final ResponseBody body;
+        private volatile boolean annulee = false;
+
+        private Lecture(ResponseBody body) {
+            this.body = body;
+        }
+
+        /**
+         * Interrompt la lecture : plus aucun lot n'est publié et le flux réseau est fermé.
+         */
+        public void annuler() {
+            annulee = true;
+            fermer(body);
+        }
+    }
+
+    private FluxConsultation() {}
+
+    /**
+     * Lance la lecture du corps de réponse sur un thread dédié.
+     *
+     * @param body Le corps de la réponse (appel annoté @Streaming).
+     * @param ecouteur L'écouteur recevant les lots sur le thread principal.
+     * @return La poignée permettant d'annuler la lecture.
+     */
+    public static <E> Lecture lire(ResponseBody body, Ecouteur<E> ecouteur) {
+        Lecture lecture = new Lecture(body);
+        Handler principal = new Handler(Looper.getMainLooper());
+
+        lecteurs.execute(() -> {
+            int total = 0;
+            List<E> lot = new ArrayList<>(TAILLE_PREMIER_LOT);
+            int tailleLot = TAILLE_PREMIER_LOT;
+            TypeAdapter<PaletteConsultation> adaptateur = ApiClient.getGson().getAdapter(PaletteConsultation.class);
+
+            try (JsonReader reader = new JsonReader(body.charStream())) {
+                reader.beginArray();
+                while (reader.hasNext() && !lecture.annulee) {
+                    lot.add(ecouteur.preparer(adaptateur.read(reader)));
+                    total++;
+                    if (lot.size() >= tailleLot) {
+                        publier(principal, lecture, ecouteur, lot);
+                        lot = new ArrayList<>(TAILLE_LOT);
+                        tailleLot = TAILLE_LOT;
+                    }
+                }
+                if (!lecture.annulee) {
+                    reader.endArray();
+                    if (!lot.isEmpty()) {
+                        publier(principal, lecture, ecouteur, lot);
+                    }
+                    int totalFinal = total;
+                    principal.post(() -> {
+                        if (!lecture.annulee) ecouteur.onTermine(totalFinal);
+                    });
+                }
+            } catch (IOException | RuntimeException e) {
+                principal.post(() -> {
+                    if (!lecture.annulee) ecouteur.onErreur(e);
+                });
+            }
+        });
+        return lecture;
+    }
+
+    /**
+     * Ferme un corps de réponse qui ne sera pas lu. La fermeture peut toucher au réseau :
+     * elle n'est jamais faite sur le thread principal.
+     *
+     * @param body Le corps de réponse à abandonner.
+     */
+    public static void fermer(ResponseBody body) {
+        lecteurs.execute(body::close);
+    }
+
+    /**
+     * Publie un lot sur le thread principal, sauf si la lecture a été annulée entre-temps.
+     */
+    private static <E> void publier(Handler principal, Lecture lecture, Ecouteur<E> ecouteur, List<E> lot) {
+        principal.post(() -> {
+            if (!lecture.annulee) ecouteur.onLot(lot);
+        });
+    }
+}
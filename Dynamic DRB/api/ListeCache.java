@@ -0,0 +1,97 @@
+package com.mdo.gestionpalettes.api;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Chargement des listes (emplacements) en mode "stale-while-revalidate".
+ * La copie stockée dans le cache HTTP disque est livrée immédiatement, puis une requête
+ * conditionnelle (ETag) est envoyée au serveur. Si le serveur répond 304, la liste affichée
+ * est déjà à jour et le callback n'est pas rappelé ; sinon il reçoit la nouvelle liste.
+ * Les deux étapes passent par {@link AppelsPartages} : des écrans qui demandent la même liste
+ * en même temps partagent un seul appel.
+ */
+public final class ListeCache {
+
+    private static final String TAG = "ListeCache";
+
+    /** Lecture du cache disque uniquement, quel que soit l'âge de la réponse stockée. */
+    public static final String CACHE_SEULEMENT = "only-if-cached, max-stale=2147483647";
+
+    /** Passage obligatoire par le serveur, avec revalidation de la copie en cache (If-None-Match). */
+    public static final String REVALIDER = "no-cache";
+
+    /**
+     * Fabrique d'appels Retrofit paramétrée par l'en-tête Cache-Control à utiliser.
+     *
+     * @param <T> Le type de la réponse.
+     */
+    public interface FabriqueAppel<T> {
+        Call<T> creer(String cacheControl);
+    }
+
+    private ListeCache() {}
+
+    /**
+     * Livre d'abord la liste en cache (si elle existe), puis la liste revalidée auprès du serveur.
+     * Le callback peut donc être appelé deux fois ; il est appelé une seule fois si rien n'a changé.
+     * En cas d'échec réseau après une livraison depuis le cache, l'erreur est seulement journalisée.
+     *
+     * @param fabrique La fabrique d'appels vers l'endpoint de liste.
+     * @param callback Le callback de l'écran appelant.
+     * @param <T> Le type de la réponse.
+     */
+    public static <T> void charger(FabriqueAppel<T> fabrique, Callback<T> callback) {
+        AppelsPartages.enqueue(fabrique.creer(CACHE_SEULEMENT), new Callback<T>() {
+            @Override
+            public void onResponse(@NonNull Call<T> call, @NonNull Response<T> response) {
+                // 504 = rien en cache : on attend simplement la réponse du serveur
+                boolean depuisCache = response.isSuccessful() && response.body() != null;
+                if (depuisCache) {
+                    callback.onResponse(call, response);
+                }
+                revalider(fabrique, callback, depuisCache);
+            }
+
+            @Override
+            public void onFailure(@NonNull Call<T> call, @NonNull Throwable t) {
+                revalider(fabrique, callback, false);
+            }
+        });
+    }
+
+    /**
+     * Envoie la requête conditionnelle au serveur et ne relivre la liste que si elle a changé.
+     *
+     * @param fabrique La fabrique d'appels vers l'endpoint de liste.
+     * @param callback Le callback de l'écran appelant.
+     * @param dejaLivre true si une copie du cache a déjà été livrée au callback.
+     * @param <T> Le type de la réponse.
+     */
+    private static <T> void revalider(FabriqueAppel<T> fabrique, Callback<T> callback, boolean dejaLivre) {
+        AppelsPartages.enqueue(fabrique.creer(REVALIDER), new Callback<T>() {
+            @Override
+            public void onResponse(@NonNull Call<T> call, @NonNull Response<T> response) {
+                okhttp3.Response reseau = response.raw().networkResponse();
+                if (dejaLivre && reseau != null && reseau.code() == 304) {
+                    return;
+                }
+                callback.onResponse(call, response);
+            }
+
+            @Override
+            public void onFailure(@NonNull Call<T> call, @NonNull Throwable t) {
+                if (dejaLivre) {
+                    Log.w(TAG, "Revalidation impossible, liste du cache conservée : " + t.getMessage());
+                    return;
+                }
+                callback.onFailure(call, t);
+            }
+        });
+    }
+}
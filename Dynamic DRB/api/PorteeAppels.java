@@ -0,0 +1,189 @@
+package com.mdo.gestionpalettes.api;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mdo.gestionpalettes.stockage.PaletteStore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Portée des appels d'un écran, fermée à sa destruction (voir BaseActivity).
+ *
+ * Chaque callback (ou rappel) confié à la portée passe par un relais : tant que la portée est ouverte,
+ * le relais transmet le résultat ; à la fermeture, les appels propres à l'écran sont annulés et chaque
+ * relais lâche son destinataire. Un résultat arrivé après la fermeture est ignoré, et un appel encore
+ * en vol ne retient plus l'écran (ni ses vues) jusqu'à sa réponse.
+ *
+ * Un appel regroupé avec d'autres écrans ({@link AppelsPartages}) n'est pas annulé : seul le destinataire
+ * de l'écran fermé est détaché, les autres reçoivent la réponse normalement.
+ *
+ * Un relais est retiré de la portée dès qu'il a livré son résultat (rappel unique, réponse d'un appel).
+ * Les relais n'y sont par ailleurs que faiblement référencés : un relais répété, ou un relais dont la tâche
+ * n'aboutit jamais, quitte la portée dès que plus rien ne peut l'appeler, sans attendre la fermeture de l'écran.
+ *
+ * À utiliser depuis le thread principal.
+ */
+public final class PorteeAppels {
+
+    // Un relais reste joignable tant que son appel ou sa tâche peut encore l'appeler
+    private final Set<Relais<?>> relais = Collections.newSetFromMap(new WeakHashMap<>());
+    private boolean fermee = false;
+
+    /**
+     * Lance un appel propre à l'écran ; il est annulé à la fermeture de la portée.
+     *
+     * @param call L'appel Retrofit (non encore exécuté).
+     * @param callback Le callback de l'écran.
+     * @param <T> Le type de la réponse.
+     */
+    public <T> void enqueue(Call<T> call, Callback<T> callback) {
+        if (fermee) {
+            return;
+        }
+        call.enqueue(new Relais<>(this, callback, call));
+    }
+
+    /**
+     * Lance un GET pouvant être regroupé avec un appel identique en cours (voir {@link AppelsPartages}).
+     * À la fermeture de la portée, le callback est détaché sans annuler l'appel.
+     *
+     * @param call L'appel Retrofit (non encore exécuté).
+     * @param callback Le callback de l'écran.
+     * @param <T> Le type de la réponse.
+     */
+    public <T> void enqueuePartage(Call<T> call, Callback<T> callback) {
+        if (fermee) {
+            return;
+        }
+        AppelsPartages.enqueue(call, new Relais<>(this, callback, null));
+    }
+
+    /**
+     * Relaie un rappel de lecture ou de traitement en arrière-plan (PaletteStore, DepotListes, Travaux)
+     * tant que la portée est ouverte. Le relais est libéré après le premier résultat.
+     *
+     * @param rappel Le rappel de l'écran.
+     * @param <T> Le type du résultat.
+     * @return Le rappel à transmettre à la place de celui de l'écran.
+     */
+    public <T> PaletteStore.Rappel<T> rappel(PaletteStore.Rappel<T> rappel) {
+        return relayer(rappel, true);
+    }
+
+    /**
+     * Comme {@link #rappel}, pour un rappel pouvant recevoir plusieurs résultats
+     * (instantané local puis version à jour) : le relais reste attaché jusqu'à la fermeture,
+     * ou jusqu'à ce que la tâche qui l'appelle soit terminée.
+     *
+     * @param rappel Le rappel de l'écran.
+     * @param <T> Le type du résultat.
+     * @return Le rappel à transmettre à la place de celui de l'écran.
+     */
+    public <T> PaletteStore.Rappel<T> rappelRepete(PaletteStore.Rappel<T> rappel) {
+        return relayer(rappel, false);
+    }
+
+    private <T> PaletteStore.Rappel<T> relayer(PaletteStore.Rappel<T> rappel, boolean unique) {
+        if (fermee) {
+            return resultat -> {};
+        }
+        Relais<T> r = new Relais<>(this, null, null);
+        r.rappel = rappel;
+        r.unique = unique;
+        return r;
+    }
+
+    /**
+     * @return true si l'écran a été détruit : plus aucun résultat ne lui est livré.
+     */
+    public boolean estFermee() {
+        return fermee;
+    }
+
+    /**
+     * Ferme la portée : annule les appels propres à l'écran et détache tous les destinataires.
+     */
+    public void fermer() {
+        fermee = true;
+        for (Relais<?> r : new ArrayList<>(relais)) {
+            r.detacher();
+        }
+        relais.clear();
+    }
+
+    /**
+     * Intermédiaire entre un appel (ou une tâche) et l'écran ; ne garde aucune référence
+     * à l'écran une fois détaché.
+     */
+    private static final class Relais<T> implements Callback<T>, PaletteStore.Rappel<T> {
+        private final PorteeAppels portee;
+        @Nullable
+        private Callback<T> callback;
+        @Nullable
+        private PaletteStore.Rappel<T> rappel;
+        @Nullable
+        private Call<T> appelPropre;
+        private boolean unique = true;
+
+        Relais(PorteeAppels portee, @Nullable Callback<T> callback, @Nullable Call<T> appelPropre) {
+            this.portee = portee;
+            this.callback = callback;
+            this.appelPropre = appelPropre;
+            portee.relais.add(this);
+        }
+
+        @Override
+        public void onResponse(@NonNull Call<T> call, @NonNull Response<T> response) {
+            Callback<T> destinataire = callback;
+            terminer();
+            if (destinataire != null) {
+                destinataire.onResponse(call, response);
+            }
+        }
+
+        @Override
+        public void onFailure(@NonNull Call<T> call, @NonNull Throwable t) {
+            Callback<T> destinataire = callback;
+            terminer();
+            if (destinataire != null) {
+                destinataire.onFailure(call, t);
+            }
+        }
+
+        @Override
+        public void surResultat(T resultat) {
+            PaletteStore.Rappel<T> destinataire = rappel;
+            if (unique) {
+                terminer();
+            }
+            if (destinataire != null) {
+                destinataire.surResultat(resultat);
+            }
+        }
+
+        private void terminer() {
+            portee.relais.remove(this);
+            callback = null;
+            rappel = null;
+            appelPropre = null;
+        }
+
+        private void detacher() {
+            Call<T> appel = appelPropre;
+            callback = null;
+            rappel = null;
+            appelPropre = null;
+            if (appel != null) {
+                appel.cancel();
+            }
+        }
+    }
+}
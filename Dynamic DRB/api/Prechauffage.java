@@ -0,0 +1,76 @@
+package com.mdo.gestionpalettes.api;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Préchauffage des données au retour du réseau.
+ * Les étapes sont exécutées l'une après l'autre, dans l'ordre de priorité où elles ont été fournies
+ * (emplacements, liste du flux en cours, actions en attente) : la plus utile occupe seule la connexion
+ * pendant que le Wi-Fi se stabilise, et le premier geste de l'utilisateur trouve les données locales à jour.
+ * Un seul préchauffage tourne à la fois pour tout le processus, et pas plus d'un par INTERVALLE_MIN_MS
+ * (le réseau peut clignoter en bordure de couverture).
+ */
+public final class Prechauffage {
+
+    private static final String TAG = "Prechauffage";
+    private static final long INTERVALLE_MIN_MS = 30_000;
+
+    /**
+     * Étape asynchrone du préchauffage : doit appeler {@code terminee} une fois finie, succès ou échec.
+     */
+    public interface Etape {
+        void executer(Runnable terminee);
+    }
+
+    private static boolean enCours = false;
+    private static long dernierLancement = -INTERVALLE_MIN_MS;
+
+    private Prechauffage() {}
+
+    /**
+     * Lance le préchauffage, sauf si un autre est en cours ou vient d'être lancé.
+     *
+     * @param etapes Les étapes, par ordre de priorité décroissante.
+     * @return true si le préchauffage a été lancé.
+     */
+    public static boolean lancer(List<Etape> etapes) {
+        synchronized (Prechauffage.class) {
+            long maintenant = SystemClock.elapsedRealtime();
+            if (enCours || maintenant - dernierLancement < INTERVALLE_MIN_MS) {
+                return false;
+            }
+            enCours = true;
+            dernierLancement = maintenant;
+        }
+        Log.d(TAG, "Préchauffage : " + etapes.size() + " étape(s)");
+        suivante(new ArrayList<>(etapes).iterator());
+        return true;
+    }
+
+    /**
+     * Exécute l'étape suivante sur le thread principal, ou termine le préchauffage.
+     */
+    private static void suivante(Iterator<Etape> etapes) {
+        new Handler(Looper.getMainLooper()).post(() -> {
+            if (!etapes.hasNext()) {
+                synchronized (Prechauffage.class) {
+                    enCours = false;
+                }
+                return;
+            }
+            try {
+                etapes.next().executer(() -> suivante(etapes));
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Étape de préchauffage interrompue", e);
+                suivante(etapes);
+            }
+        });
+    }
+}
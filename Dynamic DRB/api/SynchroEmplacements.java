@@ -0,0 +1,162 @@
+package com.mdo.gestionpalettes.api;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mdo.gestionpalettes.models.EmplacementEntrepot;
+import com.mdo.gestionpalettes.stockage.InstantaneEmplacements;
+import com.mdo.gestionpalettes.stockage.PaletteStore;
+import com.mdo.gestionpalettes.utils.AuthInterceptor;
+
+import java.util.List;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Chargement de la table des emplacements pour les spinners rack / emplacement.
+ * L'instantané local ({@link InstantaneEmplacements}) est livré dès son ouverture, puis la table est
+ * revalidée auprès du serveur (ETag) ; l'écran ne reçoit une seconde livraison que si elle a changé.
+ * Sans instantané (premier lancement), la copie du cache HTTP est utilisée via {@link ListeCache}.
+ */
+public final class SynchroEmplacements {
+
+    private static final String TAG = "SynchroEmplacements";
+
+    /**
+     * Issue d'un chargement, reçue sur le thread principal.
+     */
+    public interface Rappel {
+        /**
+         * @param table La table à afficher ; peut être livrée deux fois (instantané, puis table à jour).
+         */
+        void surTable(@NonNull InstantaneEmplacements.Table table);
+
+        /**
+         * @param codeHttp Le code HTTP de la réponse, ou 0 en cas d'échec réseau.
+         * @param tokenRefuse Le token avec lequel la requête a été envoyée (à expirer sur une 401), ou null.
+         * @param t L'erreur réseau, ou null.
+         * @param tableAffichee true si une table a déjà été livrée (l'écran reste utilisable).
+         */
+        void surEchec(int codeHttp, @Nullable String tokenRefuse, @Nullable Throwable t, boolean tableAffichee);
+    }
+
+    private SynchroEmplacements() {}
+
+    /**
+     * Livre l'instantané local puis la table revalidée auprès du serveur.
+     * L'instantané est mis à jour même si l'écran est fermé entre-temps ; seules les livraisons
+     * dépendent de la portée de l'écran.
+     *
+     * @param context Le contexte Android.
+     * @param portee La portée des appels de l'écran : rien n'est livré après sa fermeture.
+     * @param apiService Le service Retrofit.
+     * @param rappel Le rappel de l'écran appelant.
+     */
+    public static void charger(Context context, PorteeAppels portee, ApiService apiService, Rappel rappel) {
+        Context appli = context.getApplicationContext();
+        // Un seul relais pour toutes les livraisons : il lâche l'écran à sa fermeture ;
+        // les callbacks ci-dessous ne référencent que lui
+        PaletteStore.Rappel<Livraison> livrer = portee.rappelRepete(livraison -> {
+            if (livraison.table != null) {
+                rappel.surTable(livraison.table);
+            } else {
+                rappel.surEchec(livraison.codeHttp, livraison.tokenRefuse, livraison.erreur, livraison.tableAffichee);
+            }
+        });
+        InstantaneEmplacements.ouvrir(appli, table -> {
+            boolean tableAffichee = table != null;
+            if (tableAffichee) {
+                livrer.surResultat(Livraison.table(table));
+            }
+            Callback<List<EmplacementEntrepot>> callback = new Callback<List<EmplacementEntrepot>>() {
+                @Override
+                public void onResponse(@NonNull Call<List<EmplacementEntrepot>> call, @NonNull Response<List<EmplacementEntrepot>> response) {
+                    if (!response.isSuccessful() || response.body() == null) {
+                        livrer.surResultat(Livraison.echec(response.code(), AuthInterceptor.tokenEnvoye(response.raw()), null, tableAffichee));
+                        return;
+                    }
+                    InstantaneEmplacements.remplacer(appli, response.body(), nouvelle -> {
+                        if (nouvelle != null) {
+                            livrer.surResultat(Livraison.table(nouvelle));
+                        }
+                    });
+                }
+
+                @Override
+                public void onFailure(@NonNull Call<List<EmplacementEntrepot>> call, @NonNull Throwable t) {
+                    livrer.surResultat(Livraison.echec(0, null, t, tableAffichee));
+                }
+            };
+            if (tableAffichee) {
+                AppelsPartages.enqueue(apiService.getEmplacements(ListeCache.REVALIDER), callback);
+            } else {
+                ListeCache.charger(apiService::getEmplacements, callback);
+            }
+        });
+    }
+
+    /**
+     * Étape de préchauffage : revalide la table auprès du serveur et met l'instantané à jour,
+     * pour que le prochain écran l'affiche à jour dès son ouverture.
+     *
+     * @param context Le contexte Android.
+     * @param apiService Le service Retrofit.
+     * @return L'étape correspondante.
+     */
+    public static Prechauffage.Etape etape(Context context, ApiService apiService) {
+        Context appli = context.getApplicationContext();
+        return terminee -> AppelsPartages.enqueue(apiService.getEmplacements(ListeCache.REVALIDER), new Callback<List<EmplacementEntrepot>>() {
+            @Override
+            public void onResponse(@NonNull Call<List<EmplacementEntrepot>> call, @NonNull Response<List<EmplacementEntrepot>> response) {
+                if (response.isSuccessful() && response.body() != null) {
+                    InstantaneEmplacements.remplacer(appli, response.body(), nouvelle -> terminee.run());
+                } else {
+                    terminee.run();
+                }
+            }
+
+            @Override
+            public void onFailure(@NonNull Call<List<EmplacementEntrepot>> call, @NonNull Throwable t) {
+                Log.w(TAG, "Revalidation des emplacements impossible : " + t.getMessage());
+                terminee.run();
+            }
+        });
+    }
+
+    /**
+     * Table à afficher ou échec d'un chargement, transmis au rappel de l'écran.
+     */
+    private static final class Livraison {
+        @Nullable
+        final InstantaneEmplacements.Table table;
+        final int codeHttp;
+        @Nullable
+        final String tokenRefuse;
+        @Nullable
+        final Throwable erreur;
+        final boolean tableAffichee;
+
+        private Livraison(@Nullable InstantaneEmplacements.Table table, int codeHttp, @Nullable String tokenRefuse,
+                          @Nullable Throwable erreur, boolean tableAffichee) {
+            this.table = table;
+            this.codeHttp = codeHttp;
+            this.tokenRefuse = tokenRefuse;
+            this.erreur = erreur;
+            this.tableAffichee = tableAffichee;
+        }
+
+        static Livraison table(InstantaneEmplacements.Table table) {
+            return new Livraison(table, 0, null, null, true);
+        }
+
+        static Livraison echec(int codeHttp, @Nullable String tokenRefuse, @Nullable Throwable erreur,
+                               boolean tableAffichee) {
+            return new Livraison(null, codeHttp, tokenRefuse, erreur, tableAffichee);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.mdo.gestionpalettes.api;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mdo.gestionpalettes.models.DeltaPalettes;
+import com.mdo.gestionpalettes.stockage.PaletteStore;
+import com.mdo.gestionpalettes.utils.AuthInterceptor;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Synchronisation incrémentale des listes de travail dans le stockage local.
+ * Le serveur ne renvoie que les palettes modifiées depuis l'horodatage de la synchronisation
+ * précédente (et les numéros de celles sorties de la liste) : une actualisation coûte le nombre
+ * de changements, et non plus la taille du stock. La toute première synchronisation d'une liste
+ * (ou celle qui suit un refus de validation) récupère la liste complète.
+ */
+public final class SynchroPalettes {
+
+    /**
+     * Fabrique de l'appel de synchronisation d'une liste.
+     */
+    public interface AppelDelta {
+        /**
+         * @param depuis L'horodatage de la synchronisation précédente, ou "" pour une liste complète.
+         */
+        Call<DeltaPalettes> creer(String depuis);
+    }
+
+    /**
+     * Issue d'une synchronisation, reçue sur le thread principal.
+     */
+    public interface Rappel {
+        /**
+         * @param modifiee true si la liste locale a changé et doit être relue.
+         */
+        void surSynchronisee(boolean modifiee);
+
+        /**
+         * @param codeHttp Le code HTTP de la réponse, ou 0 en cas d'échec réseau.
+         * @param tokenRefuse Le token avec lequel la requête a été envoyée (à expirer sur une 401), ou null.
+         * @param t L'erreur réseau, ou null.
+         */
+        void surEchec(int codeHttp, @Nullable String tokenRefuse, @Nullable Throwable t);
+    }
+
+    private SynchroPalettes() {}
+
+    /**
+     * Synchronise la liste d'un statut : lit son horodatage, interroge le serveur,
+     * puis fusionne la réponse dans le stockage local avant d'appeler le rappel.
+     * La fusion a lieu même si l'écran est fermé entre-temps ; seul le rappel dépend de la portée de l'écran.
+     *
+     * @param context Le contexte Android.
+     * @param portee La portée des appels de l'écran : le rappel n'est livré que tant qu'elle est ouverte.
+     * @param statut Le statut de la liste (voir les constantes de {@link PaletteStore}).
+     * @param appel La fabrique d'appel vers l'endpoint de la liste.
+     * @param rappel Le rappel de l'écran appelant.
+     * @param terminee Appelé après la fusion ou l'échec, que l'écran soit encore ouvert ou non (préchauffage), ou null.
+     */
+    public static void synchroniser(Context context, PorteeAppels portee, String statut, AppelDelta appel, Rappel rappel,
+                                    @Nullable Runnable terminee) {
+        PaletteStore store = PaletteStore.get(context);
+        // Un seul relais pour les deux issues : il lâche l'écran à sa fermeture, et la portée dès qu'il a servi
+        PaletteStore.Rappel<Issue> surIssue = portee.rappel(issue -> {
+            if (issue.synchronisee) {
+                rappel.surSynchronisee(issue.modifiee);
+            } else {
+                rappel.surEchec(issue.codeHttp, issue.tokenRefuse, issue.erreur);
+            }
+        });
+        // Stockage local illisible : la synchronisation s'arrête, mais terminee est toujours appelé
+        Runnable echecLocal = () -> {
+            surIssue.surResultat(Issue.echec(0, null, null));
+            if (terminee != null) terminee.run();
+        };
+        store.lire(() -> {
+            String depuis = store.horodatageSynchro(statut);
+            return depuis != null ? depuis : "";
+        }, depuis -> AppelsPartages.enqueue(appel.creer(depuis), new Callback<DeltaPalettes>() {
+            @Override
+            public void onResponse(@NonNull Call<DeltaPalettes> call, @NonNull Response<DeltaPalettes> response) {
+                DeltaPalettes delta = response.body();
+                if (!response.isSuccessful() || delta == null || delta.getHorodatage() == null) {
+                    surIssue.surResultat(Issue.echec(response.code(), AuthInterceptor.tokenEnvoye(response.raw()), null));
+                    if (terminee != null) terminee.run();
+                    return;
+                }
+                store.lire(() -> {
+                    store.appliquerDelta(statut, delta);
+                    return delta.estModifiant();
+                }, modifiee -> {
+                    surIssue.surResultat(Issue.synchronisee(modifiee));
+                    if (terminee != null) terminee.run();
+                }, echecLocal);
+            }
+
+            @Override
+            public void onFailure(@NonNull Call<DeltaPalettes> call, @NonNull Throwable t) {
+                surIssue.surResultat(Issue.echec(0, null, t));
+                if (terminee != null) terminee.run();
+            }
+        }), echecLocal);
+    }
+
+    /**
+     * Issue d'une synchronisation, transmise au rappel de l'écran.
+     */
+    private static final class Issue {
+        final boolean synchronisee;
+        final boolean modifiee;
+        final int codeHttp;
+        @Nullable
+        final String tokenRefuse;
+        @Nullable
+        final Throwable erreur;
+
+        private Issue(boolean synchronisee, boolean modifiee, int codeHttp, @Nullable String tokenRefuse,
+                      @Nullable Throwable erreur) {
+            this.synchronisee = synchronisee;
+            this.modifiee = modifiee;
+            this.codeHttp = codeHttp;
+            this.tokenRefuse = tokenRefuse;
+            this.erreur = erreur;
+        }
+
+        static Issue synchronisee(boolean modifiee) {
+            return new Issue(true, modifiee, 0, null, null);
+        }
+
+        static Issue echec(int codeHttp, @Nullable String tokenRefuse, @Nullable Throwable erreur) {
+            return new Issue(false, false, codeHttp, tokenRefuse, erreur);
+        }
+    }
+}
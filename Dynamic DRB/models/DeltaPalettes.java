@@ -0,0 +1,102 @@
+package com.mdo.gestionpalettes.models;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Réponse d'une synchronisation incrémentale (paramètre "depuis" des endpoints de liste) :
+ * les palettes modifiées depuis le dernier horodatage et toujours dans la liste, et les numéros
+ * des palettes qui en sont sorties. Avec "complet", la réponse contient toute la liste.
+ */
+public class DeltaPalettes {
+    private String horodatage;
+    private boolean complet;
+    private List<PaletteConsultation> palettes = new ArrayList<>();
+    private List<String> supprimees = new ArrayList<>();
+
+    public String getHorodatage() { return horodatage; }
+    public boolean isComplet() { return complet; }
+    public List<PaletteConsultation> getPalettes() { return palettes; }
+    public List<String> getSupprimees() { return supprimees; }
+
+    /**
+     * @return true si la réponse modifie la liste locale.
+     */
+    public boolean estModifiant() {
+        return complet || !palettes.isEmpty() || !supprimees.isEmpty();
+    }
+
+    /**
+     * Adaptateur Gson sans réflexion, enregistré par {@link ModelesTypeAdapterFactory}.
+     * Aucun champ n'est annoté @Expose : en configuration "exposés seulement", l'objet est vide.
+     */
+    static final class AdaptateurGson extends TypeAdapter<DeltaPalettes> {
+        private final boolean exposesSeulement;
+        private final PaletteConsultation.AdaptateurGson adaptateurPalette;
+
+        AdaptateurGson(boolean exposesSeulement) {
+            this.exposesSeulement = exposesSeulement;
+            this.adaptateurPalette = new PaletteConsultation.AdaptateurGson(exposesSeulement);
+        }
+
+        @Override
+        public void write(JsonWriter out, DeltaPalettes d) throws IOException {
+            out.beginObject();
+            if (!exposesSeulement) {
+                out.name("horodatage").value(d.horodatage);
+                out.name("complet").value(d.complet);
+                out.name("palettes").beginArray();
+                for (PaletteConsultation p : d.palettes) adaptateurPalette.write(out, p);
+                out.endArray();
+                out.name("supprimees").beginArray();
+                for (String num : d.supprimees) out.value(num);
+                out.endArray();
+            }
+            out.endObject();
+        }
+
+        @Override
+        public DeltaPalettes read(JsonReader in) throws IOException {
+            DeltaPalettes d = new DeltaPalettes();
+            if (exposesSeulement) {
+                JsonModeles.ignorerObjet(in);
+                return d;
+            }
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "horodatage":
+                        d.horodatage = JsonModeles.lireString(in);
+                        break;
+                    case "complet":
+                        if (in.peek() == JsonToken.NULL) {
+                            in.nextNull();
+                        } else {
+                            d.complet = in.nextBoolean();
+                        }
+                        break;
+                    case "palettes":
+                        in.beginArray();
+                        while (in.hasNext()) d.palettes.add(adaptateurPalette.read(in));
+                        in.endArray();
+                        break;
+                    case "supprimees":
+                        in.beginArray();
+                        while (in.hasNext()) d.supprimees.add(JsonModeles.lireString(in));
+                        in.endArray();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return d;
+        }
+    }
+}
@@ -2,6 +2,12 @@ package com.mdo.gestionpalettes.models;
 
 import androidx.annotation.NonNull;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
 public class EmplacementEntrepot {
     private String emplacement;
     private String etat;
@@ -16,4 +22,50 @@ public class EmplacementEntrepot {
     public String toString() {
         return getEmplacement();
     }
-}
\ No newline at end of file
+
+    /**
+     * Adaptateur Gson sans réflexion, enregistré par {@link ModelesTypeAdapterFactory}.
+     * Aucun champ n'est annoté @Expose : en configuration "exposés seulement", l'objet est vide.
+     */
+    static final class AdaptateurGson extends TypeAdapter<EmplacementEntrepot> {
+        private final boolean exposesSeulement;
+
+        AdaptateurGson(boolean exposesSeulement) {
+            this.exposesSeulement = exposesSeulement;
+        }
+
+        @Override
+        public void write(JsonWriter out, EmplacementEntrepot e) throws IOException {
+            out.beginObject();
+            if (!exposesSeulement) {
+                out.name("emplacement").value(e.emplacement);
+                out.name("etat").value(e.etat);
+            }
+            out.endObject();
+        }
+
+        @Override
+        public EmplacementEntrepot read(JsonReader in) throws IOException {
+            EmplacementEntrepot e = new EmplacementEntrepot();
+            if (exposesSeulement) {
+                JsonModeles.ignorerObjet(in);
+                return e;
+            }
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "emplacement":
+                        e.emplacement = JsonModeles.lireString(in);
+                        break;
+                    case "etat":
+                        e.etat = JsonModeles.lireString(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return e;
+        }
+    }
+}
@@ -1,9 +1,18 @@
 package com.mdo.gestionpalettes.models;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
 public class EntreePalette {
     private String num_palette;
     private String emplacement;
 
+    // Utilisé par AdaptateurGson
+    private EntreePalette() {}
+
     public EntreePalette(String num_palette, String emplacement) {
         this.num_palette = num_palette;
         this.emplacement = emplacement;
@@ -15,4 +24,50 @@ public class EntreePalette {
 
     public String getEmplacement() { return emplacement; }
     public void setEmplacement(String emplacement) { this.emplacement = emplacement; }
-}
\ No newline at end of file
+
+    /**
+     * Adaptateur Gson sans réflexion, enregistré par {@link ModelesTypeAdapterFactory}.
+     * Aucun champ n'est annoté @Expose : en configuration "exposés seulement", l'objet est vide.
+     */
+    static final class AdaptateurGson extends TypeAdapter<EntreePalette> {
+        private final boolean exposesSeulement;
+
+        AdaptateurGson(boolean exposesSeulement) {
+            this.exposesSeulement = exposesSeulement;
+        }
+
+        @Override
+        public void write(JsonWriter out, EntreePalette e) throws IOException {
+            out.beginObject();
+            if (!exposesSeulement) {
+                out.name("num_palette").value(e.num_palette);
+                out.name("emplacement").value(e.emplacement);
+            }
+            out.endObject();
+        }
+
+        @Override
+        public EntreePalette read(JsonReader in) throws IOException {
+            EntreePalette e = new EntreePalette();
+            if (exposesSeulement) {
+                JsonModeles.ignorerObjet(in);
+                return e;
+            }
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "num_palette":
+                        e.num_palette = JsonModeles.lireString(in);
+                        break;
+                    case "emplacement":
+                        e.emplacement = JsonModeles.lireString(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return e;
+        }
+    }
+}
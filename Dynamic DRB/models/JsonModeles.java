@@ -0,0 +1,63 @@
+package com.mdo.gestionpalettes.models;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Lectures JSON communes aux adaptateurs Gson écrits à la main pour les modèles.
+ * Reproduisent le comportement des adaptateurs réflexifs de Gson : un null JSON laisse
+ * un champ primitif à sa valeur par défaut, et les nombres sont acceptés là où une chaîne est attendue.
+ */
+final class JsonModeles {
+
+    private JsonModeles() {}
+
+    static String lireString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        if (in.peek() == JsonToken.BOOLEAN) {
+            return Boolean.toString(in.nextBoolean());
+        }
+        return in.nextString();
+    }
+
+    /**
+     * Lit une chaîne d'une valeur très répétée d'une liste (client, article, emplacement)
+     * et retourne son instance partagée (voir PoolChaines).
+     */
+    static String lireStringPartagee(JsonReader in) throws IOException {
+        return PoolChaines.partager(lireString(in));
+    }
+
+    static int lireInt(JsonReader in, int valeurParDefaut) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return valeurParDefaut;
+        }
+        return in.nextInt();
+    }
+
+    static Integer lireInteger(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextInt();
+    }
+
+    /**
+     * Ignore tout le contenu d'un objet dont aucun champ n'est désérialisable dans la configuration courante.
+     */
+    static void ignorerObjet(JsonReader in) throws IOException {
+        in.beginObject();
+        while (in.hasNext()) {
+            in.nextName();
+            in.skipValue();
+        }
+        in.endObject();
+    }
+}
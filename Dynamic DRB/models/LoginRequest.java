@@ -1,5 +1,11 @@
 package com.mdo.gestionpalettes.models;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
 public class LoginRequest {
     private final String username;
     private final String password;
@@ -11,4 +17,51 @@ public class LoginRequest {
 
     public String getUsername() { return username; }
     public String getPassword() { return password; }
-}
\ No newline at end of file
+
+    /**
+     * Adaptateur Gson sans réflexion, enregistré par {@link ModelesTypeAdapterFactory}.
+     * Aucun champ n'est annoté @Expose : en configuration "exposés seulement", l'objet est vide.
+     */
+    static final class AdaptateurGson extends TypeAdapter<LoginRequest> {
+        private final boolean exposesSeulement;
+
+        AdaptateurGson(boolean exposesSeulement) {
+            this.exposesSeulement = exposesSeulement;
+        }
+
+        @Override
+        public void write(JsonWriter out, LoginRequest l) throws IOException {
+            out.beginObject();
+            if (!exposesSeulement) {
+                out.name("username").value(l.username);
+                out.name("password").value(l.password);
+            }
+            out.endObject();
+        }
+
+        @Override
+        public LoginRequest read(JsonReader in) throws IOException {
+            if (exposesSeulement) {
+                JsonModeles.ignorerObjet(in);
+                return new LoginRequest(null, null);
+            }
+            String username = null;
+            String password = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "username":
+                        username = JsonModeles.lireString(in);
+                        break;
+                    case "password":
+                        password = JsonModeles.lireString(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return new LoginRequest(username, password);
+        }
+    }
+}
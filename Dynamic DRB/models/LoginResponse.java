@@ -1,9 +1,55 @@
 package com.mdo.gestionpalettes.models;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
 public class LoginResponse {
     private String access_token;
 
     public String getAccessToken() {
         return access_token;
     }
-}
\ No newline at end of file
+
+    /**
+     * Adaptateur Gson sans réflexion, enregistré par {@link ModelesTypeAdapterFactory}.
+     * Aucun champ n'est annoté @Expose : en configuration "exposés seulement", l'objet est vide.
+     */
+    static final class AdaptateurGson extends TypeAdapter<LoginResponse> {
+        private final boolean exposesSeulement;
+
+        AdaptateurGson(boolean exposesSeulement) {
+            this.exposesSeulement = exposesSeulement;
+        }
+
+        @Override
+        public void write(JsonWriter out, LoginResponse l) throws IOException {
+            out.beginObject();
+            if (!exposesSeulement) {
+                out.name("access_token").value(l.access_token);
+            }
+            out.endObject();
+        }
+
+        @Override
+        public LoginResponse read(JsonReader in) throws IOException {
+            LoginResponse l = new LoginResponse();
+            if (exposesSeulement) {
+                JsonModeles.ignorerObjet(in);
+                return l;
+            }
+            in.beginObject();
+            while (in.hasNext()) {
+                if ("access_token".equals(in.nextName())) {
+                    l.access_token = JsonModeles.lireString(in);
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return l;
+        }
+    }
+}
@@ -1,9 +1,18 @@
 package com.mdo.gestionpalettes.models;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
 public class MiseAJourEmplacement {
     private String num_palette;
     private String nouvel_emplacement;
 
+    // Utilisé par AdaptateurGson
+    private MiseAJourEmplacement() {}
+
     public MiseAJourEmplacement(String num_palette, String nouvel_emplacement) {
         this.num_palette = num_palette;
         this.nouvel_emplacement = nouvel_emplacement;
@@ -14,4 +23,50 @@ public class MiseAJourEmplacement {
 
     public String getNouvel_emplacement() { return nouvel_emplacement; }
     public void setNouvel_emplacement(String nouvel_emplacement) { this.nouvel_emplacement = nouvel_emplacement; }
+
+    /**
+     * Adaptateur Gson sans réflexion, enregistré par {@link ModelesTypeAdapterFactory}.
+     * Aucun champ n'est annoté @Expose : en configuration "exposés seulement", l'objet est vide.
+     */
+    static final class AdaptateurGson extends TypeAdapter<MiseAJourEmplacement> {
+        private final boolean exposesSeulement;
+
+        AdaptateurGson(boolean exposesSeulement) {
+            this.exposesSeulement = exposesSeulement;
+        }
+
+        @Override
+        public void write(JsonWriter out, MiseAJourEmplacement m) throws IOException {
+            out.beginObject();
+            if (!exposesSeulement) {
+                out.name("num_palette").value(m.num_palette);
+                out.name("nouvel_emplacement").value(m.nouvel_emplacement);
+            }
+            out.endObject();
+        }
+
+        @Override
+        public MiseAJourEmplacement read(JsonReader in) throws IOException {
+            MiseAJourEmplacement m = new MiseAJourEmplacement();
+            if (exposesSeulement) {
+                JsonModeles.ignorerObjet(in);
+                return m;
+            }
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "num_palette":
+                        m.num_palette = JsonModeles.lireString(in);
+                        break;
+                    case "nouvel_emplacement":
+                        m.nouvel_emplacement = JsonModeles.lireString(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return m;
+        }
+    }
 }
@@ -0,0 +1,79 @@
+package com.mdo.gestionpalettes.models;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Fabrique unique des adaptateurs Gson écrits à la main pour tous les modèles du package.
+ * Remplace la (dé)sérialisation réflexive : pas d'introspection des champs au premier appel,
+ * ni de Field.get/set à chaque palette.
+ *
+ * Deux configurations existent, comme pour les clients Retrofit :
+ * - standard : tous les champs, sous leur nom @SerializedName ;
+ * - exposés seulement : équivalent de excludeFieldsWithoutExposeAnnotation(), en respectant
+ *   les attributs serialize/deserialize de chaque @Expose.
+ */
+public final class ModelesTypeAdapterFactory implements TypeAdapterFactory {
+
+    private final boolean exposesSeulement;
+
+    private ModelesTypeAdapterFactory(boolean exposesSeulement) {
+        this.exposesSeulement = exposesSeulement;
+    }
+
+    /**
+     * @return La fabrique pour la configuration Gson par défaut.
+     */
+    public static ModelesTypeAdapterFactory standard() {
+        return new ModelesTypeAdapterFactory(false);
+    }
+
+    /**
+     * @return La fabrique pour une configuration Gson avec excludeFieldsWithoutExposeAnnotation().
+     */
+    public static ModelesTypeAdapterFactory exposesSeulement() {
+        return new ModelesTypeAdapterFactory(true);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        Class<? super T> raw = type.getRawType();
+        TypeAdapter<?> adapter;
+
+        if (raw == PaletteConsultation.class) {
+            adapter = new PaletteConsultation.AdaptateurGson(exposesSeulement);
+        } else if (raw == PaletteInfosResponse.class) {
+            adapter = new PaletteInfosResponse.AdaptateurGson(exposesSeulement);
+        } else if (raw == DeltaPalettes.class) {
+            adapter = new DeltaPalettes.AdaptateurGson(exposesSeulement);
+        } else if (raw == EmplacementEntrepot.class) {
+            adapter = new EmplacementEntrepot.AdaptateurGson(exposesSeulement);
+        } else if (raw == ValidationInventaire.class) {
+            adapter = new ValidationInventaire.AdaptateurGson();
+        } else if (raw == ValidationDestruction.class) {
+            adapter = new ValidationDestruction.AdaptateurGson(exposesSeulement);
+        } else if (raw == ValidationRenvoie.class) {
+            adapter = new ValidationRenvoie.AdaptateurGson(exposesSeulement);
+        } else if (raw == ValidationSortieProduction.class) {
+            adapter = new ValidationSortieProduction.AdaptateurGson(exposesSeulement);
+        } else if (raw == ResultatValidation.class) {
+            adapter = new ResultatValidation.AdaptateurGson();
+        } else if (raw == EntreePalette.class) {
+            adapter = new EntreePalette.AdaptateurGson(exposesSeulement);
+        } else if (raw == MiseAJourEmplacement.class) {
+            adapter = new MiseAJourEmplacement.AdaptateurGson(exposesSeulement);
+        } else if (raw == SortiePaletteComplete.class) {
+            adapter = new SortiePaletteComplete.AdaptateurGson(exposesSeulement);
+        } else if (raw == LoginRequest.class) {
+            adapter = new LoginRequest.AdaptateurGson(exposesSeulement);
+        } else if (raw == LoginResponse.class) {
+            adapter = new LoginResponse.AdaptateurGson(exposesSeulement);
+        } else {
+            return null;
+        }
+        return (TypeAdapter<T>) adapter.nullSafe();
+    }
+}
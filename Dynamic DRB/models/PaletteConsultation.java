@@ -1,17 +1,108 @@
 package com.mdo.gestionpalettes.models;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
 public class PaletteConsultation {
     private String num_palette;
     private String nom_client;
     private String article;
     private int quantite;
     private String emplacement;
-    private String statut;
+    private StatutPalette statut;
+    // Libellé reçu quand il diffère de celui du code (statut AUTRE, autre casse), null sinon
+    private String libelleRecu;
+
+    // Utilisé par AdaptateurGson
+    private PaletteConsultation() {}
+
+    public PaletteConsultation(String num_palette, String nom_client, String article, int quantite, String emplacement, String statut) {
+        this.num_palette = num_palette;
+        this.nom_client = nom_client;
+        this.article = article;
+        this.quantite = quantite;
+        this.emplacement = emplacement;
+        setStatut(statut);
+    }
 
     public String getNum_palette() { return num_palette; }
     public String getNom_client() { return nom_client; }
     public String getArticle() { return article; }
     public int getQuantite() { return quantite; }
     public String getEmplacement() { return emplacement; }
-    public String getStatut() { return statut; }
+    public String getStatut() {
+        return libelleRecu != null ? libelleRecu : statut != null ? statut.getLibelle() : null;
+    }
+    public StatutPalette getStatutCode() { return statut; }
+
+    private void setStatut(String statut) {
+        this.statut = StatutPalette.de(statut);
+        this.libelleRecu = this.statut != null && !statut.equals(this.statut.getLibelle()) ? statut : null;
+    }
+
+    /**
+     * Adaptateur Gson sans réflexion, enregistré par {@link ModelesTypeAdapterFactory}.
+     * Aucun champ n'est annoté @Expose : en configuration "exposés seulement", l'objet est vide.
+     * Le client, l'article et l'emplacement sont partagés (PoolChaines), le statut converti en code.
+     */
+    static final class AdaptateurGson extends TypeAdapter<PaletteConsultation> {
+        private final boolean exposesSeulement;
+
+        AdaptateurGson(boolean exposesSeulement) {
+            this.exposesSeulement = exposesSeulement;
+        }
+
+        @Override
+        public void write(JsonWriter out, PaletteConsultation p) throws IOException {
+            out.beginObject();
+            if (!exposesSeulement) {
+                out.name("num_palette").value(p.num_palette);
+                out.name("nom_client").value(p.nom_client);
+                out.name("article").value(p.article);
+                out.name("quantite").value(p.quantite);
+                out.name("emplacement").value(p.emplacement);
+                out.name("statut").value(p.getStatut());
+            }
+            out.endObject();
+        }
+
+        @Override
+        public PaletteConsultation read(JsonReader in) throws IOException {
+            PaletteConsultation p = new PaletteConsultation();
+            if (exposesSeulement) {
+                JsonModeles.ignorerObjet(in);
+                return p;
+            }
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "num_palette":
+                        p.num_palette = JsonModeles.lireString(in);
+                        break;
+                    case "nom_client":
+                        p.nom_client = JsonModeles.lireStringPartagee(in);
+                        break;
+                    case "article":
+                        p.article = JsonModeles.lireStringPartagee(in);
+                        break;
+                    case "quantite":
+                        p.quantite = JsonModeles.lireInt(in, p.quantite);
+                        break;
+                    case "emplacement":
+                        p.emplacement = JsonModeles.lireStringPartagee(in);
+                        break;
+                    case "statut":
+                        p.setStatut(JsonModeles.lireString(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return p;
+        }
+    }
 }
@@ -1,6 +1,11 @@
 package com.mdo.gestionpalettes.models;
 
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
 
 public class PaletteInfosResponse {
     @SerializedName("num_palette")
@@ -9,8 +14,10 @@ public class PaletteInfosResponse {
     @SerializedName("nom_client")
     private String nom_client;
 
-    @SerializedName("statut")
-    private String statut;
+    // Écrit et lu sous le nom "statut" par AdaptateurGson
+    private StatutPalette statut;
+    // Libellé reçu quand il diffère de celui du code (statut AUTRE, autre casse), null sinon
+    private String libelleRecu;
 
     @SerializedName("article")
     private String article;
@@ -38,11 +45,16 @@ public class PaletteInfosResponse {
     }
 
     public String getStatut() {
+        return libelleRecu != null ? libelleRecu : statut != null ? statut.getLibelle() : null;
+    }
+
+    public StatutPalette getStatutCode() {
         return statut;
     }
 
     public void setStatut(String statut) {
-        this.statut = statut;
+        this.statut = StatutPalette.de(statut);
+        this.libelleRecu = this.statut != null && !statut.equals(this.statut.getLibelle()) ? statut : null;
     }
 
     public String getArticle() {
@@ -71,4 +83,67 @@ public class PaletteInfosResponse {
 
     public String getNumPalette() {return num_palette;
     }
-}
\ No newline at end of file
+
+    /**
+     * Adaptateur Gson sans réflexion, enregistré par {@link ModelesTypeAdapterFactory}.
+     * Aucun champ n'est annoté @Expose : en configuration "exposés seulement", l'objet est vide.
+     * Le client, l'article et l'emplacement sont partagés (PoolChaines), le statut converti en code.
+     */
+    static final class AdaptateurGson extends TypeAdapter<PaletteInfosResponse> {
+        private final boolean exposesSeulement;
+
+        AdaptateurGson(boolean exposesSeulement) {
+            this.exposesSeulement = exposesSeulement;
+        }
+
+        @Override
+        public void write(JsonWriter out, PaletteInfosResponse p) throws IOException {
+            out.beginObject();
+            if (!exposesSeulement) {
+                out.name("num_palette").value(p.num_palette);
+                out.name("nom_client").value(p.nom_client);
+                out.name("statut").value(p.getStatut());
+                out.name("article").value(p.article);
+                out.name("quantite").value(p.quantite);
+                out.name("emplacement").value(p.emplacement);
+            }
+            out.endObject();
+        }
+
+        @Override
+        public PaletteInfosResponse read(JsonReader in) throws IOException {
+            PaletteInfosResponse p = new PaletteInfosResponse();
+            if (exposesSeulement) {
+                JsonModeles.ignorerObjet(in);
+                return p;
+            }
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "num_palette":
+                        p.num_palette = JsonModeles.lireString(in);
+                        break;
+                    case "nom_client":
+                        p.nom_client = JsonModeles.lireStringPartagee(in);
+                        break;
+                    case "statut":
+                        p.setStatut(JsonModeles.lireString(in));
+                        break;
+                    case "article":
+                        p.article = JsonModeles.lireStringPartagee(in);
+                        break;
+                    case "quantite":
+                        p.quantite = JsonModeles.lireInt(in, p.quantite);
+                        break;
+                    case "emplacement":
+                        p.emplacement = JsonModeles.lireStringPartagee(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return p;
+        }
+    }
+}
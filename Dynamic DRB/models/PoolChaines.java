@@ -0,0 +1,43 @@
+package com.mdo.gestionpalettes.models;
+
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pool de chaînes partagées pour les valeurs très répétées des listes de palettes
+ * (nom du client, article, emplacement) : chaque valeur lue est remplacée par une instance
+ * unique, et la chaîne tout juste désérialisée redevient aussitôt collectable.
+ *
+ * Le pool est borné : une fois plein, les nouvelles valeurs sont retournées telles quelles
+ * (des numéros ou libellés rarement répétés ne le font pas grossir indéfiniment).
+ * Utilisable depuis plusieurs threads (réponses Retrofit, lectures du stockage local).
+ */
+public final class PoolChaines {
+
+    private static final int TAILLE_MAX = 8192;
+
+    private static final ConcurrentHashMap<String, String> pool = new ConcurrentHashMap<>(256);
+
+    private PoolChaines() {}
+
+    /**
+     * @param valeur Une chaîne lue (JSON, base locale).
+     * @return L'instance partagée égale à la valeur, ou la valeur elle-même.
+     */
+    @Nullable
+    public static String partager(@Nullable String valeur) {
+        if (valeur == null) {
+            return null;
+        }
+        String partagee = pool.get(valeur);
+        if (partagee != null) {
+            return partagee;
+        }
+        if (pool.size() >= TAILLE_MAX) {
+            return valeur;
+        }
+        partagee = pool.putIfAbsent(valeur, valeur);
+        return partagee != null ? partagee : valeur;
+    }
+}
@@ -0,0 +1,160 @@
+package com.mdo.gestionpalettes.models;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Réponse d'une validation en lot (inventaire, destruction, renvoi, sortie production) :
+ * un message récapitulatif et l'issue de chaque palette. Une palette ignorée par le serveur
+ * (introuvable, statut changé entre-temps...) porte la raison à afficher et son état actuel,
+ * qui permet de corriger la copie locale de cette seule palette.
+ */
+public class ResultatValidation {
+
+    /** Issue d'une palette appliquée par le serveur. */
+    public static final String APPLIQUEE = "appliquee";
+    /** Issue d'une palette ignorée par le serveur. */
+    public static final String IGNOREE = "ignoree";
+
+    @Expose
+    private String message;
+
+    @Expose
+    private List<Resultat> resultats = new ArrayList<>();
+
+    public String getMessage() { return message; }
+    public List<Resultat> getResultats() { return resultats; }
+
+    /**
+     * @return Les palettes ignorées par le serveur, dans l'ordre du lot.
+     */
+    public List<Resultat> ignorees() {
+        List<Resultat> ignorees = new ArrayList<>();
+        for (Resultat r : resultats) {
+            if (!r.estAppliquee()) ignorees.add(r);
+        }
+        return ignorees;
+    }
+
+    /**
+     * Issue d'une palette du lot.
+     */
+    public static class Resultat {
+        @Expose
+        @SerializedName("num_palette")
+        private String numPalette;
+
+        @Expose
+        private String statut;
+
+        @Expose
+        private String raison;
+
+        // État actuel de la palette ignorée, ou null (palette appliquée ou introuvable)
+        @Expose
+        private PaletteConsultation palette;
+
+        public String getNumPalette() { return numPalette; }
+        public String getStatut() { return statut; }
+        public String getRaison() { return raison; }
+        public PaletteConsultation getPalette() { return palette; }
+
+        public boolean estAppliquee() {
+            return APPLIQUEE.equals(statut);
+        }
+    }
+
+    /**
+     * Adaptateur Gson sans réflexion, enregistré par {@link ModelesTypeAdapterFactory}.
+     * Tous les champs sont annotés @Expose : la réponse est lue de la même façon dans les deux configurations,
+     * y compris la palette imbriquée.
+     */
+    static final class AdaptateurGson extends TypeAdapter<ResultatValidation> {
+        private final PaletteConsultation.AdaptateurGson adaptateurPalette = new PaletteConsultation.AdaptateurGson(false);
+
+        @Override
+        public void write(JsonWriter out, ResultatValidation v) throws IOException {
+            out.beginObject();
+            out.name("message").value(v.message);
+            out.name("resultats").beginArray();
+            for (Resultat r : v.resultats) {
+                out.beginObject();
+                out.name("num_palette").value(r.numPalette);
+                out.name("statut").value(r.statut);
+                out.name("raison").value(r.raison);
+                out.name("palette");
+                if (r.palette == null) {
+                    out.nullValue();
+                } else {
+                    adaptateurPalette.write(out, r.palette);
+                }
+                out.endObject();
+            }
+            out.endArray();
+            out.endObject();
+        }
+
+        @Override
+        public ResultatValidation read(JsonReader in) throws IOException {
+            ResultatValidation v = new ResultatValidation();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "message":
+                        v.message = JsonModeles.lireString(in);
+                        break;
+                    case "resultats":
+                        if (in.peek() == JsonToken.NULL) {
+                            in.nextNull();
+                            break;
+                        }
+                        in.beginArray();
+                        while (in.hasNext()) v.resultats.add(lireResultat(in));
+                        in.endArray();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return v;
+        }
+
+        private Resultat lireResultat(JsonReader in) throws IOException {
+            Resultat r = new Resultat();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "num_palette":
+                        r.numPalette = JsonModeles.lireString(in);
+                        break;
+                    case "statut":
+                        r.statut = JsonModeles.lireString(in);
+                        break;
+                    case "raison":
+                        r.raison = JsonModeles.lireString(in);
+                        break;
+                    case "palette":
+                        if (in.peek() == JsonToken.NULL) {
+                            in.nextNull();
+                        } else {
+                            r.palette = adaptateurPalette.read(in);
+                        }
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return r;
+        }
+    }
+}
@@ -1,10 +1,19 @@
 package com.mdo.gestionpalettes.models;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
 public class SortiePaletteComplete {
     private String num_palette;
     private String zone;
     private String statut;
 
+    // Utilisé par AdaptateurGson
+    private SortiePaletteComplete() {}
+
     public SortiePaletteComplete(String num_palette, String zone, String statut) {
         this.num_palette = num_palette;
         this.zone = zone;
@@ -34,4 +43,54 @@ public class SortiePaletteComplete {
     public void setStatut(String statut) {
         this.statut = statut;
     }
-}
\ No newline at end of file
+
+    /**
+     * Adaptateur Gson sans réflexion, enregistré par {@link ModelesTypeAdapterFactory}.
+     * Aucun champ n'est annoté @Expose : en configuration "exposés seulement", l'objet est vide.
+     */
+    static final class AdaptateurGson extends TypeAdapter<SortiePaletteComplete> {
+        private final boolean exposesSeulement;
+
+        AdaptateurGson(boolean exposesSeulement) {
+            this.exposesSeulement = exposesSeulement;
+        }
+
+        @Override
+        public void write(JsonWriter out, SortiePaletteComplete s) throws IOException {
+            out.beginObject();
+            if (!exposesSeulement) {
+                out.name("num_palette").value(s.num_palette);
+                out.name("zone").value(s.zone);
+                out.name("statut").value(s.statut);
+            }
+            out.endObject();
+        }
+
+        @Override
+        public SortiePaletteComplete read(JsonReader in) throws IOException {
+            SortiePaletteComplete s = new SortiePaletteComplete();
+            if (exposesSeulement) {
+                JsonModeles.ignorerObjet(in);
+                return s;
+            }
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "num_palette":
+                        s.num_palette = JsonModeles.lireString(in);
+                        break;
+                    case "zone":
+                        s.zone = JsonModeles.lireString(in);
+                        break;
+                    case "statut":
+                        s.statut = JsonModeles.lireString(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return s;
+        }
+    }
+}
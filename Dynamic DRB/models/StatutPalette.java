@@ -0,0 +1,57 @@
+package com.mdo.gestionpalettes.models;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Statuts connus d'une palette, conservés sous forme de code dans les modèles :
+ * une liste de plusieurs dizaines de milliers de palettes ne garde qu'une référence
+ * vers l'une de ces constantes au lieu d'une chaîne par palette.
+ */
+public enum StatutPalette {
+    A_INVENTORIER("A Inventorier"),
+    A_DETRUIRE("A Détruire"),
+    A_RENVOYER("A Renvoyer"),
+    EN_STOCK("En Stock"),
+    EN_PROD("En Prod"),
+    DETRUITE("Détruite"),
+    RENVOYE("Renvoyé"),
+    /** Statut absent de cette liste : le libellé reçu est conservé tel quel à côté du code. */
+    AUTRE(null);
+
+    private static final StatutPalette[] CONNUS = values();
+
+    private final String libelle;
+
+    StatutPalette(String libelle) {
+        this.libelle = libelle;
+    }
+
+    /**
+     * @return Le libellé du statut, ou null pour {@link #AUTRE}.
+     */
+    @Nullable
+    public String getLibelle() {
+        return libelle;
+    }
+
+    /**
+     * Les modèles conservent le libellé reçu lorsqu'il diffère de celui du code (autre casse),
+     * pour le restituer tel quel à l'affichage et dans le JSON écrit.
+     *
+     * @param libelle Un statut tel que reçu du serveur ou lu en base (casse indifférente, comme les filtres du serveur).
+     * @return Le code correspondant, {@link #AUTRE} pour un statut inconnu, ou null pour un statut absent.
+     */
+    @Nullable
+    public static StatutPalette de(@Nullable String libelle) {
+        if (libelle == null) {
+            return null;
+        }
+        for (StatutPalette s : CONNUS) {
+            if (libelle.equals(s.libelle)) return s;
+        }
+        for (StatutPalette s : CONNUS) {
+            if (libelle.equalsIgnoreCase(s.libelle)) return s;
+        }
+        return AUTRE;
+    }
+}
@@ -2,9 +2,14 @@ package com.mdo.gestionpalettes.models;
 
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import java.io.IOException;
+
 public class ValidationDestruction implements Parcelable {
     @Expose
     @SerializedName("num_palette")
@@ -20,6 +25,14 @@ public class ValidationDestruction implements Parcelable {
     @Expose(serialize = false)
     private String emplacement;
 
+    // Horodatage de la liste synchronisée contre laquelle le scan a été vérifié (fraîcheur du scan)
+    @Expose
+    @SerializedName("horodatage_liste")
+    private String horodatageListe;
+
+    // Utilisé par AdaptateurGson
+    private ValidationDestruction() {}
+
     public ValidationDestruction(String numPalette, int quantite, String emplacement) {
         this.numPalette = numPalette;
         this.quantite = quantite;
@@ -32,6 +45,7 @@ public class ValidationDestruction implements Parcelable {
         quantite = in.readInt();
         statut = in.readString();
         emplacement = in.readString();
+        horodatageListe = in.readString();
     }
 
     @Override
@@ -40,6 +54,7 @@ public class ValidationDestruction implements Parcelable {
         dest.writeInt(quantite);
         dest.writeString(statut);
         dest.writeString(emplacement);
+        dest.writeString(horodatageListe);
     }
 
     @Override
@@ -74,4 +89,70 @@ public class ValidationDestruction implements Parcelable {
     public String getEmplacement() {
         return emplacement;
     }
+
+    public String getHorodatageListe() {
+        return horodatageListe;
+    }
+
+    public void setHorodatageListe(String horodatageListe) {
+        this.horodatageListe = horodatageListe;
+    }
+
+    /**
+     * Adaptateur Gson sans réflexion, enregistré par {@link ModelesTypeAdapterFactory}.
+     * En configuration "exposés seulement", quantite et emplacement sont lus mais pas écrits (@Expose(serialize = false)).
+     */
+    static final class AdaptateurGson extends TypeAdapter<ValidationDestruction> {
+        private final boolean exposesSeulement;
+
+        AdaptateurGson(boolean exposesSeulement) {
+            this.exposesSeulement = exposesSeulement;
+        }
+
+        @Override
+        public void write(JsonWriter out, ValidationDestruction v) throws IOException {
+            out.beginObject();
+            out.name("num_palette").value(v.numPalette);
+            if (!exposesSeulement) {
+                out.name("quantite").value(v.quantite);
+            }
+            out.name("statut").value(v.statut);
+            if (v.horodatageListe != null) {
+                out.name("horodatage_liste").value(v.horodatageListe);
+            }
+            if (!exposesSeulement) {
+                out.name("emplacement").value(v.emplacement);
+            }
+            out.endObject();
+        }
+
+        @Override
+        public ValidationDestruction read(JsonReader in) throws IOException {
+            ValidationDestruction v = new ValidationDestruction();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "num_palette":
+                        v.numPalette = JsonModeles.lireString(in);
+                        break;
+                    case "quantite":
+                        v.quantite = JsonModeles.lireInt(in, v.quantite);
+                        break;
+                    case "statut":
+                        v.statut = JsonModeles.lireString(in);
+                        break;
+                    case "emplacement":
+                        v.emplacement = JsonModeles.lireString(in);
+                        break;
+                    case "horodatage_liste":
+                        v.horodatageListe = JsonModeles.lireString(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return v;
+        }
+    }
 }
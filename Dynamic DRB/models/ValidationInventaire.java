@@ -2,9 +2,14 @@ package com.mdo.gestionpalettes.models;
 
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import java.io.IOException;
+
 public class ValidationInventaire implements Parcelable {
     @Expose
     @SerializedName("num_palette")
@@ -22,6 +27,9 @@ public class ValidationInventaire implements Parcelable {
     @SerializedName("emplacement")
     private String emplacement;
 
+    // Utilisé par AdaptateurGson
+    private ValidationInventaire() {}
+
     public ValidationInventaire(String numPalette, int quantite, String emplacement) {
         this.numPalette = numPalette;
         this.quantite = quantite;
@@ -77,4 +85,46 @@ public class ValidationInventaire implements Parcelable {
     public String getEmplacement() {
         return emplacement;
     }
+
+    /**
+     * Adaptateur Gson sans réflexion, enregistré par {@link ModelesTypeAdapterFactory}.
+     * Tous les champs sont exposés : les deux configurations Gson produisent le même JSON.
+     */
+    static final class AdaptateurGson extends TypeAdapter<ValidationInventaire> {
+        @Override
+        public void write(JsonWriter out, ValidationInventaire v) throws IOException {
+            out.beginObject();
+            out.name("num_palette").value(v.numPalette);
+            out.name("quantite").value(v.quantite);
+            out.name("statut").value(v.statut);
+            out.name("emplacement").value(v.emplacement);
+            out.endObject();
+        }
+
+        @Override
+        public ValidationInventaire read(JsonReader in) throws IOException {
+            ValidationInventaire v = new ValidationInventaire();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "num_palette":
+                        v.numPalette = JsonModeles.lireString(in);
+                        break;
+                    case "quantite":
+                        v.quantite = JsonModeles.lireInt(in, v.quantite);
+                        break;
+                    case "statut":
+                        v.statut = JsonModeles.lireString(in);
+                        break;
+                    case "emplacement":
+                        v.emplacement = JsonModeles.lireString(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return v;
+        }
+    }
 }
@@ -2,11 +2,16 @@ package com.mdo.gestionpalettes.models;
 
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import android.os.Parcel;
 import android.os.Parcelable;
 
 import com.mdo.gestionpalettes.R;
 
+import java.io.IOException;
+
 public class ValidationRenvoie implements Parcelable {
     @Expose
     @SerializedName("num_palette")
@@ -22,6 +27,14 @@ public class ValidationRenvoie implements Parcelable {
     @Expose(serialize = false)
     private String emplacement;
 
+    // Horodatage de la liste synchronisée contre laquelle le scan a été vérifié (fraîcheur du scan)
+    @Expose
+    @SerializedName("horodatage_liste")
+    private String horodatageListe;
+
+    // Utilisé par AdaptateurGson
+    private ValidationRenvoie() {}
+
     public ValidationRenvoie(String numPalette, int quantite, String emplacement) {
         this.numPalette = numPalette;
         this.quantite = quantite;
@@ -34,6 +47,7 @@ public class ValidationRenvoie implements Parcelable {
         quantite = in.readInt();
         statut = in.readString();
         emplacement = in.readString();
+        horodatageListe = in.readString();
     }
 
     @Override
@@ -42,6 +56,7 @@ public class ValidationRenvoie implements Parcelable {
         dest.writeInt(quantite);
         dest.writeString(statut);
         dest.writeString(emplacement);
+        dest.writeString(horodatageListe);
     }
 
     @Override
@@ -76,4 +91,70 @@ public class ValidationRenvoie implements Parcelable {
     public String getEmplacement() {
         return emplacement;
     }
+
+    public String getHorodatageListe() {
+        return horodatageListe;
+    }
+
+    public void setHorodatageListe(String horodatageListe) {
+        this.horodatageListe = horodatageListe;
+    }
+
+    /**
+     * Adaptateur Gson sans réflexion, enregistré par {@link ModelesTypeAdapterFactory}.
+     * En configuration "exposés seulement", quantite et emplacement sont lus mais pas écrits (@Expose(serialize = false)).
+     */
+    static final class AdaptateurGson extends TypeAdapter<ValidationRenvoie> {
+        private final boolean exposesSeulement;
+
+        AdaptateurGson(boolean exposesSeulement) {
+            this.exposesSeulement = exposesSeulement;
+        }
+
+        @Override
+        public void write(JsonWriter out, ValidationRenvoie v) throws IOException {
+            out.beginObject();
+            out.name("num_palette").value(v.numPalette);
+            if (!exposesSeulement) {
+                out.name("quantite").value(v.quantite);
+            }
+            out.name("statut").value(v.statut);
+            if (v.horodatageListe != null) {
+                out.name("horodatage_liste").value(v.horodatageListe);
+            }
+            if (!exposesSeulement) {
+                out.name("emplacement").value(v.emplacement);
+            }
+            out.endObject();
+        }
+
+        @Override
+        public ValidationRenvoie read(JsonReader in) throws IOException {
+            ValidationRenvoie v = new ValidationRenvoie();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "num_palette":
+                        v.numPalette = JsonModeles.lireString(in);
+                        break;
+                    case "quantite":
+                        v.quantite = JsonModeles.lireInt(in, v.quantite);
+                        break;
+                    case "statut":
+                        v.statut = JsonModeles.lireString(in);
+                        break;
+                    case "emplacement":
+                        v.emplacement = JsonModeles.lireString(in);
+                        break;
+                    case "horodatage_liste":
+                        v.horodatageListe = JsonModeles.lireString(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return v;
+        }
+    }
 }
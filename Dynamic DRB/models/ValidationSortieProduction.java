@@ -4,6 +4,11 @@ import android.os.Parcel;
 import android.os.Parcelable;
 
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
 
 public class ValidationSortieProduction implements Parcelable {
     @SerializedName("num_palette")
@@ -18,6 +23,13 @@ public class ValidationSortieProduction implements Parcelable {
     @SerializedName("emplacement")
     private String emplacement;
 
+    // Horodatage de la liste synchronisée contre laquelle le scan a été vérifié (fraîcheur du scan)
+    @SerializedName("horodatage_liste")
+    private String horodatageListe;
+
+
+    // Utilisé par AdaptateurGson
+    private ValidationSortieProduction() {}
 
     public ValidationSortieProduction(String numPalette, Integer quantite, String statut, String emplacement) {
         this.numPalette = numPalette;
@@ -35,6 +47,7 @@ public class ValidationSortieProduction implements Parcelable {
         }
         statut = in.readString();
         emplacement = in.readString();
+        horodatageListe = in.readString();
     }
 
     public static final Creator<ValidationSortieProduction> CREATOR = new Creator<ValidationSortieProduction>() {
@@ -53,6 +66,8 @@ public class ValidationSortieProduction implements Parcelable {
     public Integer getQuantite() { return quantite; }
     public String getStatut() { return statut; }
     public String getEmplacement() { return emplacement; }
+    public String getHorodatageListe() { return horodatageListe; }
+    public void setHorodatageListe(String horodatageListe) { this.horodatageListe = horodatageListe; }
 
     @Override
     public int describeContents() { return 0; }
@@ -68,5 +83,66 @@ public class ValidationSortieProduction implements Parcelable {
         }
         parcel.writeString(statut);
         parcel.writeString(emplacement);
+        parcel.writeString(horodatageListe);
+    }
+
+    /**
+     * Adaptateur Gson sans réflexion, enregistré par {@link ModelesTypeAdapterFactory}.
+     * Aucun champ n'est annoté @Expose : en configuration "exposés seulement", l'objet est vide.
+     */
+    static final class AdaptateurGson extends TypeAdapter<ValidationSortieProduction> {
+        private final boolean exposesSeulement;
+
+        AdaptateurGson(boolean exposesSeulement) {
+            this.exposesSeulement = exposesSeulement;
+        }
+
+        @Override
+        public void write(JsonWriter out, ValidationSortieProduction v) throws IOException {
+            out.beginObject();
+            if (!exposesSeulement) {
+                out.name("num_palette").value(v.numPalette);
+                out.name("quantite").value(v.quantite);
+                out.name("statut").value(v.statut);
+                out.name("emplacement").value(v.emplacement);
+                if (v.horodatageListe != null) {
+                    out.name("horodatage_liste").value(v.horodatageListe);
+                }
+            }
+            out.endObject();
+        }
+
+        @Override
+        public ValidationSortieProduction read(JsonReader in) throws IOException {
+            ValidationSortieProduction v = new ValidationSortieProduction();
+            if (exposesSeulement) {
+                JsonModeles.ignorerObjet(in);
+                return v;
+            }
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "num_palette":
+                        v.numPalette = JsonModeles.lireString(in);
+                        break;
+                    case "quantite":
+                        v.quantite = JsonModeles.lireInteger(in);
+                        break;
+                    case "statut":
+                        v.statut = JsonModeles.lireString(in);
+                        break;
+                    case "emplacement":
+                        v.emplacement = JsonModeles.lireString(in);
+                        break;
+                    case "horodatage_liste":
+                        v.horodatageListe = JsonModeles.lireString(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return v;
+        }
     }
 }
@@ -0,0 +1,121 @@
+package com.mdo.gestionpalettes.stockage;
+
+import android.content.Context;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Accès des écrans de flux (inventaire, destruction, renvoi, sortie production) à leur liste de travail.
+ *
+ * La liste est lue dans {@link PaletteStore} sur le thread disque ; tout le reste — mise en forme des lignes,
+ * index de scan ({@link MoteurScan}), liste à afficher, partitions par client — est calculé sur le pool
+ * {@link Travaux}. L'écran reçoit sur le thread principal une {@link Liste} prête à afficher
+ * et n'a plus aucun parcours de liste à faire.
+ */
+public final class DepotListes {
+
+    /**
+     * Lecture d'une liste de travail dans le stockage local (par exemple PaletteStore::palettesParStatut).
+     *
+     * @param <P> Le type de palette lu.
+     */
+    public interface Lecture<P> {
+        List<P> lire(PaletteStore store, String statut);
+    }
+
+    /**
+     * Mise en forme d'une palette en ligne affichable, appelée sur le pool de calcul.
+     *
+     * @param <P> Le type de palette lu.
+     * @param <L> Le type de ligne.
+     */
+    public interface Preparation<P, L> {
+        L ligne(P palette);
+    }
+
+    /**
+     * Liste de travail prête à afficher.
+     *
+     * @param <L> Le type de ligne.
+     */
+    public static final class Liste<L> {
+        private final MoteurScan<L> moteur;
+        private final List<L> aScanner;
+        @Nullable
+        private final PartitionsClients<L> partitions;
+
+        private Liste(MoteurScan<L> moteur, @Nullable PartitionsClients.Client<L> client) {
+            this.moteur = moteur;
+            List<L> restantes = moteur.palettesAScanner();
+            this.aScanner = Collections.unmodifiableList(restantes);
+            this.partitions = client != null ? new PartitionsClients<>(restantes, client) : null;
+        }
+
+        /**
+         * @return Le moteur de vérification des scans, construit sur la liste.
+         */
+        public MoteurScan<L> getMoteur() { return moteur; }
+
+        /**
+         * @return Les lignes pas encore scannées, dans l'ordre de la liste (liste immuable).
+         */
+        public List<L> getAScanner() { return aScanner; }
+
+        /**
+         * @return Les lignes pas encore scannées découpées par client, ou null si non demandé.
+         */
+        @Nullable
+        public PartitionsClients<L> getPartitions() { return partitions; }
+    }
+
+    private DepotListes() {}
+
+    /**
+     * Charge la liste de travail d'un statut, moins les palettes déjà scannées.
+     *
+     * @param context Le contexte Android.
+     * @param statut Le statut de la liste (voir les constantes de {@link PaletteStore}).
+     * @param lecture La lecture de la liste dans le stockage local.
+     * @param preparation La mise en forme d'une palette.
+     * @param numero L'accès au numéro d'une ligne.
+     * @param dejaScannees Les numéros des palettes déjà dans la session ; la collection est copiée.
+     * @param client L'accès au client d'une ligne pour découper la liste par client, ou null.
+     * @param rappel Le rappel de l'écran, appelé sur le thread principal.
+     * @param <P> Le type de palette lu.
+     * @param <L> Le type de ligne.
+     */
+    public static <P, L> void listeAScanner(Context context, String statut, Lecture<P> lecture,
+                                            Preparation<P, L> preparation, MoteurScan.Numero<L> numero,
+                                            Collection<String> dejaScannees,
+                                            @Nullable PartitionsClients.Client<L> client,
+                                            PaletteStore.Rappel<Liste<L>> rappel) {
+        PaletteStore store = PaletteStore.get(context);
+        List<String> scannees = new ArrayList<>(dejaScannees);
+        store.lire(() -> new Lue<>(lecture.lire(store, statut), store.horodatageSynchro(statut)), lue -> {
+            List<L> lignes = new ArrayList<>(lue.palettes.size());
+            for (P palette : lue.palettes) {
+                lignes.add(preparation.ligne(palette));
+            }
+            return new Liste<>(new MoteurScan<>(lignes, lue.horodatage, scannees, numero), client);
+        }, rappel);
+    }
+
+    /**
+     * Résultat de la lecture sur le thread disque : la liste et l'horodatage de sa synchronisation.
+     */
+    private static final class Lue<P> {
+        final List<P> palettes;
+        @Nullable
+        final String horodatage;
+
+        Lue(List<P> palettes, @Nullable String horodatage) {
+            this.palettes = palettes;
+            this.horodatage = horodatage;
+        }
+    }
+}
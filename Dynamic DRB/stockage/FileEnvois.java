@@ -0,0 +1,242 @@
+package com.mdo.gestionpalettes.stockage;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * File d'envoi persistante (SQLite) des opérations qui modifient des données côté serveur :
+ * entrées, changements d'emplacement et validations en lot. Une opération est enregistrée ici
+ * avant tout appel réseau ; elle survit donc à la perte du réseau comme à l'arrêt de l'application,
+ * et est envoyée dans l'ordre d'arrivée par {@link com.mdo.gestionpalettes.api.ExpediteurEnvois}.
+ *
+ * Les méthodes sont synchrones et ne doivent pas être appelées depuis le thread principal.
+ */
+public class FileEnvois extends SQLiteOpenHelper {
+
+    private static final String NOM_BASE = "envois.db";
+    private static final int VERSION_BASE = 2;
+
+    private static final String TABLE = "envoi";
+    private static final String[] COLONNES = {"id", "type", "corps", "cle", "libelle", "statut", "tentatives", "erreur", "cree", "lot"};
+
+    // Statuts d'un envoi
+    public static final String EN_ATTENTE = "En attente";
+    public static final String EN_COURS = "En cours";
+    public static final String ENVOYE = "Envoyé";
+    // Accepté, mais des palettes du lot ont été ignorées par le serveur (détail dans l'erreur)
+    public static final String PARTIEL = "Envoyé en partie";
+    public static final String ERREUR = "Refusé";
+
+    private static FileEnvois instance = null;
+
+    /**
+     * Une opération de la file.
+     */
+    public static final class Envoi {
+        private final long id;
+        private final String type;
+        private final String corps;
+        private final String cle;
+        private final String libelle;
+        private final String statut;
+        private final int tentatives;
+        private final String erreur;
+        private final long cree;
+        private final String lot;
+
+        Envoi(long id, String type, String corps, String cle, String libelle, String statut,
+              int tentatives, String erreur, long cree, String lot) {
+            this.id = id;
+            this.type = type;
+            this.corps = corps;
+            this.cle = cle;
+            this.libelle = libelle;
+            this.statut = statut;
+            this.tentatives = tentatives;
+            this.erreur = erreur;
+            this.cree = cree;
+            this.lot = lot;
+        }
+
+        public long getId() { return id; }
+        public String getType() { return type; }
+        public String getCorps() { return corps; }
+        public String getCle() { return cle; }
+        public String getLibelle() { return libelle; }
+        public String getStatut() { return statut; }
+        public int getTentatives() { return tentatives; }
+        public String getErreur() { return erreur; }
+        public long getCree() { return cree; }
+        /** @return La clé du lot dans lequel l'opération a déjà été envoyée, ou null (jamais envoyée). */
+        public String getLot() { return lot; }
+    }
+
+    private FileEnvois(Context context) {
+        super(context, NOM_BASE, null, VERSION_BASE);
+    }
+
+    /**
+     * @param context Le contexte Android ; seul le contexte applicatif est conservé.
+     * @return L'instance partagée de la file.
+     */
+    public static synchronized FileEnvois get(Context context) {
+        if (instance == null) {
+            instance = new FileEnvois(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE + " ("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "type TEXT NOT NULL, "
+                + "corps TEXT NOT NULL, "
+                + "cle TEXT NOT NULL, "
+                + "libelle TEXT, "
+                + "statut TEXT NOT NULL, "
+                + "tentatives INTEGER NOT NULL DEFAULT 0, "
+                + "erreur TEXT, "
+                + "cree INTEGER NOT NULL, "
+                + "maj INTEGER NOT NULL, "
+                + "lot TEXT)");
+        db.execSQL("CREATE INDEX idx_envoi_statut ON " + TABLE + " (statut, id)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            db.execSQL("ALTER TABLE " + TABLE + " ADD COLUMN lot TEXT");
+        }
+    }
+
+    /**
+     * Ajoute une opération en fin de file.
+     *
+     * @param type Le type d'opération (voir ExpediteurEnvois).
+     * @param corps Le corps JSON de la requête.
+     * @param cle La clé d'idempotence de l'opération.
+     * @param libelle Le texte affiché à l'opérateur.
+     * @return L'identifiant de l'opération.
+     */
+    public long ajouter(String type, String corps, String cle, String libelle) {
+        long maintenant = System.currentTimeMillis();
+        ContentValues valeurs = new ContentValues();
+        valeurs.put("type", type);
+        valeurs.put("corps", corps);
+        valeurs.put("cle", cle);
+        valeurs.put("libelle", libelle);
+        valeurs.put("statut", EN_ATTENTE);
+        valeurs.put("cree", maintenant);
+        valeurs.put("maj", maintenant);
+        return getWritableDatabase().insertOrThrow(TABLE, null, valeurs);
+    }
+
+    /**
+     * @return Les opérations à envoyer, dans l'ordre d'arrivée.
+     */
+    public List<Envoi> enAttente() {
+        return lire("statut = ?", new String[]{EN_ATTENTE}, "id", null);
+    }
+
+    /**
+     * @param nombreMax Le nombre maximal d'opérations retournées.
+     * @return Les dernières opérations, quel que soit leur statut, de la plus récente à la plus ancienne.
+     */
+    public List<Envoi> dernieres(int nombreMax) {
+        return lire(null, null, "id DESC", String.valueOf(nombreMax));
+    }
+
+    /**
+     * @return Le nombre d'opérations pas encore acceptées par le serveur (en attente ou en cours).
+     */
+    public int nombreNonEnvoyes() {
+        try (Cursor c = getReadableDatabase().rawQuery("SELECT COUNT(*) FROM " + TABLE
+                + " WHERE statut IN (?, ?)", new String[]{EN_ATTENTE, EN_COURS})) {
+            return c.moveToFirst() ? c.getInt(0) : 0;
+        }
+    }
+
+    /**
+     * Change le statut d'un groupe d'opérations envoyées ensemble.
+     *
+     * @param ids Les identifiants des opérations.
+     * @param statut Le nouveau statut.
+     * @param erreur Le message d'erreur à afficher, ou null.
+     * @param tentative true si un envoi a été tenté (le compteur de tentatives est incrémenté).
+     */
+    public void marquer(Collection<Long> ids, String statut, String erreur, boolean tentative) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            long maintenant = System.currentTimeMillis();
+            for (long id : ids) {
+                db.execSQL("UPDATE " + TABLE + " SET statut = ?, erreur = ?, maj = ?, tentatives = tentatives + ? WHERE id = ?",
+                        new Object[]{statut, erreur, maintenant, tentative ? 1 : 0, id});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Passe "en cours" un groupe d'opérations envoyées ensemble, en retenant la clé d'idempotence du lot :
+     * tant que le serveur n'a pas répondu définitivement, le groupe est renvoyé tel quel, avec cette clé.
+     *
+     * @param ids Les identifiants des opérations.
+     * @param lot La clé d'idempotence du lot.
+     */
+    public void marquerEnCours(Collection<Long> ids, String lot) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            long maintenant = System.currentTimeMillis();
+            for (long id : ids) {
+                db.execSQL("UPDATE " + TABLE + " SET statut = ?, lot = ?, maj = ? WHERE id = ?",
+                        new Object[]{EN_COURS, lot, maintenant, id});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Remet en attente les opérations restées "en cours" : l'application a été arrêtée pendant l'envoi.
+     * Les renvoyer est sans risque, le serveur reconnaît leur clé d'idempotence (celle de leur lot, conservée).
+     */
+    public void reprendreEnvoisInterrompus() {
+        ContentValues valeurs = new ContentValues();
+        valeurs.put("statut", EN_ATTENTE);
+        getWritableDatabase().update(TABLE, valeurs, "statut = ?", new String[]{EN_COURS});
+    }
+
+    /**
+     * Supprime les opérations terminées (envoyées, même en partie, ou refusées) depuis plus longtemps que la durée donnée.
+     *
+     * @param dureeMs La durée de conservation, en millisecondes.
+     */
+    public void purger(long dureeMs) {
+        getWritableDatabase().delete(TABLE, "statut IN (?, ?, ?) AND maj < ?",
+                new String[]{ENVOYE, PARTIEL, ERREUR, String.valueOf(System.currentTimeMillis() - dureeMs)});
+    }
+
+    private List<Envoi> lire(String selection, String[] arguments, String ordre, String limite) {
+        List<Envoi> envois = new ArrayList<>();
+        try (Cursor c = getReadableDatabase().query(TABLE, COLONNES, selection, arguments, null, null, ordre, limite)) {
+            while (c.moveToNext()) {
+                envois.add(new Envoi(c.getLong(0), c.getString(1), c.getString(2), c.getString(3), c.getString(4),
+                        c.getString(5), c.getInt(6), c.getString(7), c.getLong(8), c.getString(9)));
+            }
+        }
+        return envois;
+    }
+}
@@ -0,0 +1,180 @@
+package com.mdo.gestionpalettes.stockage;
+
+/**
+ * Table de hachage à adressage ouvert long → position, sans objet par entrée ni boxing,
+ * utilisée par {@link MoteurScan} pour retrouver une palette scannée en temps constant.
+ *
+ * Les numéros de palette (11 chiffres) sont convertis en clé long par {@link #cle(String)} ;
+ * la longueur du numéro fait partie de la clé, de sorte que "00012" et "12" restent distincts.
+ * Sondage linéaire, taux de remplissage maximal 1/2 ; un retrait laisse une pierre tombale
+ * (temps constant), recyclée à l'insertion suivante ou éliminée au prochain agrandissement.
+ *
+ * Non synchronisée : à utiliser depuis un seul thread.
+ */
+public final class IndexScan {
+
+    /** Clé d'un numéro non numérique ou trop long : à chercher dans un index de chaînes. */
+    public static final long CLE_INVALIDE = -1L;
+    /** Position retournée pour une clé absente. */
+    public static final int ABSENT = -1;
+
+    // Au-delà, valeur x 32 + longueur ne tient plus dans un long positif
+    private static final int CHIFFRES_MAX = 17;
+
+    private static final byte VIDE = 0;
+    private static final byte OCCUPE = 1;
+    private static final byte TOMBE = 2;
+
+    private long[] cles;
+    private int[] positions;
+    private byte[] etats;
+    private int masque;
+    private int taille;
+    // Cases occupées ou tombales : c'est ce qui allonge les sondages
+    private int utilisees;
+
+    /**
+     * @param capaciteAttendue Le nombre d'entrées prévu (la table s'agrandit au-delà).
+     */
+    public IndexScan(int capaciteAttendue) {
+        int capacite = 16;
+        while (capacite < capaciteAttendue * 2) capacite <<= 1;
+        allouer(capacite);
+    }
+
+    /**
+     * Normalise un numéro scanné en clé : espaces retirés, chiffres seulement.
+     *
+     * @param numPalette Le numéro scanné ou lu dans une liste.
+     * @return La clé, ou {@link #CLE_INVALIDE} si le numéro n'est pas entièrement numérique
+     * ou dépasse CHIFFRES_MAX chiffres.
+     */
+    public static long cle(String numPalette) {
+        int debut = 0;
+        int fin = numPalette.length();
+        while (debut < fin && numPalette.charAt(debut) <= ' ') debut++;
+        while (fin > debut && numPalette.charAt(fin - 1) <= ' ') fin--;
+        int longueur = fin - debut;
+        if (longueur == 0 || longueur > CHIFFRES_MAX) {
+            return CLE_INVALIDE;
+        }
+        long valeur = 0;
+        for (int i = debut; i < fin; i++) {
+            char c = numPalette.charAt(i);
+            if (c < '0' || c > '9') {
+                return CLE_INVALIDE;
+            }
+            valeur = valeur * 10 + (c - '0');
+        }
+        return (valeur << 5) | longueur;
+    }
+
+    public int taille() {
+        return taille;
+    }
+
+    /**
+     * Associe une position à une clé (remplace la précédente).
+     *
+     * @param cle Une clé obtenue par {@link #cle(String)}, différente de {@link #CLE_INVALIDE}.
+     * @param position La position associée, positive ou nulle.
+     */
+    public void put(long cle, int position) {
+        if ((utilisees + 1) * 2 > etats.length) {
+            // Beaucoup de pierres tombales : on nettoie à taille égale, sinon on double
+            redimensionner(taille * 4 > etats.length ? etats.length * 2 : etats.length);
+        }
+        int i = indice(cle);
+        int tombe = -1;
+        while (etats[i] != VIDE) {
+            if (etats[i] == OCCUPE && cles[i] == cle) {
+                positions[i] = position;
+                return;
+            }
+            if (etats[i] == TOMBE && tombe < 0) {
+                tombe = i;
+            }
+            i = (i + 1) & masque;
+        }
+        if (tombe >= 0) {
+            i = tombe;
+        } else {
+            utilisees++;
+        }
+        cles[i] = cle;
+        positions[i] = position;
+        etats[i] = OCCUPE;
+        taille++;
+    }
+
+    /**
+     * @param cle Une clé obtenue par {@link #cle(String)}.
+     * @return La position associée, ou {@link #ABSENT}.
+     */
+    public int get(long cle) {
+        int i = chercher(cle);
+        return i < 0 ? ABSENT : positions[i];
+    }
+
+    /**
+     * Retire une clé en temps constant (pierre tombale).
+     *
+     * @param cle Une clé obtenue par {@link #cle(String)}.
+     * @return La position qui lui était associée, ou {@link #ABSENT}.
+     */
+    public int retirer(long cle) {
+        int i = chercher(cle);
+        if (i < 0) {
+            return ABSENT;
+        }
+        etats[i] = TOMBE;
+        taille--;
+        return positions[i];
+    }
+
+    private int chercher(long cle) {
+        int i = indice(cle);
+        while (etats[i] != VIDE) {
+            if (etats[i] == OCCUPE && cles[i] == cle) {
+                return i;
+            }
+            i = (i + 1) & masque;
+        }
+        return -1;
+    }
+
+    /**
+     * Mélange les bits de la clé (finaliseur de MurmurHash3) : les numéros consécutifs
+     * ne s'agglutinent pas dans des cases voisines.
+     */
+    private int indice(long cle) {
+        long h = cle;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & masque;
+    }
+
+    private void allouer(int capacite) {
+        cles = new long[capacite];
+        positions = new int[capacite];
+        etats = new byte[capacite];
+        masque = capacite - 1;
+        taille = 0;
+        utilisees = 0;
+    }
+
+    private void redimensionner(int capacite) {
+        long[] anciennesCles = cles;
+        int[] anciennesPositions = positions;
+        byte[] anciensEtats = etats;
+        allouer(capacite);
+        for (int i = 0; i < anciensEtats.length; i++) {
+            if (anciensEtats[i] == OCCUPE) {
+                put(anciennesCles[i], anciennesPositions[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,506 @@
+package com.mdo.gestionpalettes.stockage;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.mdo.gestionpalettes.models.EmplacementEntrepot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Instantané binaire de la table des emplacements de l'entrepôt, projeté en mémoire (mmap).
+ *
+ * La table est enregistrée déjà triée et découpée en racks : à l'ouverture d'un écran, les spinners
+ * rack / emplacement se remplissent sans JSON à analyser, sans tri ni split(" ") sur le thread
+ * principal, avant même la réponse du serveur. La liste reçue du serveur est ensuite convertie en
+ * arrière-plan en un nouvel instantané, écrit dans un fichier temporaire puis renommé (remplacement
+ * atomique) ; les écrans ne sont rafraîchis que si son contenu a changé.
+ *
+ * Format (version 1, entiers gros-boutistes) :
+ * <pre>
+ * en-tête     : magic (int) | version (short) | nbEtats (short) | nbRacks (int) | nbEmplacements (int) | taille (int)
+ * états       : nbEtats x        [offset nom (int) | longueur (short) | 0 (short)]
+ * racks       : nbRacks x        [offset nom (int) | longueur (short) | 0 (short) | premier emplacement (int) | nombre (int)]
+ * emplacements: nbEmplacements x [offset nom (int) | longueur (short) | code état (byte) | 0 (byte)]
+ * chaînes     : noms en UTF-8, les offsets sont relatifs au début de cette zone
+ * </pre>
+ * Les racks sont triés par nom ; dans un rack, les emplacements libres viennent en premier.
+ */
+public final class InstantaneEmplacements {
+
+    private static final String TAG = "InstantaneEmplacements";
+
+    private static final String FICHIER = "emplacements.bin";
+    private static final int MAGIC = 0x454D504C; // "EMPL"
+    private static final short VERSION = 1;
+
+    private static final int TAILLE_EN_TETE = 20;
+    private static final int TAILLE_ETAT = 8;
+    private static final int TAILLE_RACK = 16;
+    private static final int TAILLE_EMPLACEMENT = 8;
+
+    private static final String LIBRE = "Libre";
+
+    /**
+     * Rappel recevant une table sur le thread principal.
+     */
+    public interface Rappel {
+        /**
+         * @param table La table, ou null si aucune n'est disponible (ou si rien n'a changé, pour {@link #remplacer}).
+         */
+        void surTable(@Nullable Table table);
+    }
+
+    private static final ExecutorService disque = Executors.newSingleThreadExecutor();
+    private static final Handler principal = new Handler(Looper.getMainLooper());
+
+    // Table projetée en cours ; null tant que le fichier n'a pas été ouvert
+    private static volatile Table courante = null;
+    private static volatile boolean ouverte = false;
+
+    private InstantaneEmplacements() {}
+
+    /**
+     * Livre la table enregistrée : immédiatement si elle est déjà projetée, sinon après projection
+     * du fichier sur le thread disque. Le rappel reçoit null si aucun instantané n'existe encore.
+     *
+     * @param context Le contexte Android.
+     * @param rappel Le rappel de l'écran appelant.
+     */
+    public static void ouvrir(Context context, Rappel rappel) {
+        if (ouverte) {
+            rappel.surTable(courante);
+            return;
+        }
+        File fichier = fichier(context);
+        disque.execute(() -> {
+            if (!ouverte) {
+                courante = projeter(fichier);
+                ouverte = true;
+            }
+            Table table = courante;
+            principal.post(() -> rappel.surTable(table));
+        });
+    }
+
+    /**
+     * Convertit la liste reçue du serveur en instantané et remplace atomiquement le fichier et la
+     * table projetée. Le rappel reçoit la nouvelle table, ou null si elle est identique à la précédente.
+     *
+     * @param context Le contexte Android.
+     * @param emplacements La liste reçue du serveur.
+     * @param rappel Le rappel de l'écran appelant.
+     */
+    public static void remplacer(Context context, List<EmplacementEntrepot> emplacements, Rappel rappel) {
+        File fichier = fichier(context);
+        List<EmplacementEntrepot> copie = new ArrayList<>(emplacements);
+        disque.execute(() -> {
+            if (!ouverte) {
+                courante = projeter(fichier);
+                ouverte = true;
+            }
+            Table table = null;
+            try {
+                byte[] octets = encoder(copie);
+                Table precedente = courante;
+                if (precedente == null || !precedente.octets().equals(ByteBuffer.wrap(octets))) {
+                    table = enregistrer(fichier, octets);
+                    courante = table;
+                }
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Enregistrement de l'instantané des emplacements impossible", e);
+            }
+            Table nouvelle = table;
+            principal.post(() -> rappel.surTable(nouvelle));
+        });
+    }
+
+    /**
+     * @param emplacement Un nom d'emplacement ("R01 A 02").
+     * @return Le nom de son rack ("R01").
+     */
+    public static String rackDe(String emplacement) {
+        int espace = emplacement.indexOf(' ');
+        return espace < 0 ? emplacement : emplacement.substring(0, espace);
+    }
+
+    private static File fichier(Context context) {
+        return new File(context.getApplicationContext().getFilesDir(), FICHIER);
+    }
+
+    /**
+     * Projette le fichier en lecture seule et vérifie son en-tête.
+     *
+     * @return La table, ou null si le fichier est absent, d'une autre version ou incohérent.
+     */
+    @Nullable
+    private static Table projeter(File fichier) {
+        if (!fichier.exists()) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(fichier, "r");
+             FileChannel canal = raf.getChannel()) {
+            // La projection reste valide après la fermeture du canal
+            ByteBuffer tampon = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            return new Table(tampon);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Instantané des emplacements illisible, il sera reconstruit : " + e.getMessage());
+            if (!fichier.delete()) {
+                Log.w(TAG, "Suppression de l'instantané impossible");
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Écrit l'instantané dans un fichier temporaire, le synchronise sur disque, puis le renomme
+     * par-dessus l'ancien : un lecteur voit toujours l'ancienne ou la nouvelle version complète.
+     * L'ancienne projection reste lisible jusqu'à ce que plus aucun écran ne la référence.
+     */
+    private static Table enregistrer(File fichier, byte[] octets) throws IOException {
+        File temporaire = new File(fichier.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temporaire)) {
+            out.write(octets);
+            out.getFD().sync();
+        }
+        if (!temporaire.renameTo(fichier)) {
+            throw new IOException("Renommage de " + temporaire + " impossible");
+        }
+        Table table = projeter(fichier);
+        if (table == null) {
+            throw new IOException("Instantané écrit illisible");
+        }
+        return table;
+    }
+
+    /**
+     * Regroupe les emplacements par rack (racks triés par nom, emplacements libres en premier,
+     * ordre du serveur conservé sinon) et les encode au format de l'instantané.
+     */
+    private static byte[] encoder(List<EmplacementEntrepot> emplacements) throws IOException {
+        Map<String, List<EmplacementEntrepot>> parRack = new TreeMap<>();
+        Map<String, Integer> etats = new LinkedHashMap<>();
+        for (EmplacementEntrepot e : emplacements) {
+            if (e.getEmplacement() == null) continue;
+            List<EmplacementEntrepot> rack = parRack.get(rackDe(e.getEmplacement()));
+            if (rack == null) {
+                rack = new ArrayList<>();
+                parRack.put(rackDe(e.getEmplacement()), rack);
+            }
+            rack.add(e);
+            if (!etats.containsKey(etatDe(e))) {
+                etats.put(etatDe(e), etats.size());
+            }
+        }
+        if (etats.size() > 255) {
+            throw new IOException("Trop d'états d'emplacement distincts : " + etats.size());
+        }
+
+        ByteArrayOutputStream chaines = new ByteArrayOutputStream();
+        ByteArrayOutputStream tables = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(tables);
+        int nombreEmplacements = 0;
+
+        for (String etat : etats.keySet()) {
+            ecrireChaine(out, chaines, etat);
+            out.writeShort(0);
+        }
+        for (Map.Entry<String, List<EmplacementEntrepot>> rack : parRack.entrySet()) {
+            ecrireChaine(out, chaines, rack.getKey());
+            out.writeShort(0);
+            out.writeInt(nombreEmplacements);
+            out.writeInt(rack.getValue().size());
+            nombreEmplacements += rack.getValue().size();
+        }
+        for (List<EmplacementEntrepot> rack : parRack.values()) {
+            // Tri stable : les libres d'abord, dans l'ordre du serveur
+            List<EmplacementEntrepot> tries = new ArrayList<>(rack);
+            tries.sort((o1, o2) -> Boolean.compare(!LIBRE.equalsIgnoreCase(etatDe(o1)), !LIBRE.equalsIgnoreCase(etatDe(o2))));
+            for (EmplacementEntrepot e : tries) {
+                ecrireChaine(out, chaines, e.getEmplacement());
+                out.writeByte(etats.get(etatDe(e)));
+                out.writeByte(0);
+            }
+        }
+
+        int taille = TAILLE_EN_TETE + tables.size() + chaines.size();
+        ByteBuffer tampon = ByteBuffer.allocate(taille);
+        tampon.putInt(MAGIC)
+                .putShort(VERSION)
+                .putShort((short) etats.size())
+                .putInt(parRack.size())
+                .putInt(nombreEmplacements)
+                .putInt(taille);
+        tampon.put(tables.toByteArray());
+        tampon.put(chaines.toByteArray());
+        return tampon.array();
+    }
+
+    /**
+     * État enregistré d'un emplacement : un état absent devient "" dans l'instantané, sans modifier
+     * l'objet reçu (encore partagé avec les écrans).
+     */
+    private static String etatDe(EmplacementEntrepot emplacement) {
+        return emplacement.getEtat() != null ? emplacement.getEtat() : "";
+    }
+
+    private static void ecrireChaine(DataOutputStream out, ByteArrayOutputStream chaines, String valeur) throws IOException {
+        byte[] utf8 = valeur.getBytes(StandardCharsets.UTF_8);
+        if (utf8.length > Short.MAX_VALUE) {
+            throw new IOException("Nom trop long : " + valeur.length() + " caractères");
+        }
+        out.writeInt(chaines.size());
+        out.writeShort(utf8.length);
+        chaines.write(utf8);
+    }
+
+    /**
+     * Vue en lecture seule d'un instantané projeté. Les noms de racks et d'états (quelques dizaines)
+     * sont décodés à l'ouverture ; les emplacements d'un rack sont lus à la demande.
+     *
+     * Index hiérarchique construit une fois par instantané : rack → plage contiguë d'emplacements,
+     * et un bitset des emplacements libres sur l'ensemble de la table. Trouver un rack coûte une
+     * recherche dans une table de hachage, les N premiers libres d'un rack O(N) et le nombre de
+     * libres d'un rack O(1), sans décoder ni comparer de noms. Retrouver un emplacement dans son
+     * rack compare les octets UTF-8 enregistrés à ceux du nom cherché, sans décoder de chaîne.
+     */
+    public static final class Table {
+        private final ByteBuffer tampon;
+        private final int debutRacks;
+        private final int debutEmplacements;
+        private final int debutChaines;
+        private final List<String> racks;
+        private final String[] etats;
+        // Nom de rack en majuscules → position dans racks
+        private final Map<String, Integer> indexRacks;
+        // Un bit par emplacement (ordre de l'instantané), levé si l'emplacement est libre
+        private final BitSet libres;
+        private final int[] premiers;
+        private final int[] nombres;
+        private final int[] nombresLibres;
+
+        private Table(ByteBuffer tampon) throws IOException {
+            this.tampon = tampon;
+            if (tampon.capacity() < TAILLE_EN_TETE || tampon.getInt(0) != MAGIC) {
+                throw new IOException("En-tête invalide");
+            }
+            if (tampon.getShort(4) != VERSION) {
+                throw new IOException("Version " + tampon.getShort(4) + " non prise en charge");
+            }
+            int nbEtats = tampon.getShort(6);
+            int nbRacks = tampon.getInt(8);
+            int nbEmplacements = tampon.getInt(12);
+            if (tampon.getInt(16) != tampon.capacity()) {
+                throw new IOException("Taille incohérente");
+            }
+            debutRacks = TAILLE_EN_TETE + nbEtats * TAILLE_ETAT;
+            debutEmplacements = debutRacks + nbRacks * TAILLE_RACK;
+            debutChaines = debutEmplacements + nbEmplacements * TAILLE_EMPLACEMENT;
+            if (nbEtats < 0 || nbRacks < 0 || nbEmplacements < 0 || debutChaines > tampon.capacity()) {
+                throw new IOException("Tables incohérentes");
+            }
+
+            etats = new String[nbEtats];
+            for (int i = 0; i < nbEtats; i++) {
+                int position = TAILLE_EN_TETE + i * TAILLE_ETAT;
+                etats[i] = chaine(tampon.getInt(position), tampon.getShort(position + 4));
+            }
+            boolean[] etatLibre = new boolean[nbEtats];
+            for (int i = 0; i < nbEtats; i++) {
+                etatLibre[i] = LIBRE.equalsIgnoreCase(etats[i]);
+            }
+            libres = new BitSet(nbEmplacements);
+            for (int i = 0; i < nbEmplacements; i++) {
+                int code = tampon.get(debutEmplacements + i * TAILLE_EMPLACEMENT + 6) & 0xFF;
+                if (code >= nbEtats) {
+                    throw new IOException("État d'emplacement inconnu : " + code);
+                }
+                if (etatLibre[code]) {
+                    libres.set(i);
+                }
+            }
+
+            String[] noms = new String[nbRacks];
+            premiers = new int[nbRacks];
+            nombres = new int[nbRacks];
+            nombresLibres = new int[nbRacks];
+            indexRacks = new HashMap<>(nbRacks * 2);
+            for (int i = 0; i < nbRacks; i++) {
+                int position = debutRacks + i * TAILLE_RACK;
+                noms[i] = chaine(tampon.getInt(position), tampon.getShort(position + 4));
+                premiers[i] = tampon.getInt(position + 8);
+                nombres[i] = tampon.getInt(position + 12);
+                if (premiers[i] < 0 || nombres[i] < 0 || premiers[i] + nombres[i] > nbEmplacements) {
+                    throw new IOException("Plage du rack " + noms[i] + " incohérente");
+                }
+                // Libres en premier dans chaque rack : ils forment le début de la plage
+                int finLibres = libres.nextClearBit(premiers[i]);
+                nombresLibres[i] = Math.min(finLibres, premiers[i] + nombres[i]) - premiers[i];
+                String cle = noms[i].toUpperCase(Locale.ROOT);
+                if (!indexRacks.containsKey(cle)) {
+                    indexRacks.put(cle, i);
+                }
+            }
+            racks = Collections.unmodifiableList(Arrays.asList(noms));
+        }
+
+        /**
+         * @return Les noms des racks, triés.
+         */
+        public List<String> racks() {
+            return racks;
+        }
+
+        /**
+         * @param rack Le nom d'un rack (casse indifférente).
+         * @return Sa position dans {@link #racks()}, ou -1.
+         */
+        public int indexRack(String rack) {
+            Integer index = indexRacks.get(rack.toUpperCase(Locale.ROOT));
+            return index == null ? -1 : index;
+        }
+
+        /**
+         * @param indexRack La position du rack dans {@link #racks()}.
+         * @return Les emplacements du rack, les libres en premier.
+         */
+        public List<EmplacementEntrepot> emplacementsDuRack(int indexRack) {
+            return lire(premiers[indexRack], nombres[indexRack]);
+        }
+
+        /**
+         * @param indexRack La position du rack dans {@link #racks()}.
+         * @return Le nombre d'emplacements libres du rack ; ce sont les premiers de {@link #emplacementsDuRack(int)}.
+         */
+        public int nombreLibres(int indexRack) {
+            return nombresLibres[indexRack];
+        }
+
+        /**
+         * @param indexRack La position du rack dans {@link #racks()}.
+         * @param n Le nombre d'emplacements voulus.
+         * @return Au plus n emplacements libres du rack, dans l'ordre du serveur.
+         */
+        public List<EmplacementEntrepot> premiersLibres(int indexRack, int n) {
+            return lire(premiers[indexRack], Math.min(n, nombresLibres[indexRack]));
+        }
+
+        /**
+         * @param indexRack La position du rack dans {@link #racks()}.
+         * @param emplacement Le nom d'un emplacement (casse indifférente).
+         * @return Sa position dans {@link #emplacementsDuRack(int)}, ou -1 s'il n'est pas dans ce rack.
+         */
+        public int indexDansRack(int indexRack, String emplacement) {
+            byte[] cherche = emplacement.getBytes(StandardCharsets.UTF_8);
+            boolean ascii = estAscii(cherche);
+            int premier = premiers[indexRack];
+            for (int i = 0; i < nombres[indexRack]; i++) {
+                // Les noms d'emplacements sont en ASCII : comparaison octet par octet, sans décodage
+                boolean egal = ascii
+                        ? egalAscii(debutEmplacements + (premier + i) * TAILLE_EMPLACEMENT, cherche)
+                        : nom(premier + i).equalsIgnoreCase(emplacement);
+                if (egal) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @param emplacement Le nom d'un emplacement ("R01 A 02", casse indifférente).
+         * @return true si l'emplacement existe et est libre. Seul son rack est parcouru.
+         */
+        public boolean estLibre(String emplacement) {
+            int indexRack = indexRack(rackDe(emplacement));
+            if (indexRack < 0) {
+                return false;
+            }
+            int position = indexDansRack(indexRack, emplacement);
+            return position >= 0 && libres.get(premiers[indexRack] + position);
+        }
+
+        private List<EmplacementEntrepot> lire(int premier, int nombre) {
+            List<EmplacementEntrepot> emplacements = new ArrayList<>(nombre);
+            for (int i = premier; i < premier + nombre; i++) {
+                EmplacementEntrepot e = new EmplacementEntrepot();
+                e.setEmplacement(nom(i));
+                e.setEtat(etats[tampon.get(debutEmplacements + i * TAILLE_EMPLACEMENT + 6) & 0xFF]);
+                emplacements.add(e);
+            }
+            return emplacements;
+        }
+
+        /**
+         * Compare le nom d'une entrée (emplacement) aux octets ASCII cherchés, casse indifférente,
+         * en lisant directement la zone des chaînes : longueurs différentes, rejet immédiat.
+         */
+        private boolean egalAscii(int entree, byte[] cherche) {
+            if (tampon.getShort(entree + 4) != cherche.length) {
+                return false;
+            }
+            int debut = debutChaines + tampon.getInt(entree);
+            for (int j = 0; j < cherche.length; j++) {
+                if (minuscule(tampon.get(debut + j)) != minuscule(cherche[j])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean estAscii(byte[] utf8) {
+            for (byte b : utf8) {
+                if (b < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static byte minuscule(byte b) {
+            return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+        }
+
+        private String nom(int emplacement) {
+            int entree = debutEmplacements + emplacement * TAILLE_EMPLACEMENT;
+            return chaine(tampon.getInt(entree), tampon.getShort(entree + 4));
+        }
+
+        private String chaine(int offset, int longueur) {
+            byte[] utf8 = new byte[longueur];
+            ByteBuffer lecture = tampon.duplicate();
+            lecture.position(debutChaines + offset);
+            lecture.get(utf8);
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+
+        private ByteBuffer octets() {
+            ByteBuffer lecture = tampon.duplicate();
+            lecture.clear();
+            return lecture;
+        }
+    }
+}
@@ -0,0 +1,586 @@
+package com.mdo.gestionpalettes.stockage;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.mdo.gestionpalettes.models.ValidationDestruction;
+import com.mdo.gestionpalettes.models.ValidationInventaire;
+import com.mdo.gestionpalettes.models.ValidationRenvoie;
+import com.mdo.gestionpalettes.models.ValidationSortieProduction;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Journal d'une session de scan (inventaire, destruction, renvoi, sortie production).
+ *
+ * Chaque modification de la liste des palettes scannées est ajoutée à la fin d'un fichier binaire
+ * (un enregistrement de quelques dizaines d'octets, protégé par un CRC32). Les écrans de scan et de
+ * résultat partagent la session par son identifiant, au lieu de se passer la liste en extra
+ * d'Intent : l'écran de résultat s'ouvre en temps constant quelle que soit la taille de la session,
+ * sans risque de TransactionTooLargeException. Après un arrêt de l'application, le journal est
+ * relu et la session reprend là où elle en était. La relecture (et la réécriture d'un journal trop long)
+ * a lieu sur le thread disque : la session est livrée à l'écran par un rappel, jamais lue sur le thread principal.
+ *
+ * Les octets sont écrits dans le fichier dès la modification (un arrêt du processus ne perd rien) ;
+ * le fsync, coûteux sur la mémoire flash des terminaux, est groupé toutes les DELAI_SYNC_MS.
+ *
+ * @param <T> Le type de validation enregistré.
+ */
+public final class JournalSession<T> {
+
+    private static final String TAG = "JournalSession";
+
+    /** Extra d'Intent portant l'identifiant de la session. */
+    public static final String EXTRA_ID = "idSession";
+
+    private static final String DOSSIER = "sessions";
+    private static final String EXTENSION = ".journal";
+    private static final long DELAI_SYNC_MS = 250;
+    // Au-delà, le journal est réécrit à l'ouverture avec les seules palettes présentes
+    private static final int ENREGISTREMENTS_MAX_PAR_PALETTE = 2;
+
+    // Opérations enregistrées
+    private static final byte AJOUT = 1;
+    private static final byte RETRAIT = 2;
+    private static final byte REMPLACEMENT = 3;
+
+    /**
+     * Encodage binaire d'une validation dans le journal.
+     *
+     * @param <T> Le type de validation.
+     */
+    public interface Codec<T> {
+        void ecrire(DataOutputStream out, T valeur) throws IOException;
+
+        T lire(DataInputStream in) throws IOException;
+    }
+
+    /**
+     * Type de session : nom du flux et encodage de ses validations.
+     *
+     * @param <T> Le type de validation.
+     */
+    public static final class Type<T> {
+        public static final Type<ValidationInventaire> INVENTAIRE = new Type<>("inventaire", new Codec<ValidationInventaire>() {
+            @Override
+            public void ecrire(DataOutputStream out, ValidationInventaire v) throws IOException {
+                ecrireTexte(out, v.getNumPalette());
+                out.writeInt(v.getQuantite());
+                ecrireTexte(out, v.getEmplacement());
+            }
+
+            @Override
+            public ValidationInventaire lire(DataInputStream in) throws IOException {
+                return new ValidationInventaire(lireTexte(in), in.readInt(), lireTexte(in));
+            }
+        });
+
+        public static final Type<ValidationDestruction> DESTRUCTION = new Type<>("destruction", new Codec<ValidationDestruction>() {
+            @Override
+            public void ecrire(DataOutputStream out, ValidationDestruction v) throws IOException {
+                ecrireTexte(out, v.getNumPalette());
+                out.writeInt(v.getQuantite());
+                ecrireTexte(out, v.getEmplacement());
+                ecrireTexte(out, v.getHorodatageListe());
+            }
+
+            @Override
+            public ValidationDestruction lire(DataInputStream in) throws IOException {
+                ValidationDestruction v = new ValidationDestruction(lireTexte(in), in.readInt(), lireTexte(in));
+                v.setHorodatageListe(lireTexteFinal(in));
+                return v;
+            }
+        });
+
+        public static final Type<ValidationRenvoie> RENVOI = new Type<>("renvoi", new Codec<ValidationRenvoie>() {
+            @Override
+            public void ecrire(DataOutputStream out, ValidationRenvoie v) throws IOException {
+                ecrireTexte(out, v.getNumPalette());
+                out.writeInt(v.getQuantite());
+                ecrireTexte(out, v.getEmplacement());
+                ecrireTexte(out, v.getHorodatageListe());
+            }
+
+            @Override
+            public ValidationRenvoie lire(DataInputStream in) throws IOException {
+                ValidationRenvoie v = new ValidationRenvoie(lireTexte(in), in.readInt(), lireTexte(in));
+                v.setHorodatageListe(lireTexteFinal(in));
+                return v;
+            }
+        });
+
+        public static final Type<ValidationSortieProduction> SORTIE_PRODUCTION = new Type<>("production", new Codec<ValidationSortieProduction>() {
+            @Override
+            public void ecrire(DataOutputStream out, ValidationSortieProduction v) throws IOException {
+                ecrireTexte(out, v.getNumPalette());
+                out.writeBoolean(v.getQuantite() != null);
+                if (v.getQuantite() != null) out.writeInt(v.getQuantite());
+                ecrireTexte(out, v.getStatut());
+                ecrireTexte(out, v.getEmplacement());
+                ecrireTexte(out, v.getHorodatageListe());
+            }
+
+            @Override
+            public ValidationSortieProduction lire(DataInputStream in) throws IOException {
+                String numPalette = lireTexte(in);
+                Integer quantite = in.readBoolean() ? in.readInt() : null;
+                ValidationSortieProduction v = new ValidationSortieProduction(numPalette, quantite, lireTexte(in), lireTexte(in));
+                v.setHorodatageListe(lireTexteFinal(in));
+                return v;
+            }
+        });
+
+        private final String nom;
+        private final Codec<T> codec;
+
+        private Type(String nom, Codec<T> codec) {
+            this.nom = nom;
+            this.codec = codec;
+        }
+    }
+
+    // Sessions ouvertes dans ce processus, par identifiant
+    private static final Map<String, JournalSession<?>> sessions = new HashMap<>();
+    // Sessions abandonnées dont le journal n'est pas encore supprimé : à ne pas reprendre
+    private static final Set<String> enSuppression = new HashSet<>();
+    // Un seul thread disque pour tous les journaux (relecture, écritures) : les enregistrements restent dans l'ordre
+    private static final ScheduledExecutorService disque = Executors.newSingleThreadScheduledExecutor();
+    private static final Handler principal = new Handler(Looper.getMainLooper());
+
+    private final String id;
+    private final Type<T> type;
+    private final File fichier;
+    private final ListeJournalisee palettes = new ListeJournalisee();
+
+    // Accédés uniquement depuis le thread disque
+    private FileOutputStream sortie;
+    private boolean syncPlanifiee = false;
+    private boolean abandonnee = false;
+
+    private JournalSession(String id, Type<T> type, File fichier) {
+        this.id = id;
+        this.type = type;
+        this.fichier = fichier;
+    }
+
+    /**
+     * Ouvre la session en cours du flux : celle déjà ouverte dans ce processus (livrée immédiatement),
+     * sinon celle retrouvée sur disque (relue depuis son journal), sinon une nouvelle session vide.
+     * La recherche du journal et sa relecture ont lieu sur le thread disque, une seule fois par session
+     * et par processus ; la session est alors livrée sur le thread principal.
+     *
+     * @param context Le contexte Android.
+     * @param type Le type de session.
+     * @param rappel Reçoit la session sur le thread principal.
+     */
+    public static <T> void ouvrir(Context context, Type<T> type, PaletteStore.Rappel<JournalSession<T>> rappel) {
+        JournalSession<T> ouverte = ouverte(type, null);
+        if (ouverte != null) {
+            rappel.surResultat(ouverte);
+            return;
+        }
+        Context appli = context.getApplicationContext();
+        disque.execute(() -> livrer(ouvrirSurDisque(dossier(appli), type), rappel));
+    }
+
+    /**
+     * Retrouve une session par son identifiant (reçu en extra d'Intent) : immédiatement si elle est
+     * déjà ouverte dans ce processus, sinon après relecture de son journal sur le thread disque.
+     *
+     * @param context Le contexte Android.
+     * @param type Le type de session.
+     * @param id L'identifiant de la session, ou null (session en cours du flux).
+     * @param rappel Reçoit la session sur le thread principal.
+     */
+    public static <T> void get(Context context, Type<T> type, @Nullable String id, PaletteStore.Rappel<JournalSession<T>> rappel) {
+        if (id == null) {
+            ouvrir(context, type, rappel);
+            return;
+        }
+        JournalSession<T> ouverte = ouverte(type, id);
+        if (ouverte != null) {
+            rappel.surResultat(ouverte);
+            return;
+        }
+        Context appli = context.getApplicationContext();
+        disque.execute(() -> livrer(charger(dossier(appli), type, id), rappel));
+    }
+
+    /**
+     * @param id L'identifiant recherché, ou null (n'importe quelle session du type).
+     * @return La session déjà ouverte dans ce processus, ou null.
+     */
+    @Nullable
+    private static synchronized <T> JournalSession<T> ouverte(Type<T> type, @Nullable String id) {
+        if (id != null) {
+            JournalSession<?> session = sessions.get(id);
+            return session != null && session.type == type ? caster(session) : null;
+        }
+        for (JournalSession<?> session : sessions.values()) {
+            if (session.type == type) return caster(session);
+        }
+        return null;
+    }
+
+    /**
+     * Sur le thread disque : la session du flux retrouvée sur disque, ou une nouvelle session.
+     */
+    private static <T> JournalSession<T> ouvrirSurDisque(File dossier, Type<T> type) {
+        // Une ouverture demandée juste avant a pu aboutir entre-temps
+        JournalSession<T> ouverte = ouverte(type, null);
+        if (ouverte != null) return ouverte;
+        Set<String> exclues;
+        synchronized (JournalSession.class) {
+            exclues = new HashSet<>(enSuppression);
+        }
+        File[] fichiers = dossier.listFiles((d, nom) -> nom.startsWith(type.nom + "-") && nom.endsWith(EXTENSION)
+                && !exclues.contains(nom.substring(0, nom.length() - EXTENSION.length())));
+        if (fichiers != null && fichiers.length > 0) {
+            String nom = fichiers[0].getName();
+            return charger(dossier, type, nom.substring(0, nom.length() - EXTENSION.length()));
+        }
+        return charger(dossier, type, type.nom + "-" + UUID.randomUUID());
+    }
+
+    /**
+     * Sur le thread disque : relit le journal de la session, sauf si elle est déjà ouverte.
+     */
+    private static <T> JournalSession<T> charger(File dossier, Type<T> type, String id) {
+        JournalSession<T> ouverte = ouverte(type, id);
+        if (ouverte != null) return ouverte;
+        JournalSession<T> session = new JournalSession<>(id, type, new File(dossier, id + EXTENSION));
+        session.rejouer();
+        synchronized (JournalSession.class) {
+            sessions.put(id, session);
+        }
+        return session;
+    }
+
+    private static <T> void livrer(JournalSession<T> session, PaletteStore.Rappel<JournalSession<T>> rappel) {
+        principal.post(() -> rappel.surResultat(session));
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Liste des palettes de la session, partagée par les écrans : toute modification
+     * (ajout, retrait, remplacement, vidage) est enregistrée dans le journal.
+     * À utiliser depuis le thread principal.
+     *
+     * @return La liste journalisée.
+     */
+    public List<T> palettes() {
+        return palettes;
+    }
+
+    /**
+     * Vide la session (lot envoyé) : le journal est tronqué, la session reste ouverte.
+     */
+    public void vider() {
+        palettes.clear();
+    }
+
+    /**
+     * Ferme la session et supprime son journal (l'opérateur a quitté le flux).
+     */
+    public void abandonner() {
+        synchronized (JournalSession.class) {
+            sessions.remove(id);
+            enSuppression.add(id);
+        }
+        disque.execute(() -> {
+            abandonnee = true;
+            fermerSortie();
+            if (fichier.exists() && !fichier.delete()) {
+                Log.w(TAG, "Suppression du journal impossible : " + fichier);
+            }
+            synchronized (JournalSession.class) {
+                enSuppression.remove(id);
+            }
+        });
+    }
+
+    /**
+     * Force l'écriture sur le support des enregistrements en attente de fsync.
+     */
+    public void synchroniser() {
+        disque.execute(this::sync);
+    }
+
+    // ----------------------------------------------------------
+
+    /**
+     * Liste en mémoire dont chaque modification ajoute un enregistrement au journal.
+     */
+    private final class ListeJournalisee extends AbstractList<T> implements RandomAccess {
+        private final ArrayList<T> contenu = new ArrayList<>();
+
+        @Override
+        public T get(int index) {
+            return contenu.get(index);
+        }
+
+        @Override
+        public int size() {
+            return contenu.size();
+        }
+
+        @Override
+        public void add(int index, T element) {
+            contenu.add(index, element);
+            modCount++;
+            journaliser(AJOUT, index, element);
+        }
+
+        @Override
+        public T set(int index, T element) {
+            T ancien = contenu.set(index, element);
+            journaliser(REMPLACEMENT, index, element);
+            return ancien;
+        }
+
+        @Override
+        public T remove(int index) {
+            T retire = contenu.remove(index);
+            modCount++;
+            journaliser(RETRAIT, index, null);
+            return retire;
+        }
+
+        @Override
+        protected void removeRange(int debut, int fin) {
+            if (debut == 0 && fin == contenu.size()) {
+                contenu.clear();
+                modCount++;
+                disque.execute(JournalSession.this::tronquer);
+                return;
+            }
+            for (int i = debut; i < fin; i++) {
+                remove(debut);
+            }
+        }
+    }
+
+    /**
+     * Encode l'opération (sur le thread appelant) et l'ajoute au journal (sur le thread disque).
+     */
+    private void journaliser(byte operation, int index, @Nullable T element) {
+        byte[] enregistrement;
+        try {
+            ByteArrayOutputStream octets = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(octets);
+            out.writeByte(operation);
+            out.writeInt(index);
+            if (element != null) type.codec.ecrire(out, element);
+            enregistrement = encadrer(octets.toByteArray());
+        } catch (IOException e) {
+            // Écriture en mémoire : n'arrive pas
+            throw new IllegalStateException(e);
+        }
+        disque.execute(() -> ajouterAuFichier(enregistrement));
+    }
+
+    private void ajouterAuFichier(byte[] enregistrement) {
+        if (abandonnee) return;
+        try {
+            if (sortie == null) {
+                File parent = fichier.getParentFile();
+                if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                    throw new IOException("Création du dossier impossible : " + parent);
+                }
+                sortie = new FileOutputStream(fichier, true);
+            }
+            sortie.write(enregistrement);
+            if (!syncPlanifiee) {
+                syncPlanifiee = true;
+                disque.schedule(this::sync, DELAI_SYNC_MS, TimeUnit.MILLISECONDS);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Écriture dans le journal impossible", e);
+        }
+    }
+
+    private void sync() {
+        syncPlanifiee = false;
+        if (sortie == null) return;
+        try {
+            sortie.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "fsync du journal impossible", e);
+        }
+    }
+
+    private void tronquer() {
+        if (abandonnee) return;
+        try {
+            if (sortie != null) {
+                sortie.getChannel().truncate(0);
+                sortie.getFD().sync();
+            } else if (fichier.exists()) {
+                new FileOutputStream(fichier).close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Troncature du journal impossible", e);
+        }
+    }
+
+    private void fermerSortie() {
+        if (sortie == null) return;
+        try {
+            sortie.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Fermeture du journal impossible", e);
+        }
+        sortie = null;
+    }
+
+    /**
+     * Relit le journal et reconstruit la liste. Un enregistrement incomplet ou corrompu en fin
+     * de fichier (arrêt pendant une écriture) est ignoré et retiré du fichier.
+     */
+    private void rejouer() {
+        if (!fichier.exists()) return;
+        long valide = 0;
+        int enregistrements = 0;
+        List<T> contenu = palettes.contenu;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fichier)))) {
+            while (true) {
+                int longueur;
+                try {
+                    longueur = in.readInt();
+                } catch (EOFException fin) {
+                    break;
+                }
+                if (longueur <= 0 || longueur > 64 * 1024) break;
+                byte[] donnees = new byte[longueur];
+                in.readFully(donnees);
+                CRC32 crc = new CRC32();
+                crc.update(donnees);
+                if ((int) crc.getValue() != in.readInt()) break;
+
+                DataInputStream enregistrement = new DataInputStream(new ByteArrayInputStream(donnees));
+                byte operation = enregistrement.readByte();
+                int index = enregistrement.readInt();
+                if (operation == AJOUT) {
+                    contenu.add(index, type.codec.lire(enregistrement));
+                } else if (operation == REMPLACEMENT) {
+                    contenu.set(index, type.codec.lire(enregistrement));
+                } else if (operation == RETRAIT) {
+                    contenu.remove(index);
+                } else {
+                    break;
+                }
+                valide += 4 + longueur + 4;
+                enregistrements++;
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Fin de journal illisible, ignorée : " + fichier, e);
+        }
+
+        try {
+            if (valide < fichier.length()) {
+                try (RandomAccessFile f = new RandomAccessFile(fichier, "rw")) {
+                    f.setLength(valide);
+                }
+            }
+            if (enregistrements > ENREGISTREMENTS_MAX_PAR_PALETTE * contenu.size() + 64) {
+                compacter();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Réparation du journal impossible : " + fichier, e);
+        }
+    }
+
+    /**
+     * Réécrit le journal avec un ajout par palette présente, puis remplace l'ancien (renommage atomique).
+     */
+    private void compacter() throws IOException {
+        File temporaire = new File(fichier.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temporaire)) {
+            ByteArrayOutputStream octets = new ByteArrayOutputStream(64);
+            DataOutputStream donnees = new DataOutputStream(octets);
+            for (int i = 0; i < palettes.contenu.size(); i++) {
+                octets.reset();
+                donnees.writeByte(AJOUT);
+                donnees.writeInt(i);
+                type.codec.ecrire(donnees, palettes.contenu.get(i));
+                out.write(encadrer(octets.toByteArray()));
+            }
+            out.getFD().sync();
+        }
+        if (!temporaire.renameTo(fichier)) {
+            throw new IOException("Remplacement du journal impossible : " + fichier);
+        }
+    }
+
+    /**
+     * @return L'enregistrement : longueur, données, CRC32 des données.
+     */
+    private static byte[] encadrer(byte[] donnees) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(donnees);
+        ByteArrayOutputStream octets = new ByteArrayOutputStream(donnees.length + 8);
+        DataOutputStream out = new DataOutputStream(octets);
+        out.writeInt(donnees.length);
+        out.write(donnees);
+        out.writeInt((int) crc.getValue());
+        return octets.toByteArray();
+    }
+
+    private static void ecrireTexte(DataOutputStream out, @Nullable String texte) throws IOException {
+        out.writeBoolean(texte != null);
+        if (texte != null) out.writeUTF(texte);
+    }
+
+    @Nullable
+    private static String lireTexte(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Lit un texte ajouté en fin d'enregistrement : absent (null) dans les journaux écrits
+     * par une version précédente de l'application.
+     */
+    @Nullable
+    private static String lireTexteFinal(DataInputStream in) throws IOException {
+        return in.available() > 0 ? lireTexte(in) : null;
+    }
+
+    private static File dossier(Context context) {
+        return new File(context.getApplicationContext().getFilesDir(), DOSSIER);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> JournalSession<T> caster(JournalSession<?> session) {
+        return (JournalSession<T>) session;
+    }
+}
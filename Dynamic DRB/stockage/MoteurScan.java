@@ -0,0 +1,194 @@
+package com.mdo.gestionpalettes.stockage;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Vérification locale des scans d'un flux (inventaire, destruction, renvoi, sortie production), sans réseau.
+ *
+ * Le moteur est construit à partir de la dernière liste synchronisée dans {@link PaletteStore}
+ * et des palettes déjà présentes dans la session de scan : un scan est résolu par une recherche
+ * dans un index (numéro de palette, casse indifférente), que le terminal soit en ligne ou non.
+ * Chaque palette trouvée est marquée de l'horodatage de la liste contre laquelle elle a été vérifiée
+ * (fraîcheur du scan), transmis au serveur avec la validation ; seul l'envoi final du lot a besoin du réseau.
+ *
+ * Les numéros sont ramenés à une clé long ({@link IndexScan#cle(String)}) : un scan coûte une recherche
+ * dans un {@link IndexScan} et le marquage d'une palette un retrait en temps constant, quelle que soit
+ * la taille de la liste. Les rares numéros non numériques reçoivent une clé négative attribuée à la construction.
+ *
+ * Construit hors du thread principal (voir DepotListes), puis utilisé depuis le thread principal.
+ *
+ * @param <P> Le type de palette de la liste.
+ */
+public final class MoteurScan<P> {
+
+    /**
+     * Donne le numéro d'une palette de la liste.
+     *
+     * @param <P> Le type de palette.
+     */
+    public interface Numero<P> {
+        String de(P palette);
+    }
+
+    /** Issue d'un scan. */
+    public enum Issue {
+        /** Palette de la liste, pas encore scannée. */
+        TROUVEE,
+        /** Palette déjà présente dans la session. */
+        DEJA_SCANNEE,
+        /** Palette absente de la liste synchronisée. */
+        ABSENTE
+    }
+
+    private final List<P> liste;
+    private final long[] clesListe;
+    // Toutes les palettes de la liste : clé → position dans la liste
+    private final IndexScan index;
+    // Palettes de la liste pas encore scannées (retrait par pierre tombale)
+    private final IndexScan restantes;
+    // Numéros de la session absents de la liste (scannés contre une liste plus ancienne)
+    private final IndexScan horsListe;
+    // Clés attribuées aux numéros non numériques, toutes négatives
+    private final Map<String, Long> clesTexte = new HashMap<>();
+    private final String horodatageListe;
+
+    /**
+     * @param liste La liste synchronisée du flux.
+     * @param horodatageListe L'horodatage de sa dernière synchronisation, ou null si elle n'a jamais été synchronisée.
+     * @param dejaScannees Les numéros des palettes déjà dans la session.
+     * @param numero L'accès au numéro d'une palette de la liste.
+     */
+    public MoteurScan(List<P> liste, @Nullable String horodatageListe, Collection<String> dejaScannees, Numero<P> numero) {
+        this.liste = liste;
+        this.horodatageListe = horodatageListe;
+        this.clesListe = new long[liste.size()];
+        this.index = new IndexScan(liste.size());
+        this.restantes = new IndexScan(liste.size());
+        this.horsListe = new IndexScan(0);
+        for (int i = 0; i < clesListe.length; i++) {
+            long cle = attribuerCle(numero.de(liste.get(i)));
+            clesListe[i] = cle;
+            index.put(cle, i);
+            restantes.put(cle, i);
+        }
+        for (String num : dejaScannees) {
+            long cle = attribuerCle(num);
+            if (restantes.retirer(cle) == IndexScan.ABSENT && index.get(cle) == IndexScan.ABSENT) {
+                horsListe.put(cle, 0);
+            }
+        }
+    }
+
+    /**
+     * @return Les palettes de la liste pas encore scannées, dans l'ordre de la liste (à afficher).
+     */
+    public List<P> palettesAScanner() {
+        List<P> aScanner = new ArrayList<>(restantes.taille());
+        for (int i = 0; i < clesListe.length; i++) {
+            if (restantes.get(clesListe[i]) != IndexScan.ABSENT) {
+                aScanner.add(liste.get(i));
+            }
+        }
+        return aScanner;
+    }
+
+    /**
+     * @return L'horodatage de la liste utilisée pour vérifier les scans, ou null (liste jamais synchronisée).
+     */
+    @Nullable
+    public String getHorodatageListe() {
+        return horodatageListe;
+    }
+
+    /**
+     * Vérifie un numéro scanné sans le marquer (l'écran demande une confirmation avant de l'ajouter à la session).
+     *
+     * @param numPalette Le numéro scanné ou saisi.
+     * @return L'issue du scan.
+     */
+    public Issue verifier(String numPalette) {
+        long cle = cle(numPalette);
+        if (restantes.get(cle) != IndexScan.ABSENT) {
+            return Issue.TROUVEE;
+        }
+        if (index.get(cle) != IndexScan.ABSENT || horsListe.get(cle) != IndexScan.ABSENT) {
+            return Issue.DEJA_SCANNEE;
+        }
+        return Issue.ABSENTE;
+    }
+
+    /**
+     * Marque une palette de la liste comme scannée : elle sort de {@link #palettesAScanner()}.
+     *
+     * @param numPalette Le numéro de la palette.
+     */
+    public void marquerScannee(String numPalette) {
+        restantes.retirer(cle(numPalette));
+    }
+
+    /**
+     * Vérifie un numéro scanné. En cas de succès, la palette est marquée scannée
+     * et retirée de {@link #palettesAScanner()}.
+     *
+     * @param numPalette Le numéro scanné ou saisi.
+     * @return L'issue du scan.
+     */
+    public Issue scanner(String numPalette) {
+        long cle = cle(numPalette);
+        if (restantes.retirer(cle) != IndexScan.ABSENT) {
+            return Issue.TROUVEE;
+        }
+        if (index.get(cle) != IndexScan.ABSENT || horsListe.get(cle) != IndexScan.ABSENT) {
+            return Issue.DEJA_SCANNEE;
+        }
+        return Issue.ABSENTE;
+    }
+
+    /**
+     * @param numPalette Un numéro de palette.
+     * @return La palette correspondante de la liste, ou null.
+     */
+    @Nullable
+    public P palette(String numPalette) {
+        int position = index.get(cle(numPalette));
+        return position == IndexScan.ABSENT ? null : liste.get(position);
+    }
+
+    /**
+     * @return La clé d'un numéro, ou {@link IndexScan#CLE_INVALIDE} pour un numéro non numérique inconnu
+     * (absent de tous les index).
+     */
+    private long cle(String numPalette) {
+        long cle = IndexScan.cle(numPalette);
+        if (cle != IndexScan.CLE_INVALIDE) {
+            return cle;
+        }
+        Long cleTexte = clesTexte.get(texte(numPalette));
+        return cleTexte == null ? IndexScan.CLE_INVALIDE : cleTexte;
+    }
+
+    private long attribuerCle(String numPalette) {
+        long cle = IndexScan.cle(numPalette);
+        if (cle != IndexScan.CLE_INVALIDE) {
+            return cle;
+        }
+        String texte = texte(numPalette);
+        Long cleTexte = clesTexte.get(texte);
+        if (cleTexte == null) {
+            cleTexte = IndexScan.CLE_INVALIDE - 1 - clesTexte.size();
+            clesTexte.put(texte, cleTexte);
+        }
+        return cleTexte;
+    }
+
+    private static String texte(String numPalette) {
+        return numPalette.trim().toUpperCase(Locale.ROOT);
+    }
+}
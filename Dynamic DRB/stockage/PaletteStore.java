@@ -0,0 +1,408 @@
+package com.mdo.gestionpalettes.stockage;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.mdo.gestionpalettes.models.DeltaPalettes;
+import com.mdo.gestionpalettes.models.PaletteConsultation;
+import com.mdo.gestionpalettes.models.PaletteInfosResponse;
+import com.mdo.gestionpalettes.models.PoolChaines;
+import com.mdo.gestionpalettes.models.ResultatValidation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Stockage local persistant des palettes (SQLite), clé NumPalette, indexé par statut, client et emplacement.
+ * Alimenté par la synchronisation incrémentale des listes ({@link #appliquerDelta}), il est lu par les écrans
+ * de flux (inventaire, destruction, renvoi, sortie production) : la liste s'affiche dès l'ouverture
+ * de l'écran et le scan continue de fonctionner en zone blanche Wi-Fi.
+ *
+ * Les accès disque passent par un thread dédié ({@link #lire} / {@link #ecrire}) ; les méthodes
+ * synchrones ne doivent pas être appelées depuis le thread principal.
+ */
+public class PaletteStore extends SQLiteOpenHelper {
+
+    private static final String TAG = "PaletteStore";
+
+    private static final String NOM_BASE = "palettes.db";
+    private static final int VERSION_BASE = 2;
+
+    static final String TABLE = "palette";
+    // Horodatage de la dernière synchronisation de chaque liste (voir appliquerDelta)
+    private static final String TABLE_SYNCHRO = "synchro";
+    private static final String[] COLONNES = {"num_palette", "nom_client", "article", "quantite", "emplacement", "statut"};
+
+    // Statuts des listes de travail, tels que filtrés côté serveur
+    public static final String STATUT_A_INVENTORIER = "A Inventorier";
+    public static final String STATUT_A_DETRUIRE = "A Détruire";
+    public static final String STATUT_A_RENVOYER = "A Renvoyer";
+    public static final String STATUT_EN_STOCK = "En Stock";
+
+    private static PaletteStore instance = null;
+
+    private final ExecutorService disque = Executors.newSingleThreadExecutor();
+    private final Handler principal = new Handler(Looper.getMainLooper());
+
+    /**
+     * Reçoit le résultat d'une lecture sur le thread principal.
+     *
+     * @param <T> Le type du résultat.
+     */
+    public interface Rappel<T> {
+        void surResultat(T resultat);
+    }
+
+    /**
+     * Traite le résultat d'une lecture, sur le pool de calcul.
+     *
+     * @param <T> Le type du résultat lu.
+     * @param <R> Le type du résultat traité.
+     */
+    public interface Traitement<T, R> {
+        R traiter(T lu) throws Exception;
+    }
+
+    private PaletteStore(Context context) {
+        super(context, NOM_BASE, null, VERSION_BASE);
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    /**
+     * @param context Le contexte Android ; seul le contexte applicatif est conservé.
+     * @return L'instance partagée du stockage.
+     */
+    public static synchronized PaletteStore get(Context context) {
+        if (instance == null) {
+            instance = new PaletteStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        // NOCASE : les numéros scannés sont comparés sans tenir compte de la casse, comme avant
+        db.execSQL("CREATE TABLE " + TABLE + " ("
+                + "num_palette TEXT PRIMARY KEY COLLATE NOCASE, "
+                + "nom_client TEXT, "
+                + "article TEXT, "
+                + "quantite INTEGER NOT NULL DEFAULT 0, "
+                + "emplacement TEXT, "
+                + "statut TEXT NOT NULL, "
+                + "maj INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX idx_palette_statut ON " + TABLE + " (statut, num_palette)");
+        db.execSQL("CREATE INDEX idx_palette_client ON " + TABLE + " (nom_client)");
+        db.execSQL("CREATE INDEX idx_palette_emplacement ON " + TABLE + " (emplacement)");
+        db.execSQL("CREATE TABLE " + TABLE_SYNCHRO + " (statut TEXT PRIMARY KEY, horodatage TEXT NOT NULL)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Simple copie du serveur : on peut repartir d'une base vide
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_SYNCHRO);
+        onCreate(db);
+    }
+
+    /**
+     * Exécute une lecture sur le thread disque et livre le résultat sur le thread principal.
+     * En cas d'erreur, l'erreur est journalisée et le rappel n'est pas appelé.
+     *
+     * @param lecture La lecture à exécuter.
+     * @param rappel Le rappel recevant le résultat.
+     * @param <T> Le type du résultat.
+     */
+    public <T> void lire(Callable<T> lecture, Rappel<T> rappel) {
+        disque.execute(() -> {
+            try {
+                T resultat = lecture.call();
+                principal.post(() -> rappel.surResultat(resultat));
+            } catch (Exception e) {
+                Log.e(TAG, "Lecture du stockage local impossible", e);
+            }
+        });
+    }
+
+    /**
+     * Comme {@link #lire(Callable, Rappel)}, mais une erreur est signalée : l'appelant qui doit toujours
+     * poursuivre (étape de préchauffage, indicateur de chargement) n'attend pas un rappel qui ne viendra pas.
+     *
+     * @param lecture La lecture à exécuter.
+     * @param rappel Le rappel recevant le résultat.
+     * @param echec Appelé sur le thread principal si la lecture échoue (l'erreur est journalisée).
+     * @param <T> Le type du résultat.
+     */
+    public <T> void lire(Callable<T> lecture, Rappel<T> rappel, Runnable echec) {
+        disque.execute(() -> {
+            try {
+                T resultat = lecture.call();
+                principal.post(() -> rappel.surResultat(resultat));
+            } catch (Exception e) {
+                Log.e(TAG, "Lecture du stockage local impossible", e);
+                principal.post(echec);
+            }
+        });
+    }
+
+    /**
+     * Exécute une lecture sur le thread disque, puis le traitement de son résultat sur le pool de calcul
+     * ({@link Travaux}), et livre le résultat traité sur le thread principal. Le thread disque est libéré
+     * dès la fin de la lecture. En cas d'erreur, l'erreur est journalisée et le rappel n'est pas appelé.
+     *
+     * @param lecture La lecture à exécuter.
+     * @param traitement Le traitement du résultat lu (mise en forme, index, tri...).
+     * @param rappel Le rappel recevant le résultat traité.
+     * @param <T> Le type du résultat lu.
+     * @param <R> Le type du résultat traité.
+     */
+    public <T, R> void lire(Callable<T> lecture, Traitement<T, R> traitement, Rappel<R> rappel) {
+        disque.execute(() -> {
+            try {
+                T lu = lecture.call();
+                Travaux.executer(() -> traitement.traiter(lu), rappel);
+            } catch (Exception e) {
+                Log.e(TAG, "Lecture du stockage local impossible", e);
+            }
+        });
+    }
+
+    /**
+     * Exécute une écriture sur le thread disque, après les écritures déjà demandées.
+     *
+     * @param ecriture L'écriture à exécuter.
+     */
+    public void ecrire(Runnable ecriture) {
+        disque.execute(() -> {
+            try {
+                ecriture.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Écriture dans le stockage local impossible", e);
+            }
+        });
+    }
+
+    /**
+     * Fusionne une réponse de synchronisation incrémentale dans la liste d'un statut, puis retient
+     * son horodatage pour la synchronisation suivante. Une réponse complète remplace la liste.
+     * Une palette sortie de la liste n'est retirée que si elle y est encore : elle a pu être
+     * enregistrée entre-temps sous son nouveau statut par la synchronisation d'une autre liste.
+     *
+     * @param statut Le statut de la liste.
+     * @param delta La réponse du serveur.
+     */
+    public void appliquerDelta(String statut, DeltaPalettes delta) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            if (delta.isComplet()) {
+                db.delete(TABLE, "statut = ?", new String[]{statut});
+            }
+            for (String num : delta.getSupprimees()) {
+                db.delete(TABLE, "num_palette = ? AND statut = ?", new String[]{num, statut});
+            }
+            SQLiteStatement insertion = preparerInsertion(db);
+            long maintenant = System.currentTimeMillis();
+            for (PaletteConsultation p : delta.getPalettes()) {
+                lier(insertion, p.getNum_palette(), p.getNom_client(), p.getArticle(), p.getQuantite(),
+                        p.getEmplacement(), statut, maintenant);
+                insertion.executeInsert();
+            }
+            SQLiteStatement synchro = db.compileStatement("INSERT OR REPLACE INTO " + TABLE_SYNCHRO
+                    + " (statut, horodatage) VALUES (?, ?)");
+            synchro.bindString(1, statut);
+            synchro.bindString(2, delta.getHorodatage());
+            synchro.executeInsert();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * @param statut Le statut de la liste.
+     * @return L'horodatage à transmettre au serveur pour la prochaine synchronisation de cette liste,
+     * ou null si la liste n'a jamais été synchronisée (une synchronisation complète est alors nécessaire).
+     */
+    public String horodatageSynchro(String statut) {
+        try (Cursor c = getReadableDatabase().query(TABLE_SYNCHRO, new String[]{"horodatage"}, "statut = ?",
+                new String[]{statut}, null, null, null)) {
+            return c.moveToFirst() ? c.getString(0) : null;
+        }
+    }
+
+    /**
+     * Oublie les horodatages de synchronisation : la prochaine synchronisation de chaque liste sera complète.
+     * À appeler quand la copie locale a pu diverger du serveur sans que celui-ci le sache
+     * (validation retirée localement puis refusée par le serveur).
+     */
+    public void oublierSynchros() {
+        getWritableDatabase().delete(TABLE_SYNCHRO, null, null);
+    }
+
+    /**
+     * @param statut Le statut recherché.
+     * @return Les palettes de ce statut, triées par numéro.
+     */
+    public List<PaletteInfosResponse> palettesParStatut(String statut) {
+        return lirePalettes("statut = ?", new String[]{statut});
+    }
+
+    /**
+     * @param statut Le statut recherché.
+     * @param client Le nom du client (comparé sans tenir compte de la casse).
+     * @return Les palettes de ce statut et de ce client, triées par numéro.
+     */
+    public List<PaletteInfosResponse> palettesParStatutEtClient(String statut, String client) {
+        return lirePalettes("statut = ? AND nom_client = ? COLLATE NOCASE", new String[]{statut, client});
+    }
+
+    /**
+     * @param emplacement L'emplacement recherché.
+     * @return Les palettes rangées à cet emplacement.
+     */
+    public List<PaletteInfosResponse> palettesParEmplacement(String emplacement) {
+        return lirePalettes("emplacement = ?", new String[]{emplacement});
+    }
+
+    /**
+     * @param statut Le statut recherché.
+     * @return Les palettes de ce statut, sous forme de {@link PaletteConsultation}, triées par numéro.
+     */
+    public List<PaletteConsultation> palettesConsultationParStatut(String statut) {
+        List<PaletteConsultation> palettes = new ArrayList<>();
+        try (Cursor c = getReadableDatabase().query(TABLE, COLONNES, "statut = ?", new String[]{statut},
+                null, null, "num_palette")) {
+            while (c.moveToNext()) {
+                palettes.add(new PaletteConsultation(c.getString(0), PoolChaines.partager(c.getString(1)),
+                        PoolChaines.partager(c.getString(2)), c.getInt(3), PoolChaines.partager(c.getString(4)), c.getString(5)));
+            }
+        }
+        return palettes;
+    }
+
+    /**
+     * @param statut Le statut recherché.
+     * @return Les noms de clients distincts parmi les palettes de ce statut, triés.
+     */
+    public List<String> clients(String statut) {
+        List<String> clients = new ArrayList<>();
+        try (Cursor c = getReadableDatabase().rawQuery("SELECT DISTINCT nom_client FROM " + TABLE
+                + " WHERE statut = ? AND nom_client IS NOT NULL AND nom_client <> '' ORDER BY nom_client", new String[]{statut})) {
+            while (c.moveToNext()) {
+                clients.add(c.getString(0));
+            }
+        }
+        return clients;
+    }
+
+    /**
+     * Retire des palettes du stockage (validation acceptée par le serveur : elles ont changé de statut
+     * et réapparaîtront, le cas échéant, avec la prochaine liste concernée).
+     *
+     * @param numPalettes Les numéros des palettes à retirer.
+     */
+    public void retirer(Collection<String> numPalettes) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (String num : numPalettes) {
+                db.delete(TABLE, "num_palette = ?", new String[]{num});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Corrige la copie locale des palettes ignorées par le serveur lors d'une validation en lot,
+     * palette par palette, sans resynchroniser les listes : une palette encore dans une liste de
+     * travail y est remise avec son état actuel, les autres sont retirées.
+     *
+     * @param ignorees Les palettes ignorées, avec leur état actuel renvoyé par le serveur.
+     */
+    public void corriger(List<ResultatValidation.Resultat> ignorees) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            SQLiteStatement insertion = preparerInsertion(db);
+            long maintenant = System.currentTimeMillis();
+            for (ResultatValidation.Resultat r : ignorees) {
+                PaletteConsultation p = r.getPalette();
+                String statut = p != null ? statutDeListe(p.getStatut()) : null;
+                if (statut == null) {
+                    db.delete(TABLE, "num_palette = ?", new String[]{r.getNumPalette()});
+                    continue;
+                }
+                lier(insertion, p.getNum_palette(), p.getNom_client(), p.getArticle(), p.getQuantite(),
+                        p.getEmplacement(), statut, maintenant);
+                insertion.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * @return Le statut de liste de travail correspondant (casse indifférente, comme les filtres du serveur), ou null.
+     */
+    private static String statutDeListe(String statut) {
+        for (String s : new String[]{STATUT_A_INVENTORIER, STATUT_A_DETRUIRE, STATUT_A_RENVOYER, STATUT_EN_STOCK}) {
+            if (s.equalsIgnoreCase(statut)) return s;
+        }
+        return null;
+    }
+
+    private List<PaletteInfosResponse> lirePalettes(String selection, String[] arguments) {
+        List<PaletteInfosResponse> palettes = new ArrayList<>();
+        try (Cursor c = getReadableDatabase().query(TABLE, COLONNES, selection, arguments, null, null, "num_palette")) {
+            while (c.moveToNext()) {
+                PaletteInfosResponse p = new PaletteInfosResponse();
+                p.setNum_palette(c.getString(0));
+                p.setNom_client(PoolChaines.partager(c.getString(1)));
+                p.setArticle(PoolChaines.partager(c.getString(2)));
+                p.setQuantite(c.getInt(3));
+                p.setEmplacement(PoolChaines.partager(c.getString(4)));
+                p.setStatut(c.getString(5));
+                palettes.add(p);
+            }
+        }
+        return palettes;
+    }
+
+    private SQLiteStatement preparerInsertion(SQLiteDatabase db) {
+        return db.compileStatement("INSERT OR REPLACE INTO " + TABLE
+                + " (num_palette, nom_client, article, quantite, emplacement, statut, maj) VALUES (?, ?, ?, ?, ?, ?, ?)");
+    }
+
+    private void lier(SQLiteStatement s, String num, String client, String article, int quantite,
+                      String emplacement, String statut, long maj) {
+        s.clearBindings();
+        s.bindString(1, num);
+        lierTexte(s, 2, client);
+        lierTexte(s, 3, article);
+        s.bindLong(4, quantite);
+        lierTexte(s, 5, emplacement);
+        s.bindString(6, statut);
+        s.bindLong(7, maj);
+    }
+
+    private void lierTexte(SQLiteStatement s, int index, String valeur) {
+        if (valeur == null) {
+            s.bindNull(index);
+        } else {
+            s.bindString(index, valeur);
+        }
+    }
+}
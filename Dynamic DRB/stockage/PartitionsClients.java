@@ -0,0 +1,130 @@
+package com.mdo.gestionpalettes.stockage;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Liste de palettes découpée par client, pour un filtre client (spinner) sans parcours de la liste.
+ *
+ * Les partitions sont construites une fois par liste chargée ; changer de client revient à prendre
+ * une liste déjà prête. Chaque partition est une liste immuable : un retrait remplace la liste de la
+ * partition concernée et celle de "Tous" par une copie, si bien qu'une liste déjà confiée à un
+ * adaptateur à différentiel (ListAdapter) n'est jamais modifiée pendant qu'il la compare.
+ *
+ * Construites hors du thread principal (voir DepotListes), puis utilisées depuis le thread principal.
+ *
+ * @param <P> Le type de palette.
+ */
+public final class PartitionsClients<P> {
+
+    /** Libellé de la partition contenant toutes les palettes, toujours en première position. */
+    public static final String TOUS = "Tous";
+
+    /**
+     * Donne le client d'une palette.
+     *
+     * @param <P> Le type de palette.
+     */
+    public interface Client<P> {
+        @Nullable
+        String de(P palette);
+    }
+
+    private final Client<P> client;
+    private final List<String> clients;
+    // Position dans clients → palettes de la partition (liste immuable)
+    private final List<List<P>> partitions;
+    // Nom du client en majuscules → position dans clients
+    private final Map<String, Integer> indexClients;
+
+    /**
+     * @param palettes Les palettes, dans l'ordre d'affichage (conservé dans chaque partition).
+     * @param client L'accès au client d'une palette.
+     */
+    public PartitionsClients(List<P> palettes, Client<P> client) {
+        this.client = client;
+        // Regroupement sans tenir compte de la casse, comme l'ancien filtre ; le premier nom rencontré est affiché
+        Map<String, List<P>> parCle = new TreeMap<>();
+        Map<String, String> noms = new HashMap<>();
+        for (P palette : palettes) {
+            String nom = client.de(palette);
+            if (nom == null || nom.isEmpty()) continue;
+            String cle = nom.toUpperCase(Locale.ROOT);
+            List<P> partition = parCle.get(cle);
+            if (partition == null) {
+                partition = new ArrayList<>();
+                parCle.put(cle, partition);
+                noms.put(cle, nom);
+            }
+            partition.add(palette);
+        }
+
+        clients = new ArrayList<>(parCle.size() + 1);
+        partitions = new ArrayList<>(parCle.size() + 1);
+        indexClients = new HashMap<>(parCle.size() * 2);
+        clients.add(TOUS);
+        partitions.add(Collections.unmodifiableList(new ArrayList<>(palettes)));
+        for (Map.Entry<String, List<P>> entree : parCle.entrySet()) {
+            indexClients.put(entree.getKey(), clients.size());
+            clients.add(noms.get(entree.getKey()));
+            partitions.add(Collections.unmodifiableList(entree.getValue()));
+        }
+    }
+
+    /**
+     * @return Les libellés du filtre : {@link #TOUS}, puis les clients triés.
+     */
+    public List<String> clients() {
+        return Collections.unmodifiableList(clients);
+    }
+
+    /**
+     * @param nom Un nom de client (casse indifférente) ou {@link #TOUS}.
+     * @return Sa position dans {@link #clients()}, ou -1.
+     */
+    public int indexClient(String nom) {
+        if (TOUS.equals(nom)) {
+            return 0;
+        }
+        Integer index = indexClients.get(nom.toUpperCase(Locale.ROOT));
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @param indexClient La position du client dans {@link #clients()}.
+     * @return Les palettes de ce client, en temps constant. La liste n'est jamais modifiée ensuite.
+     */
+    public List<P> palettes(int indexClient) {
+        return partitions.get(indexClient);
+    }
+
+    /**
+     * Retire une palette (validée) de sa partition et de "Tous".
+     *
+     * @param palette La palette, telle que fournie au constructeur.
+     */
+    public void retirer(P palette) {
+        retirer(0, palette);
+        String nom = client.de(palette);
+        if (nom != null && !nom.isEmpty()) {
+            Integer index = indexClients.get(nom.toUpperCase(Locale.ROOT));
+            if (index != null) {
+                retirer(index, palette);
+            }
+        }
+    }
+
+    private void retirer(int index, P palette) {
+        List<P> copie = new ArrayList<>(partitions.get(index));
+        if (copie.remove(palette)) {
+            partitions.set(index, Collections.unmodifiableList(copie));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.mdo.gestionpalettes.stockage;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool de calcul partagé par l'application : mise en forme des lignes, construction des index de scan
+ * et des partitions par client, tri et filtrage des listes reçues.
+ *
+ * Les accès disque gardent leur thread dédié (PaletteStore, InstantaneEmplacements, JournalSession) ;
+ * le pool ne reçoit que du calcul, si bien qu'une liste volumineuse ne retarde ni les écritures
+ * de la synchronisation ni le thread principal. Threads de priorité « arrière-plan », au plus un
+ * de moins que le nombre de cœurs (deux au minimum, quatre au maximum).
+ */
+public final class Travaux {
+
+    private static final String TAG = "Travaux";
+
+    private static final int NOMBRE_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+    private static final AtomicInteger numero = new AtomicInteger();
+    private static final ExecutorService pool = Executors.newFixedThreadPool(NOMBRE_THREADS, tache -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            tache.run();
+        }, "travaux-" + numero.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Handler principal = new Handler(Looper.getMainLooper());
+
+    private Travaux() {}
+
+    /**
+     * Exécute un calcul sur le pool et livre le résultat sur le thread principal.
+     * En cas d'erreur, l'erreur est journalisée et le rappel n'est pas appelé.
+     *
+     * @param travail Le calcul à exécuter.
+     * @param rappel Le rappel recevant le résultat.
+     * @param <T> Le type du résultat.
+     */
+    public static <T> void executer(Callable<T> travail, PaletteStore.Rappel<T> rappel) {
+        pool.execute(() -> {
+            try {
+                T resultat = travail.call();
+                principal.post(() -> rappel.surResultat(resultat));
+            } catch (Exception e) {
+                Log.e(TAG, "Traitement en arrière-plan impossible", e);
+            }
+        });
+    }
+}
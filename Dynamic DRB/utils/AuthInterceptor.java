@@ -2,12 +2,11 @@ package com.mdo.gestionpalettes.utils;
 
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.os.Handler;
 import android.os.Looper;
-import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.mdo.gestionpalettes.activities.LoginActivity;
 
@@ -17,32 +16,41 @@ import okhttp3.Interceptor;
 import okhttp3.Request;
 import okhttp3.Response;
 
+/**
+ * Ajoute le token courant (lu en mémoire dans {@link TokenStore}) à chaque requête.
+ * Sur une 401, rejoue la requête si un token plus récent est disponible ; sinon expire le token
+ * et redirige vers l'écran de connexion, une seule fois quel que soit le nombre d'appels en échec.
+ */
 public class AuthInterceptor implements Interceptor {
 
+    private static final String PREFIXE = "Bearer ";
+
     private final Context context;
 
     public AuthInterceptor(Context context) {
         this.context = context.getApplicationContext();
+        TokenStore.init(this.context);
     }
 
+    @NonNull
     @Override
     public Response intercept(Chain chain) throws IOException {
-        Request originalRequest = chain.request();
-
-        SharedPreferences prefs = context.getSharedPreferences("auth", Context.MODE_PRIVATE);
-        String token = prefs.getString("token", null);
+        String tokenEnvoye = TokenStore.get();
+        Response response = chain.proceed(avecToken(chain.request(), tokenEnvoye));
 
-        Request.Builder builder = originalRequest.newBuilder();
-        if (token != null) {
-            builder.header("Authorization", "Bearer " + token);
+        if (response.code() != 401) {
+            return response;
         }
-        Request requestWithToken = builder.build();
-
-        Response response = chain.proceed(requestWithToken);
 
-        if (response.code() == 401) {
-            prefs.edit().remove("token").apply();
+        // Une reconnexion a eu lieu pendant l'appel : on rejoue avec le nouveau token
+        String tokenActuel = TokenStore.get();
+        if (tokenActuel != null && !tokenActuel.equals(tokenEnvoye)) {
+            response.close();
+            return chain.proceed(avecToken(chain.request(), tokenActuel));
+        }
 
+        TokenStore.expirer(tokenEnvoye);
+        if (TokenStore.demarrerReconnexion()) {
             new Handler(Looper.getMainLooper()).post(() -> {
                 Intent intent = new Intent(context, LoginActivity.class);
                 intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
@@ -53,4 +61,36 @@ public class AuthInterceptor implements Interceptor {
 
         return response;
     }
+
+    /**
+     * Retrouve le token avec lequel la requête d'une réponse a été envoyée. Sur une 401, c'est lui
+     * qu'il faut expirer : le token courant a pu être remplacé entre-temps par une reconnexion.
+     *
+     * @param reponse La réponse HTTP (pour Retrofit, {@code response.raw()}).
+     * @return Le token envoyé, ou null si la requête partait sans token.
+     */
+    @Nullable
+    public static String tokenEnvoye(Response reponse) {
+        String entete = reponse.request().header("Authorization");
+        if (entete == null || !entete.startsWith(PREFIXE)) {
+            return null;
+        }
+        return entete.substring(PREFIXE.length());
+    }
+
+    /**
+     * Construit la requête avec l'en-tête Authorization si un token est disponible.
+     *
+     * @param original La requête d'origine.
+     * @param token Le token à utiliser, ou null.
+     * @return La requête à envoyer.
+     */
+    private Request avecToken(Request original, String token) {
+        if (token == null || token.isEmpty()) {
+            return original;
+        }
+        return original.newBuilder()
+                .header("Authorization", PREFIXE + token)
+                .build();
+    }
 }
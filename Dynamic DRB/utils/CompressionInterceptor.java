@@ -0,0 +1,95 @@
+package com.mdo.gestionpalettes.utils;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+/**
+ * Compression gzip (optionnelle) du corps des requêtes de validation en lot.
+ * Seules les requêtes portant l'en-tête {@link #EN_TETE} sont compressées ; l'en-tête est retiré avant l'envoi.
+ * Si le serveur refuse l'encodage (415), la requête est renvoyée en JSON simple et la compression
+ * est désactivée jusqu'au redémarrage de l'application. Un serveur sans décompression des requêtes
+ * ne répond pas 415 mais 400 ou 422 (JSON illisible) : la requête est alors aussi renvoyée en JSON simple,
+ * et la compression n'est désactivée que si ce renvoi aboutit (sinon l'erreur ne venait pas de l'encodage).
+ */
+public class CompressionInterceptor implements Interceptor {
+
+    private static final String TAG = "CompressionInterceptor";
+
+    /** En-tête marqueur posé sur les endpoints qui acceptent un corps compressé. */
+    public static final String EN_TETE = "X-Compresser-Corps";
+
+    /** Valeur complète à utiliser dans une annotation Retrofit @Headers. */
+    public static final String ACTIVER = EN_TETE + ": gzip";
+
+    private static final AtomicBoolean refuseeParServeur = new AtomicBoolean(false);
+
+    @NonNull
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request original = chain.request();
+        if (original.header(EN_TETE) == null) {
+            return chain.proceed(original);
+        }
+
+        Request simple = original.newBuilder().removeHeader(EN_TETE).build();
+        RequestBody corps = simple.body();
+        if (corps == null || refuseeParServeur.get() || simple.header("Content-Encoding") != null) {
+            return chain.proceed(simple);
+        }
+
+        long debut = System.nanoTime();
+        RequestBody compresse = compresser(corps);
+        Response response = chain.proceed(simple.newBuilder()
+                .header("Content-Encoding", "gzip")
+                .method(simple.method(), compresse)
+                .build());
+
+        int code = response.code();
+        if (code == 415 || code == 400 || code == 422) {
+            // Encodage refusé, explicitement (415) ou faute de décompression (corps illisible)
+            response.close();
+            Response reponseSimple = chain.proceed(simple);
+            if (code == 415 || reponseSimple.isSuccessful()) {
+                // Serveur sans support de Content-Encoding : retour définitif au JSON simple
+                refuseeParServeur.set(true);
+                Log.w(TAG, "Corps gzip refusé par le serveur (" + code + "), envoi en JSON simple : " + simple.url());
+            }
+            return reponseSimple;
+        }
+
+        Log.d(TAG, simple.url().encodedPath() + " : " + corps.contentLength() + " -> "
+                + compresse.contentLength() + " octets, "
+                + (System.nanoTime() - debut) / 1_000_000 + " ms");
+        return response;
+    }
+
+    /**
+     * Compresse le corps en mémoire, de sorte que sa taille soit connue (Content-Length)
+     * et qu'il puisse être renvoyé tel quel en cas de nouvelle tentative.
+     *
+     * @param corps Le corps JSON d'origine.
+     * @return Le corps compressé, avec le même type de contenu.
+     */
+    private RequestBody compresser(RequestBody corps) throws IOException {
+        Buffer tampon = new Buffer();
+        try (BufferedSink gzip = Okio.buffer(new GzipSink(tampon))) {
+            corps.writeTo(gzip);
+        }
+        MediaType type = corps.contentType();
+        return RequestBody.create(tampon.readByteString(), type);
+    }
+}
@@ -0,0 +1,24 @@
+package com.mdo.gestionpalettes.utils;
+
+import java.util.UUID;
+
+/**
+ * Clés d'idempotence des appels qui modifient des données (entrée, emplacement, validations).
+ * Une clé identifie une action de l'utilisateur : elle est réutilisée par les relances automatiques
+ * et par un nouvel appui sur le bouton après une erreur réseau, de sorte que le serveur n'applique
+ * l'action qu'une seule fois. Une nouvelle clé est créée dès que l'action réussit ou change de contenu.
+ */
+public final class Idempotence {
+
+    /** Nom de l'en-tête HTTP portant la clé. */
+    public static final String EN_TETE = "Idempotency-Key";
+
+    private Idempotence() {}
+
+    /**
+     * @return Une nouvelle clé aléatoire.
+     */
+    public static String nouvelleCle() {
+        return UUID.randomUUID().toString();
+    }
+}
@@ -7,6 +7,11 @@ import android.net.NetworkCapabilities;
 import android.os.Build;
 import androidx.annotation.RequiresApi;
 
+/**
+ * Suivi de la connectivité de l'écran en cours. Chaque enregistrement doit être annulé par
+ * {@link #unregister(Context, ConnectivityManager.NetworkCallback)} à la destruction de l'écran :
+ * le ConnectivityManager garde sinon le callback, et l'écran qu'il référence, jusqu'à la fin du processus.
+ */
 public class NetworkMonitor {
 
     public interface NetworkCallback {
@@ -14,10 +19,15 @@ public class NetworkMonitor {
         void onDisconnected();
     }
 
+    /**
+     * @param context Le contexte Android.
+     * @param callback Le callback de l'écran.
+     * @return L'enregistrement, à passer à {@link #unregister}.
+     */
     @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
-    public static void register(Context context, NetworkCallback callback) {
-        ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
-        cm.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+    public static ConnectivityManager.NetworkCallback register(Context context, NetworkCallback callback) {
+        ConnectivityManager cm = (ConnectivityManager) context.getApplicationContext().getSystemService(Context.CONNECTIVITY_SERVICE);
+        ConnectivityManager.NetworkCallback enregistrement = new ConnectivityManager.NetworkCallback() {
             @Override
             public void onAvailable(Network network) {
                 NetworkCapabilities nc = cm.getNetworkCapabilities(network);
@@ -36,6 +46,23 @@ public class NetworkMonitor {
             public void onLost(Network network) {
                 callback.onDisconnected();
             }
-        });
+        };
+        cm.registerDefaultNetworkCallback(enregistrement);
+        return enregistrement;
     }
-}
\ No newline at end of file
+
+    /**
+     * Annule un enregistrement (sans effet s'il a déjà été annulé).
+     *
+     * @param context Le contexte Android.
+     * @param enregistrement L'enregistrement retourné par {@link #register}.
+     */
+    public static void unregister(Context context, ConnectivityManager.NetworkCallback enregistrement) {
+        ConnectivityManager cm = (ConnectivityManager) context.getApplicationContext().getSystemService(Context.CONNECTIVITY_SERVICE);
+        try {
+            cm.unregisterNetworkCallback(enregistrement);
+        } catch (IllegalArgumentException e) {
+            // Déjà annulé
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.mdo.gestionpalettes.utils;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Relance automatique des appels en échec transitoire (coupure Wi-Fi, 502/503/504).
+ * Chaque endpoint a sa politique : nombre maximal de tentatives, délai exponentiel avec gigue
+ * ("full jitter") et échéance globale au-delà de laquelle l'erreur est remontée à l'écran.
+ *
+ * Un POST/PATCH n'est relancé que s'il porte un en-tête {@link Idempotence#EN_TETE} :
+ * le serveur reconnaît alors la clé et ne réapplique pas une requête déjà traitée.
+ * Les lectures depuis le cache seul (only-if-cached) ne sont jamais relancées.
+ */
+public class RetryInterceptor implements Interceptor {
+
+    private static final String TAG = "RetryInterceptor";
+
+    /**
+     * Politique de relance d'un endpoint.
+     */
+    static final class PolitiqueRelance {
+        final int tentativesMax;
+        final long delaiInitialMs;
+        final long delaiMaxMs;
+        final long echeanceMs;
+
+        PolitiqueRelance(int tentativesMax, long delaiInitialMs, long delaiMaxMs, long echeanceMs) {
+            this.tentativesMax = tentativesMax;
+            this.delaiInitialMs = delaiInitialMs;
+            this.delaiMaxMs = delaiMaxMs;
+            this.echeanceMs = echeanceMs;
+        }
+    }
+
+    private static final PolitiqueRelance AUCUNE = new PolitiqueRelance(1, 0, 0, 0);
+    // Listes et recherches : l'utilisateur attend devant l'écran, on abandonne vite
+    private static final PolitiqueRelance LECTURE = new PolitiqueRelance(3, 250, 2_000, 8_000);
+    // Entrée d'une palette, changement d'emplacement
+    private static final PolitiqueRelance ECRITURE = new PolitiqueRelance(4, 400, 4_000, 15_000);
+    // Validations en lot de fin de session : on insiste davantage pour ne pas perdre le travail
+    private static final PolitiqueRelance VALIDATION = new PolitiqueRelance(6, 500, 8_000, 45_000);
+
+    @NonNull
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        PolitiqueRelance politique = politique(request);
+        long debut = System.currentTimeMillis();
+
+        for (int tentative = 1; ; tentative++) {
+            Response response = null;
+            IOException erreur = null;
+            try {
+                response = chain.proceed(request);
+            } catch (IOException e) {
+                erreur = e;
+            }
+
+            boolean transitoire = erreur != null || estTransitoire(response.code());
+            if (!transitoire || tentative >= politique.tentativesMax || chain.call().isCanceled()) {
+                if (erreur != null) throw erreur;
+                return response;
+            }
+
+            long delai = delai(politique, tentative, response);
+            if (System.currentTimeMillis() - debut + delai > politique.echeanceMs) {
+                if (erreur != null) throw erreur;
+                return response;
+            }
+
+            Log.w(TAG, "Tentative " + tentative + "/" + politique.tentativesMax + " en échec ("
+                    + (erreur != null ? erreur.getMessage() : "HTTP " + response.code()) + "), relance dans "
+                    + delai + " ms : " + request.url().encodedPath());
+            if (response != null) response.close();
+
+            try {
+                Thread.sleep(delai);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Relance interrompue");
+            }
+        }
+    }
+
+    /**
+     * Choisit la politique selon la méthode et le chemin de la requête.
+     */
+    private PolitiqueRelance politique(Request request) {
+        String cacheControl = request.header("Cache-Control");
+        if (cacheControl != null && cacheControl.contains("only-if-cached")) {
+            return AUCUNE;
+        }
+        if ("GET".equals(request.method()) || "HEAD".equals(request.method())) {
+            return LECTURE;
+        }
+        if (request.header(Idempotence.EN_TETE) == null) {
+            return AUCUNE;
+        }
+        return request.url().encodedPath().contains("/valider_") ? VALIDATION : ECRITURE;
+    }
+
+    /**
+     * 409 : la même clé d'idempotence est encore en cours de traitement côté serveur.
+     */
+    private boolean estTransitoire(int code) {
+        return code == 502 || code == 503 || code == 504 || code == 409;
+    }
+
+    /**
+     * Délai aléatoire entre 0 et min(délai max, délai initial × 2^(tentative-1)).
+     * Un en-tête Retry-After du serveur est respecté, dans la limite du délai max.
+     */
+    private long delai(PolitiqueRelance politique, int tentative, Response response) {
+        if (response != null) {
+            String retryAfter = response.header("Retry-After");
+            if (retryAfter != null) {
+                try {
+                    return Math.min(politique.delaiMaxMs, Long.parseLong(retryAfter.trim()) * 1000);
+                } catch (NumberFormatException ignored) {
+                    // Format date HTTP : on garde le délai calculé
+                }
+            }
+        }
+        long plafond = Math.min(politique.delaiMaxMs, politique.delaiInitialMs << Math.min(tentative - 1, 16));
+        return ThreadLocalRandom.current().nextLong(plafond + 1);
+    }
+}
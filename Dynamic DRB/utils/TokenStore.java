@@ -0,0 +1,78 @@
+package com.mdo.gestionpalettes.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Détenteur unique du token d'authentification pour tout le processus.
+ * Le token est lu une seule fois depuis les préférences "auth", puis gardé en mémoire :
+ * le chemin de chaque requête ne fait plus qu'une lecture atomique.
+ * Les écritures sont répercutées sur disque de façon asynchrone (SharedPreferences.apply()).
+ */
+public final class TokenStore {
+
+    private static final String PREFS_AUTH = "auth";
+    private static final String CLE_TOKEN = "token";
+
+    private static final AtomicReference<String> token = new AtomicReference<>();
+    private static final AtomicBoolean reconnexionEnCours = new AtomicBoolean(false);
+    private static SharedPreferences prefs;
+
+    private TokenStore() {}
+
+    /**
+     * Charge le token persisté, une seule fois par processus.
+     *
+     * @param context Un contexte Android ; seul le contexte applicatif est conservé.
+     */
+    public static synchronized void init(Context context) {
+        if (prefs == null) {
+            prefs = context.getApplicationContext().getSharedPreferences(PREFS_AUTH, Context.MODE_PRIVATE);
+            token.set(prefs.getString(CLE_TOKEN, null));
+        }
+    }
+
+    /**
+     * @return Le token courant, ou null si l'utilisateur n'est pas connecté.
+     */
+    public static String get() {
+        return token.get();
+    }
+
+    /**
+     * Enregistre un nouveau token après une connexion réussie et rouvre la porte aux redirections
+     * vers l'écran de connexion.
+     *
+     * @param nouveauToken Le token délivré par l'API.
+     */
+    public static void enregistrer(String nouveauToken) {
+        token.set(nouveauToken);
+        reconnexionEnCours.set(false);
+        prefs.edit().putString(CLE_TOKEN, nouveauToken).apply();
+    }
+
+    /**
+     * Efface le token s'il s'agit toujours de celui qui a été refusé par le serveur.
+     * Un token plus récent (enregistré entre-temps) n'est jamais effacé.
+     *
+     * @param tokenRefuse Le token envoyé avec la requête qui a reçu une 401.
+     */
+    public static void expirer(String tokenRefuse) {
+        if (tokenRefuse != null && token.compareAndSet(tokenRefuse, null)) {
+            prefs.edit().remove(CLE_TOKEN).apply();
+        }
+    }
+
+    /**
+     * Réserve la redirection vers l'écran de connexion. Seul le premier appelant obtient true
+     * jusqu'au prochain {@link #enregistrer(String)} : une rafale de 401 ne produit qu'une redirection.
+     *
+     * @return true si l'appelant doit lancer l'écran de connexion.
+     */
+    public static boolean demarrerReconnexion() {
+        return reconnexionEnCours.compareAndSet(false, true);
+    }
+}
@@ -33,6 +33,17 @@ HEADERS_INFOPALETTE = [
 
 HEADERS_SPR_PALETTE = HEADERS_INFOPALETTE.copy()
 
+# Journal des palettes purgées, lu par l'API pour les synchronisations incrémentales des terminaux
+# (même définition et même durée de conservation que dans API/utils/helpers.py)
+CONSERVATION_SUPPRESSIONS = timedelta(days=30)
+TABLE_SUPPRESSIONS = """
+    CREATE TABLE IF NOT EXISTS Suppression_Palette (
+        NumPalette VARCHAR(50) NOT NULL,
+        Date_Suppression DATETIME NOT NULL,
+        INDEX idx_suppression_date (Date_Suppression)
+    )
+"""
+
 # Fonction qui intercepte les exceptions non gérées et les enregistre dans un fichier texte
 def excepthook(exctype, value, tb):
     try:
@@ -789,6 +800,8 @@ class StockApp(QWidget):
         try:
             conn = get_connection()
             with conn.cursor() as cursor:
+                # Avant toute écriture : la création de table valide implicitement la transaction
+                cursor.execute(TABLE_SUPPRESSIONS)
                 cursor.execute("""
                     SELECT * FROM InfoPalette
                     WHERE Statut IN (%s, %s, %s) AND Date_Modif_Statut < %s
@@ -804,6 +817,12 @@ class StockApp(QWidget):
                 cursor.execute(f"DELETE FROM InfoPalette WHERE NumPalette IN ({', '.join(['%s'] * len(lignes))})", [l.get("NumPalette", "") for l in lignes])
                 cursor.execute(f"DELETE FROM STT_Palette WHERE NumPalette IN ({', '.join(['%s'] * len(lignes))})", [l.get("NumPalette", "") for l in lignes])
                 cursor.execute(f"DELETE FROM MVT_Palette WHERE NumPalette IN ({', '.join(['%s'] * len(lignes))})", [l.get("NumPalette", "") for l in lignes])
+                # Les terminaux retirent ces palettes de leurs listes à la synchronisation suivante
+                maintenant = datetime.now()
+                cursor.executemany("INSERT INTO Suppression_Palette (NumPalette, Date_Suppression) VALUES (%s, %s)",
+                                   [(l.get("NumPalette", ""), maintenant.strftime("%Y-%m-%d %H:%M:%S")) for l in lignes])
+                cursor.execute("DELETE FROM Suppression_Palette WHERE Date_Suppression < %s",
+                               ((maintenant - CONSERVATION_SUPPRESSIONS).strftime("%Y-%m-%d %H:%M:%S"),))
             conn.commit()
             conn.close()
         except Exception as e: